@@ -12,6 +12,7 @@ import org.hwyl.sexytopo.R;
 import org.hwyl.sexytopo.SexyTopoConstants;
 import org.hwyl.sexytopo.control.io.basic.Saver;
 import org.hwyl.sexytopo.control.util.InputMode;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.SurveyUpdater;
 import org.hwyl.sexytopo.model.calibration.CalibrationReading;
 import org.hwyl.sexytopo.model.survey.Leg;
@@ -60,7 +61,11 @@ public class SurveyManager {
         if (legs.size() > 0) {
 
             InputMode inputMode = getInputMode();
-            boolean stationAdded = SurveyUpdater.update(currentSurvey, legs, inputMode);
+            // a batch (e.g. a download of stored shots) goes in as one update, so there's
+            // just the one broadcast and autosave below
+            boolean stationAdded = (legs.size() == 1)?
+                SurveyUpdater.update(currentSurvey, legs.get(0), inputMode) :
+                SurveyUpdater.updateInBulk(currentSurvey, legs, inputMode) > 0;
 
             // survey update event should be generated first so the survey can be synced before
             // dealing with any special station created events
@@ -77,6 +82,7 @@ public class SurveyManager {
     }
 
     public void autosave() {
+        currentSurvey.publishSnapshot(); // the autosave runs in the background off this
         new AutosaveTask().execute(context);
     }
 
@@ -91,6 +97,9 @@ public class SurveyManager {
     }
 
     public void broadcastSurveyUpdated() {
+        // whoever is broadcasting has finished changing the survey, so it's a good point to
+        // let readers on other threads see the changes
+        currentSurvey.publishSnapshot();
         broadcast(new Intent(SexyTopoConstants.SURVEY_UPDATED_EVENT));
     }
 
@@ -114,6 +123,9 @@ public class SurveyManager {
     }
 
     public void setCurrentSurvey(Survey currentSurvey) {
+        if (SurveyManager.currentSurvey != currentSurvey) {
+            ProjectionCache.getInstance().invalidate(SurveyManager.currentSurvey);
+        }
         SurveyManager.currentSurvey = currentSurvey;
         broadcastSurveyUpdated();
     }
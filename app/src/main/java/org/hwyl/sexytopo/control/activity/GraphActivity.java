@@ -15,6 +15,7 @@ import android.os.Bundle;
 import android.view.HapticFeedbackConstants;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.TextureView;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ImageButton;
@@ -31,6 +32,8 @@ import org.hwyl.sexytopo.R;
 import org.hwyl.sexytopo.SexyTopoConstants;
 import org.hwyl.sexytopo.control.graph.GraphView;
 import org.hwyl.sexytopo.control.graph.StationContextMenu;
+import org.hwyl.sexytopo.control.util.GeneralPreferences;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.SketchPreferences;
 import org.hwyl.sexytopo.control.util.SurveyStats;
 import org.hwyl.sexytopo.model.graph.Coord2D;
@@ -43,6 +46,9 @@ import org.hwyl.sexytopo.model.sketch.SketchTool;
 import org.hwyl.sexytopo.model.sketch.Symbol;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
+
+import java.util.List;
 
 
 public abstract class GraphActivity extends SexyTopoActivity
@@ -85,6 +91,9 @@ public abstract class GraphActivity extends SexyTopoActivity
     private BroadcastReceiver updatedReceiver;
     private BroadcastReceiver createdReceiver;
 
+    private Survey syncedSurvey = null;
+    private long syncedRevision = -1;
+
     private int buttonHighlightColour = Colour.RED.intValue;
 
     private boolean symbolToolbarOpenedOnce = false;
@@ -96,7 +105,7 @@ public abstract class GraphActivity extends SexyTopoActivity
         updatedReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                syncGraphWithSurvey();
+                updateGraphFromSurvey();
             }
         };
 
@@ -135,7 +144,7 @@ public abstract class GraphActivity extends SexyTopoActivity
         super.onResume();
 
         registerReceivers();
-        syncGraphWithSurvey();
+        updateGraphFromSurvey();
 
         intialiseActivity();
         initialiseGraphView();
@@ -186,26 +195,71 @@ public abstract class GraphActivity extends SexyTopoActivity
 
         boolean isDarkModeActive = isDarkModeActive();
         graphView.setIsDarkModeActive(isDarkModeActive);
+
+        TextureView renderView = findViewById(R.id.graphRenderView);
+        graphView.setRenderView(GeneralPreferences.isRenderThreadOn()? renderView : null);
+    }
+
+
+    /**
+     * Brings the graph up to date, only redoing the expensive parts (projecting the survey,
+     * working out the stats) if something has changed that needs them.
+     */
+    private void updateGraphFromSurvey() {
+        Survey survey = getSurvey();
+        List<SurveyChange> changes =
+            survey == syncedSurvey? survey.getChangesSince(syncedRevision) : null;
+
+        if (changes == null) {
+            syncGraphWithSurvey();
+            return;
+        }
+
+        boolean needsProjecting = false;
+        boolean needsStats = false;
+        for (SurveyChange change : changes) {
+            needsProjecting = needsProjecting || !change.isCosmetic();
+            needsStats = needsStats || change.affectsStations();
+        }
+
+        graphView.setSketch(getSketch(survey));
+        if (needsProjecting) {
+            graphView.setProjection(getProjection(survey));
+        }
+        if (needsStats) {
+            updateCachedStats(survey);
+        }
+        syncedRevision = SurveyChange.getRevisionAfter(syncedRevision, changes);
+        graphView.invalidate();
     }
 
 
     private void syncGraphWithSurvey() {
         Survey survey = getSurvey();
+        // taken first, so anything that changes while this is going on gets picked up next time
+        long revision = survey.getRevision();
         graphView.setSurvey(survey);
         graphView.setSketch(getSketch(survey));
         graphView.setProjection(getProjection(survey));
         graphView.checkForChangedSurvey();
+        updateCachedStats(survey);
+        syncedSurvey = survey;
+        syncedRevision = revision;
+        graphView.invalidate();
+    }
+
+
+    private void updateCachedStats(Survey survey) {
         float surveyLength = SurveyStats.calcTotalLength(survey);
         float surveyHeight = SurveyStats.calcHeightRange(survey);
         graphView.setCachedStats(surveyLength, surveyHeight);
-        graphView.invalidate();
     }
 
 
     public abstract Sketch getSketch(Survey survey);
 
     public Space<Coord2D> getProjection(Survey survey) {
-        return getProjectionType().project(survey);
+        return ProjectionCache.getInstance().project(survey, getProjectionType());
     }
 
     public abstract Projection2D getProjectionType();
@@ -747,7 +747,7 @@ public abstract class SexyTopoActivity extends AppCompatActivity {
         }
 
         Survey newSurvey = new Survey();
-        newSurvey.getOrigin().setName(joinPoint.getName());
+        newSurvey.renameStation(newSurvey.getOrigin(), joinPoint.getName());
         joinSurveys(currentSurvey, joinPoint, newSurvey, newSurvey.getOrigin());
         setSurvey(newSurvey);
     }
@@ -39,9 +39,9 @@ public class StatsActivity extends SexyTopoActivity {
         setStatsField(R.id.statsFieldDepth, TextTools.formatTo2dpWithComma(heightRange));
         int numberOfStations = SurveyStats.calcNumberStations(survey);
         setStatsField(R.id.statsFieldNumberStations, TextTools.formatWithComma(numberOfStations));
-        int numberOfLegs = SurveyStats.calcNumberSubFullLegs(survey.getOrigin());
+        int numberOfLegs = SurveyStats.calcNumberFullLegs(survey);
         setStatsField(R.id.statsFieldNumberLegs, TextTools.formatWithComma(numberOfLegs));
-        int numberOfSplays = SurveyStats.calcNumberSubSplays(survey.getOrigin());
+        int numberOfSplays = SurveyStats.calcNumberSplays(survey);
         setStatsField(R.id.statsFieldNumberSplays, TextTools.formatWithComma(numberOfSplays));
         float shortestLeg = SurveyStats.calcShortestLeg(survey);
         setStatsField(R.id.statsFieldShortestLeg, TextTools.formatTo2dpWithComma(shortestLeg));
@@ -79,8 +79,8 @@ public class StatsActivity extends SexyTopoActivity {
             lowestHeight = Math.min(heightRange[0], lowestHeight);
             highestHeight = Math.max(heightRange[1], highestHeight);
             numberOfStations += SurveyStats.calcNumberStations(survey);
-            numberOfLegs = SurveyStats.calcNumberSubFullLegs(survey.getOrigin());
-            numberOfSplays += SurveyStats.calcNumberSubSplays(survey.getOrigin());
+            numberOfLegs = SurveyStats.calcNumberFullLegs(survey);
+            numberOfSplays += SurveyStats.calcNumberSplays(survey);
             longestLeg = Math.max(longestLeg, SurveyStats.calcLongestLeg(survey));
             shortestLeg = Math.min(shortestLeg, SurveyStats.calcShortestLeg(survey));
         }
@@ -38,6 +38,7 @@ import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
 import org.hwyl.sexytopo.model.table.TableCol;
 
 import java.util.ArrayList;
@@ -55,7 +56,11 @@ public class TableActivity extends SexyTopoActivity
     private final Map<TextView, GraphToListTranslator.SurveyListEntry> fieldToSurveyEntry
             = new HashMap<>();
     private final Map<TextView, TableCol> fieldToTableCol = new HashMap<>();
-    private final static Map<Station, Integer> stationsToTableIndex = new HashMap<>();
+    private final Map<Station, TableRow> stationsToTableRow = new HashMap<>();
+    private final Map<Leg, TableRow> legsToTableRow = new HashMap<>();
+    private final Map<Station, List<TextView>> stationsToFields = new HashMap<>();
+    private Survey syncedSurvey = null;
+    private long syncedRevision = -1;
     private BroadcastReceiver receiver;
     private TextView cellBeingClicked;
 
@@ -117,9 +122,10 @@ public class TableActivity extends SexyTopoActivity
 
     private void jumpToStation(Station station) {
         try {
-            final TableLayout tableLayout = findViewById(R.id.BodyTable);
-            int requestedIndex = stationsToTableIndex.get(station);
-            final View requestedRow = tableLayout.getChildAt(requestedIndex);
+            final View requestedRow = stationsToTableRow.get(station);
+            if (requestedRow == null) {
+                throw new IllegalArgumentException("No table row for station " + station);
+            }
             final ScrollView scrollView = findViewById(R.id.BodyTableScrollView);
 
             scrollView.post(() -> scrollView.smoothScrollTo(0, requestedRow.getTop()));
@@ -131,11 +137,84 @@ public class TableActivity extends SexyTopoActivity
     }
 
 
+    /**
+     * Brings the table up to date. Where possible this just patches the rows affected by
+     * whatever has changed since the last sync; anything awkward means rebuilding the lot.
+     */
     public void syncTableWithSurvey() {
-
         Survey survey = getSurvey();
+        long revision = survey.getRevision();
+        List<SurveyChange> changes =
+            survey == syncedSurvey? survey.getChangesSince(syncedRevision) : null;
+
+        if (changes != null && applyChanges(survey, changes)) {
+            revision = SurveyChange.getRevisionAfter(syncedRevision, changes);
+        } else {
+            rebuildTable(survey);
+        }
+
+        syncedSurvey = survey;
+        syncedRevision = revision;
+    }
+
+
+    private boolean applyChanges(Survey survey, List<SurveyChange> changes) {
+
+        final TableLayout tableLayout = findViewById(R.id.BodyTable);
+
+        List<Leg> addedLegs = new ArrayList<>();
+
+        for (SurveyChange change : changes) {
+            switch (change.getType()) {
+                case LEG_ADDED:
+                    addedLegs.add(change.getLeg());
+                    break;
+                case SUBTREE_DELETED:
+                    Leg deleted = change.getLeg();
+                    if (deleted.hasDestination()) {
+                        return false;
+                    }
+                    if (!addedLegs.remove(deleted)) {
+                        removeRow(tableLayout, deleted);
+                    }
+                    break;
+                case STATION_RENAMED:
+                case STATION_COMMENTED:
+                    refreshStationFields(change.getStation());
+                    break;
+                case DIRECTION_CHANGED:
+                    break; // not shown in the table
+                case ACTIVE_STATION_CHANGED:
+                    highlightStationFields(change.getPreviousStation(), false);
+                    highlightStationFields(change.getStation(), true);
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        // new rows can only go on the end if they're the most recently recorded legs
+        if (!survey.getLastNLegs(addedLegs.size()).equals(addedLegs)) {
+            return false;
+        }
+
+        for (Leg leg : addedLegs) {
+            Station from = survey.getOriginatingStation(leg);
+            addRow(tableLayout, new GraphToListTranslator.SurveyListEntry(from, leg));
+        }
+
+        tableLayout.requestLayout();
+        return true;
+    }
 
-        stationsToTableIndex.clear();
+
+    private void rebuildTable(Survey survey) {
+
+        stationsToTableRow.clear();
+        legsToTableRow.clear();
+        stationsToFields.clear();
+        fieldToSurveyEntry.clear();
+        fieldToTableCol.clear();
 
         List<GraphToListTranslator.SurveyListEntry> tableEntries =
                 graphToListTranslator.toChronoListOfSurveyListEntries(survey);
@@ -149,49 +228,107 @@ public class TableActivity extends SexyTopoActivity
         tableLayout.removeAllViews();
 
         for (GraphToListTranslator.SurveyListEntry entry : tableEntries) {
+            addRow(tableLayout, entry);
+        }
 
-            TableRow tableRow = (TableRow)LayoutInflater.from(this).inflate(R.layout.table_row, null);
-            final Map<TableCol, Object> map = GraphToListTranslator.createMap(entry);
+        tableLayout.requestLayout();
 
-            for (TableCol col : TableCol.values()) {
 
-                if (col == TableCol.COMMENT) {
-                    continue;
-                }
+    }
 
-                String display = map.containsKey(col) ? col.format(map.get(col)) : "?";
-                int id = TABLE_COL_BY_ANDROID_ID.get(col);
-                TextView textView = tableRow.findViewById(id);
-                textView.setText(display);
 
-                if (isActiveStation(map.get(col))) {
-                    textView.setBackgroundColor(GraphView.HIGHLIGHT_COLOUR.intValue);
-                }
+    private void addRow(TableLayout tableLayout, GraphToListTranslator.SurveyListEntry entry) {
 
-				if (entry.getLeg().hasDestination()) {
-					textView.setTypeface(textView.getTypeface(), Typeface.BOLD);
-                } else {
-                    textView.setTypeface(textView.getTypeface(), Typeface.NORMAL);
-                }
+        TableRow tableRow = (TableRow)LayoutInflater.from(this).inflate(R.layout.table_row, null);
+        final Map<TableCol, Object> map = GraphToListTranslator.createMap(entry);
 
-                fieldToSurveyEntry.put(textView, entry);
-                fieldToTableCol.put(textView, col);
+        for (TableCol col : TableCol.values()) {
 
-                textView.setOnLongClickListener(this);
+            if (col == TableCol.COMMENT) {
+                continue;
             }
 
-            int rowCount = tableLayout.getChildCount();
-            tableLayout.addView(tableRow, rowCount);
+            String display = map.containsKey(col) ? col.format(map.get(col)) : "?";
+            int id = TABLE_COL_BY_ANDROID_ID.get(col);
+            TextView textView = tableRow.findViewById(id);
+            textView.setText(display);
+
+            if (isActiveStation(map.get(col))) {
+                textView.setBackgroundColor(GraphView.HIGHLIGHT_COLOUR.intValue);
+            }
 
             if (entry.getLeg().hasDestination()) {
-                Station to = entry.getLeg().getDestination();
-                stationsToTableIndex.put(to, rowCount);
+                textView.setTypeface(textView.getTypeface(), Typeface.BOLD);
+            } else {
+                textView.setTypeface(textView.getTypeface(), Typeface.NORMAL);
+            }
+
+            fieldToSurveyEntry.put(textView, entry);
+            fieldToTableCol.put(textView, col);
+
+            Object value = map.get(col);
+            if (value instanceof Station && value != Survey.NULL_STATION) {
+                Station station = (Station)value;
+                if (!stationsToFields.containsKey(station)) {
+                    stationsToFields.put(station, new ArrayList<>());
+                }
+                stationsToFields.get(station).add(textView);
             }
+
+            textView.setOnLongClickListener(this);
         }
 
-        tableLayout.requestLayout();
+        tableLayout.addView(tableRow);
+        legsToTableRow.put(entry.getLeg(), tableRow);
+
+        if (entry.getLeg().hasDestination()) {
+            Station to = entry.getLeg().getDestination();
+            stationsToTableRow.put(to, tableRow);
+        }
+    }
+
 
+    private void removeRow(TableLayout tableLayout, Leg leg) {
+        TableRow tableRow = legsToTableRow.remove(leg);
+        if (tableRow == null) {
+            return;
+        }
 
+        for (int i = 0; i < tableRow.getChildCount(); i++) {
+            View field = tableRow.getChildAt(i);
+            GraphToListTranslator.SurveyListEntry entry = fieldToSurveyEntry.remove(field);
+            fieldToTableCol.remove(field);
+            List<TextView> stationFields =
+                entry == null? null : stationsToFields.get(entry.getFrom());
+            if (stationFields != null) {
+                stationFields.remove(field);
+            }
+        }
+
+        tableLayout.removeView(tableRow);
+    }
+
+
+    private void refreshStationFields(Station station) {
+        List<TextView> fields = stationsToFields.get(station);
+        if (fields == null) {
+            return;
+        }
+        for (TextView field : fields) {
+            field.setText(fieldToTableCol.get(field).format(station));
+        }
+    }
+
+
+    private void highlightStationFields(Station station, boolean isHighlighted) {
+        List<TextView> fields = stationsToFields.get(station);
+        if (fields == null) {
+            return;
+        }
+        int colour = isHighlighted? GraphView.HIGHLIGHT_COLOUR.intValue : Color.TRANSPARENT;
+        for (TextView field : fields) {
+            field.setBackgroundColor(colour);
+        }
     }
 
     private boolean isActiveStation(Object object) {
@@ -1,5 +1,6 @@
 package org.hwyl.sexytopo.control.graph;
 
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.Space2DUtils;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 import org.hwyl.sexytopo.model.graph.Projection2D;
@@ -49,7 +50,8 @@ public class ConnectedSurveys {
                 lightweightSurveyCopy.setDirectory(otherSurvey.getDirectory());
                 lightweightSurveyCopy.setOrigin(otherSurvey.getOrigin());
 
-                Space<Coord2D> otherProjection = projectionType.project(connection.otherSurvey);
+                Space<Coord2D> otherProjection = ProjectionCache.getInstance().project(
+                        connection.otherSurvey, projectionType);
                 Coord2D otherConnectingStationLocation =
                         otherProjection.getStationMap().get(otherConnectingStation);
                 Coord2D transformation =
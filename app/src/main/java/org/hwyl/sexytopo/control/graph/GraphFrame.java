@@ -0,0 +1,225 @@
+package org.hwyl.sexytopo.control.graph;
+
+import org.hwyl.sexytopo.model.common.QuadTree;
+import org.hwyl.sexytopo.model.common.Shape;
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.Projection2D;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.sketch.Colour;
+import org.hwyl.sexytopo.model.sketch.CrossSectionDetail;
+import org.hwyl.sexytopo.model.sketch.PathDetail;
+import org.hwyl.sexytopo.model.sketch.Sketch;
+import org.hwyl.sexytopo.model.sketch.SketchDetail;
+import org.hwyl.sexytopo.model.sketch.SketchTool;
+import org.hwyl.sexytopo.model.sketch.StrokeBucket;
+import org.hwyl.sexytopo.model.sketch.SymbolDetail;
+import org.hwyl.sexytopo.model.sketch.TextDetail;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Everything a GraphRenderer needs to draw one frame of the graph, captured on the UI thread
+ * so that it can be drawn on another. The fields are filled in once, when the frame is
+ * captured, and nothing it refers to changes afterwards: projections and finished sketch
+ * details are never altered once made, and anything that is (the path being drawn, the
+ * lists of details) is copied.
+ */
+class GraphFrame {
+
+    // the view
+    int width;
+    int height;
+    float offsetX;
+    float offsetY;
+    float scale;
+    boolean isScaling;
+    SketchTool sketchTool;
+
+    // settings
+    boolean showGrid;
+    boolean showConnections;
+    boolean showSplays;
+    boolean fadeNonActive;
+    boolean showStationLabels;
+    boolean showSketch;
+    boolean highlightLatestLeg;
+    boolean isDebugMode;
+    boolean isDarkModeActive;
+
+    // the survey
+    Projection2D projectionType;
+    SurveyLayer survey;
+    List<SurveyLayer> connectedSurveys = new ArrayList<>();
+    Leg mostRecentLeg;
+    List<Leg> activeLegs;
+    float surveyLength;
+    float surveyHeight;
+
+
+    /** A survey (the one being looked at, or one connected to it) as it is to be drawn. */
+    static class SurveyLayer {
+
+        final String name;
+        final SurveySnapshot snapshot; // for station names and comments
+        final Station origin;
+        final Station activeStation;
+        final Set<Station> linkedStations;
+        final Space<Coord2D> projection;
+        final SketchContent sketch;
+        final PathDetail activePath; // a copy, as it's still being drawn
+        final List<CrossSectionDetail> crossSections;
+        final Map<CrossSectionDetail, Space<Coord2D>> crossSectionProjections;
+        final Map<Station, CrossSectionDetail> crossSectionsByStation;
+
+        /** The cross-sections should all have a station in the projection. */
+        SurveyLayer(Survey survey, Space<Coord2D> projection, Sketch sketch,
+                    SketchContent sketchContent, List<CrossSectionDetail> crossSections) {
+            this.name = survey.getName();
+            this.snapshot = survey.getLatestSnapshot();
+            this.origin = snapshot.getOrigin();
+            this.activeStation = snapshot.getActiveStation();
+            this.linkedStations = new HashSet<>(survey.getConnectedSurveys().keySet());
+            this.projection = projection;
+            this.sketch = sketchContent;
+            PathDetail activePath = sketch.getActivePath();
+            this.activePath = (activePath == null)? null :
+                    new PathDetail(new ArrayList<>(activePath.getPath()), activePath.getColour());
+            this.crossSections = crossSections;
+            this.crossSectionProjections = new HashMap<>();
+            this.crossSectionsByStation = new HashMap<>();
+            for (CrossSectionDetail crossSectionDetail : crossSections) {
+                crossSectionProjections.put(crossSectionDetail, crossSectionDetail.getProjection());
+                Station station = crossSectionDetail.getCrossSection().getStation();
+                if (!crossSectionsByStation.containsKey(station)) {
+                    crossSectionsByStation.put(station, crossSectionDetail);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * The finished sketch details of one revision of a sketch. Finished details don't change,
+     * so the same content can be drawn for as many frames as the sketch stays at that revision.
+     */
+    static class SketchContent {
+
+        final Sketch sketch;
+        final long revision;
+        final List<PathDetail> paths;
+        final List<Strokes> strokes;
+        final List<TextDetail> texts;
+        final List<SymbolDetail> symbols;
+
+        // built when first needed, by whoever draws the content
+        private QuadTree<SketchDetail> index = null;
+
+        private SketchContent(Sketch sketch, long revision,
+                              List<PathDetail> paths, List<Strokes> strokes,
+                              List<TextDetail> texts, List<SymbolDetail> symbols) {
+            this.sketch = sketch;
+            this.revision = revision;
+            this.paths = paths;
+            this.strokes = strokes;
+            this.texts = texts;
+            this.symbols = symbols;
+        }
+
+
+        /**
+         * Captures the finished part of the sketch as it is now, or just hands back the
+         * previous capture if it's of the same sketch and nothing has changed since.
+         */
+        static SketchContent capture(Sketch sketch, SketchContent previous) {
+            long revision = sketch.getRevision();
+            if (previous != null && previous.sketch == sketch && previous.revision == revision) {
+                return previous;
+            }
+
+            PathDetail activePath = sketch.getActivePath();
+            List<PathDetail> paths = new ArrayList<>(sketch.getPathDetails().size());
+            for (PathDetail pathDetail : sketch.getPathDetails()) {
+                if (pathDetail != activePath && !pathDetail.getPath().isEmpty()) {
+                    pathDetail.getLineSegments(); // built here so that drawing only reads them
+                    paths.add(pathDetail);
+                }
+            }
+
+            List<Strokes> strokes = new ArrayList<>();
+            for (StrokeBucket bucket : sketch.getStrokeBuckets()) {
+                if (!bucket.isEmpty()) {
+                    Shape area = bucket.getAreaCovered();
+                    strokes.add(new Strokes(
+                            bucket.getColour(), bucket.getSegments(), bucket.getLength(),
+                            area.getLeft(), area.getTop(), area.getRight(), area.getBottom()));
+                }
+            }
+
+            return new SketchContent(sketch, revision, paths, strokes,
+                    new ArrayList<>(sketch.getTextDetails()),
+                    new ArrayList<>(sketch.getSymbolDetails()));
+        }
+
+
+        /** The details whose area covered (see SketchDetail.getAreaCovered) overlaps the area. */
+        synchronized List<SketchDetail> findDetailsWithin(
+                float left, float top, float right, float bottom) {
+            if (index == null) {
+                index = new QuadTree<>();
+                for (PathDetail pathDetail : paths) {
+                    addToIndex(pathDetail);
+                }
+                for (TextDetail textDetail : texts) {
+                    addToIndex(textDetail);
+                }
+                for (SymbolDetail symbolDetail : symbols) {
+                    addToIndex(symbolDetail);
+                }
+            }
+            return index.findWithin(left, top, right, bottom);
+        }
+
+        private void addToIndex(SketchDetail detail) {
+            Shape area = detail.getAreaCovered();
+            index.add(detail, area.getLeft(), area.getTop(), area.getRight(), area.getBottom());
+        }
+    }
+
+
+    /**
+     * The line segments of all the finished paths of one colour (see StrokeBucket), and the
+     * area they lie within.
+     */
+    static class Strokes {
+
+        final Colour colour;
+        final float[] segments;
+        final int length;
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+
+        Strokes(Colour colour, float[] segments, int length,
+                float left, float top, float right, float bottom) {
+            this.colour = colour;
+            this.segments = segments;
+            this.length = length;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+}
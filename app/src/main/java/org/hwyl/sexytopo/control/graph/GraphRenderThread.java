@@ -0,0 +1,181 @@
+package org.hwyl.sexytopo.control.graph;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.TextureView;
+
+import org.hwyl.sexytopo.control.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Draws the graph onto a TextureView on a thread of its own, so that drawing a big survey
+ * doesn't hold up the UI thread (touches, dialogs, data coming in from the instrument).
+ *
+ * Frames can be handed over as often as the view likes; only the latest is drawn, at most once
+ * per display refresh. Everything to do with the surface happens on this thread.
+ */
+class GraphRenderThread extends HandlerThread
+        implements TextureView.SurfaceTextureListener, Choreographer.FrameCallback {
+
+    private final GraphRenderer renderer;
+    private Handler handler;
+
+    private final AtomicReference<GraphFrame> pendingFrame = new AtomicReference<>();
+    private final AtomicBoolean isFrameScheduled = new AtomicBoolean(false);
+
+    // only used on this thread
+    private Surface surface = null;
+    private GraphFrame lastFrame = null;
+
+
+    private GraphRenderThread(GraphRenderer renderer) {
+        super("GraphRenderThread", Process.THREAD_PRIORITY_DISPLAY);
+        this.renderer = renderer;
+    }
+
+
+    static GraphRenderThread start(GraphRenderer renderer) {
+        GraphRenderThread thread = new GraphRenderThread(renderer);
+        thread.start();
+        thread.handler = new Handler(thread.getLooper());
+        return thread;
+    }
+
+
+    /**
+     * Stops drawing, lets go of the surface and waits for the thread to finish, so that once
+     * this returns nothing else is using the renderer. The view should stop sending this
+     * surface callbacks first.
+     */
+    void shutDown() {
+        handler.post(() -> {
+            Choreographer.getInstance().removeFrameCallback(this);
+            releaseSurface();
+        });
+        quitSafely();
+        waitUntilFinished();
+    }
+
+
+    private void waitUntilFinished() {
+        boolean isInterrupted = false;
+        while (isAlive()) {
+            try {
+                join();
+            } catch (InterruptedException exception) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /** Has the frame drawn at the next display refresh, in place of any still waiting. */
+    void requestRender(GraphFrame frame) {
+        pendingFrame.set(frame);
+        scheduleFrame();
+    }
+
+
+    private void scheduleFrame() {
+        if (isFrameScheduled.compareAndSet(false, true)) {
+            handler.post(() -> Choreographer.getInstance().postFrameCallback(this));
+        }
+    }
+
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isFrameScheduled.set(false);
+        GraphFrame frame = pendingFrame.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        lastFrame = frame;
+
+        if (surface == null) {
+            return; // drawn when the surface turns up
+        }
+
+        Canvas canvas;
+        try {
+            canvas = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)?
+                    surface.lockHardwareCanvas() : surface.lockCanvas(null);
+        } catch (IllegalArgumentException | Surface.OutOfResourcesException exception) {
+            Log.e("Couldn't draw the graph");
+            Log.e(exception);
+            return;
+        }
+
+        try {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            renderer.draw(canvas, frame);
+        } finally {
+            surface.unlockCanvasAndPost(canvas);
+        }
+    }
+
+
+    private void redrawLastFrame() {
+        if (lastFrame != null && pendingFrame.compareAndSet(null, lastFrame)) {
+            scheduleFrame();
+        }
+    }
+
+
+    private void releaseSurface() {
+        if (surface != null) {
+            surface.release();
+            surface = null;
+        }
+    }
+
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surfaceTexture, int width, int height) {
+        handler.post(() -> {
+            releaseSurface();
+            surface = new Surface(surfaceTexture);
+            redrawLastFrame();
+        });
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surfaceTexture, int width, int height) {
+        handler.post(this::redrawLastFrame);
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surfaceTexture) {
+        // this thread might be drawing to it, so it's left to this thread to release it...
+        boolean isPosted = handler.post(() -> {
+            releaseSurface();
+            surfaceTexture.release();
+        });
+        if (!isPosted) {
+            // ...unless it has been shut down, in which case it can't be drawing to it now
+            waitUntilFinished();
+            surfaceTexture.release();
+        }
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {
+        // nothing to do
+    }
+
+}
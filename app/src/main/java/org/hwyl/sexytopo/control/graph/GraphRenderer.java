@@ -0,0 +1,980 @@
+package org.hwyl.sexytopo.control.graph;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+import androidx.core.content.ContextCompat;
+
+import org.hwyl.sexytopo.R;
+import org.hwyl.sexytopo.control.Log;
+import org.hwyl.sexytopo.control.util.CohenSutherlandAlgorithm;
+import org.hwyl.sexytopo.control.util.GeneralPreferences;
+import org.hwyl.sexytopo.control.util.Space2DUtils;
+import org.hwyl.sexytopo.control.util.TextTools;
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.sketch.Colour;
+import org.hwyl.sexytopo.model.sketch.CrossSection;
+import org.hwyl.sexytopo.model.sketch.CrossSectionDetail;
+import org.hwyl.sexytopo.model.sketch.PathDetail;
+import org.hwyl.sexytopo.model.sketch.SketchDetail;
+import org.hwyl.sexytopo.model.sketch.SketchTool;
+import org.hwyl.sexytopo.model.sketch.SymbolDetail;
+import org.hwyl.sexytopo.model.sketch.TextDetail;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hwyl.sexytopo.control.graph.GraphView.CROSS_SECTION_CONNECTION_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.DEFAULT_SKETCH_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.FADED_ALPHA;
+import static org.hwyl.sexytopo.control.graph.GraphView.HIGHLIGHT_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.HIGHLIGHT_OUTLINE;
+import static org.hwyl.sexytopo.control.graph.GraphView.HOT_CORNER_DISTANCE_PROPORTION;
+import static org.hwyl.sexytopo.control.graph.GraphView.LATEST_LEG_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.LEGEND_SIZE;
+import static org.hwyl.sexytopo.control.graph.GraphView.LEG_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.SOLID_ALPHA;
+import static org.hwyl.sexytopo.control.graph.GraphView.STATION_COLOUR;
+import static org.hwyl.sexytopo.control.graph.GraphView.STATION_DIAMETER;
+import static org.hwyl.sexytopo.control.graph.GraphView.STATION_LABEL_OFFSET;
+import static org.hwyl.sexytopo.control.graph.GraphView.STATION_STROKE_WIDTH;
+
+
+/**
+ * Draws GraphFrames. Only reads the frame it's given, so it can draw on whichever thread is
+ * convenient (see GraphRenderThread); drawing and setting up the paints are synchronised so
+ * that the paints aren't changed part way through a frame.
+ */
+@SuppressWarnings({"SameParameterValue", "UnnecessaryLocalVariable"})
+class GraphRenderer {
+
+    private static final int BOX_SIZE = 10; // every grid box is 10 units square
+
+    private static final float DASHED_LINE_INTERVAL = 5;
+    private static final float LEGEND_TICK_SIZE = 5;
+    private static final float SKETCH_STROKE_WIDTH = 3;
+
+    private final SketchTileCache sketchTileCache = new SketchTileCache();
+
+    private final SymbolAtlas symbolAtlas = new SymbolAtlas();
+
+    // reused when grouping paths by colour, so as not to allocate for every tile
+    private final Map<Colour, LineBatch> lineBatches = new EnumMap<>(Colour.class);
+
+    // the frame being drawn
+    private GraphFrame frame;
+    private Coord2D viewpointOffset;
+    private float surveyToViewScale;
+
+    // cached for performance
+    private Coord2D canvasBottomRight;
+    private Coord2D viewpointTopLeftOnSurvey;
+    private Coord2D viewpointBottomRightOnSurvey;
+    private Rect topLeftCorner;
+    private Rect topRightCorner;
+    private Rect bottomRightCorner;
+    private final Rect iconRect = new Rect();
+    private int cornersWidth;
+    private int cornersHeight;
+
+    private boolean isHotCornersModeActive = true;
+
+    private Bitmap commentIcon, linkIcon;
+
+
+    // ********** Paints and other drawing variables **********
+
+    private final Paint stationPaint = new Paint();
+
+    private final Paint legPaint = new Paint();
+    private final Paint latestLegPaint = new Paint();
+    private final Paint splayPaint = new Paint();
+
+    private final Paint fadedLegPaint = new Paint();
+    private final Paint fadedLatestLegPaint = new Paint();
+    private final Paint fadedSplayPaint = new Paint();
+
+    private final Paint drawPaint = new Paint();
+    private final Paint labelPaint = new Paint();
+    private final Paint highlightPaint = new Paint();
+    private final Paint legendPaint = new Paint();
+    private final Paint gridPaint = new Paint();
+    private final Paint crossSectionConnectorPaint = new Paint();
+    private final Paint crossSectionIndicatorPaint = new Paint();
+    private final Paint hotCornersPaint = new Paint();
+
+    private final Paint[] ANTI_ALIAS_PAINTS = new Paint[] {
+            stationPaint, legendPaint, latestLegPaint, splayPaint,
+            fadedLegPaint, fadedLatestLegPaint, fadedSplayPaint,
+            drawPaint, labelPaint, legendPaint,
+            crossSectionConnectorPaint, crossSectionIndicatorPaint
+    };
+
+    private int stationCrossDiameter;
+
+
+    synchronized void initialisePaint(Context context) {
+
+        boolean applyAntiAlias = GeneralPreferences.isAntialiasingModeOn();
+        for (Paint paint: ANTI_ALIAS_PAINTS) {
+            if (paint.isAntiAlias() != applyAntiAlias) {
+                paint.setAntiAlias(applyAntiAlias);
+            }
+        }
+
+        int gridColour = ContextCompat.getColor(context, R.color.grid);
+        gridPaint.setColor(gridColour);
+
+        int stationColour = ContextCompat.getColor(context, R.color.station);
+        stationPaint.setColor(stationColour);
+        stationPaint.setStrokeWidth(STATION_STROKE_WIDTH);
+        int stationLabelFontSizeSp = GeneralPreferences.getStationLabelFontSizeSp();
+        float stationLabelFontSizePixels = spToPixels(context, stationLabelFontSizeSp);
+        stationPaint.setTextSize(stationLabelFontSizePixels);
+
+        highlightPaint.setStyle(Paint.Style.STROKE);
+        highlightPaint.setStrokeWidth(HIGHLIGHT_OUTLINE);
+        highlightPaint.setColor(HIGHLIGHT_COLOUR.intValue);
+
+        // active legs/splays
+        int legStrokeWidth = GeneralPreferences.getLegStrokeWidth();
+        legPaint.setStrokeWidth(legStrokeWidth);
+        legPaint.setColor(LEG_COLOUR.intValue);
+
+        latestLegPaint.setStrokeWidth(legStrokeWidth);
+        latestLegPaint.setColor(LATEST_LEG_COLOUR.intValue);
+
+        int splayStrokeWidth = GeneralPreferences.getSplayStrokeWidth();
+        splayPaint.setStrokeWidth(splayStrokeWidth);
+        splayPaint.setColor(LEG_COLOUR.intValue);
+
+        // faded legs/splays
+        fadedLegPaint.setStrokeWidth(legStrokeWidth);
+        fadedLegPaint.setColor(LEG_COLOUR.intValue);
+        fadedLegPaint.setAlpha(FADED_ALPHA);
+
+        fadedLatestLegPaint.setStrokeWidth(legStrokeWidth);
+        fadedLatestLegPaint.setColor(LATEST_LEG_COLOUR.intValue);
+        fadedLatestLegPaint.setAlpha(FADED_ALPHA);
+
+        fadedSplayPaint.setStrokeWidth(splayStrokeWidth);
+        fadedSplayPaint.setColor(LEG_COLOUR.intValue);
+        fadedSplayPaint.setAlpha(FADED_ALPHA);
+
+        drawPaint.setColor(DEFAULT_SKETCH_COLOUR.intValue);
+        drawPaint.setStrokeWidth(SKETCH_STROKE_WIDTH);
+        drawPaint.setStyle(Paint.Style.STROKE);
+        drawPaint.setStrokeJoin(Paint.Join.ROUND);
+        drawPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        int legendColour = ContextCompat.getColor(context, R.color.legend);
+        legendPaint.setColor(legendColour);
+        float legendSizeSp = GeneralPreferences.getLegendFontSizeSp();
+        float legendSizePixels = spToPixels(context, legendSizeSp);
+        legendPaint.setTextSize(legendSizePixels);
+
+        int labelColour = ContextCompat.getColor(context, R.color.station);
+        legPaint.setColor(labelColour);
+        int labelSizeSp = GeneralPreferences.getLabelFontSizeSp();
+        float labelSizePixels = spToPixels(context, labelSizeSp);
+        legPaint.setTextSize(labelSizePixels);
+
+        crossSectionConnectorPaint.setColor(CROSS_SECTION_CONNECTION_COLOUR.intValue);
+        crossSectionConnectorPaint.setStrokeWidth(3);
+        crossSectionConnectorPaint.setStyle(Paint.Style.STROKE);
+
+        crossSectionIndicatorPaint.setColor(STATION_COLOUR);
+        crossSectionIndicatorPaint.setStrokeWidth(2);
+        crossSectionIndicatorPaint.setStyle(Paint.Style.FILL);
+
+        isHotCornersModeActive = GeneralPreferences.isHotCornersModeActive();
+        hotCornersPaint.setColor(Colour.GREY.intValue);
+        hotCornersPaint.setAlpha(FADED_ALPHA);
+
+        stationCrossDiameter = GeneralPreferences.getStationCrossDiameterPixels();
+
+        commentIcon = BitmapFactory.decodeResource(
+                context.getResources(), R.drawable.speech_bubble);
+        linkIcon = BitmapFactory.decodeResource(context.getResources(), R.drawable.link);
+
+        sketchTileCache.clear();
+        symbolAtlas.clear();
+    }
+
+
+    private static float spToPixels(Context context, float sp) {
+        return sp * context.getResources().getDisplayMetrics().scaledDensity;
+    }
+
+
+    synchronized void draw(Canvas canvas, GraphFrame frame) {
+
+        this.frame = frame;
+        viewpointOffset = new Coord2D(frame.offsetX, frame.offsetY);
+        surveyToViewScale = frame.scale;
+
+        canvasBottomRight = new Coord2D(frame.width, frame.height);
+
+        viewpointTopLeftOnSurvey = viewCoordsToSurveyCoords(Coord2D.ORIGIN);
+        viewpointBottomRightOnSurvey = viewCoordsToSurveyCoords(canvasBottomRight);
+
+        if (frame.showGrid) {
+            drawGrid(canvas);
+        }
+
+        if (frame.showConnections) {
+            drawConnectedSurveys(canvas, FADED_ALPHA);
+        }
+
+        drawSurvey(canvas, frame.survey, SOLID_ALPHA, true);
+
+        drawLegend(canvas);
+        drawHotCorners(canvas);
+
+        if (frame.isDebugMode) {
+            drawDebuggingInfo(canvas);
+        }
+
+        this.frame = null;
+    }
+
+
+    private Coord2D viewCoordsToSurveyCoords(final Coord2D coords) {
+        return new Coord2D(((coords.x * (1 / surveyToViewScale)) + viewpointOffset.x),
+                           ((coords.y * (1 / surveyToViewScale)) + viewpointOffset.y));
+    }
+
+    // Warning: In tight loops during the draw phase we duplicate this logic to avoid
+    //          creating too many Coord2D objects - be sure to mirror any updates in those places
+    private Coord2D surveyCoordsToViewCoords(final Coord2D coords) {
+        // The more elegant way to do this is:
+        // return coords.minus(viewpointOffset).scale(surveyToViewScale);
+        // ...but this method gets hit hard (profiled) so let's avoid creating intermediate objects:
+        return new Coord2D(((coords.x - viewpointOffset.x) * surveyToViewScale),
+                           ((coords.y - viewpointOffset.y) * surveyToViewScale));
+    }
+
+
+    private void drawSurvey(
+            Canvas canvas, GraphFrame.SurveyLayer layer, int alpha, boolean useTiles) {
+        if (useTiles) {
+            drawSketchFromTiles(canvas, layer, alpha);
+        } else {
+            drawSketch(canvas, layer, alpha);
+        }
+        drawCrossSections(canvas, layer, alpha);
+        drawSurveyData(layer, canvas, alpha);
+    }
+
+
+    private void drawConnectedSurveys(Canvas canvas, int alpha) {
+        for (GraphFrame.SurveyLayer connectedSurvey : frame.connectedSurveys) {
+            try {
+                drawSurvey(canvas, connectedSurvey, alpha, false);
+            } catch (Exception exception) {
+                Log.e("Error drawing connected survey " + connectedSurvey.name);
+                Log.e(exception);
+            }
+        }
+    }
+
+
+    private void drawGrid(Canvas canvas) {
+
+        int tickSizeInMetres = GraphView.getMinorGridBoxSize(surveyToViewScale);
+        int numberTicksJustBeforeViewpointOffsetX = (int)(viewpointOffset.x / tickSizeInMetres);
+
+        for (int n = numberTicksJustBeforeViewpointOffsetX; true; n++) {
+            float xSurvey = n * tickSizeInMetres;
+            int xView = (int)((xSurvey - viewpointOffset.x) * surveyToViewScale);
+            gridPaint.setStrokeWidth(n % BOX_SIZE == 0 ? 3 : 1);
+            canvas.drawLine(xView, 0, xView, frame.height, gridPaint);
+            if (xView >= frame.width) {
+                break;
+            }
+        }
+
+        int numberTicksJustBeforeViewpointOffsetY = (int)(viewpointOffset.y / tickSizeInMetres);
+
+        for (int n = numberTicksJustBeforeViewpointOffsetY; true; n++) {
+            float ySurvey = n * tickSizeInMetres;
+            int yView = (int)((ySurvey - viewpointOffset.y) * surveyToViewScale);
+            gridPaint.setStrokeWidth(n % BOX_SIZE == 0 ? 3 : 1);
+            canvas.drawLine(0, yView, frame.width, yView, gridPaint);
+            if (yView >= frame.height) {
+                break;
+            }
+        }
+
+    }
+
+
+    private void drawSurveyData(GraphFrame.SurveyLayer layer, Canvas canvas, int alpha) {
+        drawLegs(canvas, layer.projection, alpha);
+        drawStations(layer, canvas, alpha);
+    }
+
+    private void drawCrossSections(Canvas canvas, GraphFrame.SurveyLayer layer, int alpha) {
+
+        boolean showStationLabels = frame.showStationLabels;
+
+        crossSectionConnectorPaint.setAlpha(alpha);
+
+        for (CrossSectionDetail sectionDetail : layer.crossSections) {
+
+            if (!couldBeOnScreen(sectionDetail)) {
+                continue;
+            }
+
+            Station station = sectionDetail.getCrossSection().getStation();
+            Coord2D surveyStationLocation = layer.projection.getStationMap().get(station);
+
+            Coord2D centreOnSurvey = sectionDetail.getPosition();
+            Coord2D centreOnView = surveyCoordsToViewCoords(centreOnSurvey);
+            drawStationCross(
+                    canvas, stationPaint, centreOnView.x, centreOnView.y, STATION_DIAMETER, alpha);
+
+            String description = layer.snapshot.getName(station) + " X";
+            if (showStationLabels) {
+                stationPaint.setAlpha(alpha);
+                canvas.drawText(description, centreOnView.x, centreOnView.y, stationPaint);
+            }
+
+            Space<Coord2D> projection = layer.crossSectionProjections.get(sectionDetail);
+
+            drawLegs(canvas, projection, alpha);
+
+            Coord2D viewStationLocation = surveyCoordsToViewCoords(surveyStationLocation);
+            drawDashedLine(
+                    canvas, viewStationLocation, centreOnView,
+                    DASHED_LINE_INTERVAL, crossSectionConnectorPaint);
+        }
+    }
+
+
+    private void drawLegs(Canvas canvas, Space<Coord2D> space, int baseAlpha) {
+
+        boolean highlightLatestLeg = frame.highlightLatestLeg;
+
+        boolean showSplays = frame.showSplays;
+        boolean fadingNonActive = frame.fadeNonActive;
+
+        PackedSpace2D packed = PackedSpace2D.asPacked(space);
+        int[] visibleIds = packed.getLegIdsWithin(
+                viewpointTopLeftOnSurvey.x, viewpointTopLeftOnSurvey.y,
+                viewpointBottomRightOnSurvey.x, viewpointBottomRightOnSurvey.y);
+
+        for (int id : visibleIds) {
+            Leg leg = packed.getLeg(id);
+
+            if (!showSplays && !leg.hasDestination()) {
+                continue;
+            }
+
+            // inlined surveyCoordsToViewCoords (reading straight from the packed coords)
+            float startX = (packed.getLegStartX(id) - viewpointOffset.x) * surveyToViewScale;
+            float startY = (packed.getLegStartY(id) - viewpointOffset.y) * surveyToViewScale;
+            float endX = (packed.getLegEndX(id) - viewpointOffset.x) * surveyToViewScale;
+            float endY = (packed.getLegEndY(id) - viewpointOffset.y) * surveyToViewScale;
+
+            if (!isLineOnCanvas(startX, startY, endX, endY)) {
+                continue;
+            }
+
+            boolean fade = baseAlpha == FADED_ALPHA || (fadingNonActive && !isAttachedToActive(leg));
+
+            Paint paint;
+            if (highlightLatestLeg && frame.mostRecentLeg == leg) {
+                paint = fade ? fadedLatestLegPaint : latestLegPaint;
+            } else if (!leg.hasDestination()) {
+                paint = fade ? fadedSplayPaint : splayPaint;
+            } else {
+                paint = fade ? fadedLegPaint : legPaint;
+            }
+
+            if (frame.projectionType.isLegInPlane(leg)) {
+                canvas.drawLine(startX, startY, endX, endY, paint);
+			} else {
+                drawDashedLine(canvas, new Coord2D(startX, startY), new Coord2D(endX, endY),
+                        DASHED_LINE_INTERVAL, paint);
+            }
+        }
+    }
+
+    private boolean isAttachedToActive(Leg leg) {
+        return frame.activeLegs.contains(leg);
+    }
+
+    private boolean isLineOnCanvas(float startX, float startY, float endX, float endY) {
+        return !CohenSutherlandAlgorithm.whollyOutside(startX, startY, endX, endY,
+                0, 0, canvasBottomRight.x, canvasBottomRight.y);
+    }
+
+
+    private void drawStations(GraphFrame.SurveyLayer layer, Canvas canvas, int baseAlpha) {
+
+        boolean fadingNonActive = frame.fadeNonActive;
+        boolean showStationLabels = frame.showStationLabels;
+
+        if (fadingNonActive) {
+            baseAlpha = FADED_ALPHA;
+        }
+
+        int alpha = baseAlpha;
+        stationPaint.setAlpha(alpha);
+
+        PackedSpace2D packed = PackedSpace2D.asPacked(layer.projection);
+        for (int id = 0; id < packed.getStationCount(); id++) {
+            Station station = packed.getStation(id);
+
+            if (fadingNonActive && (station == layer.activeStation)) {
+                alpha = SOLID_ALPHA;
+                // setting alpha is measured as a relatively expensive call, so we change this as
+                // little as possible
+                stationPaint.setAlpha(alpha);
+            }
+
+            // inlined surveyCoordsToViewCoords
+            int x = (int)((packed.getStationX(id) - viewpointOffset.x) * surveyToViewScale);
+            int y = (int)((packed.getStationY(id) - viewpointOffset.y) * surveyToViewScale);
+
+            drawStationCross(canvas, stationPaint, x, y, stationCrossDiameter, alpha);
+
+            if (station == layer.activeStation) {
+                highlightActiveStation(canvas, x, y);
+            }
+
+            int spacing = stationCrossDiameter / 2;
+            int nextX = x + stationCrossDiameter;
+
+            if (showStationLabels) {
+                String name = layer.snapshot.getName(station);
+                if (station == layer.origin) {
+                    name = name + " (" + layer.name + ")";
+                }
+                canvas.drawText(name,
+                        nextX,
+                        y + STATION_LABEL_OFFSET,
+                        stationPaint);
+                nextX += stationPaint.measureText(name) + spacing;
+            }
+
+            if (layer.snapshot.hasComment(station)) {
+                nextX = drawStationIcon(canvas, commentIcon, nextX, y, spacing);
+            }
+            if (layer.linkedStations.contains(station)) {
+                drawStationIcon(canvas, linkIcon, nextX, y, spacing);
+            }
+
+            CrossSectionDetail crossSectionDetail = layer.crossSectionsByStation.get(station);
+            if (crossSectionDetail != null) {
+                drawCrossSectionIndicator(canvas, crossSectionDetail, x, y, alpha);
+            }
+
+            if (fadingNonActive && (station == layer.activeStation)) {
+                alpha = baseAlpha;
+                stationPaint.setAlpha(alpha);
+            }
+        }
+    }
+
+
+    /** Draws the icon to the right of a station, returning where the next one can go. */
+    private int drawStationIcon(Canvas canvas, Bitmap icon, int x, int y, int spacing) {
+        int yTop = y - stationCrossDiameter / 2;
+        // one Rect reused for every icon, rather than a new one for each station every frame
+        iconRect.set(x, yTop, x + stationCrossDiameter, yTop + stationCrossDiameter);
+        canvas.drawBitmap(icon, null, iconRect, stationPaint);
+        return x + stationCrossDiameter + spacing;
+    }
+
+
+    private void drawCrossSectionIndicator(
+            Canvas canvas, CrossSectionDetail crossSectionDetail, float x, float y, int alpha) {
+
+        crossSectionIndicatorPaint.setAlpha(alpha / 2);
+        CrossSection crossSection = crossSectionDetail.getCrossSection();
+
+        float angle = (float)Math.toRadians(crossSection.getAngle());
+        float indicatorWidth = (1 * surveyToViewScale);
+        float startX = x - ((indicatorWidth / 2) * (float)Math.cos(angle));
+        float startY = y - ((indicatorWidth / 2) * (float)Math.sin(angle));
+        float endX = x + ((indicatorWidth / 2) * (float)Math.cos(angle));
+        float endY = y + ((indicatorWidth / 2) * (float)Math.sin(angle));
+
+        canvas.drawLine(startX, startY, endX, endY, crossSectionIndicatorPaint);
+
+        float lineLength =
+                Space2DUtils.getDistance(new Coord2D(startX, startY), new Coord2D(endX, endY));
+        float arrowLength = lineLength * 0.4f;
+        float arrowOuterCornerX = startX;
+        float arrowOuterCornerY = startY;
+        float arrowInnerCornerX = startX + ((lineLength * 0.05f) * (float)Math.cos(angle));
+        float arrowInnerCornerY = startY + ((lineLength * 0.05f) * (float)Math.sin(angle));
+        float arrowAngle = (float)Math.toRadians(Space2DUtils.adjustAngle(
+                crossSection.getAngle(), -90));
+        float arrowTipX = startX + (arrowLength * (float)Math.cos(arrowAngle));
+        float arrowTipY = startY + (arrowLength * (float)Math.sin(arrowAngle));
+
+
+        Path path = new Path();
+        path.moveTo(arrowInnerCornerX, arrowInnerCornerY);
+        path.lineTo(arrowOuterCornerX, arrowOuterCornerY);
+        path.lineTo(arrowTipX, arrowTipY);
+        path.lineTo(arrowInnerCornerX, arrowInnerCornerY);
+
+        canvas.drawPath(path, crossSectionIndicatorPaint);
+    }
+
+
+    private void highlightActiveStation(Canvas canvas, float x, float y) {
+
+        float diameter = 22;
+        int gap = 6;
+        float topY = y - (diameter / 2);
+        float bottomY = y + (diameter / 2);
+        float leftX = x - (diameter / 2);
+        float rightX = x + (diameter / 2);
+
+        float innerLeft = leftX + ((diameter - gap) / 2);
+        float innerRight = innerLeft + gap;
+        float innerTop = topY + ((diameter - gap) / 2);
+        float innerBottom = innerTop + gap;
+
+        // top lines
+        canvas.drawLine(leftX, topY, innerLeft, topY, highlightPaint);
+        canvas.drawLine(innerRight, topY, rightX, topY, highlightPaint);
+        // bottom lines
+        canvas.drawLine(leftX, bottomY, innerLeft, bottomY, highlightPaint);
+        canvas.drawLine(innerRight, bottomY, rightX, bottomY, highlightPaint);
+        // left lines
+        canvas.drawLine(leftX, topY, leftX, innerTop, highlightPaint);
+        canvas.drawLine(leftX, innerBottom, leftX, bottomY, highlightPaint);
+        // right lines
+        canvas.drawLine(rightX, topY, rightX, innerTop, highlightPaint);
+        canvas.drawLine(rightX, innerBottom, rightX, bottomY, highlightPaint);
+    }
+
+
+    private void drawStationCross(
+            Canvas canvas, Paint paint, float x, float y, int crossDiameter, int alpha) {
+        paint.setAlpha(alpha);
+        float halfCross = crossDiameter / 2f;
+        canvas.drawLine(x , y - halfCross, x, y + halfCross, paint);
+        canvas.drawLine(x - halfCross, y, x + halfCross, y, paint);
+    }
+
+
+
+    private void drawSketch(Canvas canvas, GraphFrame.SurveyLayer layer, int alpha) {
+
+        if (!frame.showSketch) {
+            return;
+        }
+
+        GraphFrame.SketchContent sketch = layer.sketch;
+
+        // a colour at a time: all of its strokes in one go if they're all on screen, none if
+        // none of them are, and otherwise whichever of its paths could be on screen
+        Set<Colour> partlyOnScreen = EnumSet.noneOf(Colour.class);
+        startDrawingLines(canvas, alpha);
+        for (GraphFrame.Strokes strokes : sketch.strokes) {
+            if (isAllOnScreen(strokes)) {
+                drawLines(canvas, strokes.colour, strokes.segments, strokes.length, alpha);
+            } else if (couldBeOnScreen(strokes)) {
+                partlyOnScreen.add(strokes.colour);
+            }
+        }
+        finishDrawingLines(canvas);
+
+        List<PathDetail> paths = new ArrayList<>();
+        if (!partlyOnScreen.isEmpty()) {
+            for (PathDetail pathDetail : sketch.paths) {
+                if (partlyOnScreen.contains(pathDetail.getColour()) &&
+                        couldBeOnScreen(pathDetail)) {
+                    paths.add(pathDetail);
+                }
+            }
+        }
+        if (layer.activePath != null && couldBeOnScreen(layer.activePath)) {
+            paths.add(layer.activePath);
+        }
+        if (!paths.isEmpty()) {
+            drawPaths(canvas, paths, alpha);
+        }
+        drawTextAndSymbols(canvas, sketch.texts, sketch.symbols, alpha);
+    }
+
+
+    /**
+     * Draws the finished sketch from the tile cache, so that panning around a big sketch
+     * doesn't mean drawing every path again every frame, and then the path being drawn (if
+     * any) on top.
+     */
+    private void drawSketchFromTiles(Canvas canvas, GraphFrame.SurveyLayer layer, int alpha) {
+
+        if (!frame.showSketch) {
+            return;
+        }
+
+        GraphFrame.SketchContent sketch = layer.sketch;
+        int style = (frame.isDarkModeActive? 1 : 0) + (frame.isDebugMode? 2 : 0) + (alpha << 2);
+        SketchTileCache.Renderer renderer = (tileCanvas, originX, originY, scale,
+                                             left, top, right, bottom) ->
+                renderSketchTile(tileCanvas, sketch, alpha, originX, originY, scale,
+                        left, top, right, bottom);
+        boolean isDrawnFromTiles = sketchTileCache.draw(
+                canvas, sketch.sketch, sketch.revision, style, renderer,
+                viewpointOffset.x, viewpointOffset.y, surveyToViewScale,
+                frame.width, frame.height, frame.isScaling);
+
+        if (!isDrawnFromTiles) {
+            drawSketch(canvas, layer, alpha);
+            return;
+        }
+
+        if (layer.activePath != null && couldBeOnScreen(layer.activePath)) {
+            drawPaths(canvas, Collections.singletonList(layer.activePath), alpha);
+        }
+    }
+
+
+    /** See SketchTileCache.Renderer. */
+    private void renderSketchTile(Canvas canvas, GraphFrame.SketchContent sketch, int alpha,
+                                  float originX, float originY, float scale,
+                                  float left, float top, float right, float bottom) {
+
+        List<PathDetail> paths = new ArrayList<>();
+        List<TextDetail> texts = new ArrayList<>();
+        List<SymbolDetail> symbols = new ArrayList<>();
+
+        for (SketchDetail detail : sketch.findDetailsWithin(left, top, right, bottom)) {
+            if (detail instanceof PathDetail) {
+                paths.add((PathDetail) detail);
+            } else if (detail instanceof TextDetail) {
+                texts.add((TextDetail) detail);
+            } else if (detail instanceof SymbolDetail) {
+                symbols.add((SymbolDetail) detail);
+            }
+        }
+
+        // draw as if the view were looking at just the tile
+        Coord2D viewOffset = viewpointOffset;
+        float viewScale = surveyToViewScale;
+        Coord2D viewTopLeft = viewpointTopLeftOnSurvey;
+        Coord2D viewBottomRight = viewpointBottomRightOnSurvey;
+        viewpointOffset = new Coord2D(originX, originY);
+        surveyToViewScale = scale;
+        viewpointTopLeftOnSurvey = new Coord2D(left, top);
+        viewpointBottomRightOnSurvey = new Coord2D(right, bottom);
+
+        try {
+            drawPaths(canvas, paths, alpha);
+            drawTextAndSymbols(canvas, texts, symbols, alpha);
+        } finally {
+            viewpointOffset = viewOffset;
+            surveyToViewScale = viewScale;
+            viewpointTopLeftOnSurvey = viewTopLeft;
+            viewpointBottomRightOnSurvey = viewBottomRight;
+        }
+    }
+
+
+    /**
+     * Draws the paths with a drawLines call per colour rather than per path, which saves a
+     * lot when there are thousands of short strokes.
+     */
+    private void drawPaths(Canvas canvas, List<PathDetail> pathDetails, int alpha) {
+
+        for (LineBatch batch : lineBatches.values()) {
+            batch.length = 0;
+        }
+        for (PathDetail pathDetail : pathDetails) {
+            LineBatch batch = lineBatches.get(pathDetail.getColour());
+            if (batch == null) {
+                batch = new LineBatch();
+                lineBatches.put(pathDetail.getColour(), batch);
+            }
+            batch.add(pathDetail.getLineSegments(), pathDetail.getLineSegmentsLength());
+        }
+
+        startDrawingLines(canvas, alpha);
+        for (Map.Entry<Colour, LineBatch> entry : lineBatches.entrySet()) {
+            LineBatch batch = entry.getValue();
+            if (batch.length > 0) {
+                drawLines(canvas, entry.getKey(), batch.segments, batch.length, alpha);
+            }
+        }
+        finishDrawingLines(canvas);
+    }
+
+
+    /**
+     * Sets the canvas up for drawing line segments in survey coords: rather than converting
+     * every point to view coords every frame, the canvas does it.
+     */
+    private void startDrawingLines(Canvas canvas, int alpha) {
+        drawPaint.setAlpha(alpha);
+        drawPaint.setStrokeWidth(SKETCH_STROKE_WIDTH / surveyToViewScale);
+        canvas.save();
+        canvas.scale(surveyToViewScale, surveyToViewScale);
+        canvas.translate(-viewpointOffset.x, -viewpointOffset.y);
+    }
+
+
+    private void drawLines(Canvas canvas, Colour colour, float[] segments, int length,
+                           int alpha) {
+
+        Colour drawColour = SketchDetail.getDrawColour(colour, frame.isDarkModeActive);
+        drawPaint.setColor(drawColour.intValue);
+        drawPaint.setAlpha(alpha);
+
+        canvas.drawLines(segments, 0, length, drawPaint);
+
+        if (frame.isDebugMode) {
+            float radius = 3 / surveyToViewScale;
+            for (int i = 0; i < length; i += 2) {
+                canvas.drawCircle(segments[i], segments[i + 1], radius, drawPaint);
+            }
+        }
+    }
+
+
+    private void finishDrawingLines(Canvas canvas) {
+        canvas.restore();
+        drawPaint.setStrokeWidth(SKETCH_STROKE_WIDTH);
+    }
+
+
+    private void drawTextAndSymbols(Canvas canvas, List<TextDetail> textDetails,
+                                    List<SymbolDetail> symbolDetails, int alpha) {
+
+        boolean isDarkModeActive = frame.isDarkModeActive;
+
+        labelPaint.setAlpha(alpha);
+
+        for (TextDetail textDetail : textDetails) {
+            Coord2D location = surveyCoordsToViewCoords(textDetail.getPosition());
+            float x = location.x, y = location.y;
+            String text = textDetail.getText();
+            setDrawColour(labelPaint, textDetail);
+            labelPaint.setTextSize(textDetail.getSize() * surveyToViewScale);
+            for (String line : text.split("\n")) {
+                canvas.drawText(line, x, y, labelPaint);
+                y += labelPaint.descent() - labelPaint.ascent();
+            }
+        }
+
+        for (SymbolDetail symbolDetail : symbolDetails) {
+            if (!couldBeOnScreen(symbolDetail)) {
+                continue;
+            }
+
+            int size = Math.round(symbolDetail.getSize() * surveyToViewScale);
+            if (size < 1) {
+                continue;
+            }
+
+            // inlined surveyCoordsToViewCoords
+            Coord2D position = symbolDetail.getPosition();
+            float x = (position.x - viewpointOffset.x) * surveyToViewScale;
+            float y = (position.y - viewpointOffset.y) * surveyToViewScale;
+            Colour drawColour = symbolDetail.getDrawColour(isDarkModeActive);
+            symbolAtlas.draw(canvas, symbolDetail.getSymbol(), drawColour,
+                    x, y, size, symbolDetail.getAngle(), alpha);
+        }
+    }
+
+    private void setDrawColour(Paint paint, SketchDetail sketchDetail) {
+        Colour colour = sketchDetail.getDrawColour(frame.isDarkModeActive);
+        paint.setColor(colour.intValue);
+    }
+
+
+    private void drawLegend(Canvas canvas) {
+
+        String surveyLabel =
+            frame.survey.name +
+            " L" + TextTools.formatTo0dpWithComma(frame.surveyLength) +
+            " V" + TextTools.formatTo0dpWithComma(frame.surveyHeight);
+
+        float legendSize = legendPaint.getTextSize();
+        float offsetX = legendSize * 1.25f;
+        float offsetY = legendSize * 1.25f;
+        float y = frame.height - offsetY;
+        float x = offsetX;
+        canvas.drawText(surveyLabel, x, y, legendPaint);
+
+        int minorGridSize = GraphView.getMinorGridBoxSize(surveyToViewScale);
+        float scaleWidth = surveyToViewScale * minorGridSize;
+        float scaleOffsetY = offsetY * 2;
+        float scaleY = frame.height - scaleOffsetY;
+        canvas.drawLine(
+                x, scaleY, x + scaleWidth, scaleY, legendPaint);
+        canvas.drawLine(
+                x, scaleY, offsetX, scaleY - LEGEND_TICK_SIZE, legendPaint);
+        canvas.drawLine(x + scaleWidth, scaleY,
+                x + scaleWidth, scaleY - LEGEND_TICK_SIZE, legendPaint);
+        String scaleLabel = minorGridSize + "m";
+        canvas.drawText(scaleLabel, x + scaleWidth + 0.2f * legendSize, scaleY, legendPaint);
+
+    }
+
+
+    private void drawHotCorners(Canvas canvas) {
+
+        if (!isHotCornersModeActive) {
+            return;
+        }
+
+        if (frame.sketchTool == SketchTool.MODAL_MOVE) {
+            hotCornersPaint.setColor(Colour.YELLOW.intValue);
+            hotCornersPaint.setAlpha(FADED_ALPHA);
+        }
+
+        int width = frame.width;
+        int height = frame.height;
+        if (topLeftCorner == null || cornersWidth != width || cornersHeight != height) {
+            final int side = (int) (HOT_CORNER_DISTANCE_PROPORTION * width);
+            topLeftCorner =
+                new Rect(0, 0, side, side);
+            topRightCorner =
+                new Rect(width - side, 0, width, side);
+            bottomRightCorner =
+                new Rect(width - side, height - side, width, height);
+            cornersWidth = width;
+            cornersHeight = height;
+        }
+
+        canvas.drawRect(topLeftCorner, hotCornersPaint);
+        canvas.drawRect(topRightCorner, hotCornersPaint);
+        canvas.drawRect(bottomRightCorner, hotCornersPaint);
+
+        if (frame.sketchTool == SketchTool.MODAL_MOVE) {
+            hotCornersPaint.setColor(Colour.GREY.intValue);
+            hotCornersPaint.setAlpha(FADED_ALPHA);
+        }
+
+    }
+
+    private void drawDebuggingInfo(Canvas canvas) {
+        float offsetX = frame.width * 0.03f;
+        float offsetY = LEGEND_SIZE * 2;
+        String label = "x=" + offsetX + " y=" + offsetY +
+                " s2v=" + TextTools.formatTo2dp(surveyToViewScale) +
+                " 1/s2v=" + TextTools.formatTo2dp(1 / surveyToViewScale) +
+                //" 1/log=" + TextTools.formatTo2dp(1 / Math.log(surveyToViewScale)) +
+                //" 1/log10=" + TextTools.formatTo2dp(1 / Math.log10(surveyToViewScale)) +
+                "\n log (1/s2v) =" + TextTools.formatTo2dp(Math.log(1 /surveyToViewScale)) +
+                "\n log10 (1/s2v) =" + TextTools.formatTo2dp(Math.log10(1 /surveyToViewScale));
+
+        canvas.drawText(label, offsetX, offsetY, legendPaint);
+    }
+
+
+    private boolean couldBeOnScreen(SketchDetail sketchDetail) {
+        return sketchDetail.getAreaCovered().intersectsRectangle(
+                viewpointTopLeftOnSurvey, viewpointBottomRightOnSurvey);
+    }
+
+
+    private boolean couldBeOnScreen(GraphFrame.Strokes strokes) {
+        return strokes.right >= viewpointTopLeftOnSurvey.x &&
+                strokes.left <= viewpointBottomRightOnSurvey.x &&
+                strokes.bottom >= viewpointTopLeftOnSurvey.y &&
+                strokes.top <= viewpointBottomRightOnSurvey.y;
+    }
+
+
+    private boolean isAllOnScreen(GraphFrame.Strokes strokes) {
+        return strokes.left >= viewpointTopLeftOnSurvey.x &&
+                strokes.right <= viewpointBottomRightOnSurvey.x &&
+                strokes.top >= viewpointTopLeftOnSurvey.y &&
+                strokes.bottom <= viewpointBottomRightOnSurvey.y;
+    }
+
+
+    private void drawDashedLine(Canvas canvas,
+                                Coord2D start, Coord2D end,
+                                float dashLength,
+                                Paint paint) {
+
+        // this switcheroo is so we start from the end of the line and draw backwards
+        // (we prefer the end of the line to line up with a dash rather than the start)
+        Coord2D swap = end;
+        end = start;
+        start = swap;
+
+        float lineLength = Space2DUtils.getDistance(start, end);
+        int dashes = (int)(lineLength / dashLength / 2f);
+
+        Coord2D direction = end.minus(start).normalise();
+        Coord2D dashStep = direction.scale(dashLength);
+
+        float stepX = dashStep.x;
+        float stepY = dashStep.y;
+
+        float[] lines = new float[dashes * 4]; // xy coords for start and end of dashes == 4
+
+        int lineIndex = 0;
+        float startX, startY, endX, endY;
+        float previousX = 0, previousY = 0;
+
+        for (int dashIndex = 0; dashIndex < dashes; dashIndex++) {
+
+            if (dashIndex == 0) {
+                startX = start.x;
+                startY = start.y;
+            } else {
+                startX = previousX + stepX;
+                startY = previousY + stepY;
+            }
+
+            endX = startX + stepX;
+            endY = startY + stepY;
+
+            lines[lineIndex++] = startX;
+            lines[lineIndex++] = startY;
+            lines[lineIndex++] = endX;
+            lines[lineIndex++] = endY;
+
+            previousX = endX;
+            previousY = endY;
+        }
+
+        canvas.drawLines(lines, paint);
+    }
+
+
+
+    private static class LineBatch {
+
+        private float[] segments = new float[256];
+        private int length = 0;
+
+        void add(float[] moreSegments, int moreLength) {
+            if (length + moreLength > segments.length) {
+                segments = Arrays.copyOf(
+                        segments, Math.max(length + moreLength, segments.length * 2));
+            }
+            System.arraycopy(moreSegments, 0, segments, length, moreLength);
+            length += moreLength;
+        }
+    }
+
+}
@@ -3,29 +3,19 @@ package org.hwyl.sexytopo.control.graph;
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
-import android.graphics.Rect;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.RotateDrawable;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
+import android.view.TextureView;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.PopupWindow;
 
-import androidx.core.content.ContextCompat;
-
 import org.hwyl.sexytopo.R;
 import org.hwyl.sexytopo.control.Log;
 import org.hwyl.sexytopo.control.SexyTopo;
@@ -34,7 +24,6 @@ import org.hwyl.sexytopo.control.activity.ExtendedElevationActivity;
 import org.hwyl.sexytopo.control.activity.GraphActivity;
 import org.hwyl.sexytopo.control.activity.PlanActivity;
 import org.hwyl.sexytopo.control.activity.TableActivity;
-import org.hwyl.sexytopo.control.util.CohenSutherlandAlgorithm;
 import org.hwyl.sexytopo.control.util.CrossSectioner;
 import org.hwyl.sexytopo.control.util.GeneralPreferences;
 import org.hwyl.sexytopo.control.util.SketchPreferences;
@@ -44,7 +33,7 @@ import org.hwyl.sexytopo.control.util.SurveyUpdater;
 import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 import org.hwyl.sexytopo.model.graph.Direction;
-import org.hwyl.sexytopo.model.graph.Line;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
 import org.hwyl.sexytopo.model.graph.Projection2D;
 import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.sketch.BrushColour;
@@ -56,12 +45,10 @@ import org.hwyl.sexytopo.model.sketch.Sketch;
 import org.hwyl.sexytopo.model.sketch.SketchDetail;
 import org.hwyl.sexytopo.model.sketch.SketchTool;
 import org.hwyl.sexytopo.model.sketch.Symbol;
-import org.hwyl.sexytopo.model.sketch.SymbolDetail;
-import org.hwyl.sexytopo.model.sketch.TextDetail;
-import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 import org.hwyl.sexytopo.model.survey.SurveyConnection;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -92,8 +79,6 @@ public class GraphView extends View {
     public static final float MIN_ZOOM = 0.1f;
     public static final float MAX_ZOOM = 500.0f;
 
-    private static final int BOX_SIZE = 10; // every grid box is 10 units square
-
     public static final Colour LEG_COLOUR = Colour.RED;
     public static final Colour LATEST_LEG_COLOUR = Colour.MAGENTA;
     public static final Colour HIGHLIGHT_COLOUR = Colour.GOLD;
@@ -108,10 +93,8 @@ public class GraphView extends View {
 
     public static final int STATION_STROKE_WIDTH = 5;
     public static final int HIGHLIGHT_OUTLINE = 4;
-    private final float DASHED_LINE_INTERVAL = 5;
 
     public static final int LEGEND_SIZE = 18;
-    public final float LEGEND_TICK_SIZE = 5;
 
 
 
@@ -131,6 +114,14 @@ public class GraphView extends View {
 
     private Map<Survey, Space<Coord2D>> translatedConnectedSurveys = new HashMap<>();
 
+    private final GraphRenderer renderer = new GraphRenderer();
+    private GraphRenderThread renderThread = null;
+    private TextureView renderView = null;
+    private boolean isScaling = false;
+
+    // what was captured of each sketch for the last frame, to reuse if it hasn't changed
+    private Map<Sketch, GraphFrame.SketchContent> sketchContents = new HashMap<>();
+
     boolean surveyChanged;
 
     // cached preferences for performance
@@ -140,16 +131,8 @@ public class GraphView extends View {
 
 
     // cached for performance
-    private Coord2D canvasBottomRight;
-    private Coord2D viewpointTopLeftOnSurvey;
-    private Coord2D viewpointBottomRightOnSurvey;
     private float surveyLength = 0;
     private float surveyHeight = 0;
-    private Rect topLeftCorner;
-    private Rect topRightCorner;
-    private Rect bottomRightCorner;
-
-    private Bitmap commentIcon, linkIcon;
 
     public SketchTool currentSketchTool = SketchTool.MOVE;
     // used to jump back to the previous tool when using one-use tools
@@ -157,37 +140,6 @@ public class GraphView extends View {
     private Symbol currentSymbol = Symbol.getDefault();
 
 
-    // ********** Paints and other drawing variables **********
-
-    private final Paint stationPaint = new Paint();
-
-    private final Paint legPaint = new Paint();
-    private final Paint latestLegPaint = new Paint();
-    private final Paint splayPaint = new Paint();
-
-    private final Paint fadedLegPaint = new Paint();
-    private final Paint fadedLatestLegPaint = new Paint();
-    private final Paint fadedSplayPaint = new Paint();
-
-    private final Paint drawPaint = new Paint();
-    private final Paint labelPaint = new Paint();
-    private final Paint highlightPaint = new Paint();
-    private final Paint legendPaint = new Paint();
-    private final Paint gridPaint = new Paint();
-    private final Paint crossSectionConnectorPaint = new Paint();
-    private final Paint crossSectionIndicatorPaint = new Paint();
-    private final Paint hotCornersPaint = new Paint();
-
-    private final Paint[] ANTI_ALIAS_PAINTS = new Paint[] {
-            stationPaint, legendPaint, latestLegPaint, splayPaint,
-            fadedLegPaint, fadedLatestLegPaint, fadedSplayPaint,
-            drawPaint, labelPaint, legendPaint,
-            crossSectionConnectorPaint, crossSectionIndicatorPaint
-    };
-
-    private int stationCrossDiameter;
-
-
     public GraphView(Context context, AttributeSet attrs) {
         super(context, attrs);
         scaleGestureDetector = new ScaleGestureDetector(context, new ScaleListener());
@@ -196,89 +148,53 @@ public class GraphView extends View {
 
 
     public void initialisePaint() {
+        isTwoFingerModeActive = GeneralPreferences.isTwoFingerModeActive();
+        isHotCornersModeActive = GeneralPreferences.isHotCornersModeActive();
+        renderer.initialisePaint(getContext());
+    }
 
-        boolean applyAntiAlias = GeneralPreferences.isAntialiasingModeOn();
-        for (Paint paint: ANTI_ALIAS_PAINTS) {
-            if (paint.isAntiAlias() != applyAntiAlias) {
-                paint.setAntiAlias(applyAntiAlias);
+
+    /**
+     * Has the graph drawn on a thread of its own, onto the given view (which should sit
+     * directly under this one, the same size), rather than by this view on the UI thread.
+     * Passing null goes back to drawing on the UI thread.
+     */
+    public void setRenderView(TextureView renderView) {
+        if (renderView == this.renderView) {
+            return;
+        }
+        stopRenderThread();
+
+        this.renderView = renderView;
+        if (renderView != null) {
+            renderThread = GraphRenderThread.start(renderer);
+            renderView.setOpaque(false);
+            renderView.setSurfaceTextureListener(renderThread);
+            renderView.setVisibility(View.VISIBLE);
+            if (renderView.isAvailable()) {
+                renderThread.onSurfaceTextureAvailable(renderView.getSurfaceTexture(),
+                        renderView.getWidth(), renderView.getHeight());
             }
         }
+        invalidate();
+    }
 
-        int gridColour = ContextCompat.getColor(activity, R.color.grid);
-        gridPaint.setColor(gridColour);
-
-        int stationColour = ContextCompat.getColor(activity, R.color.station);
-        stationPaint.setColor(stationColour);
-        stationPaint.setStrokeWidth(STATION_STROKE_WIDTH);
-        int stationLabelFontSizeSp = GeneralPreferences.getStationLabelFontSizeSp();
-        float stationLabelFontSizePixels = spToPixels(stationLabelFontSizeSp);
-        stationPaint.setTextSize(stationLabelFontSizePixels);
-
-        highlightPaint.setStyle(Paint.Style.STROKE);
-        highlightPaint.setStrokeWidth(HIGHLIGHT_OUTLINE);
-        highlightPaint.setColor(HIGHLIGHT_COLOUR.intValue);
-
-        // active legs/splays
-        int legStrokeWidth = GeneralPreferences.getLegStrokeWidth();
-        legPaint.setStrokeWidth(legStrokeWidth);
-        legPaint.setColor(LEG_COLOUR.intValue);
-
-        latestLegPaint.setStrokeWidth(legStrokeWidth);
-        latestLegPaint.setColor(LATEST_LEG_COLOUR.intValue);
-
-        int splayStrokeWidth = GeneralPreferences.getSplayStrokeWidth();
-        splayPaint.setStrokeWidth(splayStrokeWidth);
-        splayPaint.setColor(LEG_COLOUR.intValue);
-
-        // faded legs/splays
-        fadedLegPaint.setStrokeWidth(legStrokeWidth);
-        fadedLegPaint.setColor(LEG_COLOUR.intValue);
-        fadedLegPaint.setAlpha(FADED_ALPHA);
-
-        fadedLatestLegPaint.setStrokeWidth(legStrokeWidth);
-        fadedLatestLegPaint.setColor(LATEST_LEG_COLOUR.intValue);
-        fadedLatestLegPaint.setAlpha(FADED_ALPHA);
-
-        fadedSplayPaint.setStrokeWidth(splayStrokeWidth);
-        fadedSplayPaint.setColor(LEG_COLOUR.intValue);
-        fadedSplayPaint.setAlpha(FADED_ALPHA);
-
-        drawPaint.setColor(DEFAULT_SKETCH_COLOUR.intValue);
-        drawPaint.setStrokeWidth(3);
-        drawPaint.setStyle(Paint.Style.STROKE);
-        drawPaint.setStrokeJoin(Paint.Join.ROUND);
-        drawPaint.setStrokeCap(Paint.Cap.ROUND);
-
-        int legendColour = ContextCompat.getColor(activity, R.color.legend);
-        legendPaint.setColor(legendColour);
-        float legendSizeSp = GeneralPreferences.getLegendFontSizeSp();
-        float legendSizePixels = spToPixels(legendSizeSp);
-        legendPaint.setTextSize(legendSizePixels);
-
-        int labelColour = ContextCompat.getColor(activity, R.color.station);
-        legPaint.setColor(labelColour);
-        int labelSizeSp = GeneralPreferences.getLabelFontSizeSp();
-        float labelSizePixels = spToPixels(labelSizeSp);
-        legPaint.setTextSize(labelSizePixels);
-
-        crossSectionConnectorPaint.setColor(CROSS_SECTION_CONNECTION_COLOUR.intValue);
-        crossSectionConnectorPaint.setStrokeWidth(3);
-        crossSectionConnectorPaint.setStyle(Paint.Style.STROKE);
-
-        crossSectionIndicatorPaint.setColor(STATION_COLOUR);
-        crossSectionIndicatorPaint.setStrokeWidth(2);
-        crossSectionIndicatorPaint.setStyle(Paint.Style.FILL);
-
-        isTwoFingerModeActive = GeneralPreferences.isTwoFingerModeActive();
 
-        isHotCornersModeActive = GeneralPreferences.isHotCornersModeActive();
-        hotCornersPaint.setColor(Colour.GREY.intValue);
-        hotCornersPaint.setAlpha(FADED_ALPHA);
+    private void stopRenderThread() {
+        if (renderThread != null) {
+            renderView.setSurfaceTextureListener(null);
+            renderView.setVisibility(View.GONE);
+            // waits for any frame it's drawing, as the renderer is about to be used here
+            renderThread.shutDown();
+            renderThread = null;
+        }
+    }
 
-        stationCrossDiameter = GeneralPreferences.getStationCrossDiameterPixels();
 
-        commentIcon = BitmapFactory.decodeResource(getResources(), R.drawable.speech_bubble);
-        linkIcon = BitmapFactory.decodeResource(getResources(), R.drawable.link);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        setRenderView(null);
     }
 
 
@@ -707,7 +623,7 @@ public class GraphView extends View {
                 invalidate();
             } else if (id == R.id.graph_station_toggle_left_right) {
                 Direction newDirection = station.getExtendedElevationDirection().opposite();
-                SurveyUpdater.setDirectionOfSubtree(station,newDirection);
+                SurveyUpdater.setDirectionOfSubtree(survey, station, newDirection);
                 broadcastSurveyUpdated();
                 invalidate();
             } else if (id == R.id.graph_station_comment) {
@@ -761,7 +677,10 @@ public class GraphView extends View {
         builder.setView(input)
             .setTitle(station.getName())
             .setPositiveButton(R.string.save,
-                (dialog, which) -> station.setComment(input.getText().toString()))
+                (dialog, which) -> {
+                    survey.setStationComment(station, input.getText().toString());
+                    broadcastSurveyUpdated();
+                })
             .setNegativeButton(R.string.cancel, null);
         AlertDialog dialog = builder.create();
         dialog.getWindow().setSoftInputMode(
@@ -808,27 +727,9 @@ public class GraphView extends View {
 
     private static Station findNearestStationWithinDelta(
             Space<Coord2D> space, Coord2D target, float delta) {
-
-        float shortest = Float.MAX_VALUE;
-        Station best = null;
-
-        for (Station station : space.getStationMap().keySet()) {
-            Coord2D point = space.getStationMap().get(station);
-            //noinspection ConstantConditions
-            float distance = Space2DUtils.getDistance(point, target);
-
-            if (distance > delta) {
-                continue;
-            }
-
-            if (best == null || (distance < shortest)) {
-                best = station;
-                shortest = distance;
-            }
-        }
-
-        return best;
-
+        PackedSpace2D packed = PackedSpace2D.asPacked(space);
+        int id = packed.findNearestStation(target.x, target.y, delta);
+        return id < 0? null : packed.getStation(id);
     }
 
     private void setActiveStation(Station station) {
@@ -841,608 +742,155 @@ public class GraphView extends View {
     }
 
 
-    @SuppressLint("DrawAllocation")
     @Override
     protected void onDraw(Canvas canvas) {
 
         super.onDraw(canvas);
 
-        canvasBottomRight = new Coord2D(getWidth(), getHeight());
-
-        viewpointTopLeftOnSurvey = viewCoordsToSurveyCoords(Coord2D.ORIGIN);
-        viewpointBottomRightOnSurvey = viewCoordsToSurveyCoords(canvasBottomRight);
-
-        if (SketchPreferences.Toggle.SHOW_GRID.isOn()) {
-            drawGrid(canvas);
+        GraphFrame frame = captureFrame();
+        if (renderThread == null) {
+            renderer.draw(canvas, frame);
+        } else {
+            renderThread.requestRender(frame);
         }
+    }
 
-        if (SketchPreferences.Toggle.SHOW_CONNECTIONS.isOn()) {
-            drawConnectedSurveys(canvas, projection, FADED_ALPHA);
-        }
 
-        drawSurvey(canvas, survey, projection, SOLID_ALPHA);
+    /** Takes a copy of everything needed to draw the graph as it is now (see GraphFrame). */
+    private GraphFrame captureFrame() {
 
-        drawLegend(canvas);
-        drawHotCorners(canvas);
+        GraphFrame frame = new GraphFrame();
 
-        if (activity.isDebugMode()) {
-            drawDebuggingInfo(canvas);
-        }
-    }
+        frame.width = getWidth();
+        frame.height = getHeight();
+        frame.offsetX = viewpointOffset.x;
+        frame.offsetY = viewpointOffset.y;
+        frame.scale = surveyToViewScale;
+        frame.isScaling = isScaling;
+        frame.sketchTool = currentSketchTool;
 
-    private void drawSurvey(Canvas canvas, Survey survey, Space<Coord2D> projection, int alpha) {
-        drawSketch(canvas, activity.getSketch(survey), alpha);
-        drawCrossSections(canvas, sketch.getCrossSectionDetails(), alpha);
-        drawSurveyData(survey, canvas, projection, alpha);
-    }
+        frame.showGrid = SketchPreferences.Toggle.SHOW_GRID.isOn();
+        frame.showConnections = SketchPreferences.Toggle.SHOW_CONNECTIONS.isOn();
+        frame.showSplays = SketchPreferences.Toggle.SHOW_SPLAYS.isOn();
+        frame.fadeNonActive = SketchPreferences.Toggle.FADE_NON_ACTIVE.isOn();
+        frame.showStationLabels = SketchPreferences.Toggle.SHOW_STATION_LABELS.isOn();
+        frame.showSketch = SketchPreferences.Toggle.SHOW_SKETCH.isOn();
+        frame.highlightLatestLeg = GeneralPreferences.isHighlightLatestLegModeOn();
+        frame.isDebugMode = activity.isDebugMode();
+        frame.isDarkModeActive = isDarkModeActive;
 
+        frame.projectionType = projectionType;
+        frame.surveyLength = surveyLength;
+        frame.surveyHeight = surveyHeight;
 
-    private void drawConnectedSurveys(Canvas canvas, Space<Coord2D> projection, int alpha) {
+        Map<Sketch, GraphFrame.SketchContent> previousSketchContents = sketchContents;
+        sketchContents = new HashMap<>();
 
-        if (doTranslatedConnectedSurveysNeedUpdating()) {
-            try {
-                this.translatedConnectedSurveys =
-                        ConnectedSurveys.getTranslatedConnectedSurveys(
-                                activity.getProjectionType(), survey, projection);
-            } catch (Exception exception) {
-                Log.e("Error getting translated connected surveys");
-                Log.e(exception);
-                return;
-            }
-        }
+        frame.survey = captureSurveyLayer(survey, projection, sketch, previousSketchContents);
+        SurveySnapshot snapshot = frame.survey.snapshot;
+        frame.mostRecentLeg = snapshot.getMostRecentLeg();
+        frame.activeLegs = snapshot.getOnwardLegs(snapshot.getActiveStation());
 
-        for (Survey translatedConnectedSurvey : translatedConnectedSurveys.keySet()) {
-            try {
+        if (frame.showConnections) {
+            updateTranslatedConnectedSurveysIfNeeded();
+            for (Survey connectedSurvey : translatedConnectedSurveys.keySet()) {
                 Space<Coord2D> connectedProjection =
-                        translatedConnectedSurveys.get(translatedConnectedSurvey);
-                drawSurvey(canvas, translatedConnectedSurvey, connectedProjection, alpha);
-            } catch (Exception exception) {
-                String name =  translatedConnectedSurvey.getName();
-                Log.e("Error drawing connected survey " + name);
-                Log.e(exception);
-                Log.e("Sorry, having to unlink connected survey " + name);
-                translatedConnectedSurveys.remove(translatedConnectedSurvey);
+                        translatedConnectedSurveys.get(connectedSurvey);
+                Sketch connectedSketch = activity.getSketch(connectedSurvey);
+                frame.connectedSurveys.add(captureSurveyLayer(connectedSurvey,
+                        connectedProjection, connectedSketch, previousSketchContents));
             }
         }
-    }
 
-    private boolean doTranslatedConnectedSurveysNeedUpdating() {
-        Set<Survey> flatSetOfConnectedSurveys = getFlatSetOfConnectedSurveys();
-        Set<Survey> flatSetOfTranslatedConnectedSurveys = translatedConnectedSurveys.keySet();
-        return !flatSetOfConnectedSurveys.equals(flatSetOfTranslatedConnectedSurveys);
-    }
-
-    private Set<Survey> getFlatSetOfConnectedSurveys() {
-        Set<Survey> flatSet = new HashSet<>();
-        for (Set<SurveyConnection> connectionSet : survey.getConnectedSurveys().values()) {
-            for (SurveyConnection connection : connectionSet) {
-                flatSet.add(connection.otherSurvey);
-            }
-        }
-        return flatSet;
+        return frame;
     }
 
 
-    private void drawGrid(Canvas canvas) {
-
-        int tickSizeInMetres = getMinorGridBoxSize();
-        int numberTicksJustBeforeViewpointOffsetX = (int)(viewpointOffset.x / tickSizeInMetres);
-
-        for (int n = numberTicksJustBeforeViewpointOffsetX; true; n++) {
-            float xSurvey = n * tickSizeInMetres;
-            int xView = (int)((xSurvey - viewpointOffset.x) * surveyToViewScale);
-            gridPaint.setStrokeWidth(n % BOX_SIZE == 0 ? 3 : 1);
-            canvas.drawLine(xView, 0, xView, getHeight(), gridPaint);
-            if (xView >= getWidth()) {
-                break;
-            }
-        }
+    private GraphFrame.SurveyLayer captureSurveyLayer(
+            Survey survey, Space<Coord2D> projection, Sketch sketch,
+            Map<Sketch, GraphFrame.SketchContent> previousSketchContents) {
 
-        int numberTicksJustBeforeViewpointOffsetY = (int)(viewpointOffset.y / tickSizeInMetres);
+        GraphFrame.SketchContent content = GraphFrame.SketchContent.capture(
+                sketch, previousSketchContents.get(sketch));
+        sketchContents.put(sketch, content);
 
-        for (int n = numberTicksJustBeforeViewpointOffsetY; true; n++) {
-            float ySurvey = n * tickSizeInMetres;
-            int yView = (int)((ySurvey - viewpointOffset.y) * surveyToViewScale);
-            gridPaint.setStrokeWidth(n % BOX_SIZE == 0 ? 3 : 1);
-            canvas.drawLine(0, yView, getWidth(), yView, gridPaint);
-            if (yView >= getHeight()) {
-                break;
-            }
-        }
+        List<CrossSectionDetail> crossSections =
+                removeBadCrossSections(sketch.getCrossSectionDetails(), projection);
 
+        return new GraphFrame.SurveyLayer(
+                survey, projection, sketch, content, new ArrayList<>(crossSections));
     }
 
-    public int getMinorGridBoxSize() {
 
-        if (surveyToViewScale > 15) {
-            return 1;
-        } else if (surveyToViewScale > 2) {
-            return 10;
-        } else {
-            return 100;
-        }
-    }
-
-    private void drawSurveyData(Survey survey, Canvas canvas, Space<Coord2D> space, int alpha) {
-        drawLegs(canvas, space, alpha);
-        drawStations(survey, canvas, space, alpha);
-    }
-
-    private void drawCrossSections(
-            Canvas canvas, List<CrossSectionDetail> crossSectionDetails, int alpha) {
-
-        boolean showStationLabels = SketchPreferences.Toggle.SHOW_STATION_LABELS.isOn();
-
-        crossSectionConnectorPaint.setAlpha(alpha);
+    /**
+     * Removes (from the sketch) any cross-sections that have lost track of their station,
+     * e.g. because it's been deleted, and returns the rest.
+     */
+    private static List<CrossSectionDetail> removeBadCrossSections(
+            List<CrossSectionDetail> crossSectionDetails, Space<Coord2D> projection) {
 
         List<CrossSectionDetail> badXSections = new ArrayList<>();
 
         for (CrossSectionDetail sectionDetail : crossSectionDetails) {
-
-            if (!couldBeOnScreen(sectionDetail)) {
-                continue;
-            }
-
             CrossSection crossSection = sectionDetail.getCrossSection();
-            if (crossSection == null) {
-                badXSections.add(sectionDetail);
-                continue;
-            }
-
-            Station station = crossSection.getStation();
-            if (station == null) {
+            Station station = (crossSection == null)? null : crossSection.getStation();
+            if (station == null || projection.getStationMap().get(station) == null) {
                 badXSections.add(sectionDetail);
-                continue;
-            }
-
-            Coord2D surveyStationLocation = this.projection.getStationMap().get(station);
-            if (surveyStationLocation == null) {
-                badXSections.add(sectionDetail);
-                continue;
-            }
-
-            Coord2D centreOnSurvey = sectionDetail.getPosition();
-            Coord2D centreOnView = surveyCoordsToViewCoords(centreOnSurvey);
-            drawStationCross(
-                    canvas, stationPaint, centreOnView.x, centreOnView.y, STATION_DIAMETER, alpha);
-
-            String description =
-                    sectionDetail.getCrossSection().getStation().getName() + " X";
-            if (showStationLabels) {
-                stationPaint.setAlpha(alpha);
-                canvas.drawText(description, centreOnView.x, centreOnView.y, stationPaint);
             }
-
-            Space<Coord2D> projection = sectionDetail.getProjection();
-
-            drawLegs(canvas, projection, alpha);
-
-            Coord2D viewStationLocation = surveyCoordsToViewCoords(surveyStationLocation);
-            drawDashedLine(
-                    canvas, viewStationLocation, centreOnView,
-                    DASHED_LINE_INTERVAL, crossSectionConnectorPaint);
         }
 
         for (CrossSectionDetail crossSectionDetail : badXSections) {
-            Station station = crossSectionDetail.getCrossSection().getStation();
+            CrossSection crossSection = crossSectionDetail.getCrossSection();
+            Station station = (crossSection == null)? null : crossSection.getStation();
             String name = station == null? "Unknown" : station.getName();
             Log.e("Missing station details for cross section on station " + name + "; removing");
             crossSectionDetails.remove(crossSectionDetail);
         }
-    }
-
-
-    private void drawLegs(Canvas canvas, Space<Coord2D> space, int baseAlpha) {
-
-        boolean highlightLatestLeg = GeneralPreferences.isHighlightLatestLegModeOn();
-
-        boolean showSplays = SketchPreferences.Toggle.SHOW_SPLAYS.isOn();
-        boolean fadingNonActive = SketchPreferences.Toggle.FADE_NON_ACTIVE.isOn();
-
-        Map<Leg, Line<Coord2D>> legMap = space.getLegMap();
-
-        for (Leg leg : legMap.keySet()) {
-
-            if (!showSplays && !leg.hasDestination()) {
-                continue;
-            }
-
-            Line<Coord2D> line = legMap.get(leg);
-
-            //noinspection ConstantConditions
-            Coord2D start = surveyCoordsToViewCoords(line.getStart());
-            Coord2D end = surveyCoordsToViewCoords(line.getEnd());
-
-            if (!isLineOnCanvas(start, end)) {
-                continue;
-            }
 
-            boolean fade = baseAlpha == FADED_ALPHA || (fadingNonActive && !isAttachedToActive(leg));
-
-            Paint paint;
-            if (highlightLatestLeg && survey.getMostRecentLeg() == leg) {
-                paint = fade ? fadedLatestLegPaint : latestLegPaint;
-            } else if (!leg.hasDestination()) {
-                paint = fade ? fadedSplayPaint : splayPaint;
-            } else {
-                paint = fade ? fadedLegPaint : legPaint;
-            }
-
-            if (projectionType.isLegInPlane(leg)) {
-                canvas.drawLine(start.x, start.y, end.x, end.y, paint);
-			} else {
-                drawDashedLine(canvas, start, end, DASHED_LINE_INTERVAL, paint);
-            }
-        }
-    }
-
-    private boolean isAttachedToActive(Leg leg) {
-        return survey.getActiveStation().getOnwardLegs().contains(leg);
+        return crossSectionDetails;
     }
 
-    private boolean isLineOnCanvas(Coord2D start, Coord2D end) {
-        return !CohenSutherlandAlgorithm.whollyOutside(
-                start, end, Coord2D.ORIGIN, canvasBottomRight);
-    }
 
-
-    private void drawStations(Survey survey, Canvas canvas, Space<Coord2D> space, int baseAlpha) {
-
-        boolean fadingNonActive = SketchPreferences.Toggle.FADE_NON_ACTIVE.isOn();
-        boolean showStationLabels = SketchPreferences.Toggle.SHOW_STATION_LABELS.isOn();
-
-        if (fadingNonActive) {
-            baseAlpha = FADED_ALPHA;
-        }
-
-        int alpha = baseAlpha;
-        stationPaint.setAlpha(alpha);
-
-        for (Map.Entry<Station, Coord2D> entry : space.getStationMap().entrySet()) {
-            Station station = entry.getKey();
-
-            if (fadingNonActive && (station == survey.getActiveStation())) {
-                alpha = SOLID_ALPHA;
-                // setting alpha is measured as a relatively expensive call, so we change this as
-                // little as possible
-                stationPaint.setAlpha(alpha);
-            }
-
-            Coord2D translatedStation = surveyCoordsToViewCoords(entry.getValue());
-
-            int x = (int)(translatedStation.x);
-            int y = (int)(translatedStation.y);
-
-            drawStationCross(canvas, stationPaint, x, y, stationCrossDiameter, alpha);
-
-            if (station == survey.getActiveStation()) {
-                highlightActiveStation(canvas, x, y);
-            }
-
-            int spacing = stationCrossDiameter / 2;
-            int nextX = x + stationCrossDiameter;
-
-            if (showStationLabels) {
-                String name = station.getName();
-                if (station == survey.getOrigin()) {
-                    name = name + " (" + survey.getName() + ")";
-                }
-                canvas.drawText(name,
-                        nextX,
-                        y + STATION_LABEL_OFFSET,
-                        stationPaint);
-                nextX += stationPaint.measureText(name) + spacing;
-            }
-
-            List<Bitmap> icons = new ArrayList<>();
-            if (station.hasComment()) {
-                icons.add(commentIcon);
-            }
-            if (survey.hasLinkedSurveys(station)) {
-                icons.add(linkIcon);
-            }
-
-            for (Bitmap icon : icons) {int yTop = y - stationCrossDiameter / 2;
-                Rect rect = new Rect(nextX, yTop, nextX + stationCrossDiameter, yTop + stationCrossDiameter);
-                canvas.drawBitmap(icon, null, rect, stationPaint);
-                nextX += stationCrossDiameter + spacing;
-            }
-
-            CrossSectionDetail crossSectionDetail = sketch.getCrossSectionDetail(station);
-            if (crossSectionDetail != null) {
-                drawCrossSectionIndicator(canvas, crossSectionDetail, x, y, alpha);
-            }
-
-            if (fadingNonActive && (station == survey.getActiveStation())) {
-                alpha = baseAlpha;
-                stationPaint.setAlpha(alpha);
+    private void updateTranslatedConnectedSurveysIfNeeded() {
+        if (doTranslatedConnectedSurveysNeedUpdating()) {
+            try {
+                this.translatedConnectedSurveys =
+                        ConnectedSurveys.getTranslatedConnectedSurveys(
+                                activity.getProjectionType(), survey, projection);
+            } catch (Exception exception) {
+                Log.e("Error getting translated connected surveys");
+                Log.e(exception);
+                this.translatedConnectedSurveys = new HashMap<>();
             }
         }
     }
 
-
-    private void drawCrossSectionIndicator(
-            Canvas canvas, CrossSectionDetail crossSectionDetail, float x, float y, int alpha) {
-
-        crossSectionIndicatorPaint.setAlpha(alpha / 2);
-        CrossSection crossSection = crossSectionDetail.getCrossSection();
-
-        float angle = (float)Math.toRadians(crossSection.getAngle());
-        float indicatorWidth = (1 * surveyToViewScale);
-        float startX = x - ((indicatorWidth / 2) * (float)Math.cos(angle));
-        float startY = y - ((indicatorWidth / 2) * (float)Math.sin(angle));
-        float endX = x + ((indicatorWidth / 2) * (float)Math.cos(angle));
-        float endY = y + ((indicatorWidth / 2) * (float)Math.sin(angle));
-
-        canvas.drawLine(startX, startY, endX, endY, crossSectionIndicatorPaint);
-
-        float lineLength =
-                Space2DUtils.getDistance(new Coord2D(startX, startY), new Coord2D(endX, endY));
-        float arrowLength = lineLength * 0.4f;
-        float arrowOuterCornerX = startX;
-        float arrowOuterCornerY = startY;
-        float arrowInnerCornerX = startX + ((lineLength * 0.05f) * (float)Math.cos(angle));
-        float arrowInnerCornerY = startY + ((lineLength * 0.05f) * (float)Math.sin(angle));
-        float arrowAngle = (float)Math.toRadians(Space2DUtils.adjustAngle(
-                crossSection.getAngle(), -90));
-        float arrowTipX = startX + (arrowLength * (float)Math.cos(arrowAngle));
-        float arrowTipY = startY + (arrowLength * (float)Math.sin(arrowAngle));
-
-
-        Path path = new Path();
-        path.moveTo(arrowInnerCornerX, arrowInnerCornerY);
-        path.lineTo(arrowOuterCornerX, arrowOuterCornerY);
-        path.lineTo(arrowTipX, arrowTipY);
-        path.lineTo(arrowInnerCornerX, arrowInnerCornerY);
-
-        canvas.drawPath(path, crossSectionIndicatorPaint);
-    }
-
-
-    private void highlightActiveStation(Canvas canvas, float x, float y) {
-
-        float diameter = 22;
-        int gap = 6;
-        float topY = y - (diameter / 2);
-        float bottomY = y + (diameter / 2);
-        float leftX = x - (diameter / 2);
-        float rightX = x + (diameter / 2);
-
-        float innerLeft = leftX + ((diameter - gap) / 2);
-        float innerRight = innerLeft + gap;
-        float innerTop = topY + ((diameter - gap) / 2);
-        float innerBottom = innerTop + gap;
-
-        // top lines
-        canvas.drawLine(leftX, topY, innerLeft, topY, highlightPaint);
-        canvas.drawLine(innerRight, topY, rightX, topY, highlightPaint);
-        // bottom lines
-        canvas.drawLine(leftX, bottomY, innerLeft, bottomY, highlightPaint);
-        canvas.drawLine(innerRight, bottomY, rightX, bottomY, highlightPaint);
-        // left lines
-        canvas.drawLine(leftX, topY, leftX, innerTop, highlightPaint);
-        canvas.drawLine(leftX, innerBottom, leftX, bottomY, highlightPaint);
-        // right lines
-        canvas.drawLine(rightX, topY, rightX, innerTop, highlightPaint);
-        canvas.drawLine(rightX, innerBottom, rightX, bottomY, highlightPaint);
-    }
-
-
-    private void drawStationCross(
-            Canvas canvas, Paint paint, float x, float y, int crossDiameter, int alpha) {
-        paint.setAlpha(alpha);
-        float halfCross = crossDiameter / 2f;
-        canvas.drawLine(x , y - halfCross, x, y + halfCross, paint);
-        canvas.drawLine(x - halfCross, y, x + halfCross, y, paint);
+    private boolean doTranslatedConnectedSurveysNeedUpdating() {
+        Set<Survey> flatSetOfConnectedSurveys = getFlatSetOfConnectedSurveys();
+        Set<Survey> flatSetOfTranslatedConnectedSurveys = translatedConnectedSurveys.keySet();
+        return !flatSetOfConnectedSurveys.equals(flatSetOfTranslatedConnectedSurveys);
     }
 
-
-
-    private void drawSketch(Canvas canvas, Sketch sketch, int alpha) {
-
-        if (!SketchPreferences.Toggle.SHOW_SKETCH.isOn()) {
-            return;
-        }
-
-        Colour lastColour = Colour.BLACK;
-
-        drawPaint.setColor(lastColour.intValue);
-        drawPaint.setAlpha(alpha);
-
-        boolean isDebugMode = activity.isDebugMode();
-
-        for (PathDetail pathDetail : sketch.getPathDetails()) {
-
-            if (!couldBeOnScreen(pathDetail)) {
-                continue;
-            }
-
-            // Avoiding constantly updating the paint colour saves approx. 10% of sketch draw time.
-            // Ideally getPathDetails() would return the paths in colour order but HashSets
-            // are unordered collections
-            Colour drawColour = pathDetail.getDrawColour(isDarkModeActive);
-            if (drawColour != lastColour) {
-                lastColour = drawColour;
-                drawPaint.setColor(lastColour.intValue);
-            }
-
-            List<Coord2D> path = pathDetail.getPath();
-
-            int lineIndex = 0;
-            float fromX = -1, fromY = -1;
-            float[] lines = new float[path.size() * 4];
-
-            // This loop is the slowest part of the draw phase. Pulling out the calculations from
-            // within surveyCoordsToViewCoords saves a not insignificant amount of time by not
-            // constructing many thousands of Coord2D objects (approx. 10% of sketch draw time)
-            for (Coord2D point : path) {
-                if (fromX == -1) {
-                    //from = surveyCoordsToViewCoords(point);
-                    fromX = (point.x - viewpointOffset.x) * surveyToViewScale;
-                    fromY = (point.y - viewpointOffset.y) * surveyToViewScale;
-
-                    if (isDebugMode) {
-                        canvas.drawCircle(fromX, fromY, 3, drawPaint);
-                    }
-                } else {
-                    //Coord2D to = surveyCoordsToViewCoords(point);
-                    float toX = (point.x - viewpointOffset.x) * surveyToViewScale;
-                    float toY = (point.y - viewpointOffset.y) * surveyToViewScale;
-
-                    lines[lineIndex++] = fromX;
-                    lines[lineIndex++] = fromY;
-                    lines[lineIndex++] = toX;
-                    lines[lineIndex++] = toY;
-
-                    if (isDebugMode) {
-                        canvas.drawCircle(toX, toY, 3, drawPaint);
-                    }
-
-                    fromX = toX;
-                    fromY = toY;
-                }
-            }
-
-            canvas.drawLines(lines, drawPaint);
-        }
-
-        labelPaint.setAlpha(alpha);
-
-        for (TextDetail textDetail : sketch.getTextDetails()) {
-            Coord2D location = surveyCoordsToViewCoords(textDetail.getPosition());
-            float x = location.x, y = location.y;
-            String text = textDetail.getText();
-            setDrawColour(labelPaint, textDetail);
-            labelPaint.setTextSize(textDetail.getSize() * surveyToViewScale);
-            for (String line : text.split("\n")) {
-                canvas.drawText(line, x, y, labelPaint);
-                y += labelPaint.descent() - labelPaint.ascent();
-            }
-        }
-
-        for (SymbolDetail symbolDetail : sketch.getSymbolDetails()) {
-            if (!couldBeOnScreen(symbolDetail)) {
-                continue;
-            }
-            Coord2D location = surveyCoordsToViewCoords(symbolDetail.getPosition());
-
-            Symbol symbol = symbolDetail.getSymbol();
-
-            int size = Math.round(symbolDetail.getSize() * surveyToViewScale);
-            if (size < 1) {
-                continue;
-            }
-
-            Drawable drawable = symbolDetail.getDrawable();
-            float offset = size / 2f;
-            int x = Math.round(location.x - offset), y = Math.round(location.y - offset);
-            drawable.setBounds(x, y, x + size, y + size);
-            drawable.setAlpha(alpha);
-            Colour drawColour = symbolDetail.getDrawColour(isDarkModeActive);
-            drawable.setColorFilter(
-                new PorterDuffColorFilter(drawColour.intValue, PorterDuff.Mode.SRC_IN));
-
-            if (symbol.isDirectional()) {
-                RotateDrawable rotateDrawable = new RotateDrawable();
-                rotateDrawable.setDrawable(drawable);
-                rotateDrawable.setPivotX(0.5f);
-                rotateDrawable.setPivotY(0.5f);
-                rotateDrawable.setLevel((int) (10000 * (symbolDetail.getAngle() / 360f)));
-                rotateDrawable.setBounds(x, y, x + size, y + size);
-                rotateDrawable.draw(canvas);
-
-            } else { // skip some calcs for efficiency
-                drawable.draw(canvas);
+    private Set<Survey> getFlatSetOfConnectedSurveys() {
+        Set<Survey> flatSet = new HashSet<>();
+        for (Set<SurveyConnection> connectionSet : survey.getConnectedSurveys().values()) {
+            for (SurveyConnection connection : connectionSet) {
+                flatSet.add(connection.otherSurvey);
             }
         }
-    }
-
-    private void setDrawColour(Paint paint, SketchDetail sketchDetail) {
-        Colour colour = sketchDetail.getDrawColour(isDarkModeActive);
-        paint.setColor(colour.intValue);
-    }
-
-
-    private void drawLegend(Canvas canvas) {
-
-        String surveyLabel =
-            survey.getName() +
-            " L" + TextTools.formatTo0dpWithComma(surveyLength) +
-            " V" + TextTools.formatTo0dpWithComma(surveyHeight);
-
-        float legendSize = legendPaint.getTextSize();
-        float offsetX = legendSize * 1.25f;
-        float offsetY = legendSize * 1.25f;
-        float y = getHeight() - offsetY;
-        float x = offsetX;
-        canvas.drawText(surveyLabel, x, y, legendPaint);
-
-        int minorGridSize = getMinorGridBoxSize();
-        float scaleWidth = surveyToViewScale * minorGridSize;
-        float scaleOffsetY = offsetY * 2;
-        float scaleY = getHeight() - scaleOffsetY;
-        canvas.drawLine(
-                x, scaleY, x + scaleWidth, scaleY, legendPaint);
-        canvas.drawLine(
-                x, scaleY, offsetX, scaleY - LEGEND_TICK_SIZE, legendPaint);
-        canvas.drawLine(x + scaleWidth, scaleY,
-                x + scaleWidth, scaleY - LEGEND_TICK_SIZE, legendPaint);
-        String scaleLabel = minorGridSize + "m";
-        canvas.drawText(scaleLabel, x + scaleWidth + 0.2f * legendSize, scaleY, legendPaint);
-
+        return flatSet;
     }
 
 
-    private void drawHotCorners(Canvas canvas) {
+    static int getMinorGridBoxSize(float surveyToViewScale) {
 
-        if (!isHotCornersModeActive) {
-            return;
-        }
-
-        if (currentSketchTool == SketchTool.MODAL_MOVE) {
-            hotCornersPaint.setColor(Colour.YELLOW.intValue);
-            hotCornersPaint.setAlpha(FADED_ALPHA);
-        }
-
-        if (topLeftCorner == null || topRightCorner == null || bottomRightCorner == null) {
-            final int side = (int) (HOT_CORNER_DISTANCE_PROPORTION * getWidth());
-            topLeftCorner =
-                new Rect(0, 0, side, side);
-            topRightCorner =
-                new Rect(getWidth() - side, 0, getWidth(), side);
-            bottomRightCorner =
-                new Rect(getWidth() - side, getHeight() - side, getWidth(), getHeight());
-        }
-
-        canvas.drawRect(topLeftCorner, hotCornersPaint);
-        canvas.drawRect(topRightCorner, hotCornersPaint);
-        canvas.drawRect(bottomRightCorner, hotCornersPaint);
-
-        if (currentSketchTool == SketchTool.MODAL_MOVE) {
-            hotCornersPaint.setColor(Colour.GREY.intValue);
-            hotCornersPaint.setAlpha(FADED_ALPHA);
+        if (surveyToViewScale > 15) {
+            return 1;
+        } else if (surveyToViewScale > 2) {
+            return 10;
+        } else {
+            return 100;
         }
-
-    }
-
-    private void drawDebuggingInfo(Canvas canvas) {
-        float offsetX = getWidth() * 0.03f;
-        float offsetY = LEGEND_SIZE * 2;
-        String label = "x=" + offsetX + " y=" + offsetY +
-                " s2v=" + TextTools.formatTo2dp(surveyToViewScale) +
-                " 1/s2v=" + TextTools.formatTo2dp(1 / surveyToViewScale) +
-                //" 1/log=" + TextTools.formatTo2dp(1 / Math.log(surveyToViewScale)) +
-                //" 1/log10=" + TextTools.formatTo2dp(1 / Math.log10(surveyToViewScale)) +
-                "\n log (1/s2v) =" + TextTools.formatTo2dp(Math.log(1 /surveyToViewScale)) +
-                "\n log10 (1/s2v) =" + TextTools.formatTo2dp(Math.log10(1 /surveyToViewScale));
-
-        canvas.drawText(label, offsetX, offsetY, legendPaint);
-    }
-
-
-    private boolean couldBeOnScreen(SketchDetail sketchDetail) {
-        return sketchDetail.intersectsRectangle(
-                viewpointTopLeftOnSurvey, viewpointBottomRightOnSurvey);
     }
 
 
@@ -1475,57 +923,6 @@ public class GraphView extends View {
     }
 
 
-    private void drawDashedLine(Canvas canvas,
-                                Coord2D start, Coord2D end,
-                                float dashLength,
-                                Paint paint) {
-
-        // this switcheroo is so we start from the end of the line and draw backwards
-        // (we prefer the end of the line to line up with a dash rather than the start)
-        Coord2D swap = end;
-        end = start;
-        start = swap;
-
-        float lineLength = Space2DUtils.getDistance(start, end);
-        int dashes = (int)(lineLength / dashLength / 2f);
-
-        Coord2D direction = end.minus(start).normalise();
-        Coord2D dashStep = direction.scale(dashLength);
-
-        float stepX = dashStep.x;
-        float stepY = dashStep.y;
-
-        float[] lines = new float[dashes * 4]; // xy coords for start and end of dashes == 4
-
-        int lineIndex = 0;
-        float startX, startY, endX, endY;
-        float previousX = 0, previousY = 0;
-
-        for (int dashIndex = 0; dashIndex < dashes; dashIndex++) {
-
-            if (dashIndex == 0) {
-                startX = start.x;
-                startY = start.y;
-            } else {
-                startX = previousX + stepX;
-                startY = previousY + stepY;
-            }
-
-            endX = startX + stepX;
-            endY = startY + stepY;
-
-            lines[lineIndex++] = startX;
-            lines[lineIndex++] = startY;
-            lines[lineIndex++] = endX;
-            lines[lineIndex++] = endY;
-
-            previousX = endX;
-            previousY = endY;
-        }
-
-        canvas.drawLines(lines, paint);
-    }
-
     public void adjustZoomBy(float delta) {
         float newZoom = surveyToViewScale * delta;
         setZoom(newZoom);
@@ -1594,6 +991,19 @@ public class GraphView extends View {
 
 
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            isScaling = true;
+            return true;
+        }
+
+        @Override
+        public void onScaleEnd(ScaleGestureDetector detector) {
+            // redraw the sketch properly at the new scale
+            isScaling = false;
+            invalidate();
+        }
+
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
 
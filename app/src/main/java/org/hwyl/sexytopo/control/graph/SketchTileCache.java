@@ -0,0 +1,250 @@
+package org.hwyl.sexytopo.control.graph;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import org.hwyl.sexytopo.model.common.Shape;
+import org.hwyl.sexytopo.model.sketch.Sketch;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Keeps the finished part of a sketch drawn onto square bitmap tiles, so that redrawing the
+ * view (every frame of a pan, say) is just a matter of copying a screenful of tiles rather
+ * than drawing every path again.
+ *
+ * Tiles line up with the survey origin and are rendered when first needed. They're rendered
+ * at the nearest of a fixed set of zoom levels, each √2 times the one before, and stretched to
+ * the scale the view is actually at, so that zooming a little (or a scale that comes out a
+ * fraction different) doesn't mean rendering them all again; each level gets its own set.
+ * Whatever changes in the sketch (see Sketch.getChangedAreasSince) has the tiles it touches
+ * thrown away, and the least recently used tiles go when over the memory budget. While a
+ * pinch-zoom is in progress the tiles from before it started are stretched to fit, with new
+ * ones only rendered at the new level once it's over.
+ *
+ * The path being drawn isn't included; it changes too often to be worth caching.
+ */
+class SketchTileCache {
+
+    interface Renderer {
+        /**
+         * Draws the sketch details overlapping the given area (in survey coords) onto the
+         * canvas at the given scale, with the survey point (originX, originY) at the canvas
+         * origin.
+         */
+        void renderTile(Canvas canvas, float originX, float originY, float scale,
+                        float left, float top, float right, float bottom);
+    }
+
+    static final int TILE_SIZE = 256;
+
+    // how far, in pixels, a detail can be drawn beyond its bounds (e.g. wide strokes)
+    private static final float OVERDRAW_PIXELS = 8;
+
+    private static final int NO_ZOOM_LEVEL = Integer.MIN_VALUE;
+
+    private static final long MAX_BUDGET_BYTES = 64 * 1024 * 1024;
+
+    private final long budgetBytes =
+            Math.min(Runtime.getRuntime().maxMemory() / 4, MAX_BUDGET_BYTES);
+
+    // in access order, so the least recently used come first
+    private final LinkedHashMap<TileKey, Bitmap> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesUsed = 0;
+
+    private Sketch sketch = null;
+    private long sketchRevision = 0;
+    private int style = 0;
+    private int lastZoomLevel = NO_ZOOM_LEVEL;
+
+    private final Canvas tileCanvas = new Canvas();
+    private final Paint stretchedTilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF destination = new RectF();
+
+
+    /**
+     * Draws the sketch onto the view's canvas from the cache, rendering any tiles that are
+     * missing. The revision is the one the renderer draws the sketch at, which may be behind
+     * the sketch itself if it's being drawn on another thread. The style should change
+     * whenever anything that affects how the sketch looks does (dark mode, say). Returns false
+     * without drawing anything if the sketch can't be drawn from tiles at this scale (there
+     * would be too many of them), in which case the caller should draw it directly.
+     */
+    boolean draw(Canvas canvas, Sketch sketch, long revision, int style, Renderer renderer,
+                 float offsetX, float offsetY, float scale, int width, int height,
+                 boolean isScaling) {
+
+        updateForChanges(sketch, revision, style);
+
+        int zoomLevel = (isScaling && lastZoomLevel != NO_ZOOM_LEVEL)?
+                lastZoomLevel : toZoomLevel(scale);
+        float tileScale = toScale(zoomLevel);
+
+        float tileSizeOnSurvey = TILE_SIZE / tileScale;
+        int firstColumn = (int) Math.floor(offsetX / tileSizeOnSurvey);
+        int firstRow = (int) Math.floor(offsetY / tileSizeOnSurvey);
+        int lastColumn = (int) Math.floor((offsetX + width / scale) / tileSizeOnSurvey);
+        int lastRow = (int) Math.floor((offsetY + height / scale) / tileSizeOnSurvey);
+
+        // leave room to keep the tiles either side of the screen when panning
+        long tilesNeeded = ((long) lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+        if (tilesNeeded * TILE_SIZE * TILE_SIZE * 4 > budgetBytes / 2) {
+            return false;
+        }
+        lastZoomLevel = zoomLevel;
+
+        float tileSizeOnView = tileSizeOnSurvey * scale;
+        Paint paint = (tileScale == scale)? null : stretchedTilePaint;
+
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                TileKey key = new TileKey(zoomLevel, column, row);
+                Bitmap tile = tiles.get(key);
+                if (tile == null) {
+                    tile = renderTile(key, renderer);
+                }
+                float left = (column * tileSizeOnSurvey - offsetX) * scale;
+                float top = (row * tileSizeOnSurvey - offsetY) * scale;
+                if (paint == null) {
+                    canvas.drawBitmap(tile, left, top, null);
+                } else {
+                    destination.set(left, top, left + tileSizeOnView, top + tileSizeOnView);
+                    canvas.drawBitmap(tile, null, destination, paint);
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Throws all the tiles away. Their bitmaps aren't recycled or reused, as a frame drawn from
+     * them may not have finished with them yet; they're left for the garbage collector.
+     */
+    void clear() {
+        tiles.clear();
+        bytesUsed = 0;
+    }
+
+
+    private void updateForChanges(Sketch sketch, long revision, int style) {
+        // Any changes after the given revision get thrown away too, which doesn't matter:
+        // they'll be thrown away again when drawing a revision that has them
+        List<Shape> changedAreas = null;
+        if (sketch == this.sketch && style == this.style) {
+            changedAreas = sketch.getChangedAreasSince(sketchRevision);
+        }
+
+        if (changedAreas == null) {
+            clear();
+        } else {
+            for (Shape area : changedAreas) {
+                invalidate(area);
+            }
+        }
+
+        this.sketch = sketch;
+        this.style = style;
+        sketchRevision = revision;
+    }
+
+
+    private void invalidate(Shape area) {
+        Iterator<Map.Entry<TileKey, Bitmap>> iterator = tiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TileKey, Bitmap> entry = iterator.next();
+            TileKey key = entry.getKey();
+            float tileSize = TILE_SIZE / key.scale;
+            float overdraw = OVERDRAW_PIXELS / key.scale;
+            float left = key.column * tileSize - overdraw;
+            float top = key.row * tileSize - overdraw;
+            float right = left + tileSize + 2 * overdraw;
+            float bottom = top + tileSize + 2 * overdraw;
+            if (area.getLeft() <= right && area.getRight() >= left &&
+                    area.getTop() <= bottom && area.getBottom() >= top) {
+                bytesUsed -= entry.getValue().getByteCount();
+                iterator.remove();
+            }
+        }
+    }
+
+
+    private Bitmap renderTile(TileKey key, Renderer renderer) {
+        Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+
+        float tileSize = TILE_SIZE / key.scale;
+        float overdraw = OVERDRAW_PIXELS / key.scale;
+        float left = key.column * tileSize;
+        float top = key.row * tileSize;
+
+        tileCanvas.setBitmap(tile);
+        renderer.renderTile(tileCanvas, left, top, key.scale,
+                left - overdraw, top - overdraw,
+                left + tileSize + overdraw, top + tileSize + overdraw);
+        tileCanvas.setBitmap(null);
+
+        tiles.put(key, tile);
+        bytesUsed += tile.getByteCount();
+        evictIfOverBudget();
+        return tile;
+    }
+
+
+    private void evictIfOverBudget() {
+        Iterator<Bitmap> leastRecentlyUsed = tiles.values().iterator();
+        while (bytesUsed > budgetBytes && leastRecentlyUsed.hasNext()) {
+            Bitmap tile = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            bytesUsed -= tile.getByteCount();
+        }
+    }
+
+
+    /** The zoom level whose scale is nearest the given one. */
+    static int toZoomLevel(float scale) {
+        // each level is √2 times the last, so the level is twice the scale's log to base 2
+        return (int) Math.round(2 * Math.log(scale) / Math.log(2));
+    }
+
+
+    static float toScale(int zoomLevel) {
+        return (float) Math.pow(2, zoomLevel / 2.0);
+    }
+
+
+    private static class TileKey {
+
+        private final int zoomLevel;
+        private final float scale;
+        private final int column;
+        private final int row;
+
+        TileKey(int zoomLevel, int column, int row) {
+            this.zoomLevel = zoomLevel;
+            this.scale = toScale(zoomLevel);
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TileKey)) {
+                return false;
+            }
+            TileKey key = (TileKey) other;
+            return key.zoomLevel == zoomLevel && key.column == column && key.row == row;
+        }
+
+        @Override
+        public int hashCode() {
+            return (zoomLevel * 31 + column) * 31 + row;
+        }
+    }
+
+}
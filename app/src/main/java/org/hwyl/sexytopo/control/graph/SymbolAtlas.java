@@ -0,0 +1,165 @@
+package org.hwyl.sexytopo.control.graph;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import org.hwyl.sexytopo.model.sketch.Colour;
+import org.hwyl.sexytopo.model.sketch.Symbol;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+
+/**
+ * Symbols drawn onto bitmaps, once for each symbol, colour and size, so that drawing a symbol
+ * on the graph is just copying a bitmap rather than drawing its (vector) drawable again every
+ * frame.
+ *
+ * Sizes go up in powers of two; a symbol is drawn from the bitmap at the next size up, scaled
+ * down to fit. Symbols bigger than the largest size are drawn straight from the drawable. The
+ * colour is the one the symbol is drawn in, so covers dark mode too. If the bitmaps go over
+ * the memory budget they're all thrown away and drawn again as needed.
+ */
+class SymbolAtlas {
+
+    private static final int SMALLEST_SIZE_POWER = 3; // 8 pixels
+    private static final int LARGEST_SIZE_POWER = 9; // 512 pixels
+    private static final int SIZE_COUNT = LARGEST_SIZE_POWER - SMALLEST_SIZE_POWER + 1;
+    private static final int LARGEST_SIZE = 1 << LARGEST_SIZE_POWER;
+
+    private static final long MAX_BUDGET_BYTES = 16 * 1024 * 1024;
+
+    private static final int COLOUR_COUNT = Colour.values().length;
+
+    private final long budgetBytes =
+            Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_BUDGET_BYTES);
+
+    // by symbol, then colour and size; each symbol's array is made when first needed
+    private final Map<Symbol, Bitmap[]> bitmaps = new EnumMap<>(Symbol.class);
+    private long bytesUsed = 0;
+
+    private final Map<Symbol, Drawable> drawables = new EnumMap<>(Symbol.class);
+    private final Map<Colour, PorterDuffColorFilter> colourFilters = new EnumMap<>(Colour.class);
+
+    private final Canvas bitmapCanvas = new Canvas();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF destination = new RectF();
+
+
+    /**
+     * Draws the symbol as a square of the given size (in pixels) centred on (x, y), turned
+     * clockwise by the angle (in degrees) if it's directional.
+     */
+    void draw(Canvas canvas, Symbol symbol, Colour colour, float x, float y, int size,
+              float angle, int alpha) {
+
+        boolean isRotated = symbol.isDirectional() && angle != 0;
+        if (isRotated) {
+            canvas.save();
+            canvas.rotate(angle, x, y);
+        }
+
+        float offset = size / 2f;
+        if (size > LARGEST_SIZE) {
+            drawFromDrawable(canvas, symbol, colour, x, y, size, alpha);
+        } else {
+            Bitmap bitmap = getBitmap(symbol, colour, size);
+            destination.set(x - offset, y - offset, x + offset, y + offset);
+            paint.setAlpha(alpha);
+            canvas.drawBitmap(bitmap, null, destination, paint);
+        }
+
+        if (isRotated) {
+            canvas.restore();
+        }
+    }
+
+
+    void clear() {
+        // not recycled, as a canvas drawn on earlier might not be done with them yet
+        bitmaps.clear();
+        bytesUsed = 0;
+    }
+
+
+    private void drawFromDrawable(Canvas canvas, Symbol symbol, Colour colour,
+                                  float x, float y, int size, int alpha) {
+        Drawable drawable = getDrawable(symbol);
+        int left = Math.round(x - size / 2f), top = Math.round(y - size / 2f);
+        drawable.setBounds(left, top, left + size, top + size);
+        drawable.setAlpha(alpha);
+        drawable.setColorFilter(getColourFilter(colour));
+        drawable.draw(canvas);
+    }
+
+
+    private Bitmap getBitmap(Symbol symbol, Colour colour, int size) {
+        int sizePower = SMALLEST_SIZE_POWER;
+        while ((1 << sizePower) < size) {
+            sizePower++;
+        }
+
+        int index = colour.ordinal() * SIZE_COUNT + (sizePower - SMALLEST_SIZE_POWER);
+        Bitmap bitmap = getSymbolBitmaps(symbol)[index];
+        if (bitmap == null) {
+            int bitmapSize = 1 << sizePower;
+            long bytes = (long) bitmapSize * bitmapSize * 4;
+            if (bytesUsed + bytes > budgetBytes) {
+                clear();
+            }
+            bitmap = createBitmap(symbol, colour, bitmapSize);
+            getSymbolBitmaps(symbol)[index] = bitmap;
+            bytesUsed += bytes;
+        }
+        return bitmap;
+    }
+
+
+    private Bitmap[] getSymbolBitmaps(Symbol symbol) {
+        Bitmap[] symbolBitmaps = bitmaps.get(symbol);
+        if (symbolBitmaps == null) {
+            symbolBitmaps = new Bitmap[COLOUR_COUNT * SIZE_COUNT];
+            bitmaps.put(symbol, symbolBitmaps);
+        }
+        return symbolBitmaps;
+    }
+
+
+    private Bitmap createBitmap(Symbol symbol, Colour colour, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Drawable drawable = getDrawable(symbol);
+        drawable.setBounds(0, 0, size, size);
+        drawable.setAlpha(0xff);
+        drawable.setColorFilter(getColourFilter(colour));
+        bitmapCanvas.setBitmap(bitmap);
+        drawable.draw(bitmapCanvas);
+        bitmapCanvas.setBitmap(null);
+        return bitmap;
+    }
+
+
+    private Drawable getDrawable(Symbol symbol) {
+        Drawable drawable = drawables.get(symbol);
+        if (drawable == null) {
+            drawable = symbol.createDrawable();
+            drawables.put(symbol, drawable);
+        }
+        return drawable;
+    }
+
+
+    private PorterDuffColorFilter getColourFilter(Colour colour) {
+        PorterDuffColorFilter filter = colourFilters.get(colour);
+        if (filter == null) {
+            filter = new PorterDuffColorFilter(colour.intValue, PorterDuff.Mode.SRC_IN);
+            colourFilters.put(colour, filter);
+        }
+        return filter;
+    }
+
+}
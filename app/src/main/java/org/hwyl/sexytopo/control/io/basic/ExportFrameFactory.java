@@ -1,5 +1,6 @@
 package org.hwyl.sexytopo.control.io.basic;
 
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.Space2DUtils;
 import org.hwyl.sexytopo.model.common.Frame;
 import org.hwyl.sexytopo.model.graph.Coord2D;
@@ -16,7 +17,7 @@ public class ExportFrameFactory {
 
         // Basic bounds are the union of the sketch and the survey data
         Sketch sketch = survey.getSketch(projectionType);
-        Space<Coord2D> projection = projectionType.project(survey);
+        Space<Coord2D> projection = ProjectionCache.getInstance().project(survey, projectionType);
         Frame sketchBox = Frame.from(sketch);
         Frame surveyDataBox = Space2DUtils.toFrame(projection);
         Frame export = sketchBox.union(surveyDataBox);
@@ -60,12 +60,12 @@ public class OldStyleLoader {
             Leg leg = (to == Survey.NULL_STATION)?
                     new Leg(distance, azimuth, inclination) :
                     new Leg(distance, azimuth, inclination, to, new Leg[]{});
-            from.addOnwardLeg(leg);
+            survey.addLeg(from, leg);
         } else if (stationsSoFar.contains(to)) { // backwards leg
             Leg leg = (from == Survey.NULL_STATION)?
                     new Leg(distance, azimuth, inclination) :
                     new Leg(distance, azimuth, inclination, from, new Leg[]{});
-            to.addOnwardLeg(leg.reverse());
+            survey.addLeg(to, leg.reverse());
         }
 
         // Bit of a hack; hopefully the last station processed will be the active one
@@ -6,6 +6,7 @@ import org.hwyl.sexytopo.control.activity.SexyTopoActivity;
 import org.hwyl.sexytopo.control.io.SurveyFile;
 import org.hwyl.sexytopo.model.sketch.Sketch;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.json.JSONException;
 
 import java.io.IOException;
@@ -14,27 +15,34 @@ import java.io.IOException;
 public class Saver {
 
     public static synchronized void save(Context context, Survey survey) throws Exception {
+        SurveySnapshot snapshot = survey.publishSnapshot();
         saveMetadata(context, survey, SurveyFile.METADATA.get(survey));
-        saveSurveyData(context, survey, SurveyFile.DATA.get(survey));
+        saveSurveyData(context, survey, snapshot, SurveyFile.DATA.get(survey));
         savePlanSketch(context, survey, SurveyFile.SKETCH_PLAN.get(survey));
         saveElevationSketch(context, survey, SurveyFile.SKETCH_EXT_ELEVATION.get(survey));
         survey.setSaved(true);
     }
 
+    /**
+     * Saves the survey's most recently published snapshot, so this can run in the background
+     * while more data is coming in.
+     */
     public static synchronized void autosave(Context context, Survey survey) throws Exception {
+        SurveySnapshot snapshot = survey.getLatestSnapshot();
         saveMetadata(context, survey, SurveyFile.METADATA.AUTOSAVE.get(survey));
-        saveSurveyData(context, survey, SurveyFile.DATA.AUTOSAVE.get(survey));
+        saveSurveyData(context, survey, snapshot, SurveyFile.DATA.AUTOSAVE.get(survey));
         savePlanSketch(context, survey, SurveyFile.SKETCH_PLAN.AUTOSAVE.get(survey));
         saveElevationSketch(context, survey, SurveyFile.SKETCH_EXT_ELEVATION.AUTOSAVE.get(survey));
         survey.setAutosaved(true);
     }
 
     private static void saveSurveyData(
-            Context context, Survey survey, SurveyFile surveyFile)
+            Context context, Survey survey, SurveySnapshot snapshot, SurveyFile surveyFile)
             throws IOException, JSONException {
         String versionName = SexyTopoActivity.getVersionName(context);
         int versionCode = SexyTopoActivity.getVersionCode(context);
-        String surveyText = SurveyJsonTranslater.toText(survey, versionName, versionCode);
+        String surveyText =
+                SurveyJsonTranslater.toText(survey, snapshot, versionName, versionCode);
         surveyFile.save(context, surveyText);
     }
 
@@ -11,6 +11,7 @@ import org.hwyl.sexytopo.model.graph.Direction;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.hwyl.sexytopo.model.survey.Trip;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -62,7 +63,15 @@ public class SurveyJsonTranslater {
 
     public static String toText(Survey survey, String versionName, int versionCode)
             throws JSONException {
-        return toJson(survey, versionName, versionCode).toString(SexyTopoConstants.JSON_INDENT);
+        return toText(survey, survey.publishSnapshot(), versionName, versionCode);
+    }
+
+
+    public static String toText(
+            Survey survey, SurveySnapshot snapshot, String versionName, int versionCode)
+            throws JSONException {
+        return toJson(survey, snapshot, versionName, versionCode)
+                .toString(SexyTopoConstants.JSON_INDENT);
     }
 
 
@@ -75,6 +84,13 @@ public class SurveyJsonTranslater {
 
     public static JSONObject toJson(Survey survey, String versionName, int versionCode)
             throws JSONException {
+        return toJson(survey, survey.publishSnapshot(), versionName, versionCode);
+    }
+
+
+    public static JSONObject toJson(
+            Survey survey, SurveySnapshot snapshot, String versionName, int versionCode)
+            throws JSONException {
 
         JSONObject json = new JSONObject();
         json.put(VERSION_NAME_TAG, versionName);
@@ -83,13 +99,15 @@ public class SurveyJsonTranslater {
 
         JSONArray stationArray = new JSONArray();
 
-        List<Leg> chronoList = survey.getAllLegsInChronoOrder();
+        List<Leg> chronoList = snapshot.getAllLegsInChronoOrder();
 
-        stationArray.put(toJson(survey.getOrigin(), chronoList));
+        Station origin = snapshot.getOrigin();
+        stationArray.put(toJson(origin, snapshot.getOnwardLegs(origin), chronoList));
 
         for (Leg leg : chronoList) {
             if (leg.hasDestination()) {
-                stationArray.put(toJson(leg.getDestination(), chronoList));
+                Station station = leg.getDestination();
+                stationArray.put(toJson(station, snapshot.getOnwardLegs(station), chronoList));
             }
         }
         json.put(STATIONS_TAG, stationArray);
@@ -141,6 +159,12 @@ public class SurveyJsonTranslater {
 
 
     public static JSONObject toJson(Station station, List<Leg> chronoList) throws JSONException {
+        return toJson(station, station.getOnwardLegs(), chronoList);
+    }
+
+
+    public static JSONObject toJson(Station station, List<Leg> onwardLegs, List<Leg> chronoList)
+            throws JSONException {
 
         JSONObject json = new JSONObject();
         json.put(STATION_NAME_TAG, station.getName());
@@ -148,7 +172,7 @@ public class SurveyJsonTranslater {
         json.put(COMMENT_TAG, station.getComment());
 
         JSONArray onwardLegsArray = new JSONArray();
-        for (Leg leg : station.getOnwardLegs()) {
+        for (Leg leg : onwardLegs) {
             int index = chronoList.indexOf(leg);
             onwardLegsArray.put(toJson(leg, index));
         }
@@ -251,6 +275,7 @@ public class SurveyJsonTranslater {
             survey.addLegRecord(leg);
         }
 
+        survey.invalidateIndex(); // legs were attached directly to the stations above
         survey.checkSurveyIntegrity();
     }
 
@@ -7,8 +7,8 @@ import org.hwyl.sexytopo.control.io.translation.Experimental;
 import org.hwyl.sexytopo.control.io.translation.SingleFileExporter;
 import org.hwyl.sexytopo.control.util.GraphToListTranslator;
 import org.hwyl.sexytopo.model.survey.Leg;
-import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -25,7 +25,7 @@ public class CompassExporter extends SingleFileExporter implements Experimental
 
     private static final DateFormat dateFormat = new SimpleDateFormat("MM dd yyyy");
     private static final GraphToListTranslator graphToListTranslator = new GraphToListTranslator();
-    private Station currentFrom;
+    private String currentFrom;
     private int splayCount;
 
     final public static double METERS_TO_FEET = 3.28084;
@@ -36,8 +36,9 @@ public class CompassExporter extends SingleFileExporter implements Experimental
      * @return
      */
     public String getContent(Survey survey) {
+        SurveySnapshot snapshot = survey.publishSnapshot();
         List<GraphToListTranslator.SurveyListEntry> data =
-                graphToListTranslator.toChronoListOfSurveyListEntries(survey);
+                graphToListTranslator.toChronoListOfSurveyListEntries(snapshot);
         String surveyDate = dateFormat.format(Calendar.getInstance().getTime());
 
         StringBuilder sb = new StringBuilder(1024);
@@ -52,8 +53,9 @@ public class CompassExporter extends SingleFileExporter implements Experimental
 
         for (GraphToListTranslator.SurveyListEntry entry : data) {
             Leg leg = entry.getLeg();
-            Station from = entry.getFrom();
-            String to = leg.hasDestination() ? leg.getDestination().toString() : this.splayStationFrom(from);
+            String from = snapshot.getName(entry.getFrom());
+            String to = leg.hasDestination() ?
+                    snapshot.getName(leg.getDestination()) : this.splayStationFrom(from);
             double dist = leg.getDistance() * METERS_TO_FEET;  // all Compass lengths are decimal feet!
             double azm = leg.getAzimuth();
             double inc = leg.getInclination();
@@ -98,7 +100,7 @@ public class CompassExporter extends SingleFileExporter implements Experimental
      * @param from
      * @return A station label of, for example, `A53ss003` for the third splay off station A53
      */
-    private String splayStationFrom(Station from) {
+    private String splayStationFrom(String from) {
         if (!from.equals(this.currentFrom)) {
             this.currentFrom = from;
             this.splayCount = 0;
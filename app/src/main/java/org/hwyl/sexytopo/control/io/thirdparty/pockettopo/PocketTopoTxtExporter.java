@@ -6,6 +6,7 @@ import org.hwyl.sexytopo.R;
 import org.hwyl.sexytopo.control.io.thirdparty.survex.SurvexExporter;
 import org.hwyl.sexytopo.control.io.translation.Experimental;
 import org.hwyl.sexytopo.control.io.translation.SingleFileExporter;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 import org.hwyl.sexytopo.model.graph.Line;
@@ -15,6 +16,7 @@ import org.hwyl.sexytopo.model.sketch.PathDetail;
 import org.hwyl.sexytopo.model.sketch.Sketch;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.hwyl.sexytopo.model.survey.Trip;
 
 import java.util.ArrayList;
@@ -42,35 +44,43 @@ public class PocketTopoTxtExporter extends SingleFileExporter implements Experim
 
         text += "DECLINATION\t0.00\n";
 
-        text += exportData(survey) + "\n";
+        SurveySnapshot snapshot = survey.publishSnapshot();
 
-        text += exportPlan(survey) + "\n";
+        text += exportData(snapshot) + "\n";
 
-        text += exportExtendedElevation(survey);
+        ProjectionCache.getInstance().projectAll(
+                survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+
+        text += exportPlan(survey, snapshot) + "\n";
+
+        text += exportExtendedElevation(survey, snapshot);
 
 
         return text;
     }
 
 
-    public static String exportData(Survey survey) {
+    public static String exportData(SurveySnapshot snapshot) {
         String data = "DATA\n";
-        data += new SurvexExporter().getContent(survey);
+        data += new SurvexExporter().getContent(snapshot);
         return data;
     }
 
 
-    public static String exportPlan(Survey survey) {
+    public static String exportPlan(Survey survey, SurveySnapshot snapshot) {
         String plan = "PLAN\n";
-        plan += exportStationCoords(Projection2D.PLAN.project(survey)) + "\n";
+        plan += exportStationCoords(snapshot,
+                ProjectionCache.getInstance().project(survey, Projection2D.PLAN)) + "\n";
         plan += exportSketch(survey.getPlanSketch()) + "\n";
         return plan;
     }
 
 
-    public static String exportExtendedElevation(Survey survey) {
+    public static String exportExtendedElevation(Survey survey, SurveySnapshot snapshot) {
         String plan = "ELEVATION\n";
-        plan += exportStationCoords(Projection2D.EXTENDED_ELEVATION.project(survey)) + "\n";
+        Space<Coord2D> projection =
+                ProjectionCache.getInstance().project(survey, Projection2D.EXTENDED_ELEVATION);
+        plan += exportStationCoords(snapshot, projection) + "\n";
         plan += exportSketch(survey.getElevationSketch()) + "\n";
         return plan;
     }
@@ -91,13 +101,13 @@ public class PocketTopoTxtExporter extends SingleFileExporter implements Experim
     }
 
 
-    public static String exportStationCoords(Space<Coord2D> space) {
+    public static String exportStationCoords(SurveySnapshot snapshot, Space<Coord2D> space) {
         List<String> lines = new ArrayList<>();
         lines.add("STATIONS");
         for (Map.Entry<Station, Coord2D> entry : space.getStationMap().entrySet()) {
             Coord2D coords = entry.getValue();
             Station station = entry.getKey();
-            lines.add(coords.x + "\t" + coords.y + "\t" + station.getName());
+            lines.add(coords.x + "\t" + coords.y + "\t" + snapshot.getName(station));
         }
 
         lines.add("SHOTS");
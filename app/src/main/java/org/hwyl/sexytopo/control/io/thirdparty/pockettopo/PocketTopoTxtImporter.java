@@ -6,6 +6,7 @@ import androidx.documentfile.provider.DocumentFile;
 
 import org.hwyl.sexytopo.control.io.IoUtils;
 import org.hwyl.sexytopo.control.io.translation.Importer;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.SurveyUpdater;
 import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.graph.Coord2D;
@@ -77,7 +78,7 @@ public class PocketTopoTxtImporter extends Importer {
             float distance = Float.parseFloat(fields[4]);
 
             if (firstStation) {
-                survey.getOrigin().setName(fromStationName);
+                survey.renameStation(survey.getOrigin(), fromStationName);
                 firstStation = false;
             }
 
@@ -98,14 +99,16 @@ public class PocketTopoTxtImporter extends Importer {
 
     private static Sketch getPlan(Survey survey, String fullText) {
         String text = getSection(fullText, "PLAN");
-        Space<Coord2D> projection = Projection2D.PLAN.project(survey);
+        Space<Coord2D> projection =
+                ProjectionCache.getInstance().project(survey, Projection2D.PLAN);
         Sketch plan = parseSketch(survey, text, projection);
         return plan;
     }
 
     private static Sketch getElevation(Survey survey, String fullText) {
         String text = getSection(fullText, "ELEVATION");
-        Space<Coord2D> projection = Projection2D.EXTENDED_ELEVATION.project(survey);
+        Space<Coord2D> projection =
+                ProjectionCache.getInstance().project(survey, Projection2D.EXTENDED_ELEVATION);
         Sketch elevation = parseSketch(survey, text, projection);
         return elevation;
     }
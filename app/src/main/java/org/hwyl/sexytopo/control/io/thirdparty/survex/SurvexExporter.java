@@ -7,6 +7,7 @@ import org.hwyl.sexytopo.control.io.thirdparty.survextherion.SurvexTherionUtil;
 import org.hwyl.sexytopo.control.io.translation.SingleFileExporter;
 import org.hwyl.sexytopo.control.util.GraphToListTranslator;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.util.List;
 
@@ -19,16 +20,20 @@ public class SurvexExporter extends SingleFileExporter {
             new GraphToListTranslator();
 
     public String getContent(Survey survey) {
+        return getContent(survey.publishSnapshot());
+    }
+
+    public String getContent(SurveySnapshot snapshot) {
 
         StringBuilder builder = new StringBuilder();
 
         builder.append("*alias station - ..\n\n");
 
         List<GraphToListTranslator.SurveyListEntry> list =
-                graphToListTranslator.toChronoListOfSurveyListEntries(survey);
+                graphToListTranslator.toChronoListOfSurveyListEntries(snapshot);
 
         for (GraphToListTranslator.SurveyListEntry entry : list) {
-            SurvexTherionUtil.formatEntry(builder, entry, COMMENT_CHAR);
+            SurvexTherionUtil.formatEntry(builder, snapshot, entry, COMMENT_CHAR);
             builder.append("\n");
         }
 
@@ -59,6 +59,8 @@ public class SurvexImporter extends Importer {
                 throw new Exception("Error importing this line: " + line);
             }
         }
+
+        survey.invalidateIndex(); // legs were attached directly to the stations
     }
 
     private static void addLegToSurvey(
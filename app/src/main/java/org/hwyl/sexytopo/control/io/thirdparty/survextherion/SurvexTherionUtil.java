@@ -3,6 +3,7 @@ package org.hwyl.sexytopo.control.io.thirdparty.survextherion;
 import org.hwyl.sexytopo.control.util.GraphToListTranslator;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.hwyl.sexytopo.model.table.TableCol;
 
 import java.util.Locale;
@@ -13,20 +14,21 @@ public class SurvexTherionUtil {
 
     public static void formatEntry(
             StringBuilder builder,
+            SurveySnapshot snapshot,
             GraphToListTranslator.SurveyListEntry entry,
             char commentChar) {
 
         Station from = entry.getFrom();
-        String fromName = from.getName();
+        String fromName = snapshot.getName(from);
 
         Leg leg = entry.getLeg();
         Station to = leg.getDestination();
-        String toName = to.getName();
+        String toName = snapshot.getName(to);
 
         if (leg.wasShotBackwards()) {
             leg = leg.reverse();
-            fromName = to.getName();
-            toName = from.getName();
+            fromName = snapshot.getName(to);
+            toName = snapshot.getName(from);
         }
 
         formatField(builder, fromName);
@@ -35,15 +37,16 @@ public class SurvexTherionUtil {
         formatField(builder, TableCol.AZIMUTH.format(leg.getAzimuth(), Locale.UK));
         formatField(builder, TableCol.INCLINATION.format(leg.getInclination(), Locale.UK));
 
-        if (leg.wasPromoted() || to.hasComment()) {
+        boolean hasComment = snapshot.hasComment(to);
+        if (leg.wasPromoted() || hasComment) {
             builder.append("\t").append(commentChar).append(" ");
             if (leg.wasPromoted()) {
                 builder.append(" ");
                 formatPromotedFrom(builder, leg.getPromotedFrom());
             }
-            if (to.hasComment()) {
+            if (hasComment) {
                 builder.append(" ");
-                formatComment(builder, to.getComment());
+                formatComment(builder, snapshot.getComment(to));
 
             }
         }
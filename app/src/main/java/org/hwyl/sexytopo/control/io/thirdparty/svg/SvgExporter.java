@@ -7,6 +7,7 @@ import org.hwyl.sexytopo.R;
 import org.hwyl.sexytopo.control.io.basic.ExportFrameFactory;
 import org.hwyl.sexytopo.control.io.translation.DoubleSketchFileExporter;
 import org.hwyl.sexytopo.control.util.GeneralPreferences;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.common.Frame;
 import org.hwyl.sexytopo.model.graph.Coord2D;
@@ -55,7 +56,7 @@ public class SvgExporter extends DoubleSketchFileExporter {
     public String getContent(Survey survey, Projection2D projectionType) throws Exception {
 
         Sketch sketch = survey.getSketch(projectionType);
-        Space<Coord2D> projection = projectionType.project(survey);
+        Space<Coord2D> projection = ProjectionCache.getInstance().project(survey, projectionType);
 
         Frame frame = ExportFrameFactory.getExportFrame(survey, projectionType);
         frame = ExportFrameFactory.addBorder(frame);
@@ -12,6 +12,7 @@ import org.hwyl.sexytopo.model.sketch.SymbolDetail;
 import org.hwyl.sexytopo.model.sketch.TextDetail;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,21 +30,22 @@ import java.util.Map;
 public class Th2Exporter {
 
     public static String getContent(
-        Survey survey, Projection2D projection, Space<Coord2D> space, String xviFilename,
-        Shape innerFrame, Shape outerFrame, float scale) {
+        Survey survey, SurveySnapshot snapshot, Projection2D projection, Space<Coord2D> space,
+        String xviFilename, Shape innerFrame, Shape outerFrame, float scale) {
         List<String> sections = new ArrayList<>();
         sections.add(TherionExporter.getEncodingText());
-        sections.add(getXviBlock(survey, space, xviFilename, outerFrame));
+        sections.add(getXviBlock(snapshot, space, xviFilename, outerFrame));
 
         Sketch sketch = survey.getSketch(projection);
         String scrapName = getScrapName(survey, projection);
-        sections.add(getScrap(scrapName, projection, sketch, space, innerFrame, scale));
+        sections.add(
+            getScrap(snapshot, scrapName, projection, sketch, space, innerFrame, scale));
         return TextTools.join("\n\n", sections);
     }
 
 
     public static String getXviBlock(
-        Survey survey, Space<Coord2D> space, String filename, Shape outerFrame) {
+        SurveySnapshot snapshot, Space<Coord2D> space, String filename, Shape outerFrame) {
 
         List<String> lines = new ArrayList<>();
 
@@ -63,13 +65,13 @@ public class Th2Exporter {
         //  <root> - root station name. Can be omitted.
         //  <filename> - name of image file
         //  0 {} - image identifiers, can be 0 {} for all images
-        Station origin = survey.getOrigin();
-        Coord2D originPos = space.getStationMap().get(survey.getOrigin());
+        Station origin = snapshot.getOrigin();
+        Coord2D originPos = space.getStationMap().get(origin);
         float xPos = originPos.x;
         float yPos = originPos.y;
         lines.add(getXviLine("xth_me_image_insert",
             "{" + xPos + " 1 1.0}",
-            "{" + yPos + " " + origin.getName() + "}",
+            "{" + yPos + " " + snapshot.getName(origin) + "}",
             "\"" + filename + "\"",
             0,
             "{}"));
@@ -90,11 +92,11 @@ public class Th2Exporter {
         return TextTools.join(joiner, name, projectionSuffix);
     }
 
-    public static String getScrap(String name, Projection2D projection, Sketch sketch,
-                                  Space<Coord2D> space, Shape frame, float scale) {
+    public static String getScrap(SurveySnapshot snapshot, String name, Projection2D projection,
+                                  Sketch sketch, Space<Coord2D> space, Shape frame, float scale) {
         List<String> lines = new ArrayList<>();
         lines.add(getStartScrapCommands(name, projection, frame));
-        lines.addAll(getScrapCommands(sketch, space, scale));
+        lines.addAll(getScrapCommands(snapshot, sketch, space, scale));
         lines.add("endscrap");
         return TextTools.join("\n\n", lines);
 
@@ -117,12 +119,14 @@ public class Th2Exporter {
 
     }
 
-    private static List<String> getScrapCommands(Sketch sketch, Space<Coord2D> space, float scale) {
+    private static List<String> getScrapCommands(
+            SurveySnapshot snapshot, Sketch sketch, Space<Coord2D> space, float scale) {
         List<String> commands = new ArrayList<>();
         for (Map.Entry<Station, Coord2D> entry : space.getStationMap().entrySet()) {
             Station station = entry.getKey();
             Coord2D coord = entry.getValue().scale(scale);
-            commands.add(getPoint(coord.x, coord.y, "station", "-name", station.getName()));
+            String name = snapshot.getName(station);
+            commands.add(getPoint(coord.x, coord.y, "station", "-name", name));
         }
 
         for (TextDetail textDetail : sketch.getTextDetails()) {
@@ -13,6 +13,7 @@ import org.hwyl.sexytopo.model.graph.Direction;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.hwyl.sexytopo.model.survey.Trip;
 
 import java.text.DateFormat;
@@ -28,17 +29,18 @@ public class ThExporter {
     public static final String TRIP_DATE_PATTERN = "yyyy.MM.dd";
 
 
-    public static String getContent(Context context, Survey survey, List<String> th2Files) {
+    public static String getContent(Context context, Survey survey, SurveySnapshot snapshot,
+                                    List<String> th2Files) {
         String text =
             TherionExporter.getEncodingText() + "\n" +
-            getSurveyText(context, survey, th2Files) + "\n";
+            getSurveyText(context, survey, snapshot, th2Files) + "\n";
 
         return text;
     }
 
-    public static String updateOriginalContent(
-            Survey survey, String originalFileContent, List<String> th2Files) {
-        String centrelineText = getCentrelineText(survey);
+    public static String updateOriginalContent(Survey survey, SurveySnapshot snapshot,
+                                               String originalFileContent, List<String> th2Files) {
+        String centrelineText = getCentrelineText(survey, snapshot);
         String newContent = replaceCentreline(originalFileContent, centrelineText);
 
         String inputText = getInputText(th2Files);
@@ -59,7 +61,8 @@ public class ThExporter {
         return newContent;
     }
 
-    private static String getSurveyText(Context context, Survey survey, List<String> th2Files) {
+    private static String getSurveyText(
+            Context context, Survey survey, SurveySnapshot snapshot, List<String> th2Files) {
 
         String attribution = "created with " +
                 SexyTopoConstants.APP_NAME + " " + SexyTopoActivity.getVersionName(context);
@@ -68,7 +71,7 @@ public class ThExporter {
             TherionExporter.COMMENT_CHAR + " " + attribution + "\n\n" +
             "survey " + survey.getName() + "\n\n" +
             getInputText(th2Files) + "\n\n" +
-            indent(getCentrelineText(survey)) + "\n\n" +
+            indent(getCentrelineText(survey, snapshot)) + "\n\n" +
             "endsurvey";
         return surveyText;
     }
@@ -81,11 +84,11 @@ public class ThExporter {
         return TextTools.join("\n", lines);
     }
 
-    private static String getCentrelineText(Survey survey) {
+    private static String getCentrelineText(Survey survey, SurveySnapshot snapshot) {
         String centrelineText =
             "\ncentreline\n\n" +
-            indent(getCentreline(survey)) + "\n\n" +
-            indent(getExtendedElevationExtensions(survey)) + "\n\n" +
+            indent(getCentreline(survey, snapshot)) + "\n\n" +
+            indent(getExtendedElevationExtensions(snapshot)) + "\n\n" +
             "endcentreline\n";
         return centrelineText;
     }
@@ -104,7 +107,7 @@ public class ThExporter {
         return indented.toString();
     }
 
-    private static String getCentreline(Survey survey) {
+    private static String getCentreline(Survey survey, SurveySnapshot snapshot) {
         GraphToListTranslator graphToListTranslator = new GraphToListTranslator();
 
         StringBuilder builder = new StringBuilder();
@@ -117,10 +120,11 @@ public class ThExporter {
         builder.append("data normal from to length compass clino\n\n");
 
         List<GraphToListTranslator.SurveyListEntry> list =
-                graphToListTranslator.toChronoListOfSurveyListEntries(survey);
+                graphToListTranslator.toChronoListOfSurveyListEntries(snapshot);
 
         for (GraphToListTranslator.SurveyListEntry entry : list) {
-            SurvexTherionUtil.formatEntry(builder, entry, TherionExporter.COMMENT_CHAR);
+            SurvexTherionUtil.formatEntry(
+                    builder, snapshot, entry, TherionExporter.COMMENT_CHAR);
             builder.append("\n");
         }
 
@@ -185,30 +189,33 @@ public class ThExporter {
         return "date " + dateString;
     }
 
-    private static String getExtendedElevationExtensions(Survey survey) {
+    private static String getExtendedElevationExtensions(SurveySnapshot snapshot) {
         StringBuilder builder = new StringBuilder();
-        generateExtendCommandsFromStation(builder, survey.getOrigin(), null);
+        generateExtendCommandsFromStation(builder, snapshot, snapshot.getOrigin(), null);
         return builder.toString();
     }
 
-    private static void generateExtendCommandsFromStation(
-            StringBuilder builder, Station station, Direction lastDirection) {
+    private static void generateExtendCommandsFromStation(StringBuilder builder,
+            SurveySnapshot snapshot, Station station, Direction lastDirection) {
 
-        Direction currentDirection = station.getExtendedElevationDirection();
+        Direction currentDirection = snapshot.getExtendedElevationDirection(station);
+        String name = snapshot.getName(station);
         if (lastDirection == null) {
-            builder.append(getExtendCommand(station, "start"));
+            builder.append(getExtendCommand(name, "start"));
         } else if (currentDirection != lastDirection) {
-            builder.append(getExtendCommand(station, currentDirection.name().toLowerCase()));
+            builder.append(getExtendCommand(name, currentDirection.name().toLowerCase()));
         }
 
-        for (Leg leg : station.getConnectedOnwardLegs()) {
-            generateExtendCommandsFromStation(
-                    builder, leg.getDestination(), station.getExtendedElevationDirection());
+        for (Leg leg : snapshot.getOnwardLegs(station)) {
+            if (leg.hasDestination()) {
+                generateExtendCommandsFromStation(
+                        builder, snapshot, leg.getDestination(), currentDirection);
+            }
         }
     }
 
-    private static String getExtendCommand(Station station, String direction) {
-        return "extend " + direction + " " + station.getName() + "\n";
+    private static String getExtendCommand(String stationName, String direction) {
+        return "extend " + direction + " " + stationName + "\n";
     }
 
 }
@@ -7,6 +7,7 @@ import org.hwyl.sexytopo.control.io.SurveyFile;
 import org.hwyl.sexytopo.control.io.basic.ExportFrameFactory;
 import org.hwyl.sexytopo.control.io.thirdparty.xvi.XviExporter;
 import org.hwyl.sexytopo.control.io.translation.Exporter;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.control.util.SpaceFlipper;
 import org.hwyl.sexytopo.control.util.TextTools;
 import org.hwyl.sexytopo.model.common.Frame;
@@ -15,6 +16,7 @@ import org.hwyl.sexytopo.model.graph.Projection2D;
 import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.sketch.Sketch;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -53,25 +55,31 @@ public class TherionExporter extends Exporter {
         th2Files.clear();
         readOriginalFilesIfPresent(context, survey);
 
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
         String thconfigContent = ThconfigExporter.getContent(survey);
         SurveyFile thconfig = getOutputFile(THCONFIG);
         thconfig.save(context, attribution + thconfigContent);
 
+        ProjectionCache.getInstance().projectAll(
+                survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+
         SurveyFile th2_plan_file = getOutputFile(TH2_PLAN);
         SurveyFile xvi_plan_file = getOutputFile(XVI_PLAN);
-        handleProjection(context, survey, Projection2D.PLAN,
+        handleProjection(context, survey, snapshot, Projection2D.PLAN,
                 th2_plan_file, xvi_plan_file, originalTh2PlanFileContent);
 
         SurveyFile th2_ee_file = getOutputFile(TH2_EE);
         SurveyFile xvi_ee_file = getOutputFile(XVI_EE);
-        handleProjection(context, survey, Projection2D.EXTENDED_ELEVATION,
+        handleProjection(context, survey, snapshot, Projection2D.EXTENDED_ELEVATION,
                 th2_ee_file, xvi_ee_file, originalTh2EeFileContent);
 
         String thContent;
         if (originalThFileContent == null) {
-            thContent = ThExporter.getContent(context, survey, th2Files);
+            thContent = ThExporter.getContent(context, survey, snapshot, th2Files);
         } else {
-            thContent = ThExporter.updateOriginalContent(survey, originalThFileContent, th2Files);
+            thContent = ThExporter.updateOriginalContent(
+                    survey, snapshot, originalThFileContent, th2Files);
         }
         SurveyFile th = getOutputFile(TH);
         th.save(context, attribution + thContent);
@@ -81,6 +89,7 @@ public class TherionExporter extends Exporter {
     private void handleProjection(
             Context context,
             Survey survey,
+            SurveySnapshot snapshot,
             Projection2D projectionType,
             SurveyFile th2File,
             SurveyFile xviFile,
@@ -89,7 +98,7 @@ public class TherionExporter extends Exporter {
 
         float scale = getScale();
 
-        Space<Coord2D> space = projectionType.project(survey);
+        Space<Coord2D> space = ProjectionCache.getInstance().project(survey, projectionType);
         space = SpaceFlipper.flipVertically(space);
         // Therion y-coordinates are inverse of SexyTopo's
         // (it would be more consistent to either do all the processing like scaling and flipping
@@ -112,11 +121,11 @@ public class TherionExporter extends Exporter {
 
         String content;
 
-        content = Th2Exporter.getContent(
-            survey, projectionType, space, xviFile.getFilename(), innerFrame, outerFrame, scale);
+        content = Th2Exporter.getContent(survey, snapshot, projectionType, space,
+            xviFile.getFilename(), innerFrame, outerFrame, scale);
         th2File.save(context, content);
 
-        String xviContent = XviExporter.getContent(sketch, space, scale, gridFrame);
+        String xviContent = XviExporter.getContent(snapshot, sketch, space, scale, gridFrame);
         xviFile.save(context, xviContent);
 
         th2Files.add(th2File.getFilename());
@@ -123,7 +123,7 @@ public class TherionImporter extends Importer {
                 String stationName = tokens[1];
                 Station station = survey.getStationByName(stationName);
 
-                SurveyUpdater.setDirectionOfSubtree(station, direction);
+                SurveyUpdater.setDirectionOfSubtree(survey, station, direction);
             }
 
         } catch (Exception exception) {
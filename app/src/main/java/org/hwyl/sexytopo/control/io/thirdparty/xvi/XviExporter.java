@@ -14,6 +14,7 @@ import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.sketch.PathDetail;
 import org.hwyl.sexytopo.model.sketch.Sketch;
 import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,28 +24,30 @@ import java.util.Map;
 
 public class XviExporter {
 
-    public static String getContent(Sketch sketch, Space<Coord2D> space, float scale,
-                                    Shape gridFrame) {
+    public static String getContent(SurveySnapshot snapshot, Sketch sketch, Space<Coord2D> space,
+                                    float scale, Shape gridFrame) {
         String text = field(GRIDS_COMMAND, "1 m");
-        text += multilineField(STATIONS_COMMAND, getStationsText(space, scale));
+        text += multilineField(STATIONS_COMMAND, getStationsText(snapshot, space, scale));
         text += multilineField(SHOT_COMMAND, getLegsText(space, scale));
         text += multilineField(SKETCHLINE_COMMAND, getSketchLinesText(sketch, scale));
         text += field(GRID_COMMAND, getGridText(gridFrame, scale));
         return text;
     }
 
-    private static String getStationsText(Space<Coord2D> space, double scale) {
+    private static String getStationsText(
+            SurveySnapshot snapshot, Space<Coord2D> space, double scale) {
         StringBuilder builder = new StringBuilder();
         for (Map.Entry<Station, Coord2D> entry: space.getStationMap().entrySet()) {
-            builder.append(getStationText(entry.getKey(), entry.getValue(), scale));
+            String name = snapshot.getName(entry.getKey());
+            builder.append(getStationText(name, entry.getValue(), scale));
         }
         return builder.toString();
     }
 
-    private static String getStationText(Station station, Coord2D coords, double scale) {
+    private static String getStationText(String name, Coord2D coords, double scale) {
         String x = TextTools.formatTo2dpWithDot(coords.x * scale);
         String y = TextTools.formatTo2dpWithDot(coords.y * scale);
-        return field("\t", TextTools.joinAll(" ", x, y, station.getName()));
+        return field("\t", TextTools.joinAll(" ", x, y, name));
     }
 
     private static String getLegsText(Space<Coord2D> space, double scale) {
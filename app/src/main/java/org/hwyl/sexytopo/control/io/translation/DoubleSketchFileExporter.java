@@ -4,6 +4,7 @@ import android.content.Context;
 
 import org.hwyl.sexytopo.SexyTopoConstants;
 import org.hwyl.sexytopo.control.io.SurveyFile;
+import org.hwyl.sexytopo.control.util.ProjectionCache;
 import org.hwyl.sexytopo.model.graph.Projection2D;
 import org.hwyl.sexytopo.model.survey.Survey;
 
@@ -13,6 +14,10 @@ import java.io.IOException;
 public abstract class DoubleSketchFileExporter extends Exporter {
 
     public void run(Context context, Survey survey) throws Exception {
+        // work both out together up front; getContent will then find them in the cache
+        ProjectionCache.getInstance().projectAll(
+                survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+
         String planContent = getContent(survey, Projection2D.PLAN);
         saveSketchFile(context, planContent, SexyTopoConstants.PLAN_SUFFIX);
         String eeContent = getContent(survey, Projection2D.EXTENDED_ELEVATION);
@@ -44,6 +44,17 @@ public class CohenSutherlandAlgorithm
         return (p1code != 0 && p2code != 0 && icode != 0);
     }
 
+    /* As above, for line(x1,y1 to x2,y2) and rect(left,top to right,bottom), on plain
+     * numbers so that nothing needs allocating per line
+     */
+    public static boolean whollyOutside(float x1, float y1, float x2, float y2,
+                                        float left, float top, float right, float bottom)
+    {
+        int p1code = bitcode(left, top, right, bottom, x1, y1);
+        int p2code = bitcode(left, top, right, bottom, x2, y2);
+        return (p1code & p2code) != 0;
+    }
+
     /* Determines if line(p1,p2) intersects in any way rect(cp1,cp2).
      * This is actually the first half of the Cohen-Sutherland algorithm;
      * the second half would be adjusting the edges to fit inside the
@@ -83,6 +94,22 @@ public class CohenSutherlandAlgorithm
                 left(p1, p2, p) | right(p1, p2, p));
     }
 
+    /* As above, for the point x,y and rect(left,top to right,bottom) */
+    public static int bitcode(float left, float top, float right, float bottom,
+                              float x, float y)
+    {
+        int code = 0;
+        if (y < top)
+            code |= 0x8;
+        if (y > bottom)
+            code |= 0x4;
+        if (x > right)
+            code |= 0x2;
+        if (x < left)
+            code |= 0x1;
+        return code;
+    }
+
     /* Gives the 2**3 bit (point above line(p1,p2)) */
     public static int above(Coord2D p1, Coord2D p2, Coord2D p)
     {
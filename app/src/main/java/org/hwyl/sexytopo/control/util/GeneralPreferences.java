@@ -165,6 +165,10 @@ public class GeneralPreferences {
         return getBoolean("pref_anti_alias", false);
     }
 
+    public static boolean isRenderThreadOn() {
+        return getBoolean("pref_render_thread", false);
+    }
+
     public static int getStationCrossDiameterPixels() {
         return getInt("pref_station_diameter", 16);
     }
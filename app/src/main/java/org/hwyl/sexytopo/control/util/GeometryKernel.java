@@ -0,0 +1,87 @@
+package org.hwyl.sexytopo.control.util;
+
+
+/**
+ * The basic geometry used when laying out and drawing a survey, on plain numbers rather than
+ * Legs and Coords, so that the tight loops built on it don't create (and validate) objects
+ * they only need for a moment. Results of more than one number are written into an array the
+ * caller passes in, which it can reuse.
+ *
+ * Angles are in degrees, as everywhere else; azimuths go clockwise from north (+y) and
+ * inclinations up from horizontal (+z).
+ */
+public final class GeometryKernel {
+
+    private GeometryKernel() {
+    }
+
+
+    /**
+     * Writes the x (east), y (north) and z (up) offsets of a shot into out[offset],
+     * out[offset + 1] and out[offset + 2].
+     */
+    public static void toCartesian(float distance, float azimuth, float inclination,
+                                   float[] out, int offset) {
+        float phi = (float) Math.toRadians(azimuth);
+        float theta = (float) Math.toRadians(inclination);
+        double horizontal = distance * Math.cos(theta);
+        out[offset] = (float) (horizontal * Math.sin(phi));
+        out[offset + 1] = (float) (horizontal * Math.cos(phi));
+        out[offset + 2] = (float) (distance * Math.sin(theta));
+    }
+
+
+    /** The azimuth turned by delta degrees, brought back into [0, 360). */
+    public static float rotateAzimuth(float azimuth, float delta) {
+        float rotated = azimuth + delta;
+        while (rotated < 0) {
+            rotated += 360;
+        }
+        return rotated % 360;
+    }
+
+
+    public static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+
+    /** The shortest distance from the point (x, y) to the line segment (x1, y1)-(x2, y2). */
+    public static float distanceToSegment(float x, float y,
+                                          float x1, float y1, float x2, float y2) {
+
+        // Adapted from a post on StackExchange by Joshua
+        // http://stackoverflow.com/questions/849211/shortest-distance-between-a-point-and-a-line-segment
+
+        float a = x - x1;
+        float b = y - y1;
+        float c = x2 - x1;
+        float d = y2 - y1;
+
+        float dot = a * c + b * d;
+        float lenSq = c * c + d * d;
+        float param = -1;
+
+        if (lenSq != 0) {
+            param = dot / lenSq;
+        }
+
+        float xx, yy;
+
+        if (param < 0) {
+            xx = x1;
+            yy = y1;
+        } else if (param > 1) {
+            xx = x2;
+            yy = y2;
+        } else {
+            xx = x1 + param * c;
+            yy = y1 + param * d;
+        }
+
+        return distance(x, y, xx, yy);
+    }
+
+}
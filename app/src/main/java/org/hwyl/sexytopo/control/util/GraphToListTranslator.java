@@ -3,10 +3,13 @@ package org.hwyl.sexytopo.control.util;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveySnapshot;
 import org.hwyl.sexytopo.model.table.TableCol;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,32 +19,71 @@ public class GraphToListTranslator {
 
 
     public List<SurveyListEntry> toListOfSurveyListEntries(Survey survey) {
-        return createListOfEntriesFromStation(survey.getOrigin());
+        return createListOfEntriesFromStation(survey.getOrigin(), null);
     }
 
 
     public List<SurveyListEntry> toChronoListOfSurveyListEntries(Survey survey) {
-        final List<Leg> chronoLegs = survey.getAllLegsInChronoOrder();
-        List<SurveyListEntry> entries = toListOfSurveyListEntries(survey);
+        return sortChronologically(
+                toListOfSurveyListEntries(survey), survey.getAllLegsInChronoOrder());
+    }
+
+
+    /** As for a survey, but reading the survey as it was when the snapshot was taken. */
+    public List<SurveyListEntry> toListOfSurveyListEntries(SurveySnapshot snapshot) {
+        return createListOfEntriesFromStation(snapshot.getOrigin(), snapshot);
+    }
+
+
+    public List<SurveyListEntry> toChronoListOfSurveyListEntries(SurveySnapshot snapshot) {
+        return sortChronologically(
+                toListOfSurveyListEntries(snapshot), snapshot.getAllLegsInChronoOrder());
+    }
+
+
+    private static List<SurveyListEntry> sortChronologically(
+            List<SurveyListEntry> entries, final List<Leg> chronoLegs) {
         Collections.sort(entries, (e0, e1) ->
                 chronoLegs.indexOf(e0.leg) - chronoLegs.indexOf(e1.leg));
         return entries;
     }
 
 
-    private List<SurveyListEntry> createListOfEntriesFromStation(Station from) {
+    /** Reads the stations' legs from the snapshot if there is one, otherwise as they are now. */
+    private List<SurveyListEntry> createListOfEntriesFromStation(
+            Station root, SurveySnapshot snapshot) {
 
         List<SurveyListEntry> list = new ArrayList<>();
 
-        for (Leg leg : from.getUnconnectedOnwardLegs()) {
-            SurveyListEntry entry = new SurveyListEntry(from, leg);
-            list.add(entry);
-        }
-
-        for (Leg leg : from.getConnectedOnwardLegs()) {
-            SurveyListEntry entry = new SurveyListEntry(from, leg);
-            list.add(entry);
-            list.addAll(createListOfEntriesFromStation(leg.getDestination()));
+        // holds entries still to be emitted and stations still to be expanded, interleaved so
+        // that each connected leg is followed by everything beyond it
+        Deque<Object> toProcess = new ArrayDeque<>();
+        toProcess.push(root);
+
+        while (!toProcess.isEmpty()) {
+            Object next = toProcess.pop();
+            if (next instanceof SurveyListEntry) {
+                list.add((SurveyListEntry) next);
+                continue;
+            }
+
+            Station from = (Station) next;
+            List<Leg> onwardLegs =
+                    (snapshot == null)? from.getOnwardLegs() : snapshot.getOnwardLegs(from);
+
+            for (Leg leg : onwardLegs) {
+                if (!leg.hasDestination()) {
+                    list.add(new SurveyListEntry(from, leg));
+                }
+            }
+
+            for (int i = onwardLegs.size() - 1; i >= 0; i--) {
+                Leg leg = onwardLegs.get(i);
+                if (leg.hasDestination()) {
+                    toProcess.push(leg.getDestination());
+                    toProcess.push(new SurveyListEntry(from, leg));
+                }
+            }
         }
 
         return list;
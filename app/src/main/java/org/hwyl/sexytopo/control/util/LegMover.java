@@ -4,35 +4,41 @@ import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 public class LegMover {
 
     public static List<Station> getValidDestinations(Survey survey, Leg leg) {
 
-        List<Station> stations = survey.getAllStations();
+        Set<Station> invalidStations = new HashSet<>();
 
         Station originatingStation = survey.getOriginatingStation(leg);
-        stations.remove(originatingStation);
+        invalidStations.add(originatingStation);
 
-        removeDownstreamStations(leg, stations);
+        addDownstreamStations(leg, invalidStations);
+
+        List<Station> stations = new ArrayList<>();
+        for (Station station : SurveyTools.stations(survey.getOrigin())) {
+            if (!invalidStations.contains(station)) {
+                stations.add(station);
+            }
+        }
         return stations;
     }
 
-    private static void removeDownstreamStations(Leg leg, List<Station> stations) {
+    private static void addDownstreamStations(Leg leg, Set<Station> stations) {
 
         if (!leg.hasDestination()) {
             return;
         }
 
-        Station station = leg.getDestination();
-        stations.remove(station);
-
-        for (Leg onwardLeg : station.getConnectedOnwardLegs()) {
-            removeDownstreamStations(onwardLeg, stations);
+        for (Station station : SurveyTools.stations(leg.getDestination())) {
+            stations.add(station);
         }
-
     }
 
 }
@@ -0,0 +1,665 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyConnection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The legs of a survey, and of every survey connected to it, as a network of measured vectors
+ * between nodes. Stations joined by a survey connection are the same point so share a node.
+ *
+ * The network is adjusted by least squares, each leg weighted by the inverse of its length
+ * (the usual assumption that errors build up with distance). Only loops need solving for:
+ * anything hanging off a loop just follows its measurements, and a run of stations between
+ * two junctions takes its share of the misclosure in proportion to length. So the solver
+ * (preconditioned conjugate gradients on the weighted Laplacian) only sees the junctions,
+ * which keeps it quick even for big networks. A survey with no loops comes out exactly as
+ * measured.
+ */
+class LegNetwork {
+
+    // stop zero-length legs getting an infinite weight
+    private static final double MIN_LEG_LENGTH = 0.01;
+
+    private static final double SOLVER_TOLERANCE = 1e-10;
+
+    private final List<Survey> surveys = new ArrayList<>();
+    private final List<Station> stations = new ArrayList<>();
+    private final Map<Station, Integer> stationIndices = new IdentityHashMap<>();
+    private int[] stationNodes;
+
+    private int nodeCount;
+    private int fixedNode;
+
+    private int edgeCount = 0;
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private double[] edgeVectors = new double[48]; // x, y, z for each edge
+    private final float[] vector = new float[3]; // for working out each edge's vector
+    private double[] edgeVariances = new double[16];
+
+    // incident edges of each node, in compressed rows
+    private int[] adjacencyStart;
+    private int[] adjacentEdges;
+
+
+    LegNetwork(Survey root) {
+        List<Station[]> joins = new ArrayList<>();
+        List<Leg> legs = new ArrayList<>();
+        List<Station> legStarts = new ArrayList<>();
+
+        Set<Survey> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Survey> toVisit = new ArrayDeque<>();
+        toVisit.add(root);
+        visited.add(root);
+
+        while (!toVisit.isEmpty()) {
+            Survey survey = toVisit.remove();
+            surveys.add(survey);
+
+            for (Station station : survey.getAllStations()) {
+                addStation(station);
+                for (Leg leg : station.getOnwardLegs()) {
+                    if (leg.hasDestination()) {
+                        legs.add(leg);
+                        legStarts.add(station);
+                    }
+                }
+            }
+
+            Map<Station, Set<SurveyConnection>> connections = survey.getConnectedSurveys();
+            for (Map.Entry<Station, Set<SurveyConnection>> entry : connections.entrySet()) {
+                for (SurveyConnection connection : entry.getValue()) {
+                    joins.add(new Station[]{entry.getKey(), connection.stationInOtherSurvey});
+                    if (!visited.contains(connection.otherSurvey)) {
+                        visited.add(connection.otherSurvey);
+                        toVisit.add(connection.otherSurvey);
+                    }
+                }
+            }
+        }
+
+        assignNodes(joins);
+        fixedNode = getNode(root.getOrigin());
+
+        for (int i = 0; i < legs.size(); i++) {
+            addEdge(legStarts.get(i), legs.get(i));
+        }
+        buildAdjacency();
+    }
+
+
+    List<Survey> getSurveys() {
+        return surveys;
+    }
+
+
+    List<Station> getStations() {
+        return stations;
+    }
+
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+
+    /** The node the station is part of, or -1 if it isn't in the network. */
+    int getNode(Station station) {
+        Integer index = stationIndices.get(station);
+        return index == null? -1 : stationNodes[index];
+    }
+
+
+    /**
+     * Works out the adjusted position of every node, returned as x, y, z for each in turn. The
+     * origin of the root survey stays at the origin. Known positions can be passed in (indexed
+     * the same way, NaN where unknown) as a starting point for the solver.
+     */
+    double[] adjust(double[] startingPositions) {
+        int[] degrees = new int[nodeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            degrees[edgeFrom[e]]++;
+            degrees[edgeTo[e]]++;
+        }
+
+        boolean[] pruned = new boolean[nodeCount];
+        boolean[] deadEdges = new boolean[edgeCount];
+        int[] prunedNodes = new int[nodeCount];
+        int[] prunedVia = new int[nodeCount];
+        int prunedCount = pruneLeaves(degrees, pruned, deadEdges, prunedNodes, prunedVia);
+
+        boolean[] isJunction = new boolean[nodeCount];
+        int[] junctionIndices = new int[nodeCount];
+        int junctionCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            junctionIndices[node] = -1;
+            boolean isLinked = degrees[node] > 0;
+            if (node == fixedNode || (!pruned[node] && isLinked && degrees[node] != 2)) {
+                isJunction[node] = true;
+                if (node != fixedNode) {
+                    junctionIndices[node] = junctionCount++;
+                }
+            }
+        }
+
+        List<Chain> chains = findChains(isJunction, deadEdges);
+
+        double[] positions = new double[nodeCount * 3];
+        if (junctionCount > 0) {
+            double[] initial = startingPositions;
+            if (initial == null || hasGapsInJunctions(initial, isJunction)) {
+                initial = layOutAlongSpanningTree(startingPositions);
+            }
+            solveJunctions(chains, junctionIndices, junctionCount, initial, positions);
+        }
+
+        for (Chain chain : chains) {
+            chain.distributeMisclosure(positions);
+        }
+
+        for (int i = prunedCount - 1; i >= 0; i--) {
+            int node = prunedNodes[i];
+            int edge = prunedVia[i];
+            int neighbour = otherEnd(edge, node);
+            double sign = (edgeTo[edge] == node)? 1 : -1;
+            for (int axis = 0; axis < 3; axis++) {
+                positions[node * 3 + axis] =
+                        positions[neighbour * 3 + axis] + sign * edgeVectors[edge * 3 + axis];
+            }
+        }
+
+        return positions;
+    }
+
+
+    private void addStation(Station station) {
+        if (!stationIndices.containsKey(station)) {
+            stationIndices.put(station, stations.size());
+            stations.add(station);
+        }
+    }
+
+
+    private void assignNodes(List<Station[]> joins) {
+        int[] parents = new int[stations.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        for (Station[] join : joins) {
+            Integer first = stationIndices.get(join[0]);
+            Integer second = stationIndices.get(join[1]);
+            if (first != null && second != null) {
+                parents[find(parents, first)] = find(parents, second);
+            }
+        }
+
+        stationNodes = new int[stations.size()];
+        int[] rootNodes = new int[stations.size()];
+        Arrays.fill(rootNodes, -1);
+        nodeCount = 0;
+        for (int i = 0; i < stationNodes.length; i++) {
+            int root = find(parents, i);
+            if (rootNodes[root] < 0) {
+                rootNodes[root] = nodeCount++;
+            }
+            stationNodes[i] = rootNodes[root];
+        }
+    }
+
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+
+    private void addEdge(Station from, Leg leg) {
+        int fromNode = getNode(from);
+        int toNode = getNode(leg.getDestination());
+        if (fromNode < 0 || toNode < 0 || fromNode == toNode) {
+            return; // nothing to adjust
+        }
+
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeVectors = Arrays.copyOf(edgeVectors, capacity * 3);
+            edgeVariances = Arrays.copyOf(edgeVariances, capacity);
+        }
+
+        GeometryKernel.toCartesian(
+                leg.getDistance(), leg.getAzimuth(), leg.getInclination(), vector, 0);
+        edgeFrom[edgeCount] = fromNode;
+        edgeTo[edgeCount] = toNode;
+        edgeVectors[edgeCount * 3] = vector[0];
+        edgeVectors[edgeCount * 3 + 1] = vector[1];
+        edgeVectors[edgeCount * 3 + 2] = vector[2];
+        edgeVariances[edgeCount] = Math.max(leg.getDistance(), MIN_LEG_LENGTH);
+        edgeCount++;
+    }
+
+
+    private void buildAdjacency() {
+        adjacencyStart = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            adjacencyStart[edgeFrom[e] + 1]++;
+            adjacencyStart[edgeTo[e] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            adjacencyStart[node + 1] += adjacencyStart[node];
+        }
+
+        adjacentEdges = new int[edgeCount * 2];
+        int[] filled = new int[nodeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int from = edgeFrom[e];
+            int to = edgeTo[e];
+            adjacentEdges[adjacencyStart[from] + filled[from]++] = e;
+            adjacentEdges[adjacencyStart[to] + filled[to]++] = e;
+        }
+    }
+
+
+    private int otherEnd(int edge, int node) {
+        return edgeFrom[edge] == node? edgeTo[edge] : edgeFrom[edge];
+    }
+
+
+    /**
+     * Repeatedly strips off nodes with only one edge, recording them (and the edge) in the
+     * order removed. What's left is the loops plus whatever links them to the fixed node.
+     */
+    private int pruneLeaves(int[] degrees, boolean[] pruned, boolean[] deadEdges,
+                            int[] prunedNodes, int[] prunedVia) {
+        int count = 0;
+        Deque<Integer> leaves = new ArrayDeque<>();
+        for (int node = 0; node < nodeCount; node++) {
+            if (degrees[node] == 1 && node != fixedNode) {
+                leaves.add(node);
+            }
+        }
+
+        while (!leaves.isEmpty()) {
+            int node = leaves.remove();
+            int edge = -1;
+            for (int i = adjacencyStart[node]; i < adjacencyStart[node + 1]; i++) {
+                if (!deadEdges[adjacentEdges[i]]) {
+                    edge = adjacentEdges[i];
+                    break;
+                }
+            }
+            if (edge < 0) {
+                continue; // cut off from everything else; can't be placed
+            }
+
+            pruned[node] = true;
+            deadEdges[edge] = true;
+            degrees[node] = 0;
+            prunedNodes[count] = node;
+            prunedVia[count] = edge;
+            count++;
+
+            int neighbour = otherEnd(edge, node);
+            degrees[neighbour]--;
+            if (degrees[neighbour] == 1 && neighbour != fixedNode) {
+                leaves.add(neighbour);
+            }
+        }
+
+        return count;
+    }
+
+
+    /** Splits what's left after pruning into runs of edges from junction to junction. */
+    private List<Chain> findChains(boolean[] isJunction, boolean[] deadEdges) {
+        List<Chain> chains = new ArrayList<>();
+        boolean[] used = deadEdges.clone();
+
+        for (int start = 0; start < nodeCount; start++) {
+            if (!isJunction[start]) {
+                continue;
+            }
+            for (int i = adjacencyStart[start]; i < adjacencyStart[start + 1]; i++) {
+                int edge = adjacentEdges[i];
+                if (used[edge]) {
+                    continue;
+                }
+
+                Chain chain = new Chain(start);
+                int node = start;
+                while (true) {
+                    used[edge] = true;
+                    chain.add(edge, node);
+                    node = otherEnd(edge, node);
+                    if (isJunction[node]) {
+                        break;
+                    }
+                    edge = nextEdge(node, edge, used);
+                }
+                chain.end = node;
+                chains.add(chain);
+            }
+        }
+        return chains;
+    }
+
+
+    private int nextEdge(int node, int arrivedBy, boolean[] used) {
+        for (int i = adjacencyStart[node]; i < adjacencyStart[node + 1]; i++) {
+            int edge = adjacentEdges[i];
+            if (edge != arrivedBy && !used[edge]) {
+                return edge;
+            }
+        }
+        throw new IllegalStateException("Run of legs ended away from a junction");
+    }
+
+
+    private boolean hasGapsInJunctions(double[] positions, boolean[] isJunction) {
+        for (int node = 0; node < nodeCount; node++) {
+            if (isJunction[node] && Double.isNaN(positions[node * 3])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Unadjusted positions, found by walking out from the fixed node; used to start off the
+     * solver. Any known positions passed in are kept.
+     */
+    private double[] layOutAlongSpanningTree(double[] known) {
+        double[] positions = new double[nodeCount * 3];
+        boolean[] placed = new boolean[nodeCount];
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        placed[fixedNode] = true;
+        toVisit.add(fixedNode);
+
+        while (!toVisit.isEmpty()) {
+            int node = toVisit.remove();
+            for (int i = adjacencyStart[node]; i < adjacencyStart[node + 1]; i++) {
+                int edge = adjacentEdges[i];
+                int next = otherEnd(edge, node);
+                if (placed[next]) {
+                    continue;
+                }
+                placed[next] = true;
+                double sign = (edgeTo[edge] == next)? 1 : -1;
+                for (int axis = 0; axis < 3; axis++) {
+                    int index = next * 3 + axis;
+                    if (known != null && !Double.isNaN(known[index])) {
+                        positions[index] = known[index];
+                    } else {
+                        positions[index] =
+                                positions[node * 3 + axis] + sign * edgeVectors[edge * 3 + axis];
+                    }
+                }
+                toVisit.add(next);
+            }
+        }
+        return positions;
+    }
+
+
+    /**
+     * Solves the normal equations for the junctions, with each run between them treated as a
+     * single measurement. The matrix is the same for every axis so is only built once.
+     */
+    private void solveJunctions(List<Chain> chains, int[] junctionIndices, int junctionCount,
+                                double[] initial, double[] positions) {
+
+        SparseMatrix matrix = new SparseMatrix(junctionCount, chains.size() * 2);
+        double[][] rhs = new double[3][junctionCount];
+
+        for (Chain chain : chains) {
+            if (chain.start == chain.end) {
+                continue; // a loop back to the same junction can't move it
+            }
+            double weight = 1 / chain.variance;
+            int a = junctionIndices[chain.start];
+            int b = junctionIndices[chain.end];
+            if (a >= 0) {
+                matrix.addToDiagonal(a, weight);
+            }
+            if (b >= 0) {
+                matrix.addToDiagonal(b, weight);
+            }
+            if (a >= 0 && b >= 0) {
+                matrix.addOffDiagonal(a, b, -weight);
+                matrix.addOffDiagonal(b, a, -weight);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                double delta = weight * chain.vector[axis];
+                if (a >= 0) {
+                    rhs[axis][a] -= delta;
+                }
+                if (b >= 0) {
+                    rhs[axis][b] += delta;
+                }
+            }
+        }
+        matrix.compress();
+
+        double[] solution = new double[junctionCount];
+        for (int axis = 0; axis < 3; axis++) {
+            for (int node = 0; node < nodeCount; node++) {
+                int j = junctionIndices[node];
+                if (j >= 0) {
+                    solution[j] = initial[node * 3 + axis];
+                }
+            }
+            matrix.solve(rhs[axis], solution);
+            for (int node = 0; node < nodeCount; node++) {
+                int j = junctionIndices[node];
+                if (j >= 0) {
+                    positions[node * 3 + axis] = solution[j];
+                }
+            }
+        }
+    }
+
+
+    /** A run of edges between two junctions, passing only through nodes with two edges. */
+    private class Chain {
+        final int start;
+        int end;
+        int length = 0;
+        int[] edges = new int[4];
+        double[] signs = new double[4];
+        final double[] vector = new double[3];
+        double variance = 0;
+
+        Chain(int start) {
+            this.start = start;
+        }
+
+        void add(int edge, int from) {
+            if (length == edges.length) {
+                edges = Arrays.copyOf(edges, length * 2);
+                signs = Arrays.copyOf(signs, length * 2);
+            }
+            double sign = (edgeFrom[edge] == from)? 1 : -1;
+            edges[length] = edge;
+            signs[length] = sign;
+            length++;
+            for (int axis = 0; axis < 3; axis++) {
+                vector[axis] += sign * edgeVectors[edge * 3 + axis];
+            }
+            variance += edgeVariances[edge];
+        }
+
+        /** Places the nodes along the run, sharing out the misclosure in proportion to length. */
+        void distributeMisclosure(double[] positions) {
+            double[] misclosure = new double[3];
+            for (int axis = 0; axis < 3; axis++) {
+                misclosure[axis] = positions[end * 3 + axis] -
+                        (positions[start * 3 + axis] + vector[axis]);
+            }
+
+            int node = start;
+            double[] position = new double[3];
+            System.arraycopy(positions, start * 3, position, 0, 3);
+            double varianceSoFar = 0;
+            for (int i = 0; i < length - 1; i++) { // the last edge ends at a junction
+                int edge = edges[i];
+                node = otherEnd(edge, node);
+                varianceSoFar += edgeVariances[edge];
+                double share = varianceSoFar / variance;
+                for (int axis = 0; axis < 3; axis++) {
+                    position[axis] += signs[i] * edgeVectors[edge * 3 + axis];
+                    positions[node * 3 + axis] = position[axis] + misclosure[axis] * share;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A symmetric positive definite matrix stored by rows (entries for the same column are
+     * allowed to repeat), solved by conjugate gradients with a diagonal preconditioner.
+     */
+    private static class SparseMatrix {
+        private final int size;
+        private final double[] diagonal;
+        private int entryCount = 0;
+        private int[] entryRows;
+        private int[] entryColumns;
+        private double[] entryValues;
+
+        private int[] rowStart;
+        private int[] columns;
+        private double[] values;
+
+        SparseMatrix(int size, int expectedEntries) {
+            this.size = size;
+            diagonal = new double[size];
+            int capacity = Math.max(expectedEntries, 4);
+            entryRows = new int[capacity];
+            entryColumns = new int[capacity];
+            entryValues = new double[capacity];
+        }
+
+        void addToDiagonal(int row, double value) {
+            diagonal[row] += value;
+        }
+
+        void addOffDiagonal(int row, int column, double value) {
+            if (entryCount == entryRows.length) {
+                int capacity = entryCount * 2;
+                entryRows = Arrays.copyOf(entryRows, capacity);
+                entryColumns = Arrays.copyOf(entryColumns, capacity);
+                entryValues = Arrays.copyOf(entryValues, capacity);
+            }
+            entryRows[entryCount] = row;
+            entryColumns[entryCount] = column;
+            entryValues[entryCount] = value;
+            entryCount++;
+        }
+
+        void compress() {
+            rowStart = new int[size + 1];
+            for (int i = 0; i < entryCount; i++) {
+                rowStart[entryRows[i] + 1]++;
+            }
+            for (int row = 0; row < size; row++) {
+                rowStart[row + 1] += rowStart[row];
+            }
+            columns = new int[entryCount];
+            values = new double[entryCount];
+            int[] filled = new int[size];
+            for (int i = 0; i < entryCount; i++) {
+                int row = entryRows[i];
+                int slot = rowStart[row] + filled[row]++;
+                columns[slot] = entryColumns[i];
+                values[slot] = entryValues[i];
+            }
+            entryRows = null;
+            entryColumns = null;
+            entryValues = null;
+        }
+
+        private void multiply(double[] vector, double[] result) {
+            for (int row = 0; row < size; row++) {
+                double sum = diagonal[row] * vector[row];
+                for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+                    sum += values[i] * vector[columns[i]];
+                }
+                result[row] = sum;
+            }
+        }
+
+        /** Solves in place, starting from whatever is in solution already. */
+        void solve(double[] rhs, double[] solution) {
+            double[] residual = new double[size];
+            double[] preconditioned = new double[size];
+            double[] direction = new double[size];
+            double[] product = new double[size];
+
+            multiply(solution, product);
+            double rhsNorm = 0;
+            for (int i = 0; i < size; i++) {
+                residual[i] = rhs[i] - product[i];
+                rhsNorm += rhs[i] * rhs[i];
+            }
+            double tolerance = SOLVER_TOLERANCE * SOLVER_TOLERANCE * Math.max(rhsNorm, 1);
+
+            double rho = 0;
+            for (int i = 0; i < size; i++) {
+                preconditioned[i] = residual[i] / diagonal[i];
+                direction[i] = preconditioned[i];
+                rho += residual[i] * preconditioned[i];
+            }
+
+            for (int iteration = 0; iteration < size * 2 + 10; iteration++) {
+                double residualNorm = 0;
+                for (int i = 0; i < size; i++) {
+                    residualNorm += residual[i] * residual[i];
+                }
+                if (residualNorm <= tolerance) {
+                    return;
+                }
+
+                multiply(direction, product);
+                double curvature = 0;
+                for (int i = 0; i < size; i++) {
+                    curvature += direction[i] * product[i];
+                }
+                double step = rho / curvature;
+
+                double nextRho = 0;
+                for (int i = 0; i < size; i++) {
+                    solution[i] += step * direction[i];
+                    residual[i] -= step * product[i];
+                    preconditioned[i] = residual[i] / diagonal[i];
+                    nextRho += residual[i] * preconditioned[i];
+                }
+
+                double beta = nextRho / rho;
+                rho = nextRho;
+                for (int i = 0; i < size; i++) {
+                    direction[i] = preconditioned[i] + beta * direction[i];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.Coord3D;
+import org.hwyl.sexytopo.model.graph.Line;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Lays out a survey in 3D with loop misclosures shared out by least squares (see LegNetwork),
+ * as an alternative to the plain layout from Space3DTransformer. Loops can only be closed
+ * through survey connections, so the space covers every survey connected to the one asked for.
+ *
+ * Like Space3DTransformer, the last result is kept: new shots (which can only extend the
+ * network, not close a loop) are added to it directly and anything else is re-solved, starting
+ * from the previous answer. The space returned is updated in place by later calls for the
+ * same survey, so shouldn't be changed or held on to.
+ */
+public class NetworkAdjuster {
+
+    private Survey cachedSurvey = null;
+    private final Map<Survey, Long> cachedRevisions = new IdentityHashMap<>();
+    private Space<Coord3D> cachedSpace = null;
+
+
+    public synchronized Space<Coord3D> adjust(Survey survey) {
+        if (survey == cachedSurvey && areOtherSurveysUnchanged()) {
+            List<SurveyChange> changes = survey.getChangesSince(cachedRevisions.get(survey));
+            if (changes != null && applyChanges(survey, cachedSpace, changes)) {
+                cachedRevisions.put(survey, survey.getRevision());
+                return cachedSpace;
+            }
+        }
+
+        Space<Coord3D> previous = (survey == cachedSurvey)? cachedSpace : null;
+        LegNetwork network = new LegNetwork(survey);
+        double[] positions = network.adjust(getStartingPositions(network, previous));
+        cachedSpace = createSpace(network, positions);
+
+        cachedSurvey = survey;
+        cachedRevisions.clear();
+        for (Survey included : network.getSurveys()) {
+            cachedRevisions.put(included, included.getRevision());
+        }
+        return cachedSpace;
+    }
+
+
+    private boolean areOtherSurveysUnchanged() {
+        for (Map.Entry<Survey, Long> entry : cachedRevisions.entrySet()) {
+            Survey survey = entry.getKey();
+            if (survey != cachedSurvey && survey.getRevision() != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static double[] getStartingPositions(LegNetwork network, Space<Coord3D> previous) {
+        if (previous == null) {
+            return null;
+        }
+
+        double[] positions = new double[network.getNodeCount() * 3];
+        Arrays.fill(positions, Double.NaN);
+        Map<Station, Coord3D> stationMap = previous.getStationMap();
+        for (Station station : network.getStations()) {
+            Coord3D coord = stationMap.get(station);
+            if (coord != null) {
+                int node = network.getNode(station);
+                positions[node * 3] = coord.x;
+                positions[node * 3 + 1] = coord.y;
+                positions[node * 3 + 2] = coord.z;
+            }
+        }
+        return positions;
+    }
+
+
+    private static Space<Coord3D> createSpace(LegNetwork network, double[] positions) {
+        Space<Coord3D> space = new Space<>();
+        for (Station station : network.getStations()) {
+            int node = network.getNode(station);
+            space.addStation(station, new Coord3D(
+                    (float) positions[node * 3],
+                    (float) positions[node * 3 + 1],
+                    (float) positions[node * 3 + 2]));
+        }
+
+        Map<Station, Coord3D> stationMap = space.getStationMap();
+        for (Station station : network.getStations()) {
+            Coord3D start = stationMap.get(station);
+            for (Leg leg : station.getOnwardLegs()) {
+                Coord3D end = leg.hasDestination()?
+                        stationMap.get(leg.getDestination()) :
+                        Space3DUtils.toCartesian(start, leg);
+                space.addLeg(leg, new Line<>(start, end));
+            }
+        }
+        return space;
+    }
+
+
+    /** Adds new shots to the space; false if anything else has changed. */
+    private static boolean applyChanges(
+            Survey survey, Space<Coord3D> space, List<SurveyChange> changes) {
+        Map<Station, Coord3D> stationMap = space.getStationMap();
+
+        for (SurveyChange change : changes) {
+            switch (change.getType()) {
+                case LEG_ADDED:
+                    Station from = change.getStation();
+                    Leg leg = change.getLeg();
+                    Coord3D start = stationMap.get(from);
+                    if (start == null || survey.getOriginatingStation(leg) != from) {
+                        return false;
+                    }
+                    Coord3D end = Space3DUtils.toCartesian(start, leg);
+                    if (leg.hasDestination()) {
+                        Station destination = leg.getDestination();
+                        boolean isNewLeaf = !stationMap.containsKey(destination) &&
+                                destination.getOnwardLegs().isEmpty() &&
+                                !survey.hasLinkedSurveys(destination);
+                        if (!isNewLeaf) {
+                            return false;
+                        }
+                        space.addStation(destination, end);
+                    }
+                    space.addLeg(leg, new Line<>(start, end));
+                    break;
+
+                case BATCH:
+                    if (!applyChanges(survey, space, change.getParts())) {
+                        return false;
+                    }
+                    break;
+
+                case STATION_RENAMED:
+                case STATION_COMMENTED:
+                case ACTIVE_STATION_CHANGED:
+                case DIRECTION_CHANGED:
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+}
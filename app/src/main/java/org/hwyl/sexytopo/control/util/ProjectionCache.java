@@ -0,0 +1,313 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
+import org.hwyl.sexytopo.model.graph.Projection2D;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Projections of surveys, kept until the survey next changes, so that the graph views, the
+ * stats and the exporters don't each have to project the same survey again. Entries are keyed
+ * on the survey itself (by identity rather than equals) plus its revision and the projection.
+ *
+ * The spaces handed out are shared so mustn't be altered (PackedSpace2D.copyOf if needed).
+ *
+ * Each entry also keeps the survey's 3D layouts, which are brought up to date incrementally
+ * when the survey changes, so reprojecting after a new shot doesn't mean laying out the whole
+ * survey again, and switching between surveys doesn't throw away each other's layouts.
+ *
+ * Projecting is done outside the cache's lock, and when several projections are asked for at
+ * once those needing different 3D layouts (plan and the plain elevations share one, extended
+ * elevation has its own) are worked out side by side on a small pool of worker threads.
+ */
+public class ProjectionCache {
+
+    // enough for a survey and a few connected to it
+    private static final int MAX_SURVEYS = 8;
+
+    // the caller does some of the work itself, and there are only two different 3D layouts
+    private static final int MAX_WORKERS = 1;
+
+    private static final ProjectionCache INSTANCE = new ProjectionCache();
+
+    private static ExecutorService workers = null;
+
+    // most recently used first
+    private final LinkedList<Entry> entries = new LinkedList<>();
+
+    private long hits = 0;
+    private long misses = 0;
+
+
+    public static ProjectionCache getInstance() {
+        return INSTANCE;
+    }
+
+
+    public PackedSpace2D project(Survey survey, Projection2D projectionType) {
+        return projectAll(survey, projectionType).get(projectionType);
+    }
+
+
+    /**
+     * Projects the survey into all the given types, working out any that aren't already
+     * cached concurrently where they can be.
+     */
+    public Map<Projection2D, PackedSpace2D> projectAll(
+            Survey survey, Projection2D... projectionTypes) {
+
+        Map<Projection2D, PackedSpace2D> projections = new EnumMap<>(Projection2D.class);
+        List<Projection2D> missing = new ArrayList<>();
+        List<List<Projection2D>> groups;
+        List<Space3DTransformer.Layout> layouts = new ArrayList<>();
+        long revision;
+
+        synchronized (this) {
+            Entry entry = getEntry(survey);
+            revision = entry.revision;
+            for (Projection2D projectionType : projectionTypes) {
+                PackedSpace2D projection = entry.projections.get(projectionType);
+                if (projection != null) {
+                    hits++;
+                    projections.put(projectionType, projection);
+                } else if (!missing.contains(projectionType)) {
+                    misses++;
+                    missing.add(projectionType);
+                }
+            }
+
+            if (missing.isEmpty()) {
+                return projections;
+            }
+
+            groups = groupBySharedTransform(missing);
+            for (List<Projection2D> group : groups) {
+                layouts.add(entry.getLayout(group.get(0).getTransformer()));
+            }
+        }
+
+        Map<Projection2D, PackedSpace2D> projected = projectConcurrently(groups, layouts);
+        projections.putAll(projected);
+
+        synchronized (this) {
+            Entry entry = getEntry(survey);
+            // don't cache anything worked out from a survey that changed under us
+            if (entry.revision == revision) {
+                entry.projections.putAll(projected);
+            }
+        }
+
+        return projections;
+    }
+
+
+    public synchronized void invalidate(Survey survey) {
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().survey == survey) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+
+    /** Projects each group from its layout, the first group here and the rest on workers. */
+    private static Map<Projection2D, PackedSpace2D> projectConcurrently(
+            List<List<Projection2D>> groups, List<Space3DTransformer.Layout> layouts) {
+
+        ExecutorService workers = getWorkers();
+        Map<Projection2D, PackedSpace2D> projections = new EnumMap<>(Projection2D.class);
+        if (groups.size() == 1 || workers == null) {
+            for (int i = 0; i < groups.size(); i++) {
+                projections.putAll(Projection2D.project(layouts.get(i), groups.get(i)));
+            }
+            return projections;
+        }
+
+        List<Future<Map<Projection2D, PackedSpace2D>>> futures = new ArrayList<>();
+        for (int i = 1; i < groups.size(); i++) {
+            Space3DTransformer.Layout layout = layouts.get(i);
+            List<Projection2D> group = groups.get(i);
+            futures.add(workers.submit(() -> Projection2D.project(layout, group)));
+        }
+
+        projections.putAll(Projection2D.project(layouts.get(0), groups.get(0)));
+
+        for (int i = 0; i < futures.size(); i++) {
+            Map<Projection2D, PackedSpace2D> result = waitFor(futures.get(i));
+            if (result == null) { // interrupted, so just do it ourselves
+                result = Projection2D.project(layouts.get(i + 1), groups.get(i + 1));
+            }
+            projections.putAll(result);
+        }
+        return projections;
+    }
+
+
+    private static List<List<Projection2D>> groupBySharedTransform(
+            List<Projection2D> projectionTypes) {
+        List<List<Projection2D>> groups = new ArrayList<>();
+        for (Projection2D projectionType : projectionTypes) {
+            List<Projection2D> matching = null;
+            for (List<Projection2D> group : groups) {
+                if (group.get(0).sharesTransformWith(projectionType)) {
+                    matching = group;
+                    break;
+                }
+            }
+            if (matching == null) {
+                matching = new ArrayList<>();
+                groups.add(matching);
+            }
+            matching.add(projectionType);
+        }
+        return groups;
+    }
+
+
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+
+    /**
+     * The worker pool, started the first time it's needed; null on a single core, where
+     * there's nothing to be gained from it.
+     */
+    private static synchronized ExecutorService getWorkers() {
+        int workerCount = Math.min(
+                MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1);
+        if (workers == null && workerCount > 0) {
+            workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+                Thread thread = new Thread(runnable, "ProjectionWorker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+
+
+    /**
+     * Finds the survey's entry (moving it to the front), emptying it first if the survey has
+     * changed shape since it was filled.
+     */
+    private Entry getEntry(Survey survey) {
+        Entry found = null;
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.survey == survey) {
+                iterator.remove();
+                found = entry;
+                break;
+            }
+        }
+
+        if (found == null) {
+            found = new Entry(survey);
+            if (entries.size() >= MAX_SURVEYS) {
+                entries.removeLast();
+            }
+        } else if (found.revision != survey.getRevision()) {
+            List<SurveyChange> changes = survey.getChangesSince(found.revision);
+            if (isOnlyCosmetic(changes)) {
+                found.revision = SurveyChange.getRevisionAfter(found.revision, changes);
+            } else {
+                found.projections.clear();
+                found.revision = survey.getRevision();
+            }
+        }
+
+        entries.addFirst(found);
+        return found;
+    }
+
+
+    private static boolean isOnlyCosmetic(List<SurveyChange> changes) {
+        if (changes == null) {
+            return false;
+        }
+        for (SurveyChange change : changes) {
+            if (!change.isCosmetic()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static class Entry {
+        private final Survey survey;
+        private long revision;
+        private final Map<Projection2D, PackedSpace2D> projections =
+                new EnumMap<>(Projection2D.class);
+        // kept through changes to the survey, as they bring themselves up to date
+        private final Map<Space3DTransformer, Space3DTransformer.Layout> layouts =
+                new HashMap<>();
+
+        private Entry(Survey survey) {
+            this.survey = survey;
+            this.revision = survey.getRevision();
+        }
+
+        private Space3DTransformer.Layout getLayout(Space3DTransformer transformer) {
+            Space3DTransformer.Layout layout = layouts.get(transformer);
+            if (layout == null) {
+                layout = new Space3DTransformer.Layout(transformer, survey);
+                layouts.put(transformer, layout);
+            }
+            return layout;
+        }
+    }
+
+}
@@ -3,94 +3,33 @@ package org.hwyl.sexytopo.control.util;
 import org.hwyl.sexytopo.model.common.Frame;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 import org.hwyl.sexytopo.model.graph.Line;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
 import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.sketch.PathDetail;
-import org.hwyl.sexytopo.model.survey.Leg;
-import org.hwyl.sexytopo.model.survey.Station;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 
 public class Space2DUtils {
 
     public static float getDistanceFromLine(Coord2D point, Coord2D lineStart, Coord2D lineEnd) {
-
-        // Adapted from a post on StackExchange by Joshua
-        // http://stackoverflow.com/questions/849211/shortest-distance-between-a-point-and-a-line-segment
-
-        float x = point.x;
-        float y = point.y;
-        float x1 = lineStart.x;
-        float y1 = lineStart.y;
-        float x2 = lineEnd.x;
-        float y2 = lineEnd.y;
-
-        float a = x - x1;
-        float b = y - y1;
-        float c = x2 - x1;
-        float d = y2 - y1;
-
-        float dot = a * c + b * d;
-        float lenSq = c * c + d * d;
-        float param = -1;
-
-        if (lenSq != 0) {
-            param = dot / lenSq;
-        }
-
-        float xx, yy;
-
-        if (param < 0) {
-            xx = x1;
-            yy = y1;
-        } else if (param > 1) {
-            xx = x2;
-            yy = y2;
-        } else {
-            xx = x1 + param * c;
-            yy = y1 + param * d;
-        }
-
-        float dx = x - xx;
-        float dy = y - yy;
-        return (float) Math.sqrt(dx * dx + dy * dy);
+        return GeometryKernel.distanceToSegment(
+                point.x, point.y, lineStart.x, lineStart.y, lineEnd.x, lineEnd.y);
     }
 
 
     public static float getDistance(Coord2D a, Coord2D b) {
-        return (float) Math.sqrt(Math.pow((a.x - b.x), 2) + Math.pow((a.y - b.y), 2));
+        return GeometryKernel.distance(a.x, a.y, b.x, b.y);
     }
 
     public static float adjustAngle(float angle, float delta) {
-        float newAngle = angle + delta;
-        while (newAngle < 0) {
-            newAngle += 360;
-        }
-         return newAngle % 360;
+        return GeometryKernel.rotateAzimuth(angle, delta);
     }
 
-    @SuppressWarnings("ConstantConditions")
-    public static Space<Coord2D> transform(Space<Coord2D> space, Coord2D point) {
-
-        Space<Coord2D> newSpace = new Space<>();
-
-        Map<Station, Coord2D> stations = space.getStationMap();
-        for (Station station : stations.keySet()) {
-            Coord2D coord = stations.get(station);
-            Coord2D newCoord = coord.plus(point);
-            newSpace.addStation(station, newCoord);
-        }
-
-        Map<Leg, Line<Coord2D>> legs = space.getLegMap();
-        for (Leg leg : legs.keySet()) {
-            Line<Coord2D> line = legs.get(leg);
-            Line<Coord2D> newLine = transformLine(line, point);
-            newSpace.addLeg(leg, newLine);
-        }
-
-        return newSpace;
+    public static PackedSpace2D transform(Space<Coord2D> space, Coord2D point) {
+        return PackedSpace2D.copyOf(space).translateInPlace(point.x, point.y);
     }
 
     public static Line<Coord2D> transformLine(Line<Coord2D> line, Coord2D point) {
@@ -116,39 +55,6 @@ public class Space2DUtils {
         return frame;
     }
 
-    private static List<Coord2D> douglasPeukerIteration(List<Coord2D> path, float epsilon) {
-
-        // Find the point with the maximum distance
-        int pathSize = path.size();
-        int indexMax = 0;
-        float distMax = 0;
-
-        for (int i = 1; i != pathSize; ++i) {
-            float dist = getDistanceFromLine(path.get(i), path.get(0), path.get(pathSize - 1));
-            if (dist > distMax) {
-                distMax = dist;
-                indexMax = i;
-            }
-        }
-
-        List<Coord2D> simplifiedPath;
-
-        // If max distance is greater than epsilon, recursively simplify
-        if (distMax > epsilon) {
-            List<Coord2D> results1 = douglasPeukerIteration(path.subList(0, indexMax + 1), epsilon);
-            List<Coord2D> results2 = douglasPeukerIteration(path.subList(indexMax, pathSize), epsilon);
-
-            simplifiedPath = new ArrayList<>(results1);
-            simplifiedPath.addAll(results2.subList(1, results2.size()));
-        } else {
-            simplifiedPath = new ArrayList<>();
-            simplifiedPath.add(path.get(0));
-            simplifiedPath.add(path.get(pathSize - 1));
-        }
-
-        return simplifiedPath;
-    }
-
     public static float simplificationEpsilon(float width, float height) {
 
         // TODO: this is a pretty crude simplification factor but we can revisit after more testing
@@ -165,7 +71,89 @@ public class Space2DUtils {
         if (path.isEmpty() || epsilon <= 0)
             return path;
 
-        return douglasPeukerIteration(path, epsilon);
+        int count = path.size();
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        for (int i = 0; i < count; i++) {
+            Coord2D point = path.get(i);
+            xs[i] = point.x;
+            ys[i] = point.y;
+        }
+
+        int[] kept = new int[count];
+        int keptCount = simplify(xs, ys, count, epsilon, kept);
+
+        List<Coord2D> simplifiedPath = new ArrayList<>(Math.max(keptCount, 2));
+        for (int i = 0; i < keptCount; i++) {
+            simplifiedPath.add(path.get(kept[i]));
+        }
+        if (keptCount == 1) {
+            // a single point becomes a line with coincident ends
+            simplifiedPath.add(path.get(0));
+        }
+        return simplifiedPath;
+    }
+
+    /**
+     * Douglas-Peucker simplification of the first count points, without recursion (so a long
+     * stroke can't overflow the stack) or copying the points. The indices of the points to
+     * keep are written in order into kept, which must have room for count of them; returns
+     * how many there are. The first and last points are always kept.
+     */
+    public static int simplify(float[] xs, float[] ys, int count, float epsilon, int[] kept) {
+
+        if (count <= 2) {
+            for (int i = 0; i < count; i++) {
+                kept[i] = i;
+            }
+            return count;
+        }
+
+        // The kept points are marked in kept itself (as 1s), then compacted into indices;
+        // the stack holds the spans still to be looked at, last one first.
+        Arrays.fill(kept, 0, count, 0);
+        kept[0] = 1;
+        kept[count - 1] = 1;
+
+        int[] stack = new int[32];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = count - 1;
+
+        while (stackSize > 0) {
+            int last = stack[--stackSize];
+            int first = stack[--stackSize];
+
+            int indexMax = first;
+            float distMax = 0;
+            for (int i = first + 1; i < last; i++) {
+                float dist = GeometryKernel.distanceToSegment(
+                        xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+                if (dist > distMax) {
+                    distMax = dist;
+                    indexMax = i;
+                }
+            }
+
+            if (distMax > epsilon) {
+                kept[indexMax] = 1;
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[stackSize++] = indexMax;
+                stack[stackSize++] = last;
+                stack[stackSize++] = first;
+                stack[stackSize++] = indexMax;
+            }
+        }
+
+        int keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (kept[i] == 1) {
+                kept[keptCount++] = i;
+            }
+        }
+        return keptCount;
     }
 
 }
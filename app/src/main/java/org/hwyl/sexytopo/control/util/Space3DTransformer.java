@@ -6,6 +6,14 @@ import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 public class Space3DTransformer {
@@ -13,38 +21,287 @@ public class Space3DTransformer {
     // These were originally static methods but because we want to override one it has
     // to be OO. Thanks Java for your stupid inability to override static methods :/
 
+    // A transformer keeps nothing between calls, so one can be shared by any number of
+    // surveys and threads; anything worth keeping for next time is kept in a Layout.
+
+
+    /** Lays out the survey in 3D, in a new space that's the caller's own. */
     public Space<Coord3D> transformTo3D(Survey survey) {
-        return transformTo3D(survey.getOrigin());
+        Layout layout = new Layout(this, survey);
+        layout.update();
+        return layout.space;
     }
 
 
     public Space<Coord3D> transformTo3D(Station root) {
-        Space<Coord3D> space = new Space<>();
-        update(space, root, Coord3D.ORIGIN);
-        return space;
+        Layout layout = new Layout(this, null);
+        layOutSubtree(layout, root, null, Coord3D.ORIGIN);
+        return layout.space;
+    }
+
+
+    /**
+     * Works out where the leg ends up, given where it starts, and adds it to the layout.
+     * arrivedBy is the leg that led to the station this one starts from (null for the root).
+     */
+    protected Coord3D layOutLeg(Layout layout, Leg arrivedBy, Leg leg, Coord3D start) {
+        return layOut(layout, leg, start, leg.getAzimuth());
+    }
+
+
+    /**
+     * Adds the leg to the layout as if it had been shot on the given azimuth, returning where
+     * it ends.
+     */
+    protected Coord3D layOut(Layout layout, Leg leg, Coord3D start, float azimuth) {
+        float[] offset = layout.offset;
+        GeometryKernel.toCartesian(
+                leg.getDistance(), azimuth, leg.getInclination(), offset, 0);
+        Coord3D end = new Coord3D(
+                start.x + offset[0], start.y + offset[1], start.z + offset[2]);
+        layout.space.addLeg(leg, new Line<>(start, end));
+        return end;
+    }
+
+
+    /** Whether stations have to move when their extended elevation direction changes. */
+    protected boolean isAffectedByDirection() {
+        return false;
+    }
+
+
+    public Coord3D transform(Coord3D start, Leg leg) {
+        return Space3DUtils.toCartesian(start, leg);
     }
 
 
-    protected synchronized void update(Space<Coord3D> space, Station station, Coord3D coord3D) {
-        space.addStation(station, coord3D);
-        for (Leg leg : station.getOnwardLegs()) {
-            update(space, leg, coord3D);
+    private void layOutSubtree(Layout layout, Station root, Leg arrivedBy, Coord3D start) {
+        layout.space.addStation(root, start);
+        Deque<Leg> toVisit = new ArrayDeque<>();
+        layOutOnwardLegs(layout, root, arrivedBy, start, toVisit);
+        while (!toVisit.isEmpty()) {
+            Leg leg = toVisit.pop();
+            Station station = leg.getDestination();
+            Coord3D stationStart = layout.space.getStationMap().get(station);
+            layOutOnwardLegs(layout, station, leg, stationStart, toVisit);
         }
     }
 
 
-    protected synchronized void update(Space<Coord3D> space, Leg leg, Coord3D start) {
-        Coord3D end = transform(start, leg);
-        Line<Coord3D> line = new Line<>(start, end);
-        space.addLeg(leg, line);
+    private void layOutOnwardLegs(Layout layout, Station station, Leg arrivedBy,
+                                  Coord3D start, Deque<Leg> toVisit) {
+        List<Leg> onwardLegs = station.getOnwardLegs();
+        layout.legsLaidOut.put(station, new ArrayList<>(onwardLegs));
+        for (Leg leg : onwardLegs) {
+            Coord3D end = layOutLeg(layout, arrivedBy, leg, start);
+            if (leg.hasDestination()) {
+                layout.space.addStation(leg.getDestination(), end);
+                toVisit.push(leg);
+            }
+        }
+    }
+
+
+    /**
+     * Takes the leg and everything beyond it out of the layout. This goes by what was laid
+     * out from each station rather than by the survey, whose tree may have changed since.
+     */
+    private static void removeSubtree(Layout layout, Station from, Leg leg) {
+        List<Leg> laidOutFrom = layout.legsLaidOut.get(from);
+        if (laidOutFrom != null) {
+            laidOutFrom.remove(leg);
+        }
+
+        Space<Coord3D> space = layout.space;
+        space.getLegMap().remove(leg);
+        if (!leg.hasDestination()) {
+            return;
+        }
+
+        Deque<Station> toRemove = new ArrayDeque<>();
+        toRemove.push(leg.getDestination());
+        while (!toRemove.isEmpty()) {
+            Station station = toRemove.pop();
+            space.getStationMap().remove(station);
+            List<Leg> laidOut = layout.legsLaidOut.remove(station);
+            if (laidOut == null) {
+                continue;
+            }
+            for (Leg onwardLeg : laidOut) {
+                space.getLegMap().remove(onwardLeg);
+                if (onwardLeg.hasDestination()) {
+                    toRemove.push(onwardLeg.getDestination());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Lays out a leg (and anything beyond it) that has just been attached to a station.
+     * Returns false if that can't be done from what's already in the layout.
+     *
+     * What's beyond the leg is laid out as the survey has it now, which can include legs added
+     * by later changes; those are already in the layout by the time their own changes come
+     * round, and are left as they are.
+     */
+    private boolean layOutAttachedLeg(Layout layout, Station from, Leg leg) {
+        Survey survey = layout.survey;
+        if (survey.getOriginatingStation(leg) != from) {
+            return true; // since removed or moved again; a later change will deal with it
+        }
+        if (layout.space.getLegMap().containsKey(leg)) {
+            return true;
+        }
+
+        Coord3D start = layout.space.getStationMap().get(from);
+        List<Leg> laidOutFrom = layout.legsLaidOut.get(from);
+        if (start == null || laidOutFrom == null) {
+            return false;
+        }
+
+        Leg arrivedBy = survey.getReferringLeg(from);
+        Coord3D end = layOutLeg(layout, arrivedBy, leg, start);
+        laidOutFrom.add(leg);
         if (leg.hasDestination()) {
-            update(space, leg.getDestination(), end);
+            layOutSubtree(layout, leg.getDestination(), leg, end);
         }
+        return true;
     }
 
 
-    public Coord3D transform(Coord3D start, Leg leg) {
-        return Space3DUtils.toCartesian(start, leg);
+    /** Updates the layout for the given changes; false if it needs doing from scratch. */
+    private boolean applyChanges(Layout layout, List<SurveyChange> changes) {
+        for (SurveyChange change : changes) {
+            switch (change.getType()) {
+                case LEG_ADDED:
+                    if (!layOutAttachedLeg(layout, change.getStation(), change.getLeg())) {
+                        return false;
+                    }
+                    break;
+
+                case SUBTREE_DELETED:
+                    removeSubtree(layout, change.getStation(), change.getLeg());
+                    break;
+
+                case LEG_REPLACED:
+                    removeSubtree(layout, change.getStation(), change.getPreviousLeg());
+                    if (!layOutAttachedLeg(layout, change.getStation(), change.getLeg())) {
+                        return false;
+                    }
+                    break;
+
+                case DIRECTION_CHANGED:
+                    if (isAffectedByDirection()) {
+                        // the station itself moves too, so start from the leg leading to it
+                        Survey survey = layout.survey;
+                        Leg referringLeg = survey.getReferringLeg(change.getStation());
+                        if (referringLeg == null) {
+                            return false;
+                        }
+                        Station from = survey.getOriginatingStation(referringLeg);
+                        removeSubtree(layout, from, referringLeg);
+                        if (!layOutAttachedLeg(layout, from, referringLeg)) {
+                            return false;
+                        }
+                    }
+                    break;
+
+                case BATCH:
+                    if (!applyChanges(layout, change.getParts())) {
+                        return false;
+                    }
+                    break;
+
+                case STATION_RENAMED:
+                case STATION_COMMENTED:
+                case ACTIVE_STATION_CHANGED:
+                case CONNECTIONS_CHANGED:
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * One survey laid out in 3D by one transformer, kept so that bringing it up to date after
+     * a change only has to work out whatever has changed (usually one new leg) rather than the
+     * whole survey again. ProjectionCache keeps one of these for each survey it knows.
+     *
+     * Not safe for use by more than one thread at a time; synchronise on the layout if it's
+     * shared.
+     */
+    public static class Layout {
+
+        private final Space3DTransformer transformer;
+        private final Survey survey;
+        private long revision = -1;
+        private Space<Coord3D> space = new Space<>();
+
+        // the legs laid out from each station, as they were then, so that a subtree can be
+        // taken out again whatever has happened to the survey's own tree since
+        private final Map<Station, List<Leg>> legsLaidOut = new HashMap<>();
+
+        // where each shot is worked out, so as not to need a new array every time
+        private final float[] offset = new float[3];
+
+
+        /** An empty layout; update lays the survey out for the first time. */
+        public Layout(Space3DTransformer transformer, Survey survey) {
+            this.transformer = transformer;
+            this.survey = survey;
+        }
+
+
+        public Survey getSurvey() {
+            return survey;
+        }
+
+
+        public long getRevision() {
+            return revision;
+        }
+
+
+        /**
+         * The survey as laid out by the last update. This is changed in place by the next
+         * update, so shouldn't be changed or held on to by anything else.
+         */
+        public Space<Coord3D> getSpace() {
+            return space;
+        }
+
+
+        /** The legs laid out from the station, as the layout has them. */
+        List<Leg> getLegsLaidOutFrom(Station station) {
+            return legsLaidOut.get(station);
+        }
+
+
+        /**
+         * Brings the layout up to date with the survey, from scratch if it has to. The survey
+         * is locked meanwhile so that the tree walked is the one at the revision recorded.
+         */
+        public void update() {
+            synchronized (survey) {
+                if (revision >= 0) {
+                    List<SurveyChange> changes = survey.getChangesSince(revision);
+                    if (changes != null && transformer.applyChanges(this, changes)) {
+                        revision = survey.getRevision();
+                        return;
+                    }
+                }
+
+                space = new Space<>();
+                legsLaidOut.clear();
+                revision = survey.getRevision();
+                transformer.layOutSubtree(this, survey.getOrigin(), null, Coord3D.ORIGIN);
+            }
+        }
     }
 
 }
@@ -2,56 +2,56 @@ package org.hwyl.sexytopo.control.util;
 
 import org.hwyl.sexytopo.model.graph.Coord3D;
 import org.hwyl.sexytopo.model.graph.Direction;
-import org.hwyl.sexytopo.model.graph.Line;
-import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.survey.Leg;
-import org.hwyl.sexytopo.model.survey.Station;
 
 
 public class Space3DTransformerForElevation  extends Space3DTransformer {
 
 
-    protected void update(Space<Coord3D> space, Station station, Coord3D coord3D) {
-        update(space, station, coord3D, 0);
+    @Override
+    protected Coord3D layOutLeg(Layout layout, Leg arrivedBy, Leg leg, Coord3D start) {
+        if (leg.hasDestination()) {
+            return layOutConnectedLeg(layout, leg, start);
+        } else {
+            return layOutSplay(layout, leg, start, getRotation(arrivedBy));
+        }
     }
 
 
-    protected void update(Space<Coord3D> space, Station station, Coord3D coord3D, float rotation) {
-        space.addStation(station, coord3D);
-        for (Leg leg : station.getOnwardLegs()) {
-            if (leg.hasDestination()) {
-                updateLeg(space, leg, coord3D);
-            } else {
-                updateSplay(space, leg, coord3D, rotation);
-            }
-        }
+    @Override
+    protected boolean isAffectedByDirection() {
+        return true;
     }
 
 
-    protected void updateLeg(Space<Coord3D> space, Leg leg, Coord3D start) {
+    private Coord3D layOutConnectedLeg(Layout layout, Leg leg, Coord3D start) {
+        return layOut(layout, leg, start, getElevationAzimuth(leg));
+    }
 
-        Leg adjustedLeg;
-        if (leg.getDestination().getExtendedElevationDirection() == Direction.LEFT) {
-            adjustedLeg = leg.adjustAzimuth(180);
-        } else {
-            adjustedLeg = leg.adjustAzimuth(0);
-        }
 
-        float delta = adjustedLeg.getAzimuth() - leg.getAzimuth();
+    private Coord3D layOutSplay(Layout layout, Leg leg, Coord3D start, float rotation) {
+        float azimuth = GeometryKernel.rotateAzimuth(leg.getAzimuth(), rotation);
+        return layOut(layout, leg, start, azimuth);
+    }
+
 
-        Coord3D end = Space3DUtils.toCartesian(start, adjustedLeg);
-        Line<Coord3D> line = new Line<>(start, end);
-        space.addLeg(leg, line);
-        if (leg.hasDestination()) {
-            update(space, leg.getDestination(), end, delta);
+    /**
+     * Splays get turned by however much the leg into their station was turned to lie flat
+     * in the elevation (none at the root).
+     */
+    private static float getRotation(Leg arrivedBy) {
+        if (arrivedBy == null) {
+            return 0;
         }
+        return getElevationAzimuth(arrivedBy) - arrivedBy.getAzimuth();
     }
 
 
-    protected void updateSplay(Space<Coord3D> space, Leg leg, Coord3D start, float rotation) {
-        Leg adjustedLeg = leg.rotate(rotation);
-        Coord3D end = Space3DUtils.toCartesian(start, adjustedLeg);
-        Line<Coord3D> line = new Line<>(start, end);
-        space.addLeg(leg, line);
+    private static float getElevationAzimuth(Leg leg) {
+        if (leg.getDestination().getExtendedElevationDirection() == Direction.LEFT) {
+            return 180;
+        } else {
+            return 0;
+        }
     }
 }
@@ -7,19 +7,23 @@ import org.hwyl.sexytopo.model.survey.Leg;
 public class Space3DUtils {
 
     public static Coord3D toCartesian(Coord3D start, Leg leg) {
-        float r = leg.getDistance();
-        float phi = (float) Math.toRadians(leg.getAzimuth());
-        float theta = (float) Math.toRadians(leg.getInclination());
-
-        float y = (float) (r * Math.cos(theta) * Math.cos(phi));
-        float x = (float) (r * Math.cos(theta) * Math.sin(phi));
-        float z = (float) (r * Math.sin(theta));
+        return toCartesian(start, leg.getDistance(), leg.getAzimuth(), leg.getInclination());
+    }
 
-        x += start.x;
-        y += start.y;
-        z += start.z;
 
-        return new Coord3D(x, y, z);
+    /**
+     * Where a shot from start ends up. The same sums as GeometryKernel.toCartesian, done here
+     * rather than through an array so that the only thing made is the result.
+     */
+    public static Coord3D toCartesian(
+            Coord3D start, float distance, float azimuth, float inclination) {
+        float phi = (float) Math.toRadians(azimuth);
+        float theta = (float) Math.toRadians(inclination);
+        double horizontal = distance * Math.cos(theta);
+        return new Coord3D(
+                start.x + (float) (horizontal * Math.sin(phi)),
+                start.y + (float) (horizontal * Math.cos(phi)),
+                start.z + (float) (distance * Math.sin(theta)));
     }
 
 }
@@ -3,10 +3,6 @@ package org.hwyl.sexytopo.control.util;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 
 @SuppressWarnings("UnnecessaryLocalVariable")
 public class StationNamer {
@@ -25,21 +21,7 @@ public class StationNamer {
 
 
     public static String advanceNumberIfNotUnique(Survey survey, String candidateName) {
-        Set<String> allNames = getAllStationNames(survey);
-        while (allNames.contains(candidateName)) {
-            candidateName = TextTools.advanceLastNumber(candidateName);
-        }
-        return candidateName;
-    }
-
-
-    public static Set<String> getAllStationNames(Survey survey) {
-        List<Station> stations = survey.getAllStations();
-        Set<String> allNames = new HashSet<>();
-        for (Station station : stations) {
-            allNames.add(station.getName());
-        }
-        return allNames;
+        return survey.findUnusedStationName(candidateName);
     }
 
 }
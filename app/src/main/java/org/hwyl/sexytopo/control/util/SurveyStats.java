@@ -1,12 +1,12 @@
 package org.hwyl.sexytopo.control.util;
 
-import org.hwyl.sexytopo.model.graph.Coord3D;
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.Projection2D;
 import org.hwyl.sexytopo.model.graph.Space;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 
-import java.util.List;
 import java.util.Map;
 
 
@@ -15,11 +15,13 @@ public class SurveyStats {
     // This would all be so much easier with Java 8: lambdas, streaming API...
     // TODO: rewrite when Android moves to Java 8
 
-    public static float calcTotalLength(Survey survey) {
-        List<Leg> legs = survey.getAllLegs();
+    // The whole-survey stats are worked out from a snapshot of the survey as it is now, the
+    // same revision the height range's projection is brought up to, rather than whatever was
+    // last published for the background threads.
 
+    public static float calcTotalLength(Survey survey) {
         float total = 0.0f;
-        for (Leg leg : legs) {
+        for (Leg leg : survey.publishSnapshot().getAllLegs()) {
             if (leg.hasDestination()) {
                 total += leg.getDistance();
             }
@@ -29,13 +31,8 @@ public class SurveyStats {
     }
 
     public static float calcLongestLeg(Survey survey) {
-        List<Leg> legs = survey.getAllLegs();
-        if (legs.isEmpty()) {
-            return 0;
-        }
-
         float max = 0.0f;
-        for (Leg leg : legs) {
+        for (Leg leg : survey.publishSnapshot().getAllLegs()) {
             max = Math.max(leg.getDistance(), max);
         }
 
@@ -43,31 +40,47 @@ public class SurveyStats {
     }
 
     public static float calcShortestLeg(Survey survey) {
-        List<Leg> legs = survey.getAllLegs();
-        if (legs.isEmpty()) {
-            return 0;
-        }
-
+        boolean anyLegs = false;
         float min = Float.POSITIVE_INFINITY;
-        for (Leg leg : legs) {
+        for (Leg leg : survey.publishSnapshot().getAllLegs()) {
             min = Math.min(leg.getDistance(), min);
+            anyLegs = true;
         }
 
-        return min;
+        return anyLegs? min : 0;
     }
 
     public static int calcNumberStations(Survey survey) {
-        return survey.getAllStations().size() - 1;
+        return survey.publishSnapshot().getAllStations().size() - 1;
+    }
+
+    public static int calcNumberFullLegs(Survey survey) {
+        int numFullLegs = 0;
+        for (Leg leg : survey.publishSnapshot().getAllLegs()) {
+            if (leg.hasDestination()) {
+                numFullLegs++;
+            }
+        }
+        return numFullLegs;
+    }
+
+    public static int calcNumberSplays(Survey survey) {
+        int numSplays = 0;
+        for (Leg leg : survey.publishSnapshot().getAllLegs()) {
+            if (!leg.hasDestination()) {
+                numSplays++;
+            }
+        }
+        return numSplays;
     }
 
     public static int calcNumberSubStations(Station origin) {
-        return Survey.getAllStations(origin).size();
+        return SurveyTools.countStations(origin);
     }
 
     public static int calcNumberSubFullLegs(Station station) {
-        List<Leg> legs = Survey.getAllLegs(station);
         int numFullLegs = 0;
-        for (Leg leg : legs) {
+        for (Leg leg : SurveyTools.legs(station)) {
             if (leg.hasDestination()) {
                 numFullLegs++;
             }
@@ -76,9 +89,8 @@ public class SurveyStats {
     }
 
     public static int calcNumberSubSplays(Station station) {
-        List<Leg> legs = Survey.getAllLegs(station);
         int numSplays = 0;
-        for (Leg leg : legs) {
+        for (Leg leg : SurveyTools.legs(station)) {
             if (!leg.hasDestination()) {
                 numSplays++;
             }
@@ -87,7 +99,7 @@ public class SurveyStats {
     }
 
     public static int calcNumberSubLegs(Station origin) {
-        return Survey.getAllLegs(origin).size();
+        return SurveyTools.countLegs(origin);
     }
 
     public static float calcHeightRange(Survey survey) {
@@ -97,18 +109,21 @@ public class SurveyStats {
 
 
     public static float[] calcHeightRangeArray(Survey survey) {
-        Space3DTransformer transformer = new Space3DTransformer();
-        Space<Coord3D> space = transformer.transformTo3D(survey);
-        Map<Station, Coord3D> stationsToCoords = space.getStationMap();
+        // any elevation will do as they all keep the heights (flipped); this is the one the
+        // elevation view uses so is the most likely to be cached already
+        Space<Coord2D> space =
+                ProjectionCache.getInstance().project(survey, Projection2D.EXTENDED_ELEVATION);
+        Map<Station, Coord2D> stationsToCoords = space.getStationMap();
 
         if (stationsToCoords.size() <= 1) {
             return new float[]{0, 0};
         }
 
         float min = Float.MAX_VALUE, max = Float.MIN_VALUE;
-        for (Coord3D point : space.getStationMap().values()) {
-            max = Math.max(max, point.z);
-            min = Math.min(min, point.z);
+        for (Coord2D point : stationsToCoords.values()) {
+            float height = -point.y;
+            max = Math.max(max, height);
+            min = Math.min(min, height);
         }
 
         return new float[]{min, max};
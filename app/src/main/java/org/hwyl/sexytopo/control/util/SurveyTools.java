@@ -4,47 +4,64 @@ import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 
+/**
+ * Walks the station tree. Everything here is iterative with an explicit stack, so long
+ * passages can't blow the call stack and nothing gets copied level by level.
+ *
+ * Stations are always visited depth-first in the order legs were added (the same order the
+ * old recursive versions used).
+ */
 public class SurveyTools {
 
+    private static final int INITIAL_STACK_SIZE = 32;
+
+
     public static void traverseLegs(Survey survey, SurveyLegTraversalCallback callback) {
         traverseLegs(survey.getOrigin(), callback);
     }
 
-    @SuppressWarnings("WhileLoopReplaceableByForEach")
-    public static boolean traverseIterator(Station station, SurveyLegTraversalCallback callback) {
+    public static boolean traverseLegs(Station root, SurveyLegTraversalCallback callback) {
 
-        // use an iterator because the callback might mutate the list of legs
-        Iterator<Leg> i = station.getOnwardLegs().iterator();
-        while (i.hasNext()) {
-            Leg leg = i.next();
-            boolean isFinished = callback.call(station, leg);
+        // each frame is a station plus the index of the next onward leg to look at
+        Station[] stations = new Station[INITIAL_STACK_SIZE];
+        int[] nextLegIndices = new int[INITIAL_STACK_SIZE];
+        int top = 0;
+        stations[0] = root;
 
-            if (isFinished) {
-                return isFinished;
-            } else if (leg.hasDestination()) {
-                return traverseLegs(leg.getDestination(), callback);
-            }
-        }
+        while (top >= 0) {
+            Station station = stations[top];
+            List<Leg> onwardLegs = station.getOnwardLegs();
+            int index = nextLegIndices[top];
 
-        return false;
-    }
-
-    public static boolean traverseLegs(Station station, SurveyLegTraversalCallback callback) {
+            if (index >= onwardLegs.size()) {
+                stations[top--] = null;
+                continue;
+            }
 
-        for (Leg leg : station.getOnwardLegs()) {
+            nextLegIndices[top] = index + 1;
+            Leg leg = onwardLegs.get(index);
 
             boolean isFinished = callback.call(station, leg);
-
             if (isFinished) {
                 return true;
-            } else if (leg.hasDestination()) {
-                isFinished = traverseLegs(leg.getDestination(), callback);
-                if (isFinished) {
-                    return true;
+            }
+
+            if (leg.hasDestination()) {
+                top++;
+                if (top == stations.length) {
+                    stations = Arrays.copyOf(stations, top * 2);
+                    nextLegIndices = Arrays.copyOf(nextLegIndices, top * 2);
                 }
+                stations[top] = leg.getDestination();
+                nextLegIndices[top] = 0;
             }
         }
 
@@ -59,21 +76,13 @@ public class SurveyTools {
         traverseStations(survey.getOrigin(), callback);
     }
 
-    public static boolean traverseStations(Station station, SurveyStationTraversalCallback callback) {
-
-        boolean isFinished = callback.call(station);
-
-        if (isFinished) {
-            return true;
-        }
-
-        for (Leg leg : station.getConnectedOnwardLegs()) {
-            isFinished = traverseStations(leg.getDestination(), callback);
+    public static boolean traverseStations(Station root, SurveyStationTraversalCallback callback) {
+        for (Station station : stations(root)) {
+            boolean isFinished = callback.call(station);
             if (isFinished) {
                 return true;
             }
         }
-
         return false;
     }
 
@@ -82,4 +91,103 @@ public class SurveyTools {
     }
 
 
+    /**
+     * A lazy view of every station at or below root. Nothing is collected up front, so
+     * stopping early only costs the stations actually visited.
+     */
+    public static Iterable<Station> stations(final Station root) {
+        return () -> new StationIterator(root);
+    }
+
+
+    /**
+     * A lazy view of every leg below root: each station's onward legs in turn, with the
+     * stations taken in the same order as {@link #stations(Station)}.
+     */
+    public static Iterable<Leg> legs(final Station root) {
+        return () -> new LegIterator(root);
+    }
+
+
+    public static int countStations(Station root) {
+        int count = 0;
+        for (Station ignored : stations(root)) {
+            count++;
+        }
+        return count;
+    }
+
+
+    public static int countLegs(Station root) {
+        int count = 0;
+        for (Station station : stations(root)) {
+            count += station.getOnwardLegs().size();
+        }
+        return count;
+    }
+
+
+    private static class StationIterator implements Iterator<Station> {
+
+        private final Deque<Station> toVisit = new ArrayDeque<>();
+
+        StationIterator(Station root) {
+            toVisit.push(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !toVisit.isEmpty();
+        }
+
+        @Override
+        public Station next() {
+            if (toVisit.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Station station = toVisit.pop();
+            // pushed in reverse so the first onward leg is explored first
+            List<Leg> onwardLegs = station.getOnwardLegs();
+            for (int i = onwardLegs.size() - 1; i >= 0; i--) {
+                Leg leg = onwardLegs.get(i);
+                if (leg.hasDestination()) {
+                    toVisit.push(leg.getDestination());
+                }
+            }
+            return station;
+        }
+    }
+
+
+    private static class LegIterator implements Iterator<Leg> {
+
+        private final StationIterator stations;
+        private List<Leg> currentLegs = null;
+        private int index = 0;
+
+        LegIterator(Station root) {
+            stations = new StationIterator(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (currentLegs == null || index >= currentLegs.size()) {
+                if (!stations.hasNext()) {
+                    return false;
+                }
+                currentLegs = stations.next().getOnwardLegs();
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Leg next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentLegs.get(index++);
+        }
+    }
+
 }
@@ -18,20 +18,51 @@ public class SurveyUpdater {
 
 
     public static boolean update(Survey survey, List<Leg> legs, InputMode inputMode) {
-        boolean anyStationsAdded = false;
-        for (Leg leg : legs) {
-            anyStationsAdded = anyStationsAdded || update(survey, leg, inputMode);
-        }
-        return anyStationsAdded;
+        return updateInBulk(survey, legs, inputMode) > 0;
     }
 
 
     public static boolean update(Survey survey, List<Leg> legs) {
-        boolean anyStationsAdded = false;
-        for (Leg leg : legs) {
-            anyStationsAdded = anyStationsAdded || update(survey, leg);
+        return update(survey, legs, InputMode.FORWARD);
+    }
+
+
+    /**
+     * Adds a batch of shots (e.g. readings downloaded from an instrument's memory) in one pass.
+     * New stations are picked out of repeated shots exactly as if the shots had arrived one at
+     * a time, but the survey is only locked, marked unsaved, checked and logged once for the
+     * batch, and the changes are recorded as one.
+     *
+     * @return the number of new stations created
+     */
+    public static synchronized int updateInBulk(
+            Survey survey, List<Leg> legs, InputMode inputMode) {
+
+        if (legs.isEmpty()) {
+            return 0;
         }
-        return anyStationsAdded;
+
+        int stationsCreated = 0;
+        synchronized (survey) {
+            survey.startBatch();
+            try {
+                for (Leg leg : legs) {
+                    survey.addLeg(survey.getActiveStation(), leg);
+                    survey.addLegRecord(leg);
+                    if (createNewStationIfNeeded(survey, inputMode)) {
+                        stationsCreated++;
+                    }
+                }
+            } finally {
+                survey.finishBatch();
+            }
+        }
+
+        survey.setSaved(false);
+        survey.checkSurveyIntegrity();
+        Log.i(R.string.survey_update_added_legs_in_bulk, legs.size(), stationsCreated);
+
+        return stationsCreated;
     }
 
     public static boolean update(Survey survey, Leg leg) {
@@ -42,10 +73,15 @@ public class SurveyUpdater {
         Station activeStation = survey.getActiveStation();
 
         Log.i(R.string.survey_update_adding_leg, leg);
-        activeStation.getOnwardLegs().add(leg);
+        survey.addLeg(activeStation, leg);
         survey.setSaved(false);
         survey.addLegRecord(leg);
 
+        return createNewStationIfNeeded(survey, inputMode);
+    }
+
+
+    private static boolean createNewStationIfNeeded(Survey survey, InputMode inputMode) {
         boolean justCreatedNewStation = false;
         switch(inputMode) {
             case FORWARD:
@@ -75,7 +111,7 @@ public class SurveyUpdater {
         }
 
         // FIXME; could the below be moved into Survey? And from elsewhere in this file?
-        activeStation.getOnwardLegs().add(leg);
+        survey.addLeg(activeStation, leg);
         survey.setSaved(false);
         survey.addLegRecord(leg);
         survey.setActiveStation(leg.getDestination());
@@ -115,7 +151,7 @@ public class SurveyUpdater {
 
         // check all the last legs are from the active station
         for (Leg leg : lastNLegs) {
-            if (!activeLegs.contains(leg)) {
+            if (survey.getOriginatingStation(leg) != activeStation) {
                 return false;
             }
         }
@@ -138,7 +174,7 @@ public class SurveyUpdater {
                 survey.undoAddLeg();
             }
 
-            activeStation.getOnwardLegs().add(newLeg);
+            survey.addLeg(activeStation, newLeg);
             survey.addLegRecord(newLeg);
             survey.setActiveStation(newStation);
 
@@ -166,7 +202,7 @@ public class SurveyUpdater {
         }
 
         for (Leg leg : lastPair) {
-            if (!activeLegs.contains(leg)) {
+            if (survey.getOriginatingStation(leg) != activeStation) {
                 return false;
             }
         }
@@ -186,7 +222,7 @@ public class SurveyUpdater {
             survey.undoAddLeg();
             survey.undoAddLeg();
 
-            activeStation.getOnwardLegs().add(newLeg);
+            survey.addLeg(activeStation, newLeg);
             survey.addLegRecord(newLeg);
 
             survey.setActiveStation(newStation);
@@ -197,21 +233,13 @@ public class SurveyUpdater {
     }
 
 
-    public static synchronized void editLeg(
-            final Survey survey, final Leg toEdit, final Leg edited) {
-        SurveyTools.traverseLegs(
-            survey,
-            (origin, leg) -> {
-                if (leg == toEdit) {
-                    origin.getOnwardLegs().remove(toEdit);
-                    origin.getOnwardLegs().add(edited);
-                    survey.replaceLegInRecord(toEdit, edited);
-                    Log.d(R.string.survey_update_edited_leg, toEdit, edited);
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+    public static synchronized void editLeg(Survey survey, Leg toEdit, Leg edited) {
+        Station origin = survey.getOriginatingStation(toEdit);
+        if (origin != null) {
+            survey.replaceLeg(origin, toEdit, edited);
+            survey.replaceLegInRecord(toEdit, edited);
+            Log.d(R.string.survey_update_edited_leg, toEdit, edited);
+        }
         survey.setSaved(false);
     }
 
@@ -225,7 +253,7 @@ public class SurveyUpdater {
             throw new IllegalArgumentException(message);
         }
 
-        station.setName(name);
+        survey.renameStation(station, name);
         survey.setSaved(false);
         Log.i(R.string.survey_update_renamed_station, previousName, name);
     }
@@ -233,14 +261,14 @@ public class SurveyUpdater {
 
     public static void moveLeg(Survey survey, Leg leg, Station newSource) {
         Station originating = survey.getOriginatingStation(leg);
-        originating.getOnwardLegs().remove(leg);
-        newSource.addOnwardLeg(leg);
+        survey.removeLeg(originating, leg);
+        survey.addLeg(newSource, leg);
         survey.setSaved(false);
         Log.i(R.string.survey_update_moved_leg, newSource.getName());
     }
 
 
-    public static void deleteStation(final Survey survey, final Station toDelete) {
+    public static void deleteStation(Survey survey, Station toDelete) {
         if (toDelete == survey.getOrigin()) {
             return;
         }
@@ -248,15 +276,11 @@ public class SurveyUpdater {
         Leg referringLeg = survey.getReferringLeg(toDelete);
         survey.removeLegRecord(referringLeg);
 
-        SurveyTools.traverseLegs(survey, (origin, leg) -> {
-            if (leg.hasDestination() && leg.getDestination() == toDelete) {
-                origin.getOnwardLegs().remove(leg);
-                survey.checkSurveyIntegrity();
-                return true;
-            } else {
-                return false;
-            }
-        });
+        if (referringLeg != null) {
+            Station origin = survey.getOriginatingStation(referringLeg);
+            survey.removeLeg(origin, referringLeg);
+            survey.checkSurveyIntegrity();
+        }
 
         survey.setSaved(false);
     }
@@ -264,7 +288,7 @@ public class SurveyUpdater {
 
     public static void deleteSplay(Survey survey, Station station, Leg splay) {
         survey.removeLegRecord(splay);
-        station.getOnwardLegs().remove(splay);
+        survey.removeLeg(station, splay);
         survey.setSaved(false);
     }
 
@@ -357,33 +381,23 @@ public class SurveyUpdater {
     }
 
 
-    public static void reverseLeg(final Survey survey, final Station toReverse) {
-        SurveyTools.traverseLegs(
-            survey,
-            (origin, leg) -> {
-                if (leg.hasDestination() && leg.getDestination() == toReverse) {
-                    String previousDescription = leg.toString();
-                    Leg reversed = leg.reverse();
-                    String newDescription = reversed.toString();
-                    origin.getOnwardLegs().remove(leg);
-                    origin.addOnwardLeg(reversed);
-                    survey.replaceLegInRecord(leg, reversed);
-                    Log.i(R.string.survey_update_reversed_leg, previousDescription, newDescription);
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+    public static void reverseLeg(Survey survey, Station toReverse) {
+        Leg leg = survey.getReferringLeg(toReverse);
+        if (leg != null) {
+            Station origin = survey.getOriginatingStation(leg);
+            String previousDescription = leg.toString();
+            Leg reversed = leg.reverse();
+            String newDescription = reversed.toString();
+            survey.replaceLeg(origin, leg, reversed);
+            survey.replaceLegInRecord(leg, reversed);
+            Log.i(R.string.survey_update_reversed_leg, previousDescription, newDescription);
+        }
         survey.setSaved(false);
     }
 
 
-    public static void setDirectionOfSubtree(Station station, Direction direction) {
-        station.setExtendedElevationDirection(direction);
-        for (Leg leg : station.getConnectedOnwardLegs()) {
-            Station destination = leg.getDestination();
-            setDirectionOfSubtree(destination, direction);
-        }
+    public static void setDirectionOfSubtree(Survey survey, Station station, Direction direction) {
+        survey.setDirectionOfSubtree(station, direction);
     }
 
 }
@@ -0,0 +1,209 @@
+package org.hwyl.sexytopo.model.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A loose quadtree of things with rectangular bounds (screen coords, as for Shape). Each thing
+ * goes in the smallest square whose centre region holds its centre and which is at least as
+ * big as it is; every square's bounds are taken as twice its nominal size, so a thing never
+ * has to be split between squares or kept at the top of the tree just because it straddles
+ * a dividing line. The tree grows outwards as things are added beyond it.
+ *
+ * Lookups give the things whose bounds overlap a rectangle. Things are compared by identity,
+ * and must be removed with the same bounds they were added with.
+ */
+public class QuadTree<T> {
+
+    private static final int MAX_DEPTH = 16;
+    private static final float MIN_HALF_SIZE = 0.5f;
+
+    private Node<T> root = null;
+    private int size = 0;
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public void add(T item, float left, float top, float right, float bottom) {
+        float centreX = (left + right) / 2;
+        float centreY = (top + bottom) / 2;
+        float extent = Math.max(right - left, bottom - top) / 2;
+        float sum = centreX + centreY + extent;
+        if (Float.isNaN(sum) || Float.isInfinite(sum)) {
+            throw new IllegalArgumentException("Bounds must be finite");
+        }
+
+        if (root == null) {
+            root = new Node<>(centreX, centreY, Math.max(extent, MIN_HALF_SIZE));
+        }
+        while (!root.canHold(centreX, centreY, extent)) {
+            root = root.grownTowards(centreX, centreY);
+        }
+
+        Node<T> node = root;
+        for (int depth = 0; depth < MAX_DEPTH && extent <= node.halfSize / 2; depth++) {
+            node = node.getOrCreateChild(centreX, centreY);
+        }
+        node.items.add(item);
+        size++;
+    }
+
+
+    /** Returns false if the item wasn't there. */
+    public boolean remove(T item, float left, float top, float right, float bottom) {
+        if (root == null) {
+            return false;
+        }
+
+        float centreX = (left + right) / 2;
+        float centreY = (top + bottom) / 2;
+        float extent = Math.max(right - left, bottom - top) / 2;
+
+        Node<T> node = root;
+        for (int depth = 0; depth < MAX_DEPTH && extent <= node.halfSize / 2; depth++) {
+            Node<T> child = node.getChild(centreX, centreY);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+
+        boolean removed = removeByIdentity(node.items, item) || removeFromAnywhere(root, item);
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+
+    /** Adds everything whose bounds overlap the rectangle to the given list. */
+    public void findWithin(float left, float top, float right, float bottom, List<T> found) {
+        if (root != null) {
+            root.findWithin(left, top, right, bottom, found);
+        }
+    }
+
+
+    public List<T> findWithin(float left, float top, float right, float bottom) {
+        List<T> found = new ArrayList<>();
+        findWithin(left, top, right, bottom, found);
+        return found;
+    }
+
+
+    private static <T> boolean removeFromAnywhere(Node<T> node, T item) {
+        if (removeByIdentity(node.items, item)) {
+            return true;
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children) {
+                if (child != null && removeFromAnywhere(child, item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private static <T> boolean removeByIdentity(List<T> items, T item) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == item) {
+                items.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static class Node<T> {
+
+        private final float centreX;
+        private final float centreY;
+        private final float halfSize;
+        private final List<T> items = new ArrayList<>(0);
+        private List<Node<T>> children = null;
+
+        Node(float centreX, float centreY, float halfSize) {
+            this.centreX = centreX;
+            this.centreY = centreY;
+            this.halfSize = halfSize;
+        }
+
+        boolean canHold(float x, float y, float extent) {
+            return extent <= halfSize &&
+                    Math.abs(x - centreX) <= halfSize && Math.abs(y - centreY) <= halfSize;
+        }
+
+        /** A node twice the size with this one as one of its quarters. */
+        Node<T> grownTowards(float x, float y) {
+            float signX = x < centreX? -1 : 1;
+            float signY = y < centreY? -1 : 1;
+            Node<T> parent = new Node<>(
+                    centreX + signX * halfSize, centreY + signY * halfSize, halfSize * 2);
+            parent.createChildren();
+            parent.children.set(quarterOf(-signX, -signY), this);
+            return parent;
+        }
+
+        Node<T> getChild(float x, float y) {
+            return children == null? null : children.get(quarterOf(x - centreX, y - centreY));
+        }
+
+        Node<T> getOrCreateChild(float x, float y) {
+            if (children == null) {
+                createChildren();
+            }
+            int quarter = quarterOf(x - centreX, y - centreY);
+            Node<T> child = children.get(quarter);
+            if (child == null) {
+                float quarterSize = halfSize / 2;
+                child = new Node<>(
+                        centreX + (x < centreX? -quarterSize : quarterSize),
+                        centreY + (y < centreY? -quarterSize : quarterSize),
+                        quarterSize);
+                children.set(quarter, child);
+            }
+            return child;
+        }
+
+        void findWithin(float left, float top, float right, float bottom, List<T> found) {
+            // loose bounds: twice the nominal size
+            float looseHalfSize = halfSize * 2;
+            if (right < centreX - looseHalfSize || left > centreX + looseHalfSize ||
+                    bottom < centreY - looseHalfSize || top > centreY + looseHalfSize) {
+                return;
+            }
+
+            found.addAll(items);
+            if (children != null) {
+                for (Node<T> child : children) {
+                    if (child != null) {
+                        child.findWithin(left, top, right, bottom, found);
+                    }
+                }
+            }
+        }
+
+        private void createChildren() {
+            children = new ArrayList<>(Collections.<Node<T>>nCopies(4, null));
+        }
+
+        private static int quarterOf(float dx, float dy) {
+            return (dx < 0? 0 : 1) + (dy < 0? 0 : 2);
+        }
+    }
+
+}
@@ -0,0 +1,751 @@
+package org.hwyl.sexytopo.model.graph;
+
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A 2D space that keeps its coordinates packed into float arrays rather than as a Coord2D per
+ * station and a Line plus two Coord2Ds per leg. Stations and legs get dense ids (in the order
+ * they were added) which can be used to read coordinates directly; the usual map API is still
+ * there but creates the Coord2D and Line objects as they are asked for. Taking something out
+ * moves the last station or leg into its id, so ids are only good until then.
+ *
+ * Unlike the rest of Space, this can be moved, scaled and flipped in place. Don't do that to
+ * a space someone else might be using (e.g. one from the ProjectionCache): take a copy first.
+ *
+ * Stations and legs can also be looked up by area (see SpatialGrid). The grids are built the
+ * first time they're needed, kept up to date as things are added and dropped if the space is
+ * transformed.
+ */
+public class PackedSpace2D extends Space<Coord2D> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float MIN_CELL_SIZE = 1;
+
+    private final IdTable<Station> stations;
+    private final IdTable<Leg> legs;
+
+    private float[] stationCoords; // x, y for each station
+    private float[] legCoords; // start x, start y, end x, end y for each leg
+
+    private final Map<Station, Coord2D> stationMapView = new StationMapView();
+    private final Map<Leg, Line<Coord2D>> legMapView = new LegMapView();
+
+    private SpatialGrid stationGrid = null;
+    private SpatialGrid legGrid = null;
+
+
+    public PackedSpace2D() {
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+
+    public PackedSpace2D(int expectedStations, int expectedLegs) {
+        int stationCapacity = Math.max(expectedStations, 1);
+        int legCapacity = Math.max(expectedLegs, 1);
+        stations = new IdTable<>(stationCapacity);
+        legs = new IdTable<>(legCapacity);
+        stationCoords = new float[stationCapacity * 2];
+        legCoords = new float[legCapacity * 4];
+    }
+
+
+    private PackedSpace2D(PackedSpace2D other) {
+        stations = new IdTable<>(other.stations);
+        legs = new IdTable<>(other.legs);
+        stationCoords = other.stationCoords.clone();
+        legCoords = other.legCoords.clone();
+    }
+
+
+    /** A new packed space with the same contents as the given one. */
+    public static PackedSpace2D copyOf(Space<Coord2D> space) {
+        if (space instanceof PackedSpace2D) {
+            return new PackedSpace2D((PackedSpace2D) space);
+        }
+
+        Map<Station, Coord2D> stationMap = space.getStationMap();
+        Map<Leg, Line<Coord2D>> legMap = space.getLegMap();
+        PackedSpace2D packed = new PackedSpace2D(stationMap.size(), legMap.size());
+        for (Map.Entry<Station, Coord2D> entry : stationMap.entrySet()) {
+            packed.addStation(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Leg, Line<Coord2D>> entry : legMap.entrySet()) {
+            packed.addLeg(entry.getKey(), entry.getValue());
+        }
+        return packed;
+    }
+
+
+    /** The given space if it's already packed, otherwise a packed copy of it. */
+    public static PackedSpace2D asPacked(Space<Coord2D> space) {
+        if (space instanceof PackedSpace2D) {
+            return (PackedSpace2D) space;
+        } else {
+            return copyOf(space);
+        }
+    }
+
+
+    @Override
+    public Map<Station, Coord2D> getStationMap() {
+        return stationMapView;
+    }
+
+
+    @Override
+    public Map<Leg, Line<Coord2D>> getLegMap() {
+        return legMapView;
+    }
+
+
+    @Override
+    public void addStation(Station station, Coord2D coord) {
+        addStation(station, coord.x, coord.y);
+    }
+
+
+    public void addStation(Station station, float x, float y) {
+        int id = stations.register(station);
+        if (id * 2 >= stationCoords.length) {
+            stationCoords = Arrays.copyOf(stationCoords, stationCoords.length * 2);
+        }
+        stationCoords[id * 2] = x;
+        stationCoords[id * 2 + 1] = y;
+        updateStationGrid(id);
+    }
+
+
+    @Override
+    public void addLeg(Leg leg, Line<Coord2D> line) {
+        Coord2D start = line.getStart();
+        Coord2D end = line.getEnd();
+        addLeg(leg, start.x, start.y, end.x, end.y);
+    }
+
+
+    public void addLeg(Leg leg, float startX, float startY, float endX, float endY) {
+        int id = legs.register(leg);
+        if (id * 4 >= legCoords.length) {
+            legCoords = Arrays.copyOf(legCoords, legCoords.length * 2);
+        }
+        int offset = id * 4;
+        legCoords[offset] = startX;
+        legCoords[offset + 1] = startY;
+        legCoords[offset + 2] = endX;
+        legCoords[offset + 3] = endY;
+        updateLegGrid(id);
+    }
+
+
+    /** Returns false if the station wasn't in the space. */
+    public boolean removeStation(Station station) {
+        int id = stations.indexOf(station);
+        if (id < 0) {
+            return false;
+        }
+        int last = stations.removeAt(id);
+        System.arraycopy(stationCoords, last * 2, stationCoords, id * 2, 2);
+        dropStationGrid();
+        return true;
+    }
+
+
+    /** Returns false if the leg wasn't in the space. */
+    public boolean removeLeg(Leg leg) {
+        int id = legs.indexOf(leg);
+        if (id < 0) {
+            return false;
+        }
+        int last = legs.removeAt(id);
+        System.arraycopy(legCoords, last * 4, legCoords, id * 4, 4);
+        dropLegGrid();
+        return true;
+    }
+
+
+    public int getStationCount() {
+        return stations.size();
+    }
+
+
+    /** The station's id, or -1 if it isn't in this space. */
+    public int getStationId(Station station) {
+        return stations.indexOf(station);
+    }
+
+
+    public Station getStation(int id) {
+        return stations.get(id);
+    }
+
+
+    public float getStationX(int id) {
+        return stationCoords[id * 2];
+    }
+
+
+    public float getStationY(int id) {
+        return stationCoords[id * 2 + 1];
+    }
+
+
+    public int getLegCount() {
+        return legs.size();
+    }
+
+
+    /** The leg's id, or -1 if it isn't in this space. */
+    public int getLegId(Leg leg) {
+        return legs.indexOf(leg);
+    }
+
+
+    public Leg getLeg(int id) {
+        return legs.get(id);
+    }
+
+
+    public float getLegStartX(int id) {
+        return legCoords[id * 4];
+    }
+
+
+    public float getLegStartY(int id) {
+        return legCoords[id * 4 + 1];
+    }
+
+
+    public float getLegEndX(int id) {
+        return legCoords[id * 4 + 2];
+    }
+
+
+    public float getLegEndY(int id) {
+        return legCoords[id * 4 + 3];
+    }
+
+
+    /**
+     * Applies x' = a.x + b.y + c, y' = d.x + e.y + f to everything in the space, in place.
+     */
+    public synchronized PackedSpace2D applyAffine(
+            float a, float b, float c, float d, float e, float f) {
+        applyAffine(stationCoords, stations.size() * 2, a, b, c, d, e, f);
+        applyAffine(legCoords, legs.size() * 4, a, b, c, d, e, f);
+        stationGrid = null;
+        legGrid = null;
+        return this;
+    }
+
+
+    public PackedSpace2D translateInPlace(float dx, float dy) {
+        return applyAffine(1, 0, dx, 0, 1, dy);
+    }
+
+
+    public PackedSpace2D scaleInPlace(float scale) {
+        return applyAffine(scale, 0, 0, 0, scale, 0);
+    }
+
+
+    public PackedSpace2D flipVerticallyInPlace() {
+        return applyAffine(1, 0, 0, 0, -1, 0);
+    }
+
+
+    @Override
+    public PackedSpace2D scale(float scale) {
+        return copyOf(this).scaleInPlace(scale);
+    }
+
+
+    /**
+     * The ids (in ascending order) of the legs that touch the given rectangle, or at least
+     * whose bounding boxes do.
+     */
+    public int[] getLegIdsWithin(float minX, float minY, float maxX, float maxY) {
+        BitSet candidates = new BitSet(legs.size());
+        if (!getLegGrid().collectCandidates(minX, minY, maxX, maxY, candidates)) {
+            candidates.set(0, legs.size());
+        }
+
+        int[] ids = new int[candidates.cardinality()];
+        int count = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            int offset = id * 4;
+            float startX = legCoords[offset];
+            float startY = legCoords[offset + 1];
+            float endX = legCoords[offset + 2];
+            float endY = legCoords[offset + 3];
+            if (Math.max(startX, endX) >= minX && Math.min(startX, endX) <= maxX &&
+                    Math.max(startY, endY) >= minY && Math.min(startY, endY) <= maxY) {
+                ids[count++] = id;
+            }
+        }
+        return count == ids.length? ids : Arrays.copyOf(ids, count);
+    }
+
+
+    /** The id of the station nearest the given point within the given distance, or -1. */
+    public int findNearestStation(float x, float y, float within) {
+        BitSet candidates = new BitSet(stations.size());
+        if (!getStationGrid().collectCandidates(
+                x - within, y - within, x + within, y + within, candidates)) {
+            candidates.set(0, stations.size());
+        }
+
+        int best = -1;
+        float shortest = within * within;
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            float dx = stationCoords[id * 2] - x;
+            float dy = stationCoords[id * 2 + 1] - y;
+            float distance = dx * dx + dy * dy;
+            if (distance <= shortest && (best == -1 || distance < shortest)) {
+                best = id;
+                shortest = distance;
+            }
+        }
+        return best;
+    }
+
+
+    private synchronized SpatialGrid getStationGrid() {
+        if (stationGrid == null) {
+            SpatialGrid grid = new SpatialGrid(chooseCellSize(), stations.size());
+            for (int id = 0; id < stations.size(); id++) {
+                float x = stationCoords[id * 2];
+                float y = stationCoords[id * 2 + 1];
+                grid.insert(id, x, y, x, y);
+            }
+            stationGrid = grid;
+        }
+        return stationGrid;
+    }
+
+
+    private synchronized SpatialGrid getLegGrid() {
+        if (legGrid == null) {
+            SpatialGrid grid = new SpatialGrid(chooseCellSize(), legs.size());
+            for (int id = 0; id < legs.size(); id++) {
+                insertLeg(grid, id);
+            }
+            legGrid = grid;
+        }
+        return legGrid;
+    }
+
+
+    private synchronized void dropStationGrid() {
+        stationGrid = null;
+    }
+
+
+    private synchronized void dropLegGrid() {
+        legGrid = null;
+    }
+
+
+    private synchronized void updateStationGrid(int id) {
+        if (stationGrid != null) {
+            if (stationGrid.isCrowded()) {
+                stationGrid = null; // rebuilt at the right size next time it's wanted
+            } else {
+                float x = stationCoords[id * 2];
+                float y = stationCoords[id * 2 + 1];
+                stationGrid.insert(id, x, y, x, y);
+            }
+        }
+    }
+
+
+    private synchronized void updateLegGrid(int id) {
+        if (legGrid != null) {
+            if (legGrid.isCrowded()) {
+                legGrid = null;
+            } else {
+                insertLeg(legGrid, id);
+            }
+        }
+    }
+
+
+    private void insertLeg(SpatialGrid grid, int id) {
+        int offset = id * 4;
+        float startX = legCoords[offset];
+        float startY = legCoords[offset + 1];
+        float endX = legCoords[offset + 2];
+        float endY = legCoords[offset + 3];
+        grid.insert(id, Math.min(startX, endX), Math.min(startY, endY),
+                Math.max(startX, endX), Math.max(startY, endY));
+    }
+
+
+    /**
+     * Cells about twice the size of the average leg, so most legs fall in one or two cells
+     * and a lookup around a point only has to look at a handful.
+     */
+    private float chooseCellSize() {
+        double total = 0;
+        for (int offset = 0; offset < legs.size() * 4; offset += 4) {
+            total += Math.max(Math.abs(legCoords[offset + 2] - legCoords[offset]),
+                    Math.abs(legCoords[offset + 3] - legCoords[offset + 1]));
+        }
+        double average = legs.size() == 0? 0 : total / legs.size();
+        return (float) Math.max(average * 2, MIN_CELL_SIZE);
+    }
+
+
+    private static void applyAffine(float[] coords, int length,
+                                    float a, float b, float c, float d, float e, float f) {
+        for (int i = 0; i < length; i += 2) {
+            float x = coords[i];
+            float y = coords[i + 1];
+            coords[i] = a * x + b * y + c;
+            coords[i + 1] = d * x + e * y + f;
+        }
+    }
+
+
+    private class StationMapView extends AbstractMap<Station, Coord2D> {
+
+        @Override
+        public int size() {
+            return stations.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return stations.indexOf(key) >= 0;
+        }
+
+        @Override
+        public Coord2D get(Object key) {
+            int id = stations.indexOf(key);
+            return id < 0? null : new Coord2D(getStationX(id), getStationY(id));
+        }
+
+        @Override
+        public Coord2D put(Station station, Coord2D coord) {
+            Coord2D previous = get(station);
+            addStation(station, coord);
+            return previous;
+        }
+
+        @Override
+        public Coord2D remove(Object key) {
+            Coord2D previous = get(key);
+            if (previous != null) {
+                removeStation((Station) key);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            stations.removeAll();
+            dropStationGrid();
+        }
+
+        @Override
+        public Set<Station> keySet() {
+            return stations;
+        }
+
+        @Override
+        public Set<Map.Entry<Station, Coord2D>> entrySet() {
+            return new AbstractSet<Map.Entry<Station, Coord2D>>() {
+                @Override
+                public Iterator<Map.Entry<Station, Coord2D>> iterator() {
+                    return new IdIterator<Map.Entry<Station, Coord2D>>(stations.size()) {
+                        @Override
+                        Map.Entry<Station, Coord2D> get(int id) {
+                            return new SimpleImmutableEntry<>(getStation(id),
+                                    new Coord2D(getStationX(id), getStationY(id)));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return stations.size();
+                }
+            };
+        }
+    }
+
+
+    private class LegMapView extends AbstractMap<Leg, Line<Coord2D>> {
+
+        @Override
+        public int size() {
+            return legs.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return legs.indexOf(key) >= 0;
+        }
+
+        @Override
+        public Line<Coord2D> get(Object key) {
+            int id = legs.indexOf(key);
+            return id < 0? null : getLine(id);
+        }
+
+        @Override
+        public Line<Coord2D> put(Leg leg, Line<Coord2D> line) {
+            Line<Coord2D> previous = get(leg);
+            addLeg(leg, line);
+            return previous;
+        }
+
+        @Override
+        public Line<Coord2D> remove(Object key) {
+            Line<Coord2D> previous = get(key);
+            if (previous != null) {
+                removeLeg((Leg) key);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            legs.removeAll();
+            dropLegGrid();
+        }
+
+        @Override
+        public Set<Leg> keySet() {
+            return legs;
+        }
+
+        @Override
+        public Set<Map.Entry<Leg, Line<Coord2D>>> entrySet() {
+            return new AbstractSet<Map.Entry<Leg, Line<Coord2D>>>() {
+                @Override
+                public Iterator<Map.Entry<Leg, Line<Coord2D>>> iterator() {
+                    return new IdIterator<Map.Entry<Leg, Line<Coord2D>>>(legs.size()) {
+                        @Override
+                        Map.Entry<Leg, Line<Coord2D>> get(int id) {
+                            return new SimpleImmutableEntry<>(getLeg(id), getLine(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return legs.size();
+                }
+            };
+        }
+
+        private Line<Coord2D> getLine(int id) {
+            return new Line<>(
+                    new Coord2D(getLegStartX(id), getLegStartY(id)),
+                    new Coord2D(getLegEndX(id), getLegEndY(id)));
+        }
+    }
+
+
+    private abstract static class IdIterator<T> implements Iterator<T> {
+
+        private final int size;
+        private int next = 0;
+
+        IdIterator(int size) {
+            this.size = size;
+        }
+
+        abstract T get(int id);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            return get(next++);
+        }
+    }
+
+
+    /**
+     * Hands out dense ids in the order things are added, and looks them up again by identity.
+     * The hash table only holds ids (plus one, so zero means empty); the things themselves are
+     * kept in id order. Doubles as a read-only key set.
+     */
+    private static class IdTable<T> extends AbstractSet<T> {
+
+        private Object[] items;
+        private int size = 0;
+        private int[] slots;
+
+        IdTable(int expectedSize) {
+            items = new Object[expectedSize];
+            slots = new int[tableSizeFor(expectedSize)];
+        }
+
+        IdTable(IdTable<T> other) {
+            items = other.items.clone();
+            size = other.size;
+            slots = other.slots.clone();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object item) {
+            return indexOf(item) >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("Id: " + id + ", Size: " + size);
+            }
+            return (T) items[id];
+        }
+
+        int indexOf(Object item) {
+            if (item == null) {
+                return -1;
+            }
+            int mask = slots.length - 1;
+            for (int slot = firstSlot(item, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+                int id = slots[slot] - 1;
+                if (items[id] == item) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        /** Adds the item if it's not already there; either way returns its id. */
+        int register(T item) {
+            int existing = indexOf(item);
+            if (existing >= 0) {
+                return existing;
+            }
+
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            int id = size++;
+            items[id] = item;
+
+            // keep at most half full so probe runs stay short
+            if (size * 2 > slots.length) {
+                rehash(slots.length * 2);
+            } else {
+                insert(slots, id);
+            }
+            return id;
+        }
+
+        /**
+         * Takes out the item with the given id by moving the last item into its place (if it
+         * isn't the last itself), and returns the id the moved item had.
+         */
+        int removeAt(int id) {
+            int mask = slots.length - 1;
+            removeSlot(findSlot(id, mask), mask);
+            int last = size - 1;
+            if (id != last) {
+                slots[findSlot(last, mask)] = id + 1;
+                items[id] = items[last];
+            }
+            items[last] = null;
+            size--;
+            return last;
+        }
+
+        void removeAll() {
+            Arrays.fill(items, 0, size, null);
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new IdIterator<T>(size) {
+                @Override
+                T get(int id) {
+                    return IdTable.this.get(id);
+                }
+            };
+        }
+
+        private int findSlot(int id, int mask) {
+            int slot = firstSlot(items[id], mask);
+            while (slots[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Empties the slot, then moves back any later entries of the same probe run that
+         * would otherwise no longer be found from where they hash to.
+         */
+        private void removeSlot(int hole, int mask) {
+            for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+                int home = firstSlot(items[slots[next] - 1], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = 0;
+        }
+
+        private void rehash(int capacity) {
+            int[] newSlots = new int[capacity];
+            for (int id = 0; id < size; id++) {
+                insert(newSlots, id);
+            }
+            slots = newSlots;
+        }
+
+        private void insert(int[] table, int id) {
+            int mask = table.length - 1;
+            int slot = firstSlot(items[id], mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+
+        private static int firstSlot(Object item, int mask) {
+            int hash = System.identityHashCode(item);
+            hash ^= (hash >>> 16); // identity hashes aren't always well spread in the low bits
+            return hash & mask;
+        }
+
+        private static int tableSizeFor(int expectedSize) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < expectedSize * 2) {
+                capacity *= 2;
+            }
+            return capacity;
+        }
+    }
+
+}
@@ -6,6 +6,11 @@ import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -19,8 +24,12 @@ public enum Projection2D {
     // We just have to remember to reverse the flip when exporting the sketch :)
 
     PLAN("Plan", "plan") {
-        public Coord2D project(Coord3D coord3D) {
-            return new Coord2D(coord3D.x, -coord3D.y);
+        public float projectX(float x, float y, float z) {
+            return x;
+        }
+
+        public float projectY(float x, float y, float z) {
+            return -y;
         }
 
         public boolean isLegInPlane(Leg leg) {
@@ -28,8 +37,12 @@ public enum Projection2D {
         }
     },
     ELEVATION_NS("Elevation NS", "elev_ns") {
-        public Coord2D project(Coord3D coord3D) {
-            return new Coord2D(coord3D.y, -coord3D.z);
+        public float projectX(float x, float y, float z) {
+            return y;
+        }
+
+        public float projectY(float x, float y, float z) {
+            return -z;
         }
 
         public boolean isLegInPlane(Leg leg) {
@@ -37,8 +50,12 @@ public enum Projection2D {
         }
     },
     ELEVATION_EW("Elevation EW", "elev_ew") {
-        public Coord2D project(Coord3D coord3D) {
-            return new Coord2D(coord3D.x, -coord3D.z);
+        public float projectX(float x, float y, float z) {
+            return x;
+        }
+
+        public float projectY(float x, float y, float z) {
+            return -z;
         }
 
         public boolean isLegInPlane(Leg leg) {
@@ -46,8 +63,12 @@ public enum Projection2D {
         }
     },
     EXTENDED_ELEVATION("Extended Elevation", "ee") {
-        public Coord2D project(Coord3D coord3D) {
-            return ELEVATION_NS.project(coord3D);
+        public float projectX(float x, float y, float z) {
+            return ELEVATION_NS.projectX(x, y, z);
+        }
+
+        public float projectY(float x, float y, float z) {
+            return ELEVATION_NS.projectY(x, y, z);
         }
 
         public boolean isLegInPlane(Leg leg) {
@@ -75,37 +96,105 @@ public enum Projection2D {
         this.abbreviation = abbreviation;
     }
 
-    public Space<Coord3D> transform(Survey survey) {
+    /** The transformer for the 3D layout this projection is made from. */
+    public Space3DTransformer getTransformer() {
         if (this == EXTENDED_ELEVATION) {
-            return space3DTransformerForElevation.transformTo3D(survey);
+            return space3DTransformerForElevation;
         } else {
-            return space3DTransformer.transformTo3D(survey);
+            return space3DTransformer;
         }
     }
+
+    /** Lays the survey out in 3D for this projection, in a new space that's the caller's own. */
+    public Space<Coord3D> transform(Survey survey) {
+        return getTransformer().transformTo3D(survey);
+    }
     
-    public abstract Coord2D project(Coord3D coord3D);
+    // the two halves of the projection, on plain numbers so projecting a whole space doesn't
+    // need a Coord2D for every point
+    public abstract float projectX(float x, float y, float z);
+    public abstract float projectY(float x, float y, float z);
+
+    public Coord2D project(Coord3D coord3D) {
+        return new Coord2D(
+                projectX(coord3D.x, coord3D.y, coord3D.z),
+                projectY(coord3D.x, coord3D.y, coord3D.z));
+    }
+
     public abstract boolean isLegInPlane(Leg leg);
 
-    public Space<Coord2D> project(Survey survey) {
+    /**
+     * Whether the two are projected from the same 3D layout, so only need transforming once.
+     */
+    public boolean sharesTransformWith(Projection2D other) {
+        return getTransformer() == other.getTransformer();
+    }
+
+    /**
+     * Projects the survey into each of the given types, transforming it to 3D only once for
+     * all the types that share a transform.
+     */
+    public static Map<Projection2D, PackedSpace2D> project(
+            Survey survey, Collection<Projection2D> projectionTypes) {
+
+        Map<Space3DTransformer, List<Projection2D>> byTransformer = new LinkedHashMap<>();
+        for (Projection2D projectionType : projectionTypes) {
+            Space3DTransformer transformer = projectionType.getTransformer();
+            if (!byTransformer.containsKey(transformer)) {
+                byTransformer.put(transformer, new ArrayList<>());
+            }
+            byTransformer.get(transformer).add(projectionType);
+        }
+
+        Map<Projection2D, PackedSpace2D> projections = new EnumMap<>(Projection2D.class);
+        for (Map.Entry<Space3DTransformer, List<Projection2D>> entry : byTransformer.entrySet()) {
+            Space3DTransformer.Layout layout = new Space3DTransformer.Layout(
+                    entry.getKey(), survey);
+            projections.putAll(project(layout, entry.getValue()));
+        }
+        return projections;
+    }
+
+    /**
+     * Brings the layout up to date and projects it into each of the given types, which must
+     * all be made from the layout's transformer.
+     */
+    public static Map<Projection2D, PackedSpace2D> project(
+            Space3DTransformer.Layout layout, Collection<Projection2D> projectionTypes) {
+        Map<Projection2D, PackedSpace2D> projections = new EnumMap<>(Projection2D.class);
+        // hold the layout so nobody else can update its space while we're reading it
+        synchronized (layout) {
+            layout.update();
+            for (Projection2D projectionType : projectionTypes) {
+                projections.put(projectionType, projectionType.project(layout.getSpace()));
+            }
+        }
+        return projections;
+    }
+
+    public PackedSpace2D project(Survey survey) {
+        return project(transform(survey));
+    }
 
-        Space<Coord3D> space3D = transform(survey);
+    private PackedSpace2D project(Space<Coord3D> space3D) {
 
-        Space<Coord2D> space2D = new Space<>();
+        Map<Station, Coord3D> stationMap = space3D.getStationMap();
+        Map<Leg, Line<Coord3D>> legMap = space3D.getLegMap();
+        PackedSpace2D space2D = new PackedSpace2D(stationMap.size(), legMap.size());
 
-        for (Map.Entry<Station, Coord3D> entry : space3D.getStationMap().entrySet()) {
-            Station station = entry.getKey();
-            Coord3D stationCoord3D = entry.getValue();
-            Coord2D stationCoord2D = project(stationCoord3D);
-            space2D.addStation(station, stationCoord2D);
+        for (Map.Entry<Station, Coord3D> entry : stationMap.entrySet()) {
+            Coord3D coord = entry.getValue();
+            space2D.addStation(entry.getKey(),
+                    projectX(coord.x, coord.y, coord.z), projectY(coord.x, coord.y, coord.z));
         }
 
-        for (Map.Entry<Leg, Line<Coord3D>> entry : space3D.getLegMap().entrySet()) {
-            Leg leg = entry.getKey();
+        for (Map.Entry<Leg, Line<Coord3D>> entry : legMap.entrySet()) {
             Line<Coord3D> line3D = entry.getValue();
-            Coord2D start = project(line3D.getStart());
-            Coord2D end = project(line3D.getEnd());
-            Line<Coord2D> line2D = new Line<>(start, end);
-            space2D.addLeg(leg, line2D);
+            Coord3D start = line3D.getStart();
+            Coord3D end = line3D.getEnd();
+            space2D.addLeg(entry.getKey(),
+                    projectX(start.x, start.y, start.z), projectY(start.x, start.y, start.z),
+                    projectX(end.x, end.y, end.z), projectY(end.x, end.y, end.z));
         }
 
         return space2D;
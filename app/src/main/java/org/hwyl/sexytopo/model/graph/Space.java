@@ -8,23 +8,31 @@ import java.util.Map;
 
 
 public class Space<T extends Coord> {
-    private final Map<Station, T> stations = new HashMap<>();
-    private final Map<Leg, Line<T>> legs = new HashMap<>();
+    // made when first asked for, so a subclass keeping things its own way (e.g. PackedSpace2D)
+    // doesn't carry two empty maps around
+    private Map<Station, T> stations = null;
+    private Map<Leg, Line<T>> legs = null;
 
     public Map<Station, T> getStationMap() {
+        if (stations == null) {
+            stations = new HashMap<>();
+        }
         return stations;
     }
 
     public Map<Leg, Line<T>> getLegMap() {
+        if (legs == null) {
+            legs = new HashMap<>();
+        }
         return legs;
     }
 
     public void addStation(Station station, T coord) {
-        stations.put(station, coord);
+        getStationMap().put(station, coord);
     }
 
     public void addLeg(Leg leg, Line<T> line) {
-        legs.put(leg, line);
+        getLegMap().put(leg, line);
     }
 
 
@@ -32,11 +40,11 @@ public class Space<T extends Coord> {
 
         Space<T> scaled = new Space<>();
 
-        for (Map.Entry<Station, T> entry: stations.entrySet()) {
+        for (Map.Entry<Station, T> entry: getStationMap().entrySet()) {
             scaled.addStation(entry.getKey(), (T) entry.getValue().scale(scale));
         }
 
-        for (Map.Entry<Leg, Line<T>> entry: legs.entrySet()) {
+        for (Map.Entry<Leg, Line<T>> entry: getLegMap().entrySet()) {
             scaled.addLeg(entry.getKey(), (Line<T>) entry.getValue().scale(scale));
         }
 
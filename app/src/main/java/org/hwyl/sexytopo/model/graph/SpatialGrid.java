@@ -0,0 +1,134 @@
+package org.hwyl.sexytopo.model.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+
+/**
+ * A uniform grid of square cells over a PackedSpace2D, holding the ids of whatever overlaps
+ * each cell. The cells are hashed into a fixed number of buckets so the grid doesn't need to
+ * know the extent of the space up front and can keep taking things added anywhere; a bucket
+ * may hold things from several cells, so lookups only give candidates which still need
+ * checking against their real coordinates.
+ *
+ * Anything spanning too many cells (a very long leg, say) is kept to one side and always
+ * handed back as a candidate.
+ */
+class SpatialGrid {
+
+    private static final int MAX_CELLS_PER_ITEM = 16;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final float cellSize;
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private int[] oversized = new int[INITIAL_BUCKET_CAPACITY];
+    private int oversizedCount = 0;
+    private int itemCount = 0;
+
+
+    SpatialGrid(float cellSize, int expectedItems) {
+        this.cellSize = cellSize;
+        int bucketCount = 16;
+        while (bucketCount < expectedItems) {
+            bucketCount *= 2;
+        }
+        buckets = new int[bucketCount][];
+        bucketSizes = new int[bucketCount];
+    }
+
+
+    void insert(int id, float minX, float minY, float maxX, float maxY) {
+        itemCount++;
+
+        int minCellX = toCell(minX);
+        int minCellY = toCell(minY);
+        int maxCellX = toCell(maxX);
+        int maxCellY = toCell(maxY);
+        long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+
+        if (cellCount > MAX_CELLS_PER_ITEM) {
+            if (oversizedCount == oversized.length) {
+                oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+            }
+            oversized[oversizedCount++] = id;
+            return;
+        }
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                add(bucketFor(cellX, cellY), id);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the bit for every id that might overlap the given rectangle. Returns false without
+     * doing anything if the rectangle covers so much of the grid that the caller would be
+     * better off just checking everything.
+     */
+    boolean collectCandidates(float minX, float minY, float maxX, float maxY, BitSet ids) {
+        int minCellX = toCell(minX);
+        int minCellY = toCell(minY);
+        int maxCellX = toCell(maxX);
+        int maxCellY = toCell(maxY);
+        long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+
+        if (cellCount > buckets.length) {
+            return false;
+        }
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                int bucket = bucketFor(cellX, cellY);
+                int[] contents = buckets[bucket];
+                for (int i = 0; i < bucketSizes[bucket]; i++) {
+                    ids.set(contents[i]);
+                }
+            }
+        }
+
+        for (int i = 0; i < oversizedCount; i++) {
+            ids.set(oversized[i]);
+        }
+        return true;
+    }
+
+
+    /** Whether enough has been added since the grid was sized that it's worth rebuilding. */
+    boolean isCrowded() {
+        return itemCount > buckets.length * 4;
+    }
+
+
+    private void add(int bucket, int id) {
+        int[] contents = buckets[bucket];
+        int size = bucketSizes[bucket];
+        if (size > 0 && contents[size - 1] == id) {
+            return; // two of this item's cells share a bucket
+        }
+        if (contents == null) {
+            contents = buckets[bucket] = new int[INITIAL_BUCKET_CAPACITY];
+        } else if (size == contents.length) {
+            contents = buckets[bucket] = Arrays.copyOf(contents, size * 2);
+        }
+        contents[size] = id;
+        bucketSizes[bucket] = size + 1;
+    }
+
+
+    private int toCell(float value) {
+        double cell = Math.floor(value / cellSize);
+        // keep well clear of overflow when working out cell counts
+        return (int) Math.max(-(1 << 30), Math.min(1 << 30, cell));
+    }
+
+
+    private int bucketFor(int cellX, int cellY) {
+        int hash = (cellX * 73856093) ^ (cellY * 19349663);
+        hash ^= (hash >>> 16);
+        return hash & (buckets.length - 1);
+    }
+
+}
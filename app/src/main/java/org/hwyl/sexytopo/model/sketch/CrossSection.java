@@ -1,13 +1,12 @@
 package org.hwyl.sexytopo.model.sketch;
 
-import org.hwyl.sexytopo.control.util.Space3DUtils;
-import org.hwyl.sexytopo.model.graph.Coord2D;
-import org.hwyl.sexytopo.model.graph.Coord3D;
-import org.hwyl.sexytopo.model.graph.Line;
-import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.control.util.GeometryKernel;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 
+import java.util.List;
+
 /**
  * Represents a cross-section of a passage at a specified angle on a top-down plan sketch.
  */
@@ -21,18 +20,19 @@ public class CrossSection {
         this.angle = angle;
     }
 
-    public Space<Coord2D> getProjection() {
+    public PackedSpace2D getProjection() {
 
-        Space<Coord2D> projection = new Space<>();
-        projection.addStation(station, Coord2D.ORIGIN);
+        List<Leg> splays = station.getUnconnectedOnwardLegs();
+        PackedSpace2D projection = new PackedSpace2D(1, splays.size());
+        projection.addStation(station, 0, 0);
 
-        for (Leg leg : station.getUnconnectedOnwardLegs()) {
+        float[] offset = new float[3];
+        for (Leg leg : splays) {
             // first of all normalise to match the angle of the cross section
-            Leg rotated = leg.rotate(-angle);
-            Coord3D coord3D = Space3DUtils.toCartesian(Coord3D.ORIGIN, rotated);
-            Coord2D coord2D = new Coord2D(coord3D.x, -coord3D.z);
-            Line<Coord2D> line = new Line<>(Coord2D.ORIGIN, coord2D);
-            projection.addLeg(rotated, line);
+            float azimuth = GeometryKernel.rotateAzimuth(leg.getAzimuth(), -angle);
+            GeometryKernel.toCartesian(
+                    leg.getDistance(), azimuth, leg.getInclination(), offset, 0);
+            projection.addLeg(leg, 0, 0, offset[0], -offset[2]);
         }
 
         return projection;
@@ -1,40 +1,81 @@
 package org.hwyl.sexytopo.model.sketch;
 
-import org.hwyl.sexytopo.control.util.SpaceMover;
 import org.hwyl.sexytopo.model.graph.Coord2D;
-import org.hwyl.sexytopo.model.graph.Line;
-import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+
+import java.util.List;
 
 
 public class CrossSectionDetail extends SinglePositionDetail {
 
     private final CrossSection crossSection;
 
+    // The projection is kept until the station's splays change (legs are never altered, only
+    // replaced, so it's enough to check it's still the same legs). The position and angle
+    // can't change.
+    private PackedSpace2D projection = null;
+    private List<Leg> projectedSplays = null;
+
     public CrossSectionDetail(CrossSection crossSection, Coord2D position) {
         super(Colour.NONE, position);
         this.crossSection = crossSection;
+        if (crossSection != null && crossSection.getStation() != null) {
+            updateProjectionIfNeeded();
+        }
     }
 
     public CrossSection getCrossSection() {
         return crossSection;
     }
 
-    public Space<Coord2D> getProjection() {
-        // FIXME shouldn't recalculate this each time
-        Space<Coord2D> relativeProjection = crossSection.getProjection();
+    /**
+     * The splays of the cross-section, positioned around it. This is shared, so shouldn't be
+     * altered.
+     */
+    public PackedSpace2D getProjection() {
+        updateProjectionIfNeeded();
+        return projection;
+    }
+
+    @Override
+    public CrossSectionDetail translate(Coord2D point) {
+        return new CrossSectionDetail(getCrossSection(), getPosition().plus(point));
+    }
+
+    private void updateProjectionIfNeeded() {
+        Station station = crossSection.getStation();
+        List<Leg> splays = station.getUnconnectedOnwardLegs();
+        if (projection != null && isSameLegs(splays, projectedSplays)) {
+            return;
+        }
 
         // convert legs from relative to origin to relative to x-section centre
-        Space<Coord2D> projection = SpaceMover.move(relativeProjection, getPosition());
+        // (the projection is freshly made so can be moved in place)
+        PackedSpace2D updated = crossSection.getProjection();
+        Coord2D position = getPosition();
+        updated.translateInPlace(position.x, position.y);
 
-        for (Line<Coord2D> line : projection.getLegMap().values()) {
-            updateBoundingBox(line.getEnd());
+        resetBoundingBox();
+        updateBoundingBox(position);
+        for (int id = 0; id < updated.getLegCount(); id++) {
+            updateBoundingBox(new Coord2D(updated.getLegEndX(id), updated.getLegEndY(id)));
         }
 
-        return projection;
+        projection = updated;
+        projectedSplays = splays;
     }
 
-    @Override
-    public CrossSectionDetail translate(Coord2D point) {
-        return new CrossSectionDetail(getCrossSection(), getPosition().plus(point));
+    private static boolean isSameLegs(List<Leg> legs, List<Leg> others) {
+        if (legs.size() != others.size()) {
+            return false;
+        }
+        for (int i = 0; i < legs.size(); i++) {
+            if (legs.get(i) != others.get(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -5,13 +5,32 @@ import org.hwyl.sexytopo.control.util.Space2DUtils;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class PathDetail extends SketchDetail {
 
+    /**
+     * While a path is being drawn, every this many new points the ones since the last
+     * compaction are simplified, so a long stroke never holds all its raw points and there's
+     * little left to do when it's finished.
+     */
+    private static final int COMPACTION_WINDOW = 256;
 
     private List<Coord2D> path;
 
+    // points before this index have already been compacted
+    private int compactedUpTo = 0;
+    private float[] windowXs = null;
+    private float[] windowYs = null;
+    private int[] windowKept = null;
+
+    // The path as line segments (x1, y1, x2, y2, then the next...), as Canvas.drawLines wants
+    // them, in survey coords so they only need building once. Built when first asked for,
+    // then added to as the path is drawn.
+    private float[] lineSegments = null;
+    private int lineSegmentsLength = 0;
+
     public PathDetail(Coord2D start, Colour colour) {
         super(colour);
         this.path = new ArrayList<>();
@@ -28,8 +47,47 @@ public final class PathDetail extends SketchDetail {
     }
 
     public void lineTo(Coord2D point) {
+        Coord2D previous = path.isEmpty()? null : path.get(path.size() - 1);
         path.add(point);
         updateBoundingBox(point);
+        if (path.size() - compactedUpTo >= COMPACTION_WINDOW) {
+            compactRecentPoints();
+        } else if (lineSegments != null && previous != null) {
+            addLineSegment(previous, point);
+        }
+    }
+
+
+    /**
+     * The path as line segments, in survey coords, for drawing. Only the first
+     * getLineSegmentsLength() values are used, and the array shouldn't be changed.
+     */
+    public float[] getLineSegments() {
+        if (lineSegments == null) {
+            lineSegments = new float[Math.max(path.size() - 1, 1) * 4];
+            lineSegmentsLength = 0;
+            for (int i = 1; i < path.size(); i++) {
+                addLineSegment(path.get(i - 1), path.get(i));
+            }
+        }
+        return lineSegments;
+    }
+
+
+    public int getLineSegmentsLength() {
+        getLineSegments();
+        return lineSegmentsLength;
+    }
+
+
+    private void addLineSegment(Coord2D from, Coord2D to) {
+        if (lineSegmentsLength + 4 > lineSegments.length) {
+            lineSegments = Arrays.copyOf(lineSegments, lineSegments.length * 2);
+        }
+        lineSegments[lineSegmentsLength++] = from.x;
+        lineSegments[lineSegmentsLength++] = from.y;
+        lineSegments[lineSegmentsLength++] = to.x;
+        lineSegments[lineSegmentsLength++] = to.y;
     }
 
     public List<Coord2D> getPath() {
@@ -38,6 +96,55 @@ public final class PathDetail extends SketchDetail {
 
     public void setPath(List<Coord2D> path) {
         this.path = path;
+        lineSegments = null;
+        compactedUpTo = 0;
+        windowXs = null;
+        windowYs = null;
+        windowKept = null;
+    }
+
+
+    /**
+     * Simplifies the points since the last compaction. This uses half the tolerance the
+     * finished path will be simplified with (which only grows as the path does), so simplifying
+     * the finished path again stays within 1.5 times its tolerance of what was drawn.
+     *
+     * The last stretch of raw points is left for next time, so the window boundary doesn't
+     * force a corner into the path; unless that would leave too many, in which case
+     * everything is compacted.
+     */
+    private void compactRecentPoints() {
+        int count = path.size() - compactedUpTo;
+        if (windowXs == null) {
+            windowXs = new float[COMPACTION_WINDOW];
+            windowYs = new float[COMPACTION_WINDOW];
+            windowKept = new int[COMPACTION_WINDOW];
+        }
+        for (int i = 0; i < count; i++) {
+            Coord2D point = path.get(compactedUpTo + i);
+            windowXs[i] = point.x;
+            windowYs[i] = point.y;
+        }
+
+        float epsilon = Space2DUtils.simplificationEpsilon(this) / 2;
+        int keptCount = Space2DUtils.simplify(windowXs, windowYs, count, epsilon, windowKept);
+
+        int lastToCommit = windowKept[keptCount - 2];
+        if (keptCount == 2 || count - 1 - lastToCommit > COMPACTION_WINDOW / 2) {
+            lastToCommit = count - 1;
+        }
+
+        List<Coord2D> window = path.subList(compactedUpTo, path.size());
+        List<Coord2D> compacted = new ArrayList<>();
+        for (int i = 0; i < keptCount && windowKept[i] <= lastToCommit; i++) {
+            compacted.add(window.get(windowKept[i]));
+        }
+        compacted.addAll(window.subList(lastToCommit + 1, count));
+        window.clear();
+
+        path.addAll(compacted);
+        compactedUpTo = path.size() - (count - lastToCommit);
+        lineSegments = null;
     }
 
     @Override
@@ -1,16 +1,25 @@
 package org.hwyl.sexytopo.model.sketch;
 
 import org.hwyl.sexytopo.control.util.Space2DUtils;
+import org.hwyl.sexytopo.model.common.QuadTree;
 import org.hwyl.sexytopo.model.common.Shape;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 import org.hwyl.sexytopo.model.survey.Station;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class Sketch extends Shape {
 
+    private static final int MAX_RECENT_CHANGES = 256;
+
     private List<PathDetail> pathDetails = new ArrayList<>();
     private List<SymbolDetail> symbolDetails = new ArrayList<>();
     private List<TextDetail> textDetails = new ArrayList<>();
@@ -20,8 +29,27 @@ public class Sketch extends Shape {
     private final List<SketchDetail> undoneHistory = new ArrayList<>();
 
     private PathDetail activePath;
+
+    // Paths, symbols and text, by bounding box, plus the ends of the paths, for finding what's
+    // near a touch without going through everything. Built when first needed, then kept up to
+    // date as details are added, deleted, undone and redone (so details should only come and
+    // go through the sketch). The path being drawn isn't included until it's finished, and
+    // cross-sections aren't included at all as there are only ever a few.
+    private QuadTree<SketchDetail> detailIndex = null;
+    private QuadTree<PathDetail> pathEndIndex = null;
+
+    // The finished paths again, a bucket per colour, for drawing (see StrokeBucket). Built when
+    // first needed and then kept up to date in the same way as the indexes.
+    private Map<Colour, StrokeBucket> strokeBuckets = null;
+
     private Colour activeColour = Colour.BLACK;
 
+    // Bumped whenever a detail comes or goes (except the path being drawn), with the area
+    // covered by each of the most recent changes, so that anything drawn from the sketch can
+    // tell what needs redrawing
+    private long revision = 0;
+    private final Deque<Shape> recentChanges = new ArrayDeque<>();
+
     private boolean isSaved = true;
 
     public boolean isSaved() {
@@ -35,16 +63,23 @@ public class Sketch extends Shape {
     public void setPathDetails(List<PathDetail> pathDetails) {
         this.pathDetails = pathDetails;
         recalculateBoundingBox();
+        discardIndexes();
+        strokeBuckets = null;
+        recordEverythingChanged();
     }
 
     public void setSymbolDetails(List<SymbolDetail> symbolDetails) {
         this.symbolDetails = symbolDetails;
         recalculateBoundingBox();
+        discardIndexes();
+        recordEverythingChanged();
     }
 
     public void setTextDetails(List<TextDetail> textDetails) {
         this.textDetails = textDetails;
         recalculateBoundingBox();
+        discardIndexes();
+        recordEverythingChanged();
     }
 
 
@@ -76,13 +111,19 @@ public class Sketch extends Shape {
         float epsilon = Space2DUtils.simplificationEpsilon(activePath);
         activePath.setPath(Space2DUtils.simplify(activePath.getPath(), epsilon));
         updateBoundingBox(activePath);
+        PathDetail finished = activePath;
         activePath = null;
+        addToIndexes(finished);
+        addToStrokeBuckets(finished);
+        recordChange(finished);
     }
 
     public void addTextDetail(Coord2D location, String text, float size) {
         TextDetail textDetail = new TextDetail(location, text, activeColour, size);
         textDetails.add(textDetail);
         addSketchDetail(textDetail);
+        addToIndexes(textDetail);
+        recordChange(textDetail);
     }
 
     public List<SymbolDetail> getSymbolDetails() {
@@ -93,6 +134,8 @@ public class Sketch extends Shape {
         SymbolDetail symbolDetail = new SymbolDetail(location, symbol, activeColour, size, angle);
         symbolDetails.add(symbolDetail);
         addSketchDetail(symbolDetail);
+        addToIndexes(symbolDetail);
+        recordChange(symbolDetail);
     }
 
     public List<TextDetail> getTextDetails() {
@@ -171,7 +214,10 @@ public class Sketch extends Shape {
             crossSectionDetails.remove(sketchDetail);
         }
 
+        removeFromIndexes(sketchDetail);
+        removeFromStrokeBuckets(sketchDetail);
         recalculateBoundingBox();
+        recordChange(sketchDetail);
     }
 
 
@@ -186,7 +232,10 @@ public class Sketch extends Shape {
             crossSectionDetails.add((CrossSectionDetail)sketchDetail);
         }
 
+        addToIndexes(sketchDetail);
+        addToStrokeBuckets(sketchDetail);
         updateBoundingBox(sketchDetail);
+        recordChange(sketchDetail);
     }
 
 
@@ -195,7 +244,11 @@ public class Sketch extends Shape {
         Coord2D closest = null;
         float minDistance = Float.MAX_VALUE;
 
-        for (PathDetail path : pathDetails) {
+        buildIndexesIfNeeded();
+        List<PathDetail> nearby = pathEndIndex.findWithin(
+                point.x - delta, point.y - delta, point.x + delta, point.y + delta);
+
+        for (PathDetail path : nearby) {
 
             if (activePath == path) {
                 continue;
@@ -229,7 +282,15 @@ public class Sketch extends Shape {
         SketchDetail closest = null;
         float minDistance = Float.MAX_VALUE;
 
-        for (SketchDetail detail : allSketchDetails()) {
+        buildIndexesIfNeeded();
+        List<SketchDetail> nearby = detailIndex.findWithin(
+                point.x - delta, point.y - delta, point.x + delta, point.y + delta);
+        if (activePath != null) {
+            nearby.add(activePath);
+        }
+        nearby.addAll(crossSectionDetails);
+
+        for (SketchDetail detail : nearby) {
             float distance = detail.getDistanceFrom(point);
             if (distance < delta && distance < minDistance) {
                 closest = detail;
@@ -241,10 +302,150 @@ public class Sketch extends Shape {
     }
 
 
+    /** The finished paths, a bucket per colour; empty buckets may be included. */
+    public Collection<StrokeBucket> getStrokeBuckets() {
+        if (strokeBuckets == null) {
+            strokeBuckets = new EnumMap<>(Colour.class);
+            for (PathDetail pathDetail : pathDetails) {
+                addToStrokeBuckets(pathDetail);
+            }
+        }
+        return strokeBuckets.values();
+    }
+
+
+    private void addToStrokeBuckets(SketchDetail detail) {
+        if (strokeBuckets == null || !(detail instanceof PathDetail) || detail == activePath) {
+            return;
+        }
+        StrokeBucket bucket = strokeBuckets.get(detail.getColour());
+        if (bucket == null) {
+            bucket = new StrokeBucket(detail.getColour());
+            strokeBuckets.put(detail.getColour(), bucket);
+        }
+        bucket.add((PathDetail) detail);
+    }
+
+
+    private void removeFromStrokeBuckets(SketchDetail detail) {
+        if (strokeBuckets == null || !(detail instanceof PathDetail)) {
+            return;
+        }
+        StrokeBucket bucket = strokeBuckets.get(detail.getColour());
+        if (bucket != null) {
+            bucket.remove((PathDetail) detail);
+        }
+    }
+
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+
+    /**
+     * The areas covered by whatever has changed after the given revision, oldest first.
+     * Returns null if that isn't known any more (only the most recent changes are kept), in
+     * which case the caller should assume anything might have changed. Safe to call from
+     * another thread (e.g. one drawing the sketch).
+     */
+    public synchronized List<Shape> getChangedAreasSince(long sinceRevision) {
+        long count = revision - sinceRevision;
+        if (count == 0) {
+            return Collections.emptyList();
+        } else if (count < 0 || count > recentChanges.size()) {
+            return null;
+        }
+        List<Shape> areas = new ArrayList<>(recentChanges);
+        return areas.subList(areas.size() - (int) count, areas.size());
+    }
+
+
+    private synchronized void recordChange(SketchDetail detail) {
+        revision++;
+        recentChanges.addLast(detail.getAreaCovered());
+        if (recentChanges.size() > MAX_RECENT_CHANGES) {
+            recentChanges.removeFirst();
+        }
+    }
+
+
+    private synchronized void recordEverythingChanged() {
+        revision++;
+        recentChanges.clear();
+    }
+
+
+    private void buildIndexesIfNeeded() {
+        if (detailIndex != null) {
+            return;
+        }
+        detailIndex = new QuadTree<>();
+        pathEndIndex = new QuadTree<>();
+        for (PathDetail pathDetail : pathDetails) {
+            addToIndexes(pathDetail);
+        }
+        for (SymbolDetail symbolDetail : symbolDetails) {
+            addToIndexes(symbolDetail);
+        }
+        for (TextDetail textDetail : textDetails) {
+            addToIndexes(textDetail);
+        }
+    }
+
+
+    private void discardIndexes() {
+        detailIndex = null;
+        pathEndIndex = null;
+    }
+
+
+    private void addToIndexes(SketchDetail detail) {
+        if (!isIndexed(detail)) {
+            return;
+        }
+        detailIndex.add(detail, detail.getLeft(), detail.getTop(),
+                detail.getRight(), detail.getBottom());
+        if (detail instanceof PathDetail) {
+            List<Coord2D> path = ((PathDetail) detail).getPath();
+            for (Coord2D end : new Coord2D[]{path.get(0), path.get(path.size() - 1)}) {
+                pathEndIndex.add((PathDetail) detail, end.x, end.y, end.x, end.y);
+            }
+        }
+    }
+
+
+    private void removeFromIndexes(SketchDetail detail) {
+        if (!isIndexed(detail)) {
+            return;
+        }
+        detailIndex.remove(detail, detail.getLeft(), detail.getTop(),
+                detail.getRight(), detail.getBottom());
+        if (detail instanceof PathDetail) {
+            List<Coord2D> path = ((PathDetail) detail).getPath();
+            for (Coord2D end : new Coord2D[]{path.get(0), path.get(path.size() - 1)}) {
+                pathEndIndex.remove((PathDetail) detail, end.x, end.y, end.x, end.y);
+            }
+        }
+    }
+
+
+    private boolean isIndexed(SketchDetail detail) {
+        if (detailIndex == null || detail == activePath) {
+            return false;
+        } else if (detail instanceof PathDetail) {
+            return !((PathDetail) detail).getPath().isEmpty();
+        } else {
+            return detail instanceof SymbolDetail || detail instanceof TextDetail;
+        }
+    }
+
+
     public void addCrossSection(CrossSection crossSection, Coord2D touchPointOnSurvey) {
         CrossSectionDetail sectionDetail = new CrossSectionDetail(crossSection, touchPointOnSurvey);
         crossSectionDetails.add(sectionDetail);
         addSketchDetail(sectionDetail);
+        recordChange(sectionDetail);
     }
 
     public List<CrossSectionDetail> getCrossSectionDetails() {
@@ -253,6 +454,7 @@ public class Sketch extends Shape {
 
     public void setCrossSectionDetails(List<CrossSectionDetail> crossSectionDetails) {
         this.crossSectionDetails = crossSectionDetails;
+        recordEverythingChanged();
     }
 
     public CrossSectionDetail getCrossSectionDetail(Station station) {
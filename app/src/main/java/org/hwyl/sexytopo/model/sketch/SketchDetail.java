@@ -19,6 +19,10 @@ public abstract class SketchDetail extends Shape {
     }
 
     public Colour getDrawColour(boolean isDarkModeActive) {
+        return getDrawColour(colour, isDarkModeActive);
+    }
+
+    public static Colour getDrawColour(Colour colour, boolean isDarkModeActive) {
         if (isDarkModeActive && colour == Colour.BLACK) {
             return Colour.WHITE;
         } else {
@@ -28,6 +32,14 @@ public abstract class SketchDetail extends Shape {
 
     public abstract float getDistanceFrom(Coord2D point);
 
+    /**
+     * Roughly the area the detail covers when drawn, in survey coords. This is just its
+     * bounding box unless it's drawn bigger than that.
+     */
+    public Shape getAreaCovered() {
+        return this;
+    }
+
     public abstract SketchDetail translate(Coord2D point);
 
 
@@ -0,0 +1,123 @@
+package org.hwyl.sexytopo.model.sketch;
+
+import org.hwyl.sexytopo.model.common.Shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The line segments (see PathDetail.getLineSegments) of all of a sketch's finished paths of
+ * one colour, end to end in one array, so that they can be drawn in one go rather than path
+ * by path.
+ *
+ * Paths added go on the end of the array. Taking one out means building the array again,
+ * which is put off until it's next asked for. The array handed out is never changed up to the
+ * length that goes with it (it's only added to past that, or replaced), so whoever has it can
+ * keep on reading that much of it, from another thread if need be.
+ *
+ * The bucket also keeps the area its paths cover, so that a bucket lying off screen can be
+ * skipped without looking at its segments.
+ */
+public class StrokeBucket {
+
+    private final Colour colour;
+    private final List<PathDetail> paths = new ArrayList<>();
+    private float[] segments = new float[0];
+    private int length = 0;
+    private Shape areaCovered = new Shape();
+    private boolean needsRebuilding = false;
+
+
+    StrokeBucket(Colour colour) {
+        this.colour = colour;
+    }
+
+
+    public Colour getColour() {
+        return colour;
+    }
+
+
+    public boolean isEmpty() {
+        return paths.isEmpty();
+    }
+
+
+    /** Only the first getLength() values are used, and the array shouldn't be changed. */
+    public float[] getSegments() {
+        rebuildIfNeeded();
+        return segments;
+    }
+
+
+    public int getLength() {
+        rebuildIfNeeded();
+        return length;
+    }
+
+
+    /**
+     * Replaced rather than changed when a path is taken out, but grown in place as paths are
+     * added, so take a copy of the bounds if they're wanted for later.
+     */
+    public Shape getAreaCovered() {
+        rebuildIfNeeded();
+        return areaCovered;
+    }
+
+
+    void add(PathDetail pathDetail) {
+        paths.add(pathDetail);
+        if (!needsRebuilding) {
+            append(pathDetail);
+        }
+    }
+
+
+    /** Returns false if the path wasn't there. */
+    boolean remove(PathDetail pathDetail) {
+        for (int i = 0; i < paths.size(); i++) {
+            if (paths.get(i) == pathDetail) {
+                paths.remove(i);
+                needsRebuilding = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void rebuildIfNeeded() {
+        if (!needsRebuilding) {
+            return;
+        }
+        int total = 0;
+        for (PathDetail pathDetail : paths) {
+            total += pathDetail.getLineSegmentsLength();
+        }
+        // a new array, as the old one might still be being read
+        segments = new float[total];
+        length = 0;
+        areaCovered = new Shape();
+        for (PathDetail pathDetail : paths) {
+            append(pathDetail);
+        }
+        needsRebuilding = false;
+    }
+
+
+    private void append(PathDetail pathDetail) {
+        float[] pathSegments = pathDetail.getLineSegments();
+        int pathLength = pathDetail.getLineSegmentsLength();
+        if (length + pathLength > segments.length) {
+            segments = Arrays.copyOf(
+                    segments, Math.max(length + pathLength, segments.length * 2));
+        }
+        System.arraycopy(pathSegments, 0, segments, length, pathLength);
+        length += pathLength;
+        areaCovered.updateBoundingBox(pathDetail.getAreaCovered());
+    }
+
+}
@@ -1,7 +1,6 @@
 package org.hwyl.sexytopo.model.sketch;
 
-import android.graphics.drawable.Drawable;
-
+import org.hwyl.sexytopo.model.common.Shape;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 
 
@@ -11,8 +10,6 @@ public class SymbolDetail extends SinglePositionDetail implements AutoScalableDe
     private final float size;
     private final float angle;
 
-    private final Drawable drawable;
-
     public SymbolDetail(Coord2D location,
                         Symbol symbol,
                         Colour colour,
@@ -23,8 +20,6 @@ public class SymbolDetail extends SinglePositionDetail implements AutoScalableDe
         this.symbol = symbol;
         this.size = size;
         this.angle = angle;
-
-        this.drawable = symbol.createDrawable();
     }
 
 
@@ -36,14 +31,19 @@ public class SymbolDetail extends SinglePositionDetail implements AutoScalableDe
         return size;
     }
 
-    public Drawable getDrawable() {
-        return drawable;
-    }
-
     public float getAngle() {
         return angle;
     }
 
+    @Override
+    public Shape getAreaCovered() {
+        // drawn as a square of the given size, centred on the position and maybe rotated
+        Shape area = new Shape();
+        area.updateBoundingBox(new Coord2D(position.x - size, position.y - size));
+        area.updateBoundingBox(new Coord2D(position.x + size, position.y + size));
+        return area;
+    }
+
     @Override
     public SymbolDetail translate(Coord2D point) {
         return new SymbolDetail(
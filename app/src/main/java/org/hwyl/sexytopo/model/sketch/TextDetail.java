@@ -1,5 +1,6 @@
 package org.hwyl.sexytopo.model.sketch;
 
+import org.hwyl.sexytopo.model.common.Shape;
 import org.hwyl.sexytopo.model.graph.Coord2D;
 
 
@@ -22,6 +23,23 @@ public class TextDetail extends SinglePositionDetail implements AutoScalableDeta
         return size;
     }
 
+    @Override
+    public Shape getAreaCovered() {
+        // A generous guess, as the real extent depends on the font: text is drawn right from
+        // the position with the first baseline there, and no character is wider than the
+        // size or line taller than one and a half times it
+        String[] lines = text.split("\n");
+        int longestLine = 0;
+        for (String line : lines) {
+            longestLine = Math.max(longestLine, line.length());
+        }
+        Shape area = new Shape();
+        area.updateBoundingBox(new Coord2D(position.x, position.y - size));
+        area.updateBoundingBox(new Coord2D(
+                position.x + size * longestLine, position.y + size * 1.5f * lines.length));
+        return area;
+    }
+
     @Override
     public TextDetail translate(Coord2D point) {
         return new TextDetail(getPosition().plus(point), getText(), getColour(), getSize());
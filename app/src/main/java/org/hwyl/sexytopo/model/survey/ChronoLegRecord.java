@@ -0,0 +1,289 @@
+package org.hwyl.sexytopo.model.survey;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * The legs of a survey in the order they were recorded. Behaves as a normal list, but also
+ * keeps a map from each leg to its position so indexOf and contains don't need to scan
+ * (a LegPositionMap rather than a HashMap, as there can be a great many splays).
+ *
+ * Positions are only guaranteed correct below validUpTo; removing a leg from the middle just
+ * lowers that mark and the tail gets renumbered the next time someone asks for a position.
+ *
+ * The backing array can be shared with survey snapshots. Anything that would overwrite a
+ * shared slot copies the array first; plain appends go past the shared part so don't need to.
+ */
+public class ChronoLegRecord extends AbstractList<Leg> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Leg[] legs = new Leg[INITIAL_CAPACITY];
+    private int size = 0;
+    private int sharedUpTo = 0;
+
+    private final LegPositionMap positions = new LegPositionMap();
+    private int validUpTo = 0;
+
+
+    @Override
+    public Leg get(int index) {
+        checkIndex(index, size);
+        return legs[index];
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public boolean add(Leg leg) {
+        add(size, leg);
+        return true;
+    }
+
+
+    @Override
+    public void add(int index, Leg leg) {
+        checkIndex(index, size + 1);
+        prepareForWrite(index, size + 1);
+        System.arraycopy(legs, index, legs, index + 1, size - index);
+        legs[index] = leg;
+        size++;
+
+        positions.put(leg, index);
+        if (index == size - 1 && validUpTo == index) {
+            validUpTo++;
+        } else {
+            markInvalidFrom(index);
+        }
+        modCount++;
+    }
+
+
+    @Override
+    public Leg set(int index, Leg leg) {
+        checkIndex(index, size);
+        prepareForWrite(index, size);
+        Leg previous = legs[index];
+        legs[index] = leg;
+        positions.remove(previous);
+        positions.put(leg, index);
+        return previous;
+    }
+
+
+    @Override
+    public Leg remove(int index) {
+        checkIndex(index, size);
+        prepareForWrite(index, size);
+        Leg removed = legs[index];
+        System.arraycopy(legs, index + 1, legs, index, size - index - 1);
+        legs[--size] = null;
+        positions.remove(removed);
+        markInvalidFrom(index);
+        modCount++;
+        return removed;
+    }
+
+
+    @Override
+    public boolean remove(Object object) {
+        int index = indexOf(object);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+
+    @Override
+    public boolean removeAll(Collection<?> toRemove) {
+        // one compacting pass rather than a shuffle per removed leg
+        int firstRemoved = -1;
+        for (int i = 0; i < size && firstRemoved < 0; i++) {
+            if (toRemove.contains(legs[i])) {
+                firstRemoved = i;
+            }
+        }
+
+        if (firstRemoved < 0) {
+            return false;
+        }
+
+        prepareForWrite(firstRemoved, size);
+        int kept = firstRemoved;
+        for (int i = firstRemoved; i < size; i++) {
+            Leg leg = legs[i];
+            if (toRemove.contains(leg)) {
+                positions.remove(leg);
+            } else {
+                legs[kept++] = leg;
+            }
+        }
+
+        Arrays.fill(legs, kept, size, null);
+        size = kept;
+        markInvalidFrom(firstRemoved);
+        modCount++;
+        return true;
+    }
+
+
+    @Override
+    public void clear() {
+        legs = new Leg[INITIAL_CAPACITY];
+        size = 0;
+        sharedUpTo = 0;
+        positions.clear();
+        validUpTo = 0;
+        modCount++;
+    }
+
+
+    @Override
+    public int indexOf(Object object) {
+        int position = positions.get(object);
+        if (position == LegPositionMap.NOT_FOUND) {
+            return -1;
+        }
+        if (position >= validUpTo) {
+            renumberTail();
+            position = positions.get(object);
+        }
+        return position;
+    }
+
+
+    @Override
+    public int lastIndexOf(Object object) {
+        return indexOf(object);
+    }
+
+
+    @Override
+    public boolean contains(Object object) {
+        return positions.containsKey(object);
+    }
+
+
+    public Leg peek() {
+        return get(size - 1);
+    }
+
+
+    public Leg pop() {
+        return remove(size - 1);
+    }
+
+
+    public boolean replace(Leg oldLeg, Leg newLeg) {
+        int index = indexOf(oldLeg);
+        if (index < 0) {
+            return false;
+        }
+        set(index, newLeg);
+        return true;
+    }
+
+
+    /**
+     * A read-only view of the record as it is now, which later changes to the record won't
+     * affect. Costs nothing up front; the record copies its array if it later needs to
+     * overwrite any of what the view can see.
+     */
+    List<Leg> share() {
+        sharedUpTo = Math.max(sharedUpTo, size);
+        return new SharedView(legs, size);
+    }
+
+
+    /**
+     * Makes sure the slots from index up to newSize can be written without disturbing any
+     * shared views, copying the array if they can't.
+     */
+    private void prepareForWrite(int index, int newSize) {
+        boolean overwritesShared = index < sharedUpTo;
+        boolean isFull = newSize > legs.length;
+        if (overwritesShared || isFull) {
+            int capacity = isFull? Math.max(newSize, legs.length * 2) : legs.length;
+            legs = Arrays.copyOf(legs, capacity);
+            sharedUpTo = 0; // the new array belongs to this record alone
+        }
+    }
+
+
+    private void markInvalidFrom(int index) {
+        validUpTo = Math.min(validUpTo, index);
+    }
+
+
+    private void renumberTail() {
+        for (int i = validUpTo; i < size; i++) {
+            positions.put(legs[i], i);
+        }
+        validUpTo = size;
+    }
+
+
+    private static void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Limit: " + limit);
+        }
+    }
+
+
+    private static class SharedView extends AbstractList<Leg> implements RandomAccess {
+
+        private final Leg[] legs;
+        private final int size;
+        private LegPositionMap positions = null;
+
+        SharedView(Leg[] legs, int size) {
+            this.legs = legs;
+            this.size = size;
+        }
+
+        @Override
+        public Leg get(int index) {
+            checkIndex(index, size);
+            return legs[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public synchronized int indexOf(Object object) {
+            if (positions == null) { // only built if someone actually asks
+                positions = new LegPositionMap();
+                for (int i = 0; i < size; i++) {
+                    positions.put(legs[i], i);
+                }
+            }
+            int position = positions.get(object);
+            return position == LegPositionMap.NOT_FOUND? -1 : position;
+        }
+
+        @Override
+        public int lastIndexOf(Object object) {
+            return indexOf(object);
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return indexOf(object) >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.hwyl.sexytopo.model.survey;
+
+import java.util.Arrays;
+
+
+/**
+ * Maps legs (by identity) to int positions using two parallel arrays with open addressing.
+ *
+ * Scan sessions can leave a survey with hundreds of thousands of splays. A HashMap would need
+ * an entry object plus a boxed Integer for every one of them; this costs a slot in each array
+ * and nothing else, so there's far less for the garbage collector to chase.
+ */
+class LegPositionMap {
+
+    static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 16; // must be a power of two
+
+    private Leg[] keys = new Leg[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+
+    int size() {
+        return size;
+    }
+
+
+    boolean containsKey(Object leg) {
+        return findSlot(leg) >= 0;
+    }
+
+
+    int get(Object leg) {
+        int slot = findSlot(leg);
+        return slot < 0? NOT_FOUND : positions[slot];
+    }
+
+
+    void put(Leg leg, int position) {
+        int slot = firstSlot(leg, keys.length);
+        while (keys[slot] != null) {
+            if (keys[slot] == leg) {
+                positions[slot] = position;
+                return;
+            }
+            slot = nextSlot(slot);
+        }
+
+        keys[slot] = leg;
+        positions[slot] = position;
+        size++;
+
+        // keep at most half full so probe runs stay short
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+
+    void remove(Object leg) {
+        int slot = findSlot(leg);
+        if (slot < 0) {
+            return;
+        }
+
+        keys[slot] = null;
+        size--;
+
+        // shift later members of the same run back so lookups don't stop at the gap
+        int gap = slot;
+        int next = nextSlot(slot);
+        while (keys[next] != null) {
+            int home = firstSlot(keys[next], keys.length);
+            boolean canMoveToGap = (next > gap)?
+                    (home <= gap || home > next) :
+                    (home <= gap && home > next);
+            if (canMoveToGap) {
+                keys[gap] = keys[next];
+                positions[gap] = positions[next];
+                keys[next] = null;
+                gap = next;
+            }
+            next = nextSlot(next);
+        }
+    }
+
+
+    void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+
+    private int findSlot(Object leg) {
+        if (leg == null) {
+            return NOT_FOUND;
+        }
+        int slot = firstSlot(leg, keys.length);
+        while (keys[slot] != null) {
+            if (keys[slot] == leg) {
+                return slot;
+            }
+            slot = nextSlot(slot);
+        }
+        return NOT_FOUND;
+    }
+
+
+    private void resize(int capacity) {
+        Leg[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = new Leg[capacity];
+        positions = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            Leg leg = oldKeys[i];
+            if (leg != null) {
+                int slot = firstSlot(leg, capacity);
+                while (keys[slot] != null) {
+                    slot = nextSlot(slot);
+                }
+                keys[slot] = leg;
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+
+    private int nextSlot(int slot) {
+        return (slot + 1) & (keys.length - 1);
+    }
+
+
+    private static int firstSlot(Object leg, int capacity) {
+        int hash = System.identityHashCode(leg);
+        hash ^= (hash >>> 16); // identity hashes aren't always well spread in the low bits
+        return hash & (capacity - 1);
+    }
+
+}
@@ -2,8 +2,11 @@ package org.hwyl.sexytopo.model.survey;
 
 import org.hwyl.sexytopo.model.graph.Direction;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import androidx.annotation.NonNull;
 
@@ -11,10 +14,16 @@ import androidx.annotation.NonNull;
 public class Station extends SurveyComponent {
 
     private String name;
-    private List<Leg> onwardLegs = new ArrayList<>();
+    // never changed in place, only swapped for a new list, so readers on other threads can
+    // iterate whatever list they got without any locking
+    private volatile LegArrayView onwardLegs = LegArrayView.EMPTY;
     private String comment = "";
     private Direction extendedElevationDirection = Direction.RIGHT;
 
+    // where the station is kept in survey snapshots (see StationTable); given out under the
+    // survey's lock and never changed after
+    int tableSlot = StationTable.NO_SLOT;
+
     public static final char[] FORBIDDEN_CHARS = new char[]{'\n', '\r'};
 
 
@@ -50,12 +59,29 @@ public class Station extends SurveyComponent {
         this.name = sanitiseName(name);
     }
 
+    /** The legs leading on from this station; read-only and won't change under the caller. */
     public List<Leg> getOnwardLegs() {
         return onwardLegs;
     }
 
     public void addOnwardLeg(Leg leg) {
-        onwardLegs.add(leg);
+        onwardLegs = onwardLegs.append(leg);
+    }
+
+    public boolean removeOnwardLeg(Leg leg) {
+        int index = onwardLegs.indexOf(leg);
+        if (index < 0) {
+            return false;
+        }
+        onwardLegs = onwardLegs.without(index);
+        return true;
+    }
+
+    /** Swaps in newLeg in one go (it goes on the end, as if removed and then re-added). */
+    public void replaceOnwardLeg(Leg oldLeg, Leg newLeg) {
+        int index = onwardLegs.indexOf(oldLeg);
+        LegArrayView remaining = (index < 0)? onwardLegs : onwardLegs.without(index);
+        onwardLegs = remaining.append(newLeg);
     }
 
     public List<Leg> getUnconnectedOnwardLegs() {
@@ -110,4 +136,54 @@ public class Station extends SurveyComponent {
     public String toString() {
         return name;
     }
+
+
+    /**
+     * An immutable list of legs that shares its array with the list it was appended to.
+     * Appending writes into the slot just past the end, which no existing view can see, so
+     * each new splay costs one small object rather than a copy of the station's legs.
+     * Anything else makes a fresh array.
+     */
+    private static class LegArrayView extends AbstractList<Leg> implements RandomAccess {
+
+        static final LegArrayView EMPTY = new LegArrayView(new Leg[0], 0);
+
+        private final Leg[] legs;
+        private final int size;
+
+        private LegArrayView(Leg[] legs, int size) {
+            this.legs = legs;
+            this.size = size;
+        }
+
+        @Override
+        public Leg get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return legs[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        LegArrayView append(Leg leg) {
+            // only the newest view of an array may append to it; a stale view copies instead
+            Leg[] target = legs;
+            if (size == legs.length || legs[size] != null) {
+                target = Arrays.copyOf(legs, Math.max(4, size * 2));
+            }
+            target[size] = leg;
+            return new LegArrayView(target, size + 1);
+        }
+
+        LegArrayView without(int index) {
+            Leg[] remaining = new Leg[size - 1];
+            System.arraycopy(legs, 0, remaining, 0, index);
+            System.arraycopy(legs, index + 1, remaining, index, size - index - 1);
+            return new LegArrayView(remaining, size - 1);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package org.hwyl.sexytopo.model.survey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Finds unused station names the same way TextTools.advanceLastNumber would (keep bumping the
+ * last number in the name until it's free) but without trying every number in turn.
+ *
+ * Names are grouped into families that differ only in that last number (e.g. "S2-1.4",
+ * "S2-1.5"). For each family we remember jumps over runs of numbers already known to be taken.
+ * Taking more names never makes a jump wrong, but freeing a name might, so the jumps for a
+ * family are thrown away whenever one of its names is released.
+ */
+class StationNameAllocator {
+
+    private final Set<String> takenNames;
+    private final Map<String, Map<Integer, Integer>> familyJumps = new HashMap<>();
+
+
+    StationNameAllocator(Set<String> takenNames) {
+        this.takenNames = takenNames;
+    }
+
+
+    String findUnusedName(String candidate) {
+        if (!takenNames.contains(candidate)) {
+            return candidate;
+        }
+
+        NumberedName name = NumberedName.parse(candidate);
+        if (name.width == 0) { // no number yet, so the first advance just appends one
+            name = new NumberedName(candidate, 0, 1, "");
+        }
+
+        Map<Integer, Integer> jumps = familyJumps.get(name.getFamilyKey());
+        if (jumps == null) {
+            jumps = new HashMap<>();
+            familyJumps.put(name.getFamilyKey(), jumps);
+        }
+
+        List<Integer> visited = new ArrayList<>();
+        int number = name.number + 1;
+        while (takenNames.contains(name.withNumber(number))) {
+            visited.add(number);
+            Integer jump = jumps.get(number);
+            number = (jump == null)? number + 1 : jump;
+        }
+
+        for (int taken : visited) {
+            jumps.put(taken, number);
+        }
+
+        return name.withNumber(number);
+    }
+
+
+    void released(String name) {
+        NumberedName released = NumberedName.parse(name);
+        if (released.width == 0) {
+            return;
+        }
+
+        // any width of the same family could have been skipping over this name
+        String familyPrefix = released.getFamilyKeyIgnoringWidth();
+        Iterator<String> keys = familyJumps.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(familyPrefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+
+    void reset() {
+        familyJumps.clear();
+    }
+
+
+    private static class NumberedName {
+
+        private final String prefix;
+        private final int number;
+        private final int width;
+        private final String suffix;
+
+        private NumberedName(String prefix, int number, int width, String suffix) {
+            this.prefix = prefix;
+            this.number = number;
+            this.width = width;
+            this.suffix = suffix;
+        }
+
+        /** Splits a name around its last run of digits (width 0 if there are none). */
+        static NumberedName parse(String name) {
+            int lastDigit = name.length() - 1;
+            while (lastDigit >= 0 && !Character.isDigit(name.charAt(lastDigit))) {
+                lastDigit--;
+            }
+            if (lastDigit < 0) {
+                return new NumberedName(name, 0, 0, "");
+            }
+
+            int firstDigit = lastDigit;
+            while (firstDigit > 0 && Character.isDigit(name.charAt(firstDigit - 1))) {
+                firstDigit--;
+            }
+
+            String digits = name.substring(firstDigit, lastDigit + 1);
+            return new NumberedName(
+                    name.substring(0, firstDigit),
+                    Integer.parseInt(digits),
+                    digits.length(),
+                    name.substring(lastDigit + 1));
+        }
+
+        String withNumber(int number) {
+            StringBuilder builder = new StringBuilder(prefix);
+            String digits = Integer.toString(number);
+            for (int i = digits.length(); i < width; i++) {
+                builder.append('0');
+            }
+            return builder.append(digits).append(suffix).toString();
+        }
+
+        String getFamilyKeyIgnoringWidth() {
+            return prefix + '\0' + suffix + '\0';
+        }
+
+        String getFamilyKey() {
+            return getFamilyKeyIgnoringWidth() + width;
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.hwyl.sexytopo.model.survey;
+
+import org.hwyl.sexytopo.model.graph.Direction;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * What each station of a survey looked like at one revision, for SurveySnapshot.
+ *
+ * This is a persistent trie, 32 ways at each level, keyed on a slot number each station is
+ * given the first time it goes into a table. Tables never change once made: an Editor makes a
+ * new one sharing everything with the old except the paths down to the stations it changed.
+ * So publishing a snapshot after a shot costs a few small arrays rather than a copy of every
+ * station, and looking a station up is a handful of array reads however old the table is.
+ *
+ * Slots come from a single counter and are never reused, so a station has the same slot in
+ * every table it's in, whichever survey it was for.
+ */
+final class StationTable {
+
+    static final int NO_SLOT = -1;
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final AtomicInteger nextSlot = new AtomicInteger(0);
+
+    static final StationTable EMPTY = new StationTable(new Node(null, new Object[WIDTH]), 0);
+
+    private final Node root;
+    // the level of the root; the table can hold slots below 1 << (shift + BITS)
+    private final int shift;
+
+
+    private StationTable(Node root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+
+    /** The station's state in this table, or null if it isn't in it. */
+    Entry get(Station station) {
+        int slot = station.tableSlot;
+        if (slot == NO_SLOT || !fits(slot, shift)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(slot >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (Entry) node.slots[slot & MASK];
+    }
+
+
+    private static boolean fits(int slot, int shift) {
+        // shifted in two goes as shift + BITS can be more than 31
+        return ((slot >>> shift) >>> BITS) == 0;
+    }
+
+
+    /** A station's name, comment, direction and onward legs as they were. */
+    static final class Entry {
+
+        final String name;
+        final String comment;
+        final Direction direction;
+        final List<Leg> onwardLegs;
+
+        private Entry(Station station) {
+            this.name = station.getName();
+            this.comment = station.getComment();
+            this.direction = station.getExtendedElevationDirection();
+            this.onwardLegs = station.getOnwardLegs();
+        }
+    }
+
+
+    /**
+     * Makes a new table from an old one. Nodes the editor has made itself are changed in
+     * place, everything else is copied on write, so the old table never changes.
+     */
+    static final class Editor {
+
+        // marks the nodes made by this editor
+        private final Object owner = new Object();
+
+        private Node root;
+        private int shift;
+
+        Editor(StationTable table) {
+            this.root = table.root;
+            this.shift = table.shift;
+        }
+
+        /** Records the station as it is now, giving it a slot if it hasn't got one. */
+        void put(Station station) {
+            int slot = station.tableSlot;
+            if (slot == NO_SLOT) {
+                slot = nextSlot.getAndIncrement();
+                station.tableSlot = slot;
+            }
+            while (!fits(slot, shift)) {
+                Node newRoot = new Node(owner, new Object[WIDTH]);
+                newRoot.slots[0] = root;
+                root = newRoot;
+                shift += BITS;
+            }
+            root = set(root, shift, slot, new Entry(station));
+        }
+
+        void remove(Station station) {
+            int slot = station.tableSlot;
+            if (slot != NO_SLOT && fits(slot, shift)) {
+                root = set(root, shift, slot, null);
+            }
+        }
+
+        /** The new table; the editor mustn't be used after this. */
+        StationTable finish() {
+            return new StationTable(root, shift);
+        }
+
+        private Node set(Node node, int level, int slot, Entry entry) {
+            Node editable = (node.owner == owner)? node : new Node(owner, node.slots.clone());
+            int index = (slot >>> level) & MASK;
+            if (level == 0) {
+                editable.slots[index] = entry;
+            } else {
+                Node child = (Node) editable.slots[index];
+                if (child == null) {
+                    if (entry == null) {
+                        return editable;
+                    }
+                    child = new Node(owner, new Object[WIDTH]);
+                }
+                editable.slots[index] = set(child, level - BITS, slot, entry);
+            }
+            return editable;
+        }
+    }
+
+
+    private static final class Node {
+
+        private final Object owner;
+        private final Object[] slots;
+
+        private Node(Object owner, Object[] slots) {
+            this.owner = owner;
+            this.slots = slots;
+        }
+    }
+
+}
@@ -7,17 +7,19 @@ import androidx.documentfile.provider.DocumentFile;
 
 import org.hwyl.sexytopo.control.util.StationNamer;
 import org.hwyl.sexytopo.control.util.SurveyTools;
-import org.hwyl.sexytopo.control.util.Wrapper;
+import org.hwyl.sexytopo.model.graph.Direction;
 import org.hwyl.sexytopo.model.graph.Projection2D;
 import org.hwyl.sexytopo.model.sketch.Sketch;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 
 public class Survey {
@@ -27,6 +29,9 @@ public class Survey {
 
     public static final char[] FORBIDDEN_CHARS = new char[]{':', '.', '\n', '\r', '/', '\\'};
 
+    private static final int MAX_RECENT_CHANGES = 256;
+    private static final int MAX_BATCHED_CHANGES = 256;
+
     private String name;
 
     private Station origin = new Station(StationNamer.generateOriginName());
@@ -43,7 +48,24 @@ public class Survey {
     private boolean isAutosaved = true;
     private DocumentFile directory;
 
-    private final Stack<Leg> legsInChronoOrder = new Stack<>();
+    private final ChronoLegRecord legsInChronoOrder = new ChronoLegRecord();
+
+    // only used while holding the survey's lock, like everything that changes the tree
+    private final SurveyIndex index = new SurveyIndex();
+    private boolean isIndexStale = true;
+
+    // changes come in on the instrument threads as well as the UI thread, so the revision and
+    // the change log are only touched while holding the survey's lock
+    private long revision = 0;
+    private final Deque<SurveyChange> recentChanges = new ArrayDeque<>();
+    private List<SurveyChange> batchedChanges = null;
+
+    // stations whose legs, name, comment or direction have changed, or that have been taken
+    // out, since the latest snapshot; only touched while holding the survey's lock
+    private volatile SurveySnapshot latestSnapshot = null;
+    private final Set<Station> changedSinceSnapshot = new HashSet<>();
+    private final Set<Station> removedSinceSnapshot = new HashSet<>();
+    private boolean isSnapshotStale = true;
 
     public Survey() {
         this.setName(DEFAULT_NAME);
@@ -80,11 +102,15 @@ public class Survey {
         return directory == null? null : getDirectory().getUri();
     }
 
-    public void setActiveStation(Station activeStation) {
+    public synchronized void setActiveStation(Station activeStation) {
+        Station previous = this.activeStation;
         this.activeStation = activeStation;
+        if (activeStation != previous) {
+            recordChange(SurveyChange.activeStationChanged(revision + 1, previous, activeStation));
+        }
     }
 
-    public Station getActiveStation() {
+    public synchronized Station getActiveStation() {
 
         if (activeStation == null) { // this shouldn't happen, but just in case...
             setActiveStation(origin);
@@ -116,8 +142,8 @@ public class Survey {
         return isAutosaved;
     }
 
-    public Leg getMostRecentLeg() {
-        return legsInChronoOrder.empty()? null : legsInChronoOrder.peek();
+    public synchronized Leg getMostRecentLeg() {
+        return legsInChronoOrder.isEmpty()? null : legsInChronoOrder.peek();
     }
 
     public void setPlanSketch(Sketch planSketch) {
@@ -151,8 +177,241 @@ public class Survey {
         return origin;
     }
 
-    public void setOrigin(Station origin) {
+    public synchronized void setOrigin(Station origin) {
         this.origin = origin;
+        invalidateIndex();
+    }
+
+
+    /**
+     * Flags the station lookups as needing a rebuild. Only needed if the station tree has been
+     * built up directly (e.g. by a loader) rather than through the methods below.
+     */
+    public synchronized void invalidateIndex() {
+        isIndexStale = true;
+        isSnapshotStale = true;
+        recordChange(SurveyChange.restructured(revision + 1));
+    }
+
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+
+    /**
+     * Everything that has changed after the given revision, oldest first. Returns null if that
+     * isn't known any more (only the most recent changes are kept), in which case the caller
+     * should assume anything might have changed.
+     */
+    public synchronized List<SurveyChange> getChangesSince(long sinceRevision) {
+        if (sinceRevision == revision) {
+            return Collections.emptyList();
+        }
+        if (sinceRevision > revision || recentChanges.isEmpty() ||
+                recentChanges.peekFirst().getRevision() > sinceRevision + 1) {
+            return null;
+        }
+        List<SurveyChange> changes = new ArrayList<>();
+        for (SurveyChange change : recentChanges) {
+            if (change.getRevision() > sinceRevision) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+
+    /**
+     * Gathers the changes made from now until finishBatch into a single BATCH change, so that
+     * a lot of them made together (a bulk download, say) don't flood the change log. The
+     * caller should hold the survey's lock until the batch is finished, so that nothing sees
+     * the survey part way through it.
+     */
+    public synchronized void startBatch() {
+        if (batchedChanges != null) {
+            throw new IllegalStateException("Already in a batch");
+        }
+        batchedChanges = new ArrayList<>();
+    }
+
+
+    /**
+     * Records the changes made since startBatch as one; too many to be worth keeping are
+     * recorded as RESTRUCTURED instead.
+     */
+    public synchronized void finishBatch() {
+        List<SurveyChange> changes = batchedChanges;
+        batchedChanges = null;
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        // the revision doesn't move during a batch, so every part has the batch's revision
+        recordChange(changes.size() > MAX_BATCHED_CHANGES?
+                SurveyChange.restructured(revision + 1) :
+                SurveyChange.batch(revision + 1, changes));
+    }
+
+
+    private synchronized void recordChange(SurveyChange change) {
+        if (batchedChanges != null) {
+            batchedChanges.add(change);
+            return;
+        }
+        revision = change.getRevision();
+        recentChanges.addLast(change);
+        if (recentChanges.size() > MAX_RECENT_CHANGES) {
+            recentChanges.removeFirst();
+        }
+    }
+
+
+    private synchronized SurveyIndex getIndex() {
+        if (isIndexStale) {
+            index.rebuild(origin);
+            isIndexStale = false;
+        }
+        return index;
+    }
+
+
+    /**
+     * Makes a snapshot of the survey as it is now available to other threads. Should be called
+     * from the thread making the changes, once they're done.
+     */
+    public synchronized SurveySnapshot publishSnapshot() {
+        SurveySnapshot previous = latestSnapshot;
+        if (previous != null && previous.getRevision() == revision) {
+            return previous;
+        }
+
+        StationTable.Editor editor;
+        if (previous == null || isSnapshotStale) {
+            editor = new StationTable.Editor(StationTable.EMPTY);
+            for (Station station : SurveyTools.stations(origin)) {
+                editor.put(station);
+            }
+        } else {
+            editor = new StationTable.Editor(previous.getStationTable());
+            for (Station station : removedSinceSnapshot) {
+                editor.remove(station);
+            }
+            for (Station station : changedSinceSnapshot) {
+                editor.put(station);
+            }
+        }
+        changedSinceSnapshot.clear();
+        removedSinceSnapshot.clear();
+        isSnapshotStale = false;
+
+        SurveySnapshot snapshot = new SurveySnapshot(revision, origin, getActiveStation(),
+                legsInChronoOrder.share(), editor.finish());
+        latestSnapshot = snapshot;
+        return snapshot;
+    }
+
+
+    /**
+     * The most recently published snapshot (publishing the first if there isn't one yet); safe
+     * to read from any thread without locking.
+     */
+    public SurveySnapshot getLatestSnapshot() {
+        SurveySnapshot snapshot = latestSnapshot;
+        return snapshot == null? publishSnapshot() : snapshot;
+    }
+
+
+    // not worth tracking if the next snapshot will be made from scratch anyway
+    private boolean isTrackingForSnapshot() {
+        return latestSnapshot != null && !isSnapshotStale;
+    }
+
+
+    private void markChangedForSnapshot(Station station) {
+        if (isTrackingForSnapshot()) {
+            changedSinceSnapshot.add(station);
+            removedSinceSnapshot.remove(station);
+        }
+    }
+
+
+    private void markSubtreeChangedForSnapshot(Leg leg) {
+        if (leg.hasDestination() && isTrackingForSnapshot()) {
+            for (Station station : SurveyTools.stations(leg.getDestination())) {
+                markChangedForSnapshot(station);
+            }
+        }
+    }
+
+
+    private void markSubtreeRemovedForSnapshot(Leg leg) {
+        if (leg.hasDestination() && isTrackingForSnapshot()) {
+            for (Station station : SurveyTools.stations(leg.getDestination())) {
+                changedSinceSnapshot.remove(station);
+                removedSinceSnapshot.add(station);
+            }
+        }
+    }
+
+
+    public synchronized void addLeg(Station from, Leg leg) {
+        from.addOnwardLeg(leg);
+        markChangedForSnapshot(from);
+        markSubtreeChangedForSnapshot(leg);
+        if (!isIndexStale) {
+            index.addLeg(from, leg);
+        }
+        recordChange(SurveyChange.legAdded(revision + 1, from, leg));
+    }
+
+
+    public synchronized void removeLeg(Station from, Leg leg) {
+        boolean wasRemoved = from.removeOnwardLeg(leg);
+        if (wasRemoved && !isIndexStale) {
+            index.removeLeg(leg);
+        }
+        if (wasRemoved) {
+            markChangedForSnapshot(from);
+            markSubtreeRemovedForSnapshot(leg);
+            recordChange(SurveyChange.subtreeDeleted(revision + 1, from, leg));
+        }
+    }
+
+
+    public synchronized void replaceLeg(Station from, Leg oldLeg, Leg newLeg) {
+        from.replaceOnwardLeg(oldLeg, newLeg);
+        markChangedForSnapshot(from);
+        markSubtreeRemovedForSnapshot(oldLeg);
+        markSubtreeChangedForSnapshot(newLeg);
+        if (!isIndexStale) {
+            index.replaceLeg(from, oldLeg, newLeg);
+        }
+        recordChange(SurveyChange.legReplaced(revision + 1, from, oldLeg, newLeg));
+    }
+
+
+    public synchronized void renameStation(Station station, String name) {
+        String previousName = station.getName();
+        station.setName(name);
+        markChangedForSnapshot(station);
+        if (!isIndexStale) {
+            index.rename(station, previousName);
+        }
+        recordChange(SurveyChange.stationRenamed(revision + 1, station, previousName));
+    }
+
+    public synchronized void setDirectionOfSubtree(Station root, Direction direction) {
+        for (Station station : SurveyTools.stations(root)) {
+            station.setExtendedElevationDirection(direction);
+            markChangedForSnapshot(station);
+        }
+        recordChange(SurveyChange.directionChanged(revision + 1, root));
+    }
+
+    public synchronized void setStationComment(Station station, String comment) {
+        station.setComment(comment);
+        markChangedForSnapshot(station);
+        recordChange(SurveyChange.stationCommented(revision + 1, station));
     }
 
     public List<Station> getAllStations() {
@@ -164,17 +423,17 @@ public class Survey {
     }
 
     public static List<Leg> getAllLegs(Station root) {
-        List<Leg> legs = new ArrayList<>(root.getOnwardLegs());
-        for (Leg leg : root.getConnectedOnwardLegs()) {
-            legs.addAll(getAllLegs(leg.getDestination()));
+        List<Leg> legs = new ArrayList<>();
+        for (Station station : SurveyTools.stations(root)) {
+            legs.addAll(station.getOnwardLegs());
         }
         return legs;
     }
 
-    public List<Leg> getLastNLegs(int n) {
+    public synchronized List<Leg> getLastNLegs(int n) {
         int numberOfLegs = legsInChronoOrder.size();
         int start = Math.max(0, numberOfLegs - n);
-        return legsInChronoOrder.subList(start, numberOfLegs);
+        return new ArrayList<>(legsInChronoOrder.subList(start, numberOfLegs));
 
     }
 
@@ -184,20 +443,16 @@ public class Survey {
 
 
     public static List<Station> getAllStations(Station root) {
-
         List<Station> stations = new ArrayList<>();
-        stations.add(root);
-
-        for (Leg leg : root.getConnectedOnwardLegs()) {
-            Station destination = leg.getDestination();
-            stations.addAll(getAllStations(destination));
+        for (Station station : SurveyTools.stations(root)) {
+            stations.add(station);
         }
-
         return stations;
     }
 
 
-    public void connect(Station joinInThisSurvey, Survey survey, Station joinInOtherSurvey) {
+    public synchronized void connect(
+            Station joinInThisSurvey, Survey survey, Station joinInOtherSurvey) {
 
         if (this.equals(survey)) {
             throw new IllegalArgumentException("Can't join a survey onto itself");
@@ -217,10 +472,12 @@ public class Survey {
 
         //noinspection ConstantConditions - this will not be null
         connections.add(connection);
+        recordChange(SurveyChange.connectionsChanged(revision + 1, joinInThisSurvey));
     }
 
 
-    public void disconnect(Station joinInThisSurvey, Survey otherSurvey) throws Exception {
+    public synchronized void disconnect(Station joinInThisSurvey, Survey otherSurvey)
+            throws Exception {
         Set<SurveyConnection> connections = getSurveysConnectedTo(joinInThisSurvey);
 
         for (SurveyConnection connection : connections) {
@@ -229,6 +486,7 @@ public class Survey {
                 if (connections.size() == 0) {
                     stationsToSurveyConnections.remove(joinInThisSurvey);
                 }
+                recordChange(SurveyChange.connectionsChanged(revision + 1, joinInThisSurvey));
                 return;
             }
         }
@@ -294,9 +552,47 @@ public class Survey {
         return stationsToSurveyConnections.containsKey(station);
     }
 
-    public void checkSurveyIntegrity() {
+    /**
+     * Tidies up after stations have been cut off from the tree: drops their legs from the
+     * chronological record, their survey connections and, if need be, the active station.
+     * Only the stations detached since the last check are looked at, unless the index is out of
+     * date, in which case this falls back to checking everything.
+     */
+    public synchronized void checkSurveyIntegrity() {
+
+        if (isIndexStale) {
+            checkFullSurveyIntegrity();
+            return;
+        }
+
+        List<Leg> detachedLegs = index.takeDetachedLegs();
+        List<Station> detachedStations = index.takeDetachedStations();
+
+        Set<Leg> badLegs = new HashSet<>();
+        for (Leg leg : detachedLegs) {
+            if (!isReachable(leg.getDestination())) {
+                badLegs.add(leg);
+            }
+        }
+        if (!badLegs.isEmpty()) {
+            legsInChronoOrder.removeAll(badLegs);
+        }
+
+        for (Station station : detachedStations) {
+            if (!isReachable(station)) {
+                stationsToSurveyConnections.remove(station);
+            }
+        }
+
+        if (!isReachable(activeStation)) {
+            setActiveStation(findNewActiveStation());
+        }
+    }
+
 
-        List<Station> reachableStations = getAllStations();
+    public synchronized void checkFullSurveyIntegrity() {
+
+        Set<Station> reachableStations = new HashSet<>(getAllStations());
 
         List<Leg> badLegs = new ArrayList<>();
         for (Leg leg : legsInChronoOrder) {
@@ -304,10 +600,10 @@ public class Survey {
                 badLegs.add(leg);
             }
         }
-        legsInChronoOrder.removeAll(badLegs);
+        legsInChronoOrder.removeAll(new HashSet<>(badLegs));
 
         if (!reachableStations.contains(activeStation)) {
-            activeStation = findNewActiveStation();
+            setActiveStation(findNewActiveStation());
         }
 
         List<Station> unreachableStations = new ArrayList<>();
@@ -319,11 +615,20 @@ public class Survey {
         for (Station station : unreachableStations) {
             stationsToSurveyConnections.remove(station);
         }
+
+        // everything has just been checked, so nothing is pending any more
+        getIndex().takeDetachedLegs();
+        getIndex().takeDetachedStations();
     }
 
-    private Station findNewActiveStation() {
+
+    private synchronized boolean isReachable(Station station) {
+        return station == origin || getIndex().isAttached(station);
+    }
+
+    private synchronized Station findNewActiveStation() {
         for (int i = legsInChronoOrder.size() - 1; i >= 0; i--) {
-            Leg leg = legsInChronoOrder.elementAt(i);
+            Leg leg = legsInChronoOrder.get(i);
             if (leg.hasDestination()) {
                 return leg.getDestination();
             }
@@ -332,78 +637,46 @@ public class Survey {
     }
 
 
-    public void addLegRecord(Leg leg) {
-        legsInChronoOrder.push(leg);
+    public synchronized void addLegRecord(Leg leg) {
+        legsInChronoOrder.add(leg);
     }
 
-    public void replaceLegInRecord(Leg oldLeg, Leg newLeg) {
-        int oldIndex = legsInChronoOrder.indexOf(oldLeg);
-        legsInChronoOrder.insertElementAt(newLeg, oldIndex + 1);
-        legsInChronoOrder.remove(oldIndex);
+    public synchronized void replaceLegInRecord(Leg oldLeg, Leg newLeg) {
+        legsInChronoOrder.replace(oldLeg, newLeg);
         checkSurveyIntegrity();
     }
 
 
-    public void removeLegRecord(Leg leg) {
+    public synchronized void removeLegRecord(Leg leg) {
         legsInChronoOrder.remove(leg);
     }
 
-    public Leg getReferringLeg(final Station station) {
+    public synchronized Leg getReferringLeg(Station station) {
 
         if (station == getOrigin()) {
             return null;
         }
 
-        final Wrapper wrapper = new Wrapper();
-        SurveyTools.traverseLegs(
-            this,
-            (origin, leg) -> {
-                if (leg.getDestination() == station) {
-                    wrapper.value = leg;
-                    return true;
-                } else {
-                    return false;
-                }
-            });
-        return (Leg)(wrapper.value);
+        return getIndex().getReferringLeg(station);
     }
 
 
-    public Station getOriginatingStation(final Leg leg) {
-        final Wrapper wrapper = new Wrapper();
-        SurveyTools.traverseStations(
-            this,
-            station -> {
-                if (station.getOnwardLegs().contains(leg)) {
-                    wrapper.value = station;
-                    return true;
-                } else {
-                    return false;
-                }
-            });
-
-        return (Station)(wrapper.value);
+    public synchronized Station getOriginatingStation(Leg leg) {
+        return getIndex().getOriginatingStation(leg);
     }
 
 
-    public void undoAddLeg() {
+    public synchronized void undoAddLeg() {
 
         if (legsInChronoOrder.size() < 1) {
             return;
         }
 
-        final Leg toDelete = legsInChronoOrder.pop();
-        SurveyTools.traverseLegs(
-            this,
-            (origin, leg) -> {
-                if (leg == toDelete) {
-                    origin.getOnwardLegs().remove(toDelete);
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-        );
+        Leg toDelete = legsInChronoOrder.pop();
+        Station originatingStation = getOriginatingStation(toDelete);
+        if (originatingStation != null) {
+            removeLeg(originatingStation, toDelete);
+        }
 
         if (toDelete.hasDestination()) {
             checkSurveyIntegrity();
@@ -412,20 +685,17 @@ public class Survey {
         setSaved(false);
     }
 
-    public Station getStationByName(final String name) {
-        final Wrapper wrapper = new Wrapper();
-        SurveyTools.traverseStations(
-            this,
-            station -> {
-                if (station.getName().equals(name)) {
-                    wrapper.value = station;
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+    public synchronized Station getStationByName(String name) {
+        return getIndex().getStation(name);
+    }
+
 
-        return (Station)(wrapper.value);
+    /**
+     * Returns candidateName if no station has it yet, otherwise keeps advancing its last number
+     * until it finds one that's free.
+     */
+    public synchronized String findUnusedStationName(String candidateName) {
+        return getIndex().findUnusedName(candidateName);
     }
 
 
@@ -0,0 +1,208 @@
+package org.hwyl.sexytopo.model.survey;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A single change made to a survey, so that views can update just the affected parts instead
+ * of redoing everything. Each change gets the survey's next revision number.
+ */
+public class SurveyChange {
+
+    public enum Type {
+        LEG_ADDED,
+        LEG_REPLACED,
+        /** A leg was taken out, along with everything beyond it if it was a connected leg. */
+        SUBTREE_DELETED,
+        STATION_RENAMED,
+        STATION_COMMENTED,
+        /** A station and everything beyond it were set to go left or right in elevation. */
+        DIRECTION_CHANGED,
+        ACTIVE_STATION_CHANGED,
+        /** A connection to another survey was made or removed at a station. */
+        CONNECTIONS_CHANGED,
+        /** The tree was changed wholesale (e.g. loaded) so anything could be different. */
+        RESTRUCTURED,
+        /** Several changes made together (e.g. a bulk download), given by getParts. */
+        BATCH
+    }
+
+    private final Type type;
+    private final long revision;
+    private final Station station;
+    private final Leg leg;
+    private final Leg previousLeg;
+    private final Station previousStation;
+    private final String previousName;
+    private final List<SurveyChange> parts;
+
+
+    private SurveyChange(Type type, long revision, Station station, Leg leg,
+                         Leg previousLeg, Station previousStation, String previousName) {
+        this(type, revision, station, leg, previousLeg, previousStation, previousName, null);
+    }
+
+
+    private SurveyChange(Type type, long revision, Station station, Leg leg,
+                         Leg previousLeg, Station previousStation, String previousName,
+                         List<SurveyChange> parts) {
+        this.type = type;
+        this.revision = revision;
+        this.station = station;
+        this.leg = leg;
+        this.previousLeg = previousLeg;
+        this.previousStation = previousStation;
+        this.previousName = previousName;
+        this.parts = parts;
+    }
+
+
+    static SurveyChange legAdded(long revision, Station from, Leg leg) {
+        return new SurveyChange(Type.LEG_ADDED, revision, from, leg, null, null, null);
+    }
+
+    static SurveyChange legReplaced(long revision, Station from, Leg oldLeg, Leg newLeg) {
+        return new SurveyChange(Type.LEG_REPLACED, revision, from, newLeg, oldLeg, null, null);
+    }
+
+    static SurveyChange subtreeDeleted(long revision, Station from, Leg leg) {
+        return new SurveyChange(Type.SUBTREE_DELETED, revision, from, leg, null, null, null);
+    }
+
+    static SurveyChange stationRenamed(long revision, Station station, String previousName) {
+        return new SurveyChange(
+                Type.STATION_RENAMED, revision, station, null, null, null, previousName);
+    }
+
+    static SurveyChange stationCommented(long revision, Station station) {
+        return new SurveyChange(
+                Type.STATION_COMMENTED, revision, station, null, null, null, null);
+    }
+
+    static SurveyChange directionChanged(long revision, Station station) {
+        return new SurveyChange(
+                Type.DIRECTION_CHANGED, revision, station, null, null, null, null);
+    }
+
+    static SurveyChange activeStationChanged(long revision, Station previous, Station current) {
+        return new SurveyChange(
+                Type.ACTIVE_STATION_CHANGED, revision, current, null, null, previous, null);
+    }
+
+    static SurveyChange connectionsChanged(long revision, Station station) {
+        return new SurveyChange(
+                Type.CONNECTIONS_CHANGED, revision, station, null, null, null, null);
+    }
+
+    static SurveyChange restructured(long revision) {
+        return new SurveyChange(Type.RESTRUCTURED, revision, null, null, null, null, null);
+    }
+
+    static SurveyChange batch(long revision, List<SurveyChange> parts) {
+        return new SurveyChange(Type.BATCH, revision, null, null, null, null, null,
+                Collections.unmodifiableList(parts));
+    }
+
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * The station the change happened at: the originating station for leg changes, the renamed
+     * or commented station, the root of the redirected subtree, the new active station, or the
+     * station connected or disconnected.
+     */
+    public Station getStation() {
+        return station;
+    }
+
+    /** The leg added or deleted, or the replacement leg. */
+    public Leg getLeg() {
+        return leg;
+    }
+
+    /** The leg that was replaced (LEG_REPLACED only). */
+    public Leg getPreviousLeg() {
+        return previousLeg;
+    }
+
+    /** The station that used to be active (ACTIVE_STATION_CHANGED only). */
+    public Station getPreviousStation() {
+        return previousStation;
+    }
+
+    /** The station's old name (STATION_RENAMED only). */
+    public String getPreviousName() {
+        return previousName;
+    }
+
+    /** The changes that make up the batch, oldest first (BATCH only). */
+    public List<SurveyChange> getParts() {
+        return parts;
+    }
+
+    /**
+     * The revision a reader is up to once it has dealt with the changes it was given since
+     * sinceRevision. Better than asking the survey again, as more changes might have come in
+     * since the list was made.
+     */
+    public static long getRevisionAfter(long sinceRevision, List<SurveyChange> changes) {
+        if (changes.isEmpty()) {
+            return sinceRevision;
+        }
+        return changes.get(changes.size() - 1).getRevision();
+    }
+
+    /** True if this change can't have moved any station or altered any leg. */
+    public boolean isCosmetic() {
+        if (type == Type.BATCH) {
+            for (SurveyChange part : parts) {
+                if (!part.isCosmetic()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return type == Type.ACTIVE_STATION_CHANGED || type == Type.STATION_RENAMED ||
+                type == Type.STATION_COMMENTED || type == Type.CONNECTIONS_CHANGED;
+    }
+
+    /** True if this change could have moved, added or removed a station (splays can't). */
+    public boolean affectsStations() {
+        switch (type) {
+            case LEG_ADDED:
+            case SUBTREE_DELETED:
+                return leg.hasDestination();
+            case LEG_REPLACED:
+                return leg.hasDestination() || previousLeg.hasDestination();
+            case DIRECTION_CHANGED:
+            case RESTRUCTURED:
+                return true;
+            case BATCH:
+                for (SurveyChange part : parts) {
+                    if (part.affectsStations()) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "[" + type + " r" + revision + "]";
+    }
+
+}
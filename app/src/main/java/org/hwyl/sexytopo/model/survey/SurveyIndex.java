@@ -0,0 +1,230 @@
+package org.hwyl.sexytopo.model.survey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Lookup tables for a survey's station tree so that common queries don't have to walk the
+ * whole survey. Owned by Survey, which is responsible for keeping it in step with the tree.
+ */
+class SurveyIndex {
+
+    private Station origin = null;
+
+    private final Map<String, Station> stationsByName = new HashMap<>();
+    // any further stations with a name already taken (there shouldn't be any, but there can be)
+    private final Map<String, List<Station>> duplicateNames = new HashMap<>();
+    // identity maps keep to a pair of array slots per entry, which matters with lots of splays
+    private final Map<Station, Leg> referringLegs = new IdentityHashMap<>();
+    private final Map<Leg, Station> originatingStations = new IdentityHashMap<>();
+    private final StationNameAllocator nameAllocator =
+            new StationNameAllocator(stationsByName.keySet());
+
+    // things cut off from the tree since the last integrity check (some may have been
+    // reattached since, e.g. by a leg move, so they need checking before being acted on)
+    private List<Station> detachedStations = new ArrayList<>();
+    private List<Leg> detachedLegs = new ArrayList<>();
+
+
+    void rebuild(Station origin) {
+        this.origin = origin;
+        stationsByName.clear();
+        duplicateNames.clear();
+        referringLegs.clear();
+        originatingStations.clear();
+        detachedStations.clear();
+        detachedLegs.clear();
+        nameAllocator.reset();
+        addSubtree(origin);
+    }
+
+
+    Station getStation(String name) {
+        if (duplicateNames.containsKey(name)) {
+            // the first one in the tree, as the old tree search would have found
+            return findFirstInTree(name);
+        }
+        return stationsByName.get(name);
+    }
+
+
+    Leg getReferringLeg(Station station) {
+        return referringLegs.get(station);
+    }
+
+
+    Station getOriginatingStation(Leg leg) {
+        return originatingStations.get(leg);
+    }
+
+
+    String findUnusedName(String candidate) {
+        return nameAllocator.findUnusedName(candidate);
+    }
+
+
+    boolean isAttached(Station station) {
+        return referringLegs.containsKey(station);
+    }
+
+
+    List<Station> takeDetachedStations() {
+        List<Station> taken = detachedStations;
+        detachedStations = new ArrayList<>();
+        return taken;
+    }
+
+
+    List<Leg> takeDetachedLegs() {
+        List<Leg> taken = detachedLegs;
+        detachedLegs = new ArrayList<>();
+        return taken;
+    }
+
+
+    void addLeg(Station from, Leg leg) {
+        originatingStations.put(leg, from);
+        if (leg.hasDestination()) {
+            referringLegs.put(leg.getDestination(), leg);
+            addSubtree(leg.getDestination());
+        }
+    }
+
+
+    void removeLeg(Leg leg) {
+        originatingStations.remove(leg);
+        if (leg.hasDestination()) {
+            referringLegs.remove(leg.getDestination());
+            detachedLegs.add(leg);
+            removeSubtree(leg.getDestination());
+        }
+    }
+
+
+    void replaceLeg(Station from, Leg oldLeg, Leg newLeg) {
+        if (oldLeg.getDestination() == newLeg.getDestination()) {
+            // same subtree hanging off the end, so no need to revisit it
+            originatingStations.remove(oldLeg);
+            originatingStations.put(newLeg, from);
+            if (newLeg.hasDestination()) {
+                referringLegs.put(newLeg.getDestination(), newLeg);
+            }
+        } else {
+            removeLeg(oldLeg);
+            addLeg(from, newLeg);
+        }
+    }
+
+
+    void rename(Station station, String previousName) {
+        removeName(station, previousName);
+        addName(station);
+    }
+
+
+    private void addName(Station station) {
+        String name = station.getName();
+        Station existing = stationsByName.get(name);
+        if (existing == null) {
+            stationsByName.put(name, station);
+        } else if (existing != station) {
+            List<Station> duplicates = duplicateNames.get(name);
+            if (duplicates == null) {
+                duplicates = new ArrayList<>();
+                duplicateNames.put(name, duplicates);
+            }
+            duplicates.add(station);
+        }
+    }
+
+
+    private void removeName(Station station, String name) {
+        List<Station> duplicates = duplicateNames.get(name);
+        if (stationsByName.get(name) == station) {
+            if (duplicates == null) {
+                stationsByName.remove(name);
+                nameAllocator.released(name);
+                return;
+            }
+            stationsByName.put(name, duplicates.remove(duplicates.size() - 1));
+        } else if (duplicates != null) {
+            for (int i = 0; i < duplicates.size(); i++) {
+                if (duplicates.get(i) == station) {
+                    duplicates.remove(i);
+                    break;
+                }
+            }
+        }
+        if (duplicates != null && duplicates.isEmpty()) {
+            duplicateNames.remove(name);
+        }
+    }
+
+
+    private Station findFirstInTree(String name) {
+        Deque<Station> toVisit = new ArrayDeque<>();
+        toVisit.push(origin);
+        while (!toVisit.isEmpty()) {
+            Station station = toVisit.pop();
+            if (station.getName().equals(name)) {
+                return station;
+            }
+            pushDestinations(station, toVisit);
+        }
+        return null;
+    }
+
+
+    private void addSubtree(Station root) {
+        Deque<Station> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Station station = toVisit.pop();
+            addName(station);
+            for (Leg leg : station.getOnwardLegs()) {
+                originatingStations.put(leg, station);
+                if (leg.hasDestination()) {
+                    referringLegs.put(leg.getDestination(), leg);
+                }
+            }
+            pushDestinations(station, toVisit);
+        }
+    }
+
+
+    private void removeSubtree(Station root) {
+        Deque<Station> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Station station = toVisit.pop();
+            removeName(station, station.getName());
+            detachedStations.add(station);
+            for (Leg leg : station.getOnwardLegs()) {
+                originatingStations.remove(leg);
+                if (leg.hasDestination()) {
+                    referringLegs.remove(leg.getDestination());
+                    detachedLegs.add(leg);
+                }
+            }
+            pushDestinations(station, toVisit);
+        }
+    }
+
+
+    private static void pushDestinations(Station station, Deque<Station> toVisit) {
+        // push in reverse so stations pop off in the same order as a recursive search
+        for (int i = station.getOnwardLegs().size() - 1; i >= 0; i--) {
+            Leg leg = station.getOnwardLegs().get(i);
+            if (leg.hasDestination()) {
+                toVisit.push(leg.getDestination());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.hwyl.sexytopo.model.survey;
+
+import org.hwyl.sexytopo.model.graph.Direction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * A read-only picture of a survey at one revision, for reading on other threads (autosave,
+ * drawing, exporting, stats) while shots keep coming in.
+ *
+ * Each station's onward legs, name, comment and direction are read from a StationTable made
+ * when the snapshot was published, which shares all but the changed stations with the table
+ * of the snapshot before. Ask the snapshot rather than the station for any of those.
+ *
+ * A station the snapshot doesn't know (one added since, or from another survey) has no
+ * onward legs here, and its other details are read from the station as it is now.
+ */
+public class SurveySnapshot {
+
+    private final long revision;
+    private final Station origin;
+    private final Station activeStation;
+    private final List<Leg> legsInChronoOrder;
+    private final StationTable stations;
+
+
+    SurveySnapshot(long revision, Station origin, Station activeStation,
+                   List<Leg> legsInChronoOrder, StationTable stations) {
+        this.revision = revision;
+        this.origin = origin;
+        this.activeStation = activeStation;
+        this.legsInChronoOrder = legsInChronoOrder;
+        this.stations = stations;
+    }
+
+
+    public long getRevision() {
+        return revision;
+    }
+
+
+    public Station getOrigin() {
+        return origin;
+    }
+
+
+    public Station getActiveStation() {
+        return activeStation;
+    }
+
+
+    public List<Leg> getAllLegsInChronoOrder() {
+        return legsInChronoOrder;
+    }
+
+
+    public Leg getMostRecentLeg() {
+        int size = legsInChronoOrder.size();
+        return size == 0? null : legsInChronoOrder.get(size - 1);
+    }
+
+
+    StationTable getStationTable() {
+        return stations;
+    }
+
+
+    public List<Leg> getOnwardLegs(Station station) {
+        StationTable.Entry entry = stations.get(station);
+        return entry == null? Collections.emptyList() : entry.onwardLegs;
+    }
+
+
+    public String getName(Station station) {
+        StationTable.Entry entry = stations.get(station);
+        return entry == null? station.getName() : entry.name;
+    }
+
+
+    public String getComment(Station station) {
+        StationTable.Entry entry = stations.get(station);
+        return entry == null? station.getComment() : entry.comment;
+    }
+
+
+    public boolean hasComment(Station station) {
+        return getComment(station).length() > 0;
+    }
+
+
+    public Direction getExtendedElevationDirection(Station station) {
+        StationTable.Entry entry = stations.get(station);
+        return entry == null? station.getExtendedElevationDirection() : entry.direction;
+    }
+
+
+    public List<Station> getAllStations() {
+        List<Station> stations = new ArrayList<>();
+        Deque<Station> toVisit = new ArrayDeque<>();
+        toVisit.push(origin);
+        while (!toVisit.isEmpty()) {
+            Station station = toVisit.pop();
+            stations.add(station);
+            List<Leg> onwardLegs = getOnwardLegs(station);
+            for (int i = onwardLegs.size() - 1; i >= 0; i--) {
+                Leg leg = onwardLegs.get(i);
+                if (leg.hasDestination()) {
+                    toVisit.push(leg.getDestination());
+                }
+            }
+        }
+        return stations;
+    }
+
+
+    public List<Leg> getAllLegs() {
+        List<Leg> legs = new ArrayList<>();
+        for (Station station : getAllStations()) {
+            legs.addAll(getOnwardLegs(station));
+        }
+        return legs;
+    }
+
+}
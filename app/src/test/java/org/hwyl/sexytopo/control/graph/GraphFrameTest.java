@@ -0,0 +1,64 @@
+package org.hwyl.sexytopo.control.graph;
+
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.sketch.PathDetail;
+import org.hwyl.sexytopo.model.sketch.Sketch;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class GraphFrameTest {
+
+    @Test
+    public void testSketchContentIsReusedUntilTheSketchChanges() {
+        Sketch sketch = new Sketch();
+        drawPath(sketch, new Coord2D(0, 0), new Coord2D(10, 0));
+
+        GraphFrame.SketchContent first = GraphFrame.SketchContent.capture(sketch, null);
+        Assert.assertSame(first, GraphFrame.SketchContent.capture(sketch, first));
+
+        drawPath(sketch, new Coord2D(0, 5), new Coord2D(10, 5));
+        GraphFrame.SketchContent second = GraphFrame.SketchContent.capture(sketch, first);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, first.paths.size());
+        Assert.assertEquals(2, second.paths.size());
+    }
+
+
+    @Test
+    public void testPathBeingDrawnIsLeftOutOfSketchContent() {
+        Sketch sketch = new Sketch();
+        drawPath(sketch, new Coord2D(0, 0), new Coord2D(10, 0));
+        sketch.startNewPath(new Coord2D(0, 5));
+        sketch.getActivePath().lineTo(new Coord2D(10, 5));
+
+        GraphFrame.SketchContent content = GraphFrame.SketchContent.capture(sketch, null);
+        Assert.assertEquals(1, content.paths.size());
+        Assert.assertNotSame(sketch.getActivePath(), content.paths.get(0));
+
+        // still the same content, as the sketch doesn't count as changed until it's finished
+        sketch.getActivePath().lineTo(new Coord2D(20, 5));
+        Assert.assertSame(content, GraphFrame.SketchContent.capture(sketch, content));
+    }
+
+
+    @Test
+    public void testSketchContentFindsDetailsByArea() {
+        Sketch sketch = new Sketch();
+        drawPath(sketch, new Coord2D(0, 0), new Coord2D(10, 0));
+        drawPath(sketch, new Coord2D(100, 100), new Coord2D(110, 100));
+        PathDetail far = sketch.getPathDetails().get(1);
+
+        GraphFrame.SketchContent content = GraphFrame.SketchContent.capture(sketch, null);
+        Assert.assertEquals(1, content.findDetailsWithin(90, 90, 120, 120).size());
+        Assert.assertSame(far, content.findDetailsWithin(90, 90, 120, 120).get(0));
+        Assert.assertTrue(content.findDetailsWithin(40, 40, 50, 50).isEmpty());
+    }
+
+
+    private static void drawPath(Sketch sketch, Coord2D start, Coord2D end) {
+        sketch.startNewPath(start);
+        sketch.getActivePath().lineTo(end);
+        sketch.finishPath();
+    }
+}
@@ -0,0 +1,39 @@
+package org.hwyl.sexytopo.control.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SketchTileCacheTest {
+
+    private static final float ROOT_2 = (float) Math.sqrt(2);
+
+
+    @Test
+    public void testZoomLevelsAreRoot2Apart() {
+        Assert.assertEquals(1, SketchTileCache.toScale(0), 0.0001);
+        Assert.assertEquals(ROOT_2, SketchTileCache.toScale(1), 0.0001);
+        Assert.assertEquals(2, SketchTileCache.toScale(2), 0.0001);
+        Assert.assertEquals(0.5f, SketchTileCache.toScale(-2), 0.0001);
+    }
+
+
+    @Test
+    public void testNearbyScalesShareAZoomLevel() {
+        int level = SketchTileCache.toZoomLevel(10);
+        Assert.assertEquals(level, SketchTileCache.toZoomLevel(10.01f));
+        Assert.assertEquals(level, SketchTileCache.toZoomLevel(9.99f));
+        Assert.assertEquals(level, SketchTileCache.toZoomLevel(11));
+    }
+
+
+    @Test
+    public void testScaleIsNeverStretchedByMoreThanAFourthRootOf2() {
+        float limit = (float) Math.pow(2, 0.25) + 0.0001f;
+        for (float scale = 0.01f; scale < 1000; scale *= 1.07f) {
+            float tileScale = SketchTileCache.toScale(SketchTileCache.toZoomLevel(scale));
+            float stretch = scale / tileScale;
+            Assert.assertTrue(stretch <= limit && 1 / stretch <= limit);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package org.hwyl.sexytopo.control.io.thirdparty.survex;
 
 import org.junit.Assert;
 
+import org.hwyl.sexytopo.control.util.SurveyUpdater;
+import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
 import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
@@ -43,6 +45,16 @@ public class SurvexExporterTest {
         Assert.assertTrue(content.contains(testComment));
     }
 
+    @Test
+    public void testExportIncludesLegsAddedSinceLastSnapshot() {
+        SurvexExporter survexExporter = new SurvexExporter();
+        Survey oneNorth = BasicTestSurveyCreator.createStraightNorth();
+        oneNorth.publishSnapshot();
+        SurveyUpdater.updateWithNewStation(oneNorth, new Leg(3, 90, 0));
+        String content = survexExporter.getContent(oneNorth);
+        Assert.assertTrue(content.contains("4\t5\t3.000\t90.00\t0.00"));
+    }
+
 
 }
 
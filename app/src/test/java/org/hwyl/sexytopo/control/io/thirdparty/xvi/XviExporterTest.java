@@ -23,7 +23,8 @@ public class XviExporterTest {
         BasicTestSketchCreator.drawOneHorizontalLine(sketch);
         Frame frame = ExportFrameFactory.getExportFrame(testSurvey, Projection2D.PLAN);
         Space<Coord2D> space = projection.project(testSurvey);
-        String xvi = XviExporter.getContent(sketch, space, 1.0f, frame);
+        String xvi = XviExporter.getContent(
+                testSurvey.getLatestSnapshot(), sketch, space, 1.0f, frame);
         Assert.assertTrue(xvi.contains("{BLACK 5.00 0.00 10.00 0.00}"));
     }
 }
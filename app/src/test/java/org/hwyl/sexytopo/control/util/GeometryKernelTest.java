@@ -0,0 +1,143 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.Coord3D;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class GeometryKernelTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static final int CALLS = 1000000;
+
+    // written to by the benchmarks so the work can't be optimised away
+    private static volatile float sink;
+
+
+    @Test
+    public void testToCartesianMatchesLegBasedVersion() {
+        float[] out = new float[5];
+        for (int azimuth = 0; azimuth < 360; azimuth += 17) {
+            for (int inclination = -90; inclination <= 90; inclination += 15) {
+                Leg leg = new Leg(3.5f, azimuth, inclination);
+                Coord3D expected = Space3DUtils.toCartesian(Coord3D.ORIGIN, leg);
+                GeometryKernel.toCartesian(3.5f, azimuth, inclination, out, 2);
+                Assert.assertEquals(expected.x, out[2], DELTA);
+                Assert.assertEquals(expected.y, out[3], DELTA);
+                Assert.assertEquals(expected.z, out[4], DELTA);
+            }
+        }
+    }
+
+
+    @Test
+    public void testNorthIsPositiveY() {
+        float[] out = new float[3];
+        GeometryKernel.toCartesian(2, 0, 0, out, 0);
+        Assert.assertEquals(0, out[0], DELTA);
+        Assert.assertEquals(2, out[1], DELTA);
+        Assert.assertEquals(0, out[2], DELTA);
+    }
+
+
+    @Test
+    public void testRotateAzimuthWrapsBothWays() {
+        Assert.assertEquals(10, GeometryKernel.rotateAzimuth(350, 20), DELTA);
+        Assert.assertEquals(350, GeometryKernel.rotateAzimuth(10, -20), DELTA);
+        Assert.assertEquals(0, GeometryKernel.rotateAzimuth(180, 180), DELTA);
+        Assert.assertEquals(90, GeometryKernel.rotateAzimuth(90, -720), DELTA);
+    }
+
+
+    @Test
+    public void testDistanceToSegment() {
+        // beside the middle, then beyond each end
+        Assert.assertEquals(1, GeometryKernel.distanceToSegment(5, 1, 0, 0, 10, 0), DELTA);
+        Assert.assertEquals(5, GeometryKernel.distanceToSegment(-3, 4, 0, 0, 10, 0), DELTA);
+        Assert.assertEquals(5, GeometryKernel.distanceToSegment(13, -4, 0, 0, 10, 0), DELTA);
+        // a segment that's just a point
+        Assert.assertEquals(5, GeometryKernel.distanceToSegment(3, 4, 0, 0, 0, 0), DELTA);
+    }
+
+
+    @Test
+    public void benchmarkRotatedShotToCartesian() {
+        Benchmarker.assumeBenchmarking();
+        Leg leg = new Leg(5, 123, 10);
+
+        Runnable viaLegs = () -> {
+            float total = 0;
+            for (int i = 0; i < CALLS; i++) {
+                Leg rotated = leg.rotate(i % 360);
+                total += Space3DUtils.toCartesian(Coord3D.ORIGIN, rotated).x;
+            }
+            sink = total;
+        };
+
+        float[] offset = new float[3];
+        Runnable viaKernel = () -> {
+            float total = 0;
+            for (int i = 0; i < CALLS; i++) {
+                float azimuth = GeometryKernel.rotateAzimuth(leg.getAzimuth(), i % 360);
+                GeometryKernel.toCartesian(
+                        leg.getDistance(), azimuth, leg.getInclination(), offset, 0);
+                total += offset[0];
+            }
+            sink = total;
+        };
+
+        Benchmarker.bytesAllocatedBy("1M rotated shots via Leg.rotate", viaLegs);
+        Benchmarker.bytesAllocatedBy("1M rotated shots via GeometryKernel", viaKernel);
+        Benchmarker.time("1M rotated shots via Leg.rotate", 3, viaLegs);
+        Benchmarker.time("1M rotated shots via GeometryKernel", 3, viaKernel);
+    }
+
+
+    @Test
+    public void benchmarkDistanceToPath() {
+        Benchmarker.assumeBenchmarking();
+        Coord2D[] path = new Coord2D[100];
+        float[] packedPath = new float[path.length * 2];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = new Coord2D(i, (i * 7) % 5);
+            packedPath[i * 2] = path[i].x;
+            packedPath[i * 2 + 1] = path[i].y;
+        }
+        Coord2D target = new Coord2D(50, -3);
+        Coord2D shift = new Coord2D(0.5f, 0.5f);
+
+        // the erase tool's pattern: nudging the touch point then measuring against each segment
+        Runnable viaCoords = () -> {
+            float total = 0;
+            for (int n = 0; n < CALLS / path.length; n++) {
+                Coord2D point = target.plus(shift).minus(shift);
+                for (int i = 1; i < path.length; i++) {
+                    total += Space2DUtils.getDistanceFromLine(point, path[i - 1], path[i]);
+                }
+            }
+            sink = total;
+        };
+
+        Runnable viaKernel = () -> {
+            float total = 0;
+            for (int n = 0; n < CALLS / path.length; n++) {
+                float x = target.x + shift.x - shift.x;
+                float y = target.y + shift.y - shift.y;
+                for (int i = 2; i < packedPath.length; i += 2) {
+                    total += GeometryKernel.distanceToSegment(x, y,
+                            packedPath[i - 2], packedPath[i - 1], packedPath[i], packedPath[i + 1]);
+                }
+            }
+            sink = total;
+        };
+
+        Benchmarker.bytesAllocatedBy("1M segment distances via Coord2D", viaCoords);
+        Benchmarker.bytesAllocatedBy("1M segment distances via GeometryKernel", viaKernel);
+        Benchmarker.time("1M segment distances via Coord2D", 3, viaCoords);
+        Benchmarker.time("1M segment distances via GeometryKernel", 3, viaKernel);
+    }
+}
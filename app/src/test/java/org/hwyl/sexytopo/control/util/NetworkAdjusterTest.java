@@ -0,0 +1,201 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.Coord3D;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+public class NetworkAdjusterTest {
+
+    private static final float DELTA = 0.0001f;
+
+
+    @Test
+    public void testSurveyWithoutLoopsIsLaidOutAsMeasured() {
+        Survey survey = LargeSurveyCreator.createBushy(200, 3, 2);
+        Space<Coord3D> adjusted = new NetworkAdjuster().adjust(survey);
+        Space<Coord3D> plain = new Space3DTransformer().transformTo3D(survey);
+        assertSameLayout(plain, adjusted);
+    }
+
+
+    @Test
+    public void testLoopMisclosureIsSharedOutByLength() {
+        Survey a = createSurvey(new Leg(10, 0, 0, new Station("2"), new Leg[]{}));
+        Survey b = createSurvey(new Leg(10, 90, 0, new Station("2"), new Leg[]{}));
+        Survey c = createSurvey(new Leg(14, 225, 0, new Station("2"), new Leg[]{}));
+        Station a1 = a.getStationByName("2");
+        Station b1 = b.getStationByName("2");
+        Station c1 = c.getStationByName("2");
+        a.connect(a1, b, b.getOrigin());
+        b.connect(b1, c, c.getOrigin());
+        c.connect(c1, a, a.getOrigin());
+
+        Map<Station, Coord3D> stations = new NetworkAdjuster().adjust(a).getStationMap();
+
+        // the loop should close exactly...
+        Assert.assertEquals(Coord3D.ORIGIN, stations.get(c1));
+
+        // ...with the misclosure spread out in proportion to leg length
+        float diagonal = 14 * (float) Math.sqrt(0.5);
+        float misclosure = 10 - diagonal;
+        float total = 34;
+        assertCoordEquals(new Coord3D(
+                -misclosure * 10 / total, 10 - misclosure * 10 / total, 0), stations.get(a1));
+        assertCoordEquals(new Coord3D(
+                10 - misclosure * 20 / total, 10 - misclosure * 20 / total, 0), stations.get(b1));
+        Assert.assertEquals(stations.get(a1), stations.get(b.getOrigin()));
+    }
+
+
+    @Test
+    public void testNetworkWithSeveralLoopsSatisfiesNormalEquations() {
+        List<Survey> surveys = createLoopyNetwork(6, 40);
+        Survey root = surveys.get(0);
+
+        Space<Coord3D> space = new NetworkAdjuster().adjust(root);
+
+        LegNetwork network = new LegNetwork(root);
+        double[][] gradients = new double[network.getNodeCount()][3];
+        Map<Station, Coord3D> stations = space.getStationMap();
+        for (Station station : network.getStations()) {
+            for (Leg leg : station.getOnwardLegs()) {
+                if (!leg.hasDestination()) {
+                    continue;
+                }
+                Coord3D from = stations.get(station);
+                Coord3D to = stations.get(leg.getDestination());
+                Coord3D measured = Space3DUtils.toCartesian(Coord3D.ORIGIN, leg);
+                double weight = 1 / leg.getDistance();
+                double[] residual = {
+                        (to.x - from.x - measured.x) * weight,
+                        (to.y - from.y - measured.y) * weight,
+                        (to.z - from.z - measured.z) * weight};
+                int fromNode = network.getNode(station);
+                int toNode = network.getNode(leg.getDestination());
+                for (int axis = 0; axis < 3; axis++) {
+                    gradients[toNode][axis] += residual[axis];
+                    gradients[fromNode][axis] -= residual[axis];
+                }
+            }
+        }
+
+        int fixedNode = network.getNode(root.getOrigin());
+        for (int node = 0; node < network.getNodeCount(); node++) {
+            if (node != fixedNode) {
+                for (int axis = 0; axis < 3; axis++) {
+                    Assert.assertEquals(0, gradients[node][axis], 0.001);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testNewShotsGiveSameResultAsAdjustingFromScratch() {
+        List<Survey> surveys = createLoopyNetwork(3, 10);
+        Survey root = surveys.get(0);
+        NetworkAdjuster adjuster = new NetworkAdjuster();
+        adjuster.adjust(root);
+
+        SurveyUpdater.updateWithNewStation(root, new Leg(5, 45, 5));
+        SurveyUpdater.update(root, new Leg(2, 90, 0));
+
+        assertSameLayout(new NetworkAdjuster().adjust(root), adjuster.adjust(root));
+    }
+
+
+    @Test
+    public void testNewConnectionIsNoticed() {
+        Survey a = createSurvey(new Leg(10, 0, 0, new Station("2"), new Leg[]{}));
+        Survey b = createSurvey(new Leg(11, 180, 0, new Station("2"), new Leg[]{}));
+        a.connect(a.getStationByName("2"), b, b.getOrigin());
+
+        NetworkAdjuster adjuster = new NetworkAdjuster();
+        adjuster.adjust(a);
+        b.connect(b.getStationByName("2"), a, a.getOrigin());
+
+        Coord3D closed = adjuster.adjust(a).getStationMap().get(b.getStationByName("2"));
+        Assert.assertEquals(Coord3D.ORIGIN, closed);
+    }
+
+
+    @Test
+    public void benchmarkAdjustingLargeNetwork() {
+        Benchmarker.assumeBenchmarking();
+        List<Survey> surveys = createLoopyNetwork(10, 2000);
+        Survey root = surveys.get(0);
+
+        Benchmarker.time("Adjusting 20k leg network with loops", 5,
+                () -> new NetworkAdjuster().adjust(root));
+
+        NetworkAdjuster adjuster = new NetworkAdjuster();
+        adjuster.adjust(root);
+        Benchmarker.time("Re-adjusting 20k leg network after a new station", 5, () -> {
+            SurveyUpdater.updateWithNewStation(root, new Leg(5, 45, 5));
+            adjuster.adjust(root);
+        });
+    }
+
+
+    private static Survey createSurvey(Leg leg) {
+        Survey survey = BasicTestSurveyCreator.createEmptySurvey();
+        SurveyUpdater.updateWithNewStation(survey, leg);
+        return survey;
+    }
+
+
+    /**
+     * A ring of linear surveys, each joined end to start, with the middle of each one also
+     * joined to the middle of the next to make extra loops. The legs don't quite close.
+     */
+    private static List<Survey> createLoopyNetwork(int numberOfSurveys, int stationsEach) {
+        List<Survey> surveys = new ArrayList<>();
+        for (int i = 0; i < numberOfSurveys; i++) {
+            surveys.add(LargeSurveyCreator.createLinear(stationsEach, 1));
+        }
+
+        String middle = Integer.toString(stationsEach / 2);
+        String last = Integer.toString(stationsEach);
+        for (int i = 0; i < numberOfSurveys; i++) {
+            Survey survey = surveys.get(i);
+            Survey next = surveys.get((i + 1) % numberOfSurveys);
+            survey.connect(survey.getStationByName(last), next, next.getOrigin());
+            if (i % 2 == 0) {
+                Survey other = surveys.get((i + 2) % numberOfSurveys);
+                survey.connect(
+                        survey.getStationByName(middle), other, other.getStationByName(middle));
+            }
+        }
+        return surveys;
+    }
+
+
+    private static void assertSameLayout(Space<Coord3D> expected, Space<Coord3D> actual) {
+        Map<Station, Coord3D> expectedStations = expected.getStationMap();
+        Map<Station, Coord3D> actualStations = actual.getStationMap();
+        Assert.assertEquals(expectedStations.keySet(), actualStations.keySet());
+        for (Station station : expectedStations.keySet()) {
+            assertCoordEquals(expectedStations.get(station), actualStations.get(station));
+        }
+        Assert.assertEquals(expected.getLegMap().keySet(), actual.getLegMap().keySet());
+    }
+
+
+    private static void assertCoordEquals(Coord3D expected, Coord3D actual) {
+        Assert.assertEquals(expected.x, actual.x, DELTA * Math.max(1, Math.abs(expected.x)));
+        Assert.assertEquals(expected.y, actual.y, DELTA * Math.max(1, Math.abs(expected.y)));
+        Assert.assertEquals(expected.z, actual.z, DELTA * Math.max(1, Math.abs(expected.z)));
+    }
+}
@@ -0,0 +1,195 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.Direction;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
+import org.hwyl.sexytopo.model.graph.Projection2D;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+
+public class ProjectionCacheTest {
+
+    private final ProjectionCache cache = ProjectionCache.getInstance();
+
+
+    @Before
+    public void setUp() {
+        cache.invalidateAll();
+        cache.resetCounters();
+    }
+
+
+    @Test
+    public void testSecondRequestForSameRevisionIsAHit() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Space<Coord2D> first = cache.project(survey, Projection2D.PLAN);
+        Space<Coord2D> second = cache.project(survey, Projection2D.PLAN);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+
+    @Test
+    public void testEachProjectionTypeIsCachedSeparately() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        cache.project(survey, Projection2D.PLAN);
+        cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+        cache.project(survey, Projection2D.PLAN);
+        cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+
+    @Test
+    public void testNewLegCausesReprojection() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        cache.project(survey, Projection2D.PLAN);
+
+        Leg splay = new Leg(3, 90, 0);
+        SurveyUpdater.update(survey, splay);
+        Space<Coord2D> projection = cache.project(survey, Projection2D.PLAN);
+
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertTrue(projection.getLegMap().containsKey(splay));
+    }
+
+
+    @Test
+    public void testChangingDirectionCausesReprojection() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        Station three = survey.getStationByName("3");
+        Space<Coord2D> before = cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+        Assert.assertTrue(before.getStationMap().get(three).x >
+                before.getStationMap().get(two).x);
+
+        SurveyUpdater.setDirectionOfSubtree(survey, two, Direction.LEFT);
+        Space<Coord2D> after = cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertTrue(after.getStationMap().get(three).x < after.getStationMap().get(two).x);
+    }
+
+
+    @Test
+    public void testRenamingStationDoesNotCauseReprojection() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        cache.project(survey, Projection2D.PLAN);
+        SurveyUpdater.renameStation(survey, survey.getStationByName("2"), "2a");
+        cache.project(survey, Projection2D.PLAN);
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+
+    @Test
+    public void testInvalidateCausesReprojection() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        cache.project(survey, Projection2D.PLAN);
+        cache.invalidate(survey);
+        cache.project(survey, Projection2D.PLAN);
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+
+    @Test
+    public void testDifferentSurveysAtSameRevisionAreKeptApart() {
+        Survey north = BasicTestSurveyCreator.createStraightNorth();
+        Survey south = BasicTestSurveyCreator.createStraightSouth();
+        Space<Coord2D> northProjection = cache.project(north, Projection2D.PLAN);
+        Space<Coord2D> southProjection = cache.project(south, Projection2D.PLAN);
+        Assert.assertNotSame(northProjection, southProjection);
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+
+    @Test
+    public void testHeightRangeUsesCachedElevation() {
+        Survey survey = BasicTestSurveyCreator.create5MDown();
+        Assert.assertEquals(5, SurveyStats.calcHeightRange(survey), 0.0001);
+        cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+
+    @Test
+    public void testProjectAllGivesSameAsProjectingSeparately() {
+        Survey survey = LargeSurveyCreator.createBushy(100, 3, 2);
+        Map<Projection2D, PackedSpace2D> projections = cache.projectAll(survey,
+                Projection2D.PLAN, Projection2D.ELEVATION_NS, Projection2D.EXTENDED_ELEVATION);
+
+        Assert.assertEquals(3, projections.size());
+        for (Projection2D projectionType : projections.keySet()) {
+            Space<Coord2D> expected = projectionType.project(survey);
+            Space<Coord2D> actual = projections.get(projectionType);
+            Assert.assertEquals(expected.getStationMap(), actual.getStationMap());
+            Assert.assertEquals(expected.getLegMap().keySet(), actual.getLegMap().keySet());
+        }
+    }
+
+
+    @Test
+    public void testProjectAllFillsTheCache() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Map<Projection2D, PackedSpace2D> projections =
+                cache.projectAll(survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+        Assert.assertEquals(2, cache.getMisses());
+
+        Assert.assertSame(projections.get(Projection2D.PLAN),
+                cache.project(survey, Projection2D.PLAN));
+        Assert.assertSame(projections.get(Projection2D.EXTENDED_ELEVATION),
+                cache.project(survey, Projection2D.EXTENDED_ELEVATION));
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+
+    @Test
+    public void testProjectAllOnlyWorksOutWhatIsMissing() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        PackedSpace2D plan = cache.project(survey, Projection2D.PLAN);
+        Map<Projection2D, PackedSpace2D> projections =
+                cache.projectAll(survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+        Assert.assertSame(plan, projections.get(Projection2D.PLAN));
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+
+    @Test
+    public void benchmarkProjectingPlanAndElevationTogether() {
+        Benchmarker.assumeBenchmarking();
+        // alternate between two surveys so the 3D layouts have to be redone each time too
+        Survey[] surveys = {
+                LargeSurveyCreator.createLinear(10000, 4),
+                LargeSurveyCreator.createLinear(10000, 4)};
+        int[] run = {0};
+
+        Benchmarker.time("Projecting plan then extended elevation of 50k legs", 6, () -> {
+            Survey survey = surveys[run[0]++ % 2];
+            cache.invalidateAll();
+            cache.project(survey, Projection2D.PLAN);
+            cache.project(survey, Projection2D.EXTENDED_ELEVATION);
+        });
+
+        Benchmarker.time("Projecting plan and extended elevation of 50k legs together", 6,
+                () -> {
+            Survey survey = surveys[run[0]++ % 2];
+            cache.invalidateAll();
+            cache.projectAll(survey, Projection2D.PLAN, Projection2D.EXTENDED_ELEVATION);
+        });
+    }
+}
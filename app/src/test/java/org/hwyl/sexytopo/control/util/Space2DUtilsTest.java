@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public class Space2DUtilsTest {
 
@@ -128,4 +129,61 @@ public class Space2DUtilsTest {
             Assert.assertEquals(expectedPath, simplifiedPath);
         }
     }
+
+    @Test
+    public void testSimplifyMatchesRecursiveDouglasPeucker() {
+        Random random = new Random(1);
+        for (int run = 0; run < 20; run++) {
+            List<Coord2D> path = new ArrayList<>();
+            float x = 0, y = 0;
+            for (int i = 0; i < 500; i++) {
+                x += random.nextFloat() - 0.3f;
+                y += random.nextFloat() - 0.5f;
+                path.add(new Coord2D(x, y));
+            }
+            float epsilon = 0.2f + random.nextFloat();
+            Assert.assertEquals(
+                    douglasPeucker(path, epsilon), Space2DUtils.simplify(path, epsilon));
+        }
+    }
+
+    @Test
+    public void testSimplifyKeepsEveryCornerOfVeryLongZigZag() {
+        // every point is a corner, so the recursive version would have gone very deep
+        int count = 100000;
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = i;
+            ys[i] = (i % 2) * 10;
+        }
+        int[] kept = new int[count];
+        Assert.assertEquals(count, Space2DUtils.simplify(xs, ys, count, 1, kept));
+        Assert.assertEquals(count - 1, kept[count - 1]);
+    }
+
+
+    private static List<Coord2D> douglasPeucker(List<Coord2D> path, float epsilon) {
+        int last = path.size() - 1;
+        int indexMax = 0;
+        float distMax = 0;
+        for (int i = 1; i < last; i++) {
+            float dist = Space2DUtils.getDistanceFromLine(path.get(i), path.get(0), path.get(last));
+            if (dist > distMax) {
+                distMax = dist;
+                indexMax = i;
+            }
+        }
+
+        List<Coord2D> simplified = new ArrayList<>();
+        if (distMax > epsilon) {
+            simplified.addAll(douglasPeucker(path.subList(0, indexMax + 1), epsilon));
+            List<Coord2D> after = douglasPeucker(path.subList(indexMax, last + 1), epsilon);
+            simplified.addAll(after.subList(1, after.size()));
+        } else {
+            simplified.add(path.get(0));
+            simplified.add(path.get(last));
+        }
+        return simplified;
+    }
 }
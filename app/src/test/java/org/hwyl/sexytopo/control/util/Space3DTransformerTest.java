@@ -0,0 +1,237 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.graph.Coord3D;
+import org.hwyl.sexytopo.model.graph.Direction;
+import org.hwyl.sexytopo.model.graph.Line;
+import org.hwyl.sexytopo.model.graph.Projection2D;
+import org.hwyl.sexytopo.model.graph.Space;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+public class Space3DTransformerTest {
+
+    @Test
+    public void testTransformTo3DGivesANewSpaceEachTime() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Space3DTransformer transformer = new Space3DTransformer();
+        Space<Coord3D> first = transformer.transformTo3D(survey);
+        Space<Coord3D> second = transformer.transformTo3D(survey);
+        Assert.assertNotSame(first, second);
+    }
+
+
+    @Test
+    public void testSpaceGivenOutIsNotChangedByLaterLayouts() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Space<Coord3D> space = Projection2D.PLAN.transform(survey);
+        int legsBefore = space.getLegMap().size();
+
+        SurveyUpdater.update(survey, new Leg(2, 45, 10));
+        Projection2D.PLAN.transform(survey);
+        ProjectionCache.getInstance().project(survey, Projection2D.PLAN);
+
+        Assert.assertEquals(legsBefore, space.getLegMap().size());
+    }
+
+
+    @Test
+    public void testUpdatingUnchangedLayoutKeepsSameSpace() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+        Space<Coord3D> first = layout.getSpace();
+        layout.update();
+        Assert.assertSame(first, layout.getSpace());
+    }
+
+
+    @Test
+    public void testAddingLegsUpdatesSpaceToMatchFullLayout() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        SurveyUpdater.update(survey, new Leg(2, 45, 10));
+        SurveyUpdater.updateWithNewStation(survey, new Leg(5, 90, -5));
+        SurveyUpdater.update(survey, new Leg(3, 180, 0));
+
+        assertMatchesFullLayout(layout, new Space3DTransformer());
+    }
+
+
+    @Test
+    public void testBulkUpdateUpdatesSpaceToMatchFullLayout() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        SurveyUpdater.update(survey, Arrays.asList(
+                new Leg(5, 90, 0), new Leg(5, 90, 0), new Leg(5, 90, 0),
+                new Leg(2, 0, 0), new Leg(3, 180, 10)));
+
+        assertMatchesFullLayout(layout, new Space3DTransformer());
+    }
+
+
+    @Test
+    public void testLegsAddedInARowAreEachLaidOutOnce() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station from = survey.getActiveStation();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        SurveyUpdater.updateWithNewStation(survey, new Leg(5, 90, 0));
+        Leg toNewStation = survey.getMostRecentLeg();
+        Station newStation = toNewStation.getDestination();
+        SurveyUpdater.update(survey, new Leg(2, 0, 0));
+        Leg splay = survey.getMostRecentLeg();
+
+        assertMatchesFullLayout(layout, new Space3DTransformer());
+        Assert.assertEquals(1, countOf(layout.getLegsLaidOutFrom(from), toNewStation));
+        Assert.assertEquals(
+                Collections.singletonList(splay), layout.getLegsLaidOutFrom(newStation));
+    }
+
+
+    @Test
+    public void testDeletingStationUpdatesSpaceToMatchFullLayout() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        Station two = survey.getStationByName("2");
+        SurveyUpdater.deleteStation(survey, two);
+
+        Space<Coord3D> space = assertMatchesFullLayout(layout, new Space3DTransformer());
+        Assert.assertFalse(space.getStationMap().containsKey(two));
+    }
+
+
+    @Test
+    public void testDeletingStationRemovesWhatWasLaidOutBeyondIt() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station three = survey.getStationByName("3");
+        survey.setActiveStation(three);
+        Leg splay = new Leg(2, 90, 0);
+        SurveyUpdater.update(survey, splay);
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        // the splay goes from the tree without the survey hearing of it, so only the layout
+        // knows it was ever beyond station 2
+        three.removeOnwardLeg(splay);
+        SurveyUpdater.deleteStation(survey, survey.getStationByName("2"));
+
+        Space<Coord3D> space = assertMatchesFullLayout(layout, new Space3DTransformer());
+        Assert.assertFalse(space.getLegMap().containsKey(splay));
+    }
+
+
+    @Test
+    public void testEditingLegUpdatesSpaceToMatchFullLayout() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Space3DTransformer.Layout layout = layOut(new Space3DTransformer(), survey);
+
+        Station two = survey.getStationByName("2");
+        Leg toEdit = survey.getReferringLeg(two);
+        Leg edited = new Leg(7, 30, 5, two, new Leg[]{});
+        SurveyUpdater.editLeg(survey, toEdit, edited);
+
+        assertMatchesFullLayout(layout, new Space3DTransformer());
+    }
+
+
+    @Test
+    public void testChangingDirectionUpdatesElevationToMatchFullLayout() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        SurveyUpdater.update(survey, new Leg(2, 45, 10));
+        Space3DTransformer.Layout layout =
+                layOut(new Space3DTransformerForElevation(), survey);
+
+        Station two = survey.getStationByName("2");
+        SurveyUpdater.setDirectionOfSubtree(survey, two, Direction.LEFT);
+
+        assertMatchesFullLayout(layout, new Space3DTransformerForElevation());
+    }
+
+
+    @Test
+    public void testLayoutsOfDifferentSurveysAreKeptApart() {
+        Space3DTransformer transformer = new Space3DTransformer();
+        Survey north = BasicTestSurveyCreator.createStraightNorth();
+        Survey south = BasicTestSurveyCreator.createStraightSouth();
+        Space3DTransformer.Layout northLayout = layOut(transformer, north);
+        Space3DTransformer.Layout southLayout = layOut(transformer, south);
+        Space<Coord3D> northSpace = northLayout.getSpace();
+
+        SurveyUpdater.update(south, new Leg(3, 90, 0));
+        southLayout.update();
+        northLayout.update();
+
+        Assert.assertSame(northSpace, northLayout.getSpace());
+        assertMatchesFullLayout(northLayout, new Space3DTransformer());
+        assertMatchesFullLayout(southLayout, new Space3DTransformer());
+    }
+
+
+    @Test
+    public void benchmarkIncrementalLayout() {
+        Benchmarker.assumeBenchmarking();
+        Survey survey = LargeSurveyCreator.createLinear(5000, 4);
+        Space3DTransformer transformer = new Space3DTransformer();
+
+        Benchmarker.time("Full 3D layout of 5000 stations", 20,
+                () -> transformer.transformTo3D(survey));
+
+        Space3DTransformer.Layout layout = layOut(transformer, survey);
+        Benchmarker.time("Incremental 3D layout after a new splay", 20, () -> {
+            SurveyUpdater.update(survey, new Leg(1, 90, 0));
+            layout.update();
+        });
+    }
+
+
+    private static int countOf(List<Leg> legs, Leg leg) {
+        int count = 0;
+        for (Leg each : legs) {
+            if (each == leg) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    private static Space3DTransformer.Layout layOut(
+            Space3DTransformer transformer, Survey survey) {
+        Space3DTransformer.Layout layout = new Space3DTransformer.Layout(transformer, survey);
+        layout.update();
+        return layout;
+    }
+
+
+    private static Space<Coord3D> assertMatchesFullLayout(
+            Space3DTransformer.Layout incremental, Space3DTransformer fresh) {
+        incremental.update();
+        Space<Coord3D> actual = incremental.getSpace();
+        Space<Coord3D> expected = fresh.transformTo3D(incremental.getSurvey());
+
+        Assert.assertEquals(expected.getStationMap(), actual.getStationMap());
+
+        Map<Leg, Line<Coord3D>> expectedLegs = expected.getLegMap();
+        Map<Leg, Line<Coord3D>> actualLegs = actual.getLegMap();
+        Assert.assertEquals(expectedLegs.keySet(), actualLegs.keySet());
+        for (Map.Entry<Leg, Line<Coord3D>> entry : expectedLegs.entrySet()) {
+            Line<Coord3D> line = actualLegs.get(entry.getKey());
+            Assert.assertEquals(entry.getValue().getStart(), line.getStart());
+            Assert.assertEquals(entry.getValue().getEnd(), line.getEnd());
+        }
+        return actual;
+    }
+}
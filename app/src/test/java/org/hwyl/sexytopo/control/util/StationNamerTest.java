@@ -2,7 +2,9 @@ package org.hwyl.sexytopo.control.util;
 
 import org.junit.Assert;
 
+import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
 import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
 import org.junit.Test;
 
@@ -46,4 +48,59 @@ public class StationNamerTest {
         int numberOfStations = testSurvey.getAllStations().size();
         Assert.assertEquals(Integer.toString(numberOfStations + 1), newName);
     }
+
+    @Test
+    public void testNameFreedByDeletionIsReused() {
+        Survey testSurvey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        StationNamer.generateNextStationName(testSurvey, testSurvey.getStationByName("1"));
+        SurveyUpdater.deleteStation(testSurvey, testSurvey.getStationByName("3"));
+        String newName = StationNamer.generateNextStationName(
+                testSurvey, testSurvey.getStationByName("1"));
+        Assert.assertEquals("3", newName);
+    }
+
+    @Test
+    public void testNameFreedByRenameIsReused() {
+        Survey testSurvey = BasicTestSurveyCreator.createStraightNorth();
+        StationNamer.generateNextStationName(testSurvey, testSurvey.getStationByName("1"));
+        SurveyUpdater.renameStation(testSurvey, testSurvey.getStationByName("2"), "X");
+        String newName = StationNamer.generateNextStationName(
+                testSurvey, testSurvey.getStationByName("1"));
+        Assert.assertEquals("2", newName);
+    }
+
+    @Test
+    public void testNameWithoutNumberGetsOneAppended() {
+        Survey testSurvey = new Survey();
+        SurveyUpdater.renameStation(testSurvey, testSurvey.getOrigin(), "Entrance");
+        String newName = StationNamer.generateNextStationName(
+                testSurvey, testSurvey.getOrigin());
+        Assert.assertEquals("Entrance1", newName);
+    }
+
+    @Test
+    public void testZeroPaddingIsKept() {
+        Survey testSurvey = new Survey();
+        SurveyUpdater.renameStation(testSurvey, testSurvey.getOrigin(), "A08");
+        SurveyUpdater.updateWithNewStation(testSurvey, new Leg(5, 0, 0));
+        SurveyUpdater.updateWithNewStation(testSurvey, new Leg(5, 0, 0));
+        Assert.assertEquals("A10", testSurvey.getActiveStation().getName());
+        String branchName = StationNamer.generateNextStationName(
+                testSurvey, testSurvey.getOrigin());
+        Assert.assertEquals("A11", branchName);
+    }
+
+    @Test
+    public void benchmarkNamingStationsInLargeSurvey() {
+        Benchmarker.assumeBenchmarking();
+        final int numberOfStations = 20000;
+        Benchmarker.timeRate("new stations", "stations", numberOfStations, () -> {
+            Survey survey = new Survey();
+            for (int i = 1; i < numberOfStations; i++) {
+                SurveyUpdater.updateWithNewStation(survey, new Leg(5, 0, 0));
+            }
+            Assert.assertEquals(
+                    Integer.toString(numberOfStations), survey.getActiveStation().getName());
+        });
+    }
 }
@@ -38,4 +38,17 @@ public class SurveyStatsTest {
         Assert.assertEquals(5, SurveyStats.calcNumberSubStations(subStation));
         Assert.assertEquals(5, SurveyStats.calcNumberSubLegs(subStation));
     }
+
+    @Test
+    public void testWholeSurveyStatsSeeChangesNotYetPublished() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith2EBranchFromS2();
+        SurveyUpdater.update(survey, new Leg(5, 0, 0));
+        survey.publishSnapshot();
+        Assert.assertEquals(5, SurveyStats.calcNumberStations(survey));
+        Assert.assertEquals(5, SurveyStats.calcNumberFullLegs(survey));
+        Assert.assertEquals(1, SurveyStats.calcNumberSplays(survey));
+
+        SurveyUpdater.update(survey, new Leg(5, 90, 0));
+        Assert.assertEquals(2, SurveyStats.calcNumberSplays(survey));
+    }
 }
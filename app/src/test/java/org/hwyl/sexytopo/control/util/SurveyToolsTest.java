@@ -0,0 +1,83 @@
+package org.hwyl.sexytopo.control.util;
+
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class SurveyToolsTest {
+
+    private static final int LARGE_SURVEY_SIZE = 50000;
+
+
+    @Test
+    public void testStationsAreVisitedDepthFirst() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        List<String> names = new ArrayList<>();
+        for (Station station : SurveyTools.stations(survey.getOrigin())) {
+            names.add(station.getName());
+        }
+        Assert.assertEquals("[1, 2, 3, 4, 5]", names.toString());
+    }
+
+    @Test
+    public void testLegTraversalCanStopEarly() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        final List<Leg> visited = new ArrayList<>();
+        SurveyTools.traverseLegs(survey, (origin, leg) -> {
+            visited.add(leg);
+            return visited.size() == 2;
+        });
+        Assert.assertEquals(2, visited.size());
+    }
+
+    @Test
+    public void testLongLinearSurveyCanBeTraversed() {
+        Survey survey = LargeSurveyCreator.createLinear(LARGE_SURVEY_SIZE, 0);
+        Assert.assertEquals(LARGE_SURVEY_SIZE, survey.getAllStations().size());
+        Assert.assertEquals(LARGE_SURVEY_SIZE - 1, survey.getAllLegs().size());
+
+        final int[] count = new int[]{0};
+        SurveyTools.traverseLegs(survey, (origin, leg) -> {
+            count[0]++;
+            return false;
+        });
+        Assert.assertEquals(LARGE_SURVEY_SIZE - 1, count[0]);
+    }
+
+    @Test
+    public void testLegViewMatchesLegList() {
+        Survey survey = LargeSurveyCreator.createBushy(1000, 3, 2);
+        List<Leg> viewed = new ArrayList<>();
+        for (Leg leg : SurveyTools.legs(survey.getOrigin())) {
+            viewed.add(leg);
+        }
+        Assert.assertEquals(survey.getAllLegs(), viewed);
+        Assert.assertEquals(viewed.size(), SurveyTools.countLegs(survey.getOrigin()));
+    }
+
+    @Test
+    public void benchmarkTraversalOfLargeSurveys() {
+        Benchmarker.assumeBenchmarking();
+        Survey linear = LargeSurveyCreator.createLinear(LARGE_SURVEY_SIZE, 2);
+        Survey bushy = LargeSurveyCreator.createBushy(LARGE_SURVEY_SIZE, 3, 2);
+
+        for (Survey survey : new Survey[]{linear, bushy}) {
+            String prefix = survey == linear? "linear " : "bushy ";
+            Benchmarker.time(prefix + "getAllStations", 10, survey::getAllStations);
+            Benchmarker.time(prefix + "getAllLegs", 10, survey::getAllLegs);
+            Benchmarker.time(prefix + "traverseLegs", 10, () ->
+                SurveyTools.traverseLegs(survey, (origin, leg) -> false));
+            Benchmarker.time(prefix + "calcTotalLength", 10, () ->
+                SurveyStats.calcTotalLength(survey));
+        }
+    }
+}
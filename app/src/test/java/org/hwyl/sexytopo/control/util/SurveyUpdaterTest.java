@@ -5,10 +5,16 @@ import static org.hwyl.sexytopo.SexyTopoConstants.ALLOWED_DOUBLE_DELTA;
 import org.hwyl.sexytopo.model.survey.Leg;
 import org.hwyl.sexytopo.model.survey.Station;
 import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.model.survey.SurveyChange;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
 import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 
 public class SurveyUpdaterTest {
 
@@ -72,4 +78,108 @@ public class SurveyUpdaterTest {
         Assert.assertFalse(originatingStation.getOnwardLegs().contains(toMove));
     }
 
+    @Test
+    public void testUpdateWithListCarriesOnAfterNewStation() {
+        Survey survey = new Survey();
+        List<Leg> legs = Arrays.asList(
+                new Leg(5, 0, 0), new Leg(5, 0, 0), new Leg(5, 0, 0), new Leg(2, 90, 0));
+        boolean stationAdded = SurveyUpdater.update(survey, legs);
+        Assert.assertTrue(stationAdded);
+        Assert.assertEquals(2, survey.getAllStations().size());
+        Assert.assertEquals(2, survey.getAllLegs().size());
+        Assert.assertEquals(1, survey.getActiveStation().getOnwardLegs().size());
+    }
+
+    @Test
+    public void testBulkUpdateCreatesStationsFromRepeatedShots() {
+        Survey survey = new Survey();
+        int created = SurveyUpdater.updateInBulk(
+                survey, createShots(10, 2), InputMode.FORWARD);
+        Assert.assertEquals(10, created);
+        Assert.assertEquals(11, survey.getAllStations().size());
+        Assert.assertEquals(10 + (10 * 2), survey.getAllLegs().size());
+        Assert.assertEquals(survey.getAllLegs().size(), survey.getAllLegsInChronoOrder().size());
+    }
+
+    @Test
+    public void testBulkUpdateMatchesAddingShotsOneAtATime() {
+        List<Leg> shots = createShots(20, 3);
+
+        Survey oneAtATime = new Survey();
+        for (Leg shot : shots) {
+            SurveyUpdater.update(oneAtATime, shot, InputMode.FORWARD);
+        }
+
+        Survey bulk = new Survey();
+        SurveyUpdater.updateInBulk(bulk, shots, InputMode.FORWARD);
+
+        Assert.assertEquals(
+                oneAtATime.getAllStations().size(), bulk.getAllStations().size());
+        Assert.assertEquals(
+                oneAtATime.getAllLegsInChronoOrder().size(),
+                bulk.getAllLegsInChronoOrder().size());
+        Assert.assertEquals(
+                oneAtATime.getActiveStation().getName(), bulk.getActiveStation().getName());
+    }
+
+    @Test
+    public void testBulkUpdateIsRecordedAsOneChange() {
+        Survey survey = new Survey();
+        long revision = survey.getRevision();
+        SurveyUpdater.updateInBulk(survey, createShots(3, 2), InputMode.FORWARD);
+
+        List<SurveyChange> changes = survey.getChangesSince(revision);
+        Assert.assertEquals(1, changes.size());
+        SurveyChange batch = changes.get(0);
+        Assert.assertEquals(SurveyChange.Type.BATCH, batch.getType());
+        Assert.assertEquals(survey.getRevision(), batch.getRevision());
+        Assert.assertTrue(batch.getParts().size() >= 3 * (3 + 2));
+        Assert.assertTrue(batch.affectsStations());
+    }
+
+    @Test
+    public void testLargeBulkUpdateIsRecordedAsRestructuring() {
+        Survey survey = new Survey();
+        long revision = survey.getRevision();
+        SurveyUpdater.updateInBulk(survey, createShots(200, 5), InputMode.FORWARD);
+
+        List<SurveyChange> changes = survey.getChangesSince(revision);
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(SurveyChange.Type.RESTRUCTURED, changes.get(0).getType());
+    }
+
+    @Test
+    public void benchmarkBulkIngestion() {
+        Benchmarker.assumeBenchmarking();
+        final List<Leg> shots = createShots(2000, 10);
+
+        Benchmarker.timeRate("shots added one at a time", "shots", shots.size(), () -> {
+            Survey survey = new Survey();
+            for (Leg shot : shots) {
+                SurveyUpdater.update(survey, shot, InputMode.FORWARD);
+            }
+        });
+
+        Benchmarker.timeRate("shots added in bulk", "shots", shots.size(), () -> {
+            Survey survey = new Survey();
+            SurveyUpdater.updateInBulk(survey, shots, InputMode.FORWARD);
+        });
+    }
+
+
+    /** Each station is a triple shot followed by some splays. */
+    private static List<Leg> createShots(int numberOfStations, int splaysPerStation) {
+        List<Leg> shots = new ArrayList<>();
+        for (int i = 0; i < numberOfStations; i++) {
+            float azimuth = (i * 17) % 360;
+            for (int repeat = 0; repeat < 3; repeat++) {
+                shots.add(new Leg(5, azimuth, 0));
+            }
+            for (int j = 0; j < splaysPerStation; j++) {
+                shots.add(new Leg(1 + j, (azimuth + 90 + (j * 30)) % 360, 0));
+            }
+        }
+        return shots;
+    }
+
 }
@@ -0,0 +1,61 @@
+package org.hwyl.sexytopo.model.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+
+public class QuadTreeTest {
+
+    @Test
+    public void testFindsEverythingOverlappingRectangle() {
+        Random random = new Random(1);
+        QuadTree<float[]> tree = new QuadTree<>();
+        List<float[]> boxes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float left = random.nextFloat() * 1000 - 500;
+            float top = random.nextFloat() * 1000 - 500;
+            float[] box = {left, top,
+                    left + random.nextFloat() * random.nextFloat() * 100,
+                    top + random.nextFloat() * random.nextFloat() * 100};
+            boxes.add(box);
+            tree.add(box, box[0], box[1], box[2], box[3]);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            float left = random.nextFloat() * 1200 - 600;
+            float top = random.nextFloat() * 1200 - 600;
+            float right = left + random.nextFloat() * 50;
+            float bottom = top + random.nextFloat() * 50;
+
+            Set<float[]> expected = new HashSet<>();
+            for (float[] box : boxes) {
+                if (box[2] >= left && box[0] <= right && box[3] >= top && box[1] <= bottom) {
+                    expected.add(box);
+                }
+            }
+            Set<float[]> found = new HashSet<>(tree.findWithin(left, top, right, bottom));
+            Assert.assertTrue(found.containsAll(expected));
+        }
+    }
+
+
+    @Test
+    public void testRemovedItemIsNotFound() {
+        QuadTree<String> tree = new QuadTree<>();
+        tree.add("a", 0, 0, 1, 1);
+        tree.add("b", 100, 100, 101, 101);
+        tree.add("c", -300, 50, -200, 60);
+
+        Assert.assertTrue(tree.remove("a", 0, 0, 1, 1));
+        Assert.assertFalse(tree.remove("a", 0, 0, 1, 1));
+        Assert.assertEquals(2, tree.size());
+        Assert.assertFalse(tree.findWithin(-1, -1, 2, 2).contains("a"));
+        Assert.assertTrue(tree.findWithin(-250, 55, -250, 55).contains("c"));
+    }
+}
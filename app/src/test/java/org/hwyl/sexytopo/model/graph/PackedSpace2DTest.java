@@ -0,0 +1,341 @@
+package org.hwyl.sexytopo.model.graph;
+
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class PackedSpace2DTest {
+
+    @Test
+    public void testAddedStationsAndLegsCanBeReadBack() {
+        Station station = new Station("1");
+        Leg leg = new Leg(1, 0, 0);
+
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(station, new Coord2D(1, 2));
+        space.addLeg(leg, new Line<>(new Coord2D(1, 2), new Coord2D(3, 4)));
+
+        Assert.assertEquals(new Coord2D(1, 2), space.getStationMap().get(station));
+        Line<Coord2D> line = space.getLegMap().get(leg);
+        Assert.assertEquals(new Coord2D(1, 2), line.getStart());
+        Assert.assertEquals(new Coord2D(3, 4), line.getEnd());
+
+        int id = space.getLegId(leg);
+        Assert.assertSame(leg, space.getLeg(id));
+        Assert.assertEquals(3, space.getLegEndX(id), 0);
+        Assert.assertEquals(4, space.getLegEndY(id), 0);
+    }
+
+
+    @Test
+    public void testUnknownStationIsNotFound() {
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(new Station("1"), 0, 0);
+        Station other = new Station("2");
+        Assert.assertNull(space.getStationMap().get(other));
+        Assert.assertFalse(space.getStationMap().containsKey(other));
+        Assert.assertEquals(-1, space.getStationId(other));
+    }
+
+
+    @Test
+    public void testAddingStationAgainMovesItRatherThanDuplicating() {
+        Station station = new Station("1");
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(station, 0, 0);
+        space.addStation(station, 5, 5);
+        Assert.assertEquals(1, space.getStationCount());
+        Assert.assertEquals(new Coord2D(5, 5), space.getStationMap().get(station));
+    }
+
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        PackedSpace2D space = new PackedSpace2D(1, 1);
+        Station[] stations = new Station[1000];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = new Station(Integer.toString(i));
+            space.addStation(stations[i], i, -i);
+        }
+        Assert.assertEquals(1000, space.getStationCount());
+        for (int i = 0; i < stations.length; i++) {
+            Assert.assertEquals(new Coord2D(i, -i), space.getStationMap().get(stations[i]));
+        }
+    }
+
+
+    @Test
+    public void testMapViewsCanBePutToAndRemovedFrom() {
+        Station station = new Station("1");
+        Leg leg = new Leg(1, 0, 0);
+        PackedSpace2D space = new PackedSpace2D();
+
+        Assert.assertNull(space.getStationMap().put(station, new Coord2D(1, 2)));
+        Assert.assertEquals(new Coord2D(1, 2),
+                space.getStationMap().put(station, new Coord2D(3, 4)));
+        space.getLegMap().put(leg, new Line<>(new Coord2D(1, 2), new Coord2D(3, 4)));
+
+        Assert.assertEquals(new Coord2D(3, 4), space.getStationMap().remove(station));
+        Assert.assertNull(space.getStationMap().remove(station));
+        Assert.assertEquals(new Coord2D(3, 4), space.getLegMap().remove(leg).getEnd());
+        Assert.assertEquals(0, space.getStationCount());
+        Assert.assertEquals(0, space.getLegCount());
+    }
+
+
+    @Test
+    public void testEverythingLeftIsStillFoundAfterRemovals() {
+        Random random = new Random(5);
+        PackedSpace2D space = new PackedSpace2D(1, 1);
+        List<Station> kept = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Station station = new Station(Integer.toString(i));
+            space.addStation(station, i, -i);
+            kept.add(station);
+        }
+        space.findNearestStation(0, 0, 1); // so the grid has to be kept right too
+
+        for (int i = 0; i < 300; i++) {
+            Station removed = kept.remove(random.nextInt(kept.size()));
+            Assert.assertTrue(space.removeStation(removed));
+            Assert.assertFalse(space.getStationMap().containsKey(removed));
+        }
+
+        Assert.assertEquals(kept.size(), space.getStationCount());
+        for (Station station : kept) {
+            int i = Integer.parseInt(station.getName());
+            Assert.assertEquals(new Coord2D(i, -i), space.getStationMap().get(station));
+            int id = space.findNearestStation(i, -i, 0.1f);
+            Assert.assertSame(station, space.getStation(id));
+        }
+    }
+
+
+    @Test
+    public void testCopyOfOrdinarySpaceHasSameContents() {
+        Survey survey = LargeSurveyCreator.createBushy(50, 3, 2);
+        Space<Coord2D> original = new Space<>();
+        for (Map.Entry<Station, Coord2D> entry :
+                Projection2D.PLAN.project(survey).getStationMap().entrySet()) {
+            original.addStation(entry.getKey(), entry.getValue());
+        }
+
+        PackedSpace2D packed = PackedSpace2D.copyOf(original);
+        Assert.assertEquals(original.getStationMap(), packed.getStationMap());
+        Assert.assertEquals(packed.getStationMap(), original.getStationMap());
+    }
+
+
+    @Test
+    public void testTransformsInPlaceDoNotAffectCopies() {
+        Station station = new Station("1");
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(station, 1, 1);
+
+        PackedSpace2D copy = PackedSpace2D.copyOf(space);
+        copy.translateInPlace(2, 3).flipVerticallyInPlace();
+
+        Assert.assertEquals(new Coord2D(1, 1), space.getStationMap().get(station));
+        Assert.assertEquals(new Coord2D(3, -4), copy.getStationMap().get(station));
+    }
+
+
+    @Test
+    public void testScaleReturnsScaledCopy() {
+        Station station = new Station("1");
+        Leg leg = new Leg(1, 0, 0);
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(station, 1, 2);
+        space.addLeg(leg, 1, 2, 3, 4);
+
+        Space<Coord2D> scaled = space.scale(10);
+        Assert.assertEquals(new Coord2D(10, 20), scaled.getStationMap().get(station));
+        Assert.assertEquals(new Coord2D(30, 40), scaled.getLegMap().get(leg).getEnd());
+        Assert.assertEquals(new Coord2D(1, 2), space.getStationMap().get(station));
+    }
+
+
+    @Test
+    public void benchmarkMemoryOfProjection() {
+        Benchmarker.assumeBenchmarking();
+        Survey survey = LargeSurveyCreator.createLinear(10000, 10);
+        PackedSpace2D packed = Projection2D.PLAN.project(survey);
+
+        Benchmarker.heapUsedBy("Map-backed projection of 110k legs", () -> {
+            Space<Coord2D> space = new Space<>();
+            for (Map.Entry<Station, Coord2D> entry : packed.getStationMap().entrySet()) {
+                space.addStation(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Leg, Line<Coord2D>> entry : packed.getLegMap().entrySet()) {
+                space.addLeg(entry.getKey(), entry.getValue());
+            }
+            return space;
+        });
+        Benchmarker.heapUsedBy("Packed projection of 110k legs",
+                () -> PackedSpace2D.copyOf(packed));
+    }
+
+
+    @Test
+    public void testLegsWithinRectangleMatchesCheckingEveryLeg() {
+        PackedSpace2D space = Projection2D.PLAN.project(LargeSurveyCreator.createBushy(500, 3, 3));
+        Random random = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            float minX = random.nextFloat() * 100 - 50;
+            float minY = random.nextFloat() * 100 - 50;
+            float maxX = minX + random.nextFloat() * 30;
+            float maxY = minY + random.nextFloat() * 30;
+            Assert.assertEquals(findLegsByBruteForce(space, minX, minY, maxX, maxY),
+                    toList(space.getLegIdsWithin(minX, minY, maxX, maxY)));
+        }
+    }
+
+
+    @Test
+    public void testNearestStationMatchesCheckingEveryStation() {
+        PackedSpace2D space = Projection2D.PLAN.project(LargeSurveyCreator.createBushy(500, 3, 3));
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 100 - 50;
+            float y = random.nextFloat() * 100 - 50;
+            float within = random.nextFloat() * 5;
+            Assert.assertEquals(findNearestStationByBruteForce(space, x, y, within),
+                    space.findNearestStation(x, y, within));
+        }
+    }
+
+
+    @Test
+    public void testThingsAddedAfterLookupCanBeFound() {
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(new Station("1"), 0, 0);
+        Assert.assertEquals(-1, space.findNearestStation(100, 100, 1));
+
+        Station station = new Station("2");
+        space.addStation(station, 100, 100);
+        Leg leg = new Leg(1, 0, 0);
+        space.addLeg(leg, 100, 100, 100, 101);
+
+        Assert.assertSame(station, space.getStation(space.findNearestStation(100.5f, 100, 1)));
+        int[] ids = space.getLegIdsWithin(99, 99, 101, 101);
+        Assert.assertEquals(1, ids.length);
+        Assert.assertSame(leg, space.getLeg(ids[0]));
+    }
+
+
+    @Test
+    public void testLookupsFollowTransformsInPlace() {
+        Station station = new Station("1");
+        PackedSpace2D space = new PackedSpace2D();
+        space.addStation(station, 1, 1);
+        Assert.assertEquals(0, space.findNearestStation(1, 1, 0.1f));
+
+        space.translateInPlace(50, 0);
+        Assert.assertEquals(-1, space.findNearestStation(1, 1, 0.1f));
+        Assert.assertEquals(0, space.findNearestStation(51, 1, 0.1f));
+    }
+
+
+    @Test
+    public void benchmarkLookupsOnLargeProjection() {
+        Benchmarker.assumeBenchmarking();
+        PackedSpace2D space = createLongPassage(50000, 4);
+        int middle = space.getStationCount() / 2;
+        float x = space.getStationX(middle);
+        float y = space.getStationY(middle);
+
+        // the grids are built here, outside the timings, and have to find the same as a scan
+        Assert.assertEquals(findNearestStationByBruteForce(space, x, y, 1),
+                space.findNearestStation(x, y, 1));
+        Assert.assertEquals(findLegsByBruteForce(space, x - 10, y - 10, x + 10, y + 10),
+                toList(space.getLegIdsWithin(x - 10, y - 10, x + 10, y + 10)));
+
+        Benchmarker.time("Nearest station among 50k by brute force", 20,
+                () -> findNearestStationByBruteForce(space, x, y, 1));
+        Benchmarker.time("Nearest station among 50k by grid", 20,
+                () -> space.findNearestStation(x, y, 1));
+        Benchmarker.time("Screenful of 250k legs by brute force", 20,
+                () -> findLegsByBruteForce(space, x - 10, y - 10, x + 10, y + 10));
+        Benchmarker.time("Screenful of 250k legs by grid", 20,
+                () -> space.getLegIdsWithin(x - 10, y - 10, x + 10, y + 10));
+    }
+
+
+    /**
+     * A long meandering passage (unlike LargeSurveyCreator's surveys, which wind round on
+     * themselves and so pack everything into a small area).
+     */
+    private static PackedSpace2D createLongPassage(int numberOfStations, int splaysPerStation) {
+        PackedSpace2D space = new PackedSpace2D();
+        float x = 0;
+        float y = 0;
+        for (int i = 0; i < numberOfStations; i++) {
+            space.addStation(new Station(Integer.toString(i)), x, y);
+            for (int j = 0; j < splaysPerStation; j++) {
+                double angle = j * Math.PI / 2;
+                space.addLeg(new Leg(1, 0, 0), x, y,
+                        x + (float) Math.cos(angle), y + (float) Math.sin(angle));
+            }
+            double heading = Math.sin(i / 50.0);
+            float nextX = x + 5 * (float) Math.cos(heading);
+            float nextY = y + 5 * (float) Math.sin(heading);
+            space.addLeg(new Leg(5, 0, 0), x, y, nextX, nextY);
+            x = nextX;
+            y = nextY;
+        }
+        return space;
+    }
+
+
+    private static List<Integer> findLegsByBruteForce(
+            PackedSpace2D space, float minX, float minY, float maxX, float maxY) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < space.getLegCount(); id++) {
+            float startX = space.getLegStartX(id);
+            float startY = space.getLegStartY(id);
+            float endX = space.getLegEndX(id);
+            float endY = space.getLegEndY(id);
+            if (Math.max(startX, endX) >= minX && Math.min(startX, endX) <= maxX &&
+                    Math.max(startY, endY) >= minY && Math.min(startY, endY) <= maxY) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+
+    private static int findNearestStationByBruteForce(
+            PackedSpace2D space, float x, float y, float within) {
+        int best = -1;
+        float shortest = Float.MAX_VALUE;
+        for (int id = 0; id < space.getStationCount(); id++) {
+            float dx = space.getStationX(id) - x;
+            float dy = space.getStationY(id) - y;
+            float distance = dx * dx + dy * dy;
+            if (distance <= within * within && distance < shortest) {
+                best = id;
+                shortest = distance;
+            }
+        }
+        return best;
+    }
+
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> list = new ArrayList<>();
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
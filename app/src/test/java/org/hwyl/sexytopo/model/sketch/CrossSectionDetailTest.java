@@ -0,0 +1,65 @@
+package org.hwyl.sexytopo.model.sketch;
+
+import org.hwyl.sexytopo.control.util.SurveyUpdater;
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.model.graph.PackedSpace2D;
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class CrossSectionDetailTest {
+
+    @Test
+    public void testProjectionIsReusedWhileSplaysAreUnchanged() {
+        Survey survey = createSurveyWithSplays();
+        CrossSectionDetail detail = new CrossSectionDetail(
+                new CrossSection(survey.getActiveStation(), 0), new Coord2D(10, 10));
+        Assert.assertSame(detail.getProjection(), detail.getProjection());
+    }
+
+
+    @Test
+    public void testNewSplayCausesReprojection() {
+        Survey survey = createSurveyWithSplays();
+        Station station = survey.getActiveStation();
+        CrossSectionDetail detail =
+                new CrossSectionDetail(new CrossSection(station, 0), new Coord2D(10, 10));
+        PackedSpace2D before = detail.getProjection();
+
+        SurveyUpdater.update(survey, new Leg(3, 0, 90));
+        PackedSpace2D after = detail.getProjection();
+
+        Assert.assertNotSame(before, after);
+        Assert.assertEquals(before.getLegCount() + 1, after.getLegCount());
+    }
+
+
+    @Test
+    public void testBoundingBoxCoversSplaysAndDoesNotGrowOnEachUse() {
+        Survey survey = createSurveyWithSplays();
+        CrossSectionDetail detail = new CrossSectionDetail(
+                new CrossSection(survey.getActiveStation(), 0), new Coord2D(10, 10));
+
+        // splays 2m left and right (east and west, seen looking north)
+        Assert.assertEquals(8, detail.getLeft(), 0.0001);
+        Assert.assertEquals(12, detail.getRight(), 0.0001);
+
+        for (int i = 0; i < 5; i++) {
+            detail.getProjection();
+        }
+        Assert.assertEquals(8, detail.getLeft(), 0.0001);
+        Assert.assertEquals(12, detail.getRight(), 0.0001);
+    }
+
+
+    private static Survey createSurveyWithSplays() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveyUpdater.update(survey, new Leg(2, 90, 0));
+        SurveyUpdater.update(survey, new Leg(2, 270, 0));
+        return survey;
+    }
+}
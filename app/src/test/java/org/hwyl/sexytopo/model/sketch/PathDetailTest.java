@@ -1,9 +1,15 @@
 package org.hwyl.sexytopo.model.sketch;
 
+import org.hwyl.sexytopo.control.util.Space2DUtils;
 import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 
 public class PathDetailTest {
 
@@ -37,4 +43,162 @@ public class PathDetailTest {
                 pathDetail.intersectsRectangle(new Coord2D(2, 2), new Coord2D(3, 3)));
     }
 
+
+    @Test
+    public void testLongStrokeIsCompactedWhileBeingDrawn() {
+        List<Coord2D> stroke = createWigglyStroke(new Random(1), 20000);
+        PathDetail pathDetail = new PathDetail(stroke.get(0), Colour.BLACK);
+        for (Coord2D point : stroke.subList(1, stroke.size())) {
+            pathDetail.lineTo(point);
+        }
+        Assert.assertTrue(pathDetail.getPath().size() < stroke.size() / 10);
+        Assert.assertEquals(stroke.get(stroke.size() - 1),
+                pathDetail.getPath().get(pathDetail.getPath().size() - 1));
+    }
+
+    @Test
+    public void testFinishedStrokeStaysCloseToWhatWasDrawn() {
+        List<Coord2D> stroke = createWigglyStroke(new Random(2), 20000);
+        PathDetail pathDetail = drawAndFinish(stroke);
+
+        float tolerance = 1.5f * Space2DUtils.simplificationEpsilon(pathDetail);
+        List<Coord2D> finished = pathDetail.getPath();
+        Assert.assertEquals(stroke.get(0), finished.get(0));
+        for (Coord2D point : stroke) {
+            Assert.assertTrue(pathDetail.getDistanceFrom(point) <= tolerance * 1.0001f);
+        }
+    }
+
+    @Test
+    public void testLineSegmentsFollowPathAsItIsDrawnAndFinished() {
+        List<Coord2D> stroke = createWigglyStroke(new Random(4), 1000);
+        Sketch sketch = new Sketch();
+        PathDetail pathDetail = sketch.startNewPath(stroke.get(0));
+        assertLineSegmentsMatchPath(pathDetail);
+
+        for (int i = 1; i < stroke.size(); i++) {
+            pathDetail.lineTo(stroke.get(i));
+            if (i % 7 == 0) {
+                assertLineSegmentsMatchPath(pathDetail);
+            }
+        }
+        assertLineSegmentsMatchPath(pathDetail);
+
+        sketch.finishPath();
+        assertLineSegmentsMatchPath(pathDetail);
+    }
+
+    @Test
+    public void benchmarkPreparingPathsForDrawing() {
+        Benchmarker.assumeBenchmarking();
+        Random random = new Random(5);
+        List<PathDetail> paths = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            paths.add(new PathDetail(createWigglyStroke(random, 50), Colour.BLACK));
+        }
+
+        Runnable convertingEveryPoint = () -> {
+            for (PathDetail pathDetail : paths) {
+                toViewLineSegments(pathDetail.getPath(), 3, 4, 60);
+            }
+        };
+        Runnable usingRetainedSegments = () -> {
+            for (PathDetail pathDetail : paths) {
+                pathDetail.getLineSegments();
+            }
+        };
+
+        Benchmarker.bytesAllocatedBy("Frame of 2k paths converting every point",
+                convertingEveryPoint);
+        Benchmarker.time("Frame of 2k paths converting every point", 20,
+                convertingEveryPoint);
+        usingRetainedSegments.run();
+        Benchmarker.bytesAllocatedBy("Frame of 2k paths using retained segments",
+                usingRetainedSegments);
+        Benchmarker.time("Frame of 2k paths using retained segments", 20,
+                usingRetainedSegments);
+    }
+
+    @Test
+    public void benchmarkSimplifying100kPointStroke() {
+        Benchmarker.assumeBenchmarking();
+        List<Coord2D> stroke = createWigglyStroke(new Random(3), 100000);
+        PathDetail raw = new PathDetail(new ArrayList<>(stroke), Colour.BLACK);
+        float epsilon = Space2DUtils.simplificationEpsilon(raw);
+
+        Benchmarker.time("Simplifying 100k point stroke in one go", 5,
+                () -> Space2DUtils.simplify(stroke, epsilon));
+        Benchmarker.time("Drawing and finishing 100k point stroke", 5,
+                () -> drawAndFinish(stroke));
+
+        PathDetail drawing = new PathDetail(stroke.get(0), Colour.BLACK);
+        for (Coord2D point : stroke.subList(1, stroke.size())) {
+            drawing.lineTo(point);
+        }
+        List<Coord2D> held = drawing.getPath();
+        System.out.println("Points held at pen-up: " + held.size() + " of " + stroke.size());
+        Benchmarker.time("Simplifying what's held at pen-up", 5,
+                () -> Space2DUtils.simplify(held, Space2DUtils.simplificationEpsilon(drawing)));
+    }
+
+
+    private static void assertLineSegmentsMatchPath(PathDetail pathDetail) {
+        List<Coord2D> path = pathDetail.getPath();
+        float[] segments = pathDetail.getLineSegments();
+        Assert.assertEquals((path.size() - 1) * 4, pathDetail.getLineSegmentsLength());
+        for (int i = 1; i < path.size(); i++) {
+            int index = (i - 1) * 4;
+            Assert.assertEquals(path.get(i - 1), new Coord2D(segments[index], segments[index + 1]));
+            Assert.assertEquals(path.get(i), new Coord2D(segments[index + 2], segments[index + 3]));
+        }
+    }
+
+
+    /** What the view used to do for every path on every frame. */
+    private static float[] toViewLineSegments(
+            List<Coord2D> path, float offsetX, float offsetY, float scale) {
+        float[] lines = new float[path.size() * 4];
+        int lineIndex = 0;
+        float fromX = -1, fromY = -1;
+        for (Coord2D point : path) {
+            float toX = (point.x - offsetX) * scale;
+            float toY = (point.y - offsetY) * scale;
+            if (fromX != -1) {
+                lines[lineIndex++] = fromX;
+                lines[lineIndex++] = fromY;
+                lines[lineIndex++] = toX;
+                lines[lineIndex++] = toY;
+            }
+            fromX = toX;
+            fromY = toY;
+        }
+        return lines;
+    }
+
+
+    private static PathDetail drawAndFinish(List<Coord2D> stroke) {
+        Sketch sketch = new Sketch();
+        PathDetail pathDetail = sketch.startNewPath(stroke.get(0));
+        for (Coord2D point : stroke.subList(1, stroke.size())) {
+            pathDetail.lineTo(point);
+        }
+        sketch.finishPath();
+        return pathDetail;
+    }
+
+
+    /** Something like a hand-drawn wall: small steps in a gently wandering direction. */
+    private static List<Coord2D> createWigglyStroke(Random random, int count) {
+        List<Coord2D> stroke = new ArrayList<>(count);
+        float x = 0, y = 0;
+        double heading = 0;
+        for (int i = 0; i < count; i++) {
+            stroke.add(new Coord2D(x, y));
+            heading += (random.nextDouble() - 0.5) * 0.2 + Math.sin(i / 2000.0) * 0.01;
+            x += (float) Math.cos(heading) * 0.01f;
+            y += (float) Math.sin(heading) * 0.01f;
+        }
+        return stroke;
+    }
+
 }
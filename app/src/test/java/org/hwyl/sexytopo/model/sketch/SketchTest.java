@@ -0,0 +1,333 @@
+package org.hwyl.sexytopo.model.sketch;
+
+import org.hwyl.sexytopo.model.common.Shape;
+import org.hwyl.sexytopo.model.graph.Coord2D;
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class SketchTest {
+
+    @Test
+    public void testNearestDetailMatchesCheckingEverythingThroughEditsAndUndo() {
+        Random random = new Random(1);
+        Sketch sketch = createScribbledSketch(random, 300);
+        assertNearestDetailsCorrect(sketch, random);
+
+        for (int i = 0; i < 50; i++) {
+            SketchDetail detail = sketch.findNearestDetailWithin(randomPoint(random), 20);
+            if (detail != null) {
+                sketch.deleteDetail(detail);
+            }
+        }
+        assertNearestDetailsCorrect(sketch, random);
+
+        for (int i = 0; i < 30; i++) {
+            sketch.undo();
+        }
+        assertNearestDetailsCorrect(sketch, random);
+
+        for (int i = 0; i < 10; i++) {
+            sketch.redo();
+        }
+        assertNearestDetailsCorrect(sketch, random);
+    }
+
+
+    @Test
+    public void testErasedFragmentsCanBeFound() {
+        Sketch sketch = new Sketch();
+        drawPath(sketch, new Coord2D(0, 0), new Coord2D(10, 0));
+        PathDetail path = sketch.getPathDetails().get(0);
+
+        List<SketchDetail> fragments = new ArrayList<>();
+        fragments.add(new PathDetail(toList(new Coord2D(0, 0), new Coord2D(4, 0)), Colour.BLACK));
+        fragments.add(new PathDetail(toList(new Coord2D(6, 0), new Coord2D(10, 0)), Colour.BLACK));
+        sketch.deleteDetail(path, fragments);
+
+        Assert.assertSame(fragments.get(0),
+                sketch.findNearestDetailWithin(new Coord2D(1, 0), 0.5f));
+        Assert.assertNull(sketch.findNearestDetailWithin(new Coord2D(5, 0), 0.5f));
+    }
+
+
+    @Test
+    public void testSnapsToEndOfNearbyPathButNotTheOneBeingDrawn() {
+        Sketch sketch = new Sketch();
+        drawPath(sketch, new Coord2D(0, 0), new Coord2D(10, 0));
+
+        Assert.assertEquals(new Coord2D(10, 0),
+                sketch.findEligibleSnapPointWithin(new Coord2D(10.5f, 0.5f), 1));
+        Assert.assertNull(sketch.findEligibleSnapPointWithin(new Coord2D(5, 0), 1));
+
+        sketch.startNewPath(new Coord2D(20, 20));
+        Assert.assertNull(sketch.findEligibleSnapPointWithin(new Coord2D(20, 20), 1));
+
+        sketch.undo();
+        sketch.undo();
+        Assert.assertNull(sketch.findEligibleSnapPointWithin(new Coord2D(10, 0), 1));
+    }
+
+
+    @Test
+    public void testChangedAreasCoverWhatWasAddedAndUndone() {
+        Sketch sketch = new Sketch();
+        long start = sketch.getRevision();
+
+        sketch.startNewPath(new Coord2D(0, 0));
+        sketch.getActivePath().lineTo(new Coord2D(10, 5));
+        Assert.assertTrue("Path being drawn isn't a change yet",
+                sketch.getChangedAreasSince(start).isEmpty());
+        sketch.finishPath();
+        sketch.addTextDetail(new Coord2D(20, 20), "ab", 1);
+
+        List<Shape> areas = sketch.getChangedAreasSince(start);
+        Assert.assertEquals(2, areas.size());
+        assertCovers(areas.get(0), 0, 0, 10, 5);
+        assertCovers(areas.get(1), 20, 19, 22, 21);
+
+        long beforeUndo = sketch.getRevision();
+        sketch.undo();
+        areas = sketch.getChangedAreasSince(beforeUndo);
+        Assert.assertEquals(1, areas.size());
+        assertCovers(areas.get(0), 20, 19, 22, 21);
+    }
+
+
+    @Test
+    public void testChangedAreasAreUnknownAfterReplacingDetails() {
+        Sketch sketch = new Sketch();
+        sketch.addTextDetail(new Coord2D(0, 0), "a", 1);
+        long revision = sketch.getRevision();
+        Assert.assertTrue(sketch.getChangedAreasSince(revision).isEmpty());
+
+        sketch.setTextDetails(new ArrayList<>());
+        Assert.assertNull(sketch.getChangedAreasSince(revision));
+        Assert.assertNull(sketch.getChangedAreasSince(sketch.getRevision() + 1));
+    }
+
+
+    @Test
+    public void testStrokeBucketsFollowEditsAndUndo() {
+        Random random = new Random(3);
+        Sketch sketch = new Sketch();
+        Colour[] colours = {Colour.BLACK, Colour.RED, Colour.BLUE};
+        for (int i = 0; i < 60; i++) {
+            sketch.setActiveColour(colours[i % colours.length]);
+            drawPath(sketch, randomPoint(random), randomPoint(random));
+        }
+        assertStrokeBucketsMatchPaths(sketch);
+
+        for (int i = 0; i < 20; i++) {
+            List<PathDetail> paths = sketch.getPathDetails();
+            sketch.deleteDetail(paths.get(random.nextInt(paths.size())));
+        }
+        sketch.setActiveColour(Colour.GREEN);
+        sketch.startNewPath(new Coord2D(0, 0));
+        sketch.getActivePath().lineTo(new Coord2D(1, 1));
+        assertStrokeBucketsMatchPaths(sketch);
+        sketch.finishPath();
+        assertStrokeBucketsMatchPaths(sketch);
+
+        for (int i = 0; i < 15; i++) {
+            sketch.undo();
+        }
+        assertStrokeBucketsMatchPaths(sketch);
+        for (int i = 0; i < 5; i++) {
+            sketch.redo();
+        }
+        assertStrokeBucketsMatchPaths(sketch);
+    }
+
+
+    @Test
+    public void benchmarkKeepingStrokeBucketsUpToDate() {
+        Benchmarker.assumeBenchmarking();
+        Random random = new Random(4);
+        Sketch sketch = createScribbledSketch(random, 10000);
+        sketch.getStrokeBuckets();
+
+        Benchmarker.time("Adding a stroke to 10k strokes and bucketing", 5, () -> {
+            drawPath(sketch, randomPoint(random), randomPoint(random));
+            getBucketedLength(sketch);
+        });
+        Benchmarker.time("Deleting a stroke from 10k strokes and rebucketing", 5, () -> {
+            sketch.deleteDetail(sketch.getPathDetails().get(0));
+            getBucketedLength(sketch);
+        });
+    }
+
+
+    @Test
+    public void benchmarkErasingOnLargeSketch() {
+        Benchmarker.assumeBenchmarking();
+        Random random = new Random(2);
+        Sketch sketch = createScribbledSketch(random, 5000);
+        Coord2D[] touches = new Coord2D[100];
+        for (int i = 0; i < touches.length; i++) {
+            touches[i] = randomPoint(random);
+        }
+
+        Benchmarker.time("100 erase hit tests on 5000 strokes by brute force", 5, () -> {
+            for (Coord2D touch : touches) {
+                findNearestByBruteForce(sketch, touch, 0.5f);
+            }
+        });
+        Benchmarker.time("100 erase hit tests on 5000 strokes by index", 5, () -> {
+            for (Coord2D touch : touches) {
+                sketch.findNearestDetailWithin(touch, 0.5f);
+            }
+        });
+    }
+
+
+    private static Sketch createScribbledSketch(Random random, int strokes) {
+        Sketch sketch = new Sketch();
+        for (int i = 0; i < strokes; i++) {
+            Coord2D start = randomPoint(random);
+            sketch.startNewPath(start);
+            Coord2D point = start;
+            for (int j = 0; j < 20; j++) {
+                point = point.plus(new Coord2D(
+                        random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1));
+                sketch.getActivePath().lineTo(point);
+            }
+            sketch.finishPath();
+
+            if (i % 10 == 0) {
+                sketch.addTextDetail(randomPoint(random), "text", 1);
+            }
+        }
+        return sketch;
+    }
+
+
+    private static void drawPath(Sketch sketch, Coord2D start, Coord2D end) {
+        sketch.startNewPath(start);
+        sketch.getActivePath().lineTo(end);
+        sketch.finishPath();
+    }
+
+
+    private static List<Coord2D> toList(Coord2D... points) {
+        List<Coord2D> list = new ArrayList<>();
+        for (Coord2D point : points) {
+            list.add(point);
+        }
+        return list;
+    }
+
+
+    private static Coord2D randomPoint(Random random) {
+        return new Coord2D(random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100);
+    }
+
+
+    private static void assertNearestDetailsCorrect(Sketch sketch, Random random) {
+        for (int i = 0; i < 100; i++) {
+            Coord2D point = randomPoint(random);
+            float delta = random.nextFloat() * 5;
+            SketchDetail expected = findNearestByBruteForce(sketch, point, delta);
+            SketchDetail actual = sketch.findNearestDetailWithin(point, delta);
+            if (expected == null) {
+                Assert.assertNull(actual);
+            } else {
+                Assert.assertNotNull(actual);
+                Assert.assertEquals(
+                        expected.getDistanceFrom(point), actual.getDistanceFrom(point), 0);
+            }
+        }
+    }
+
+
+    private static SketchDetail findNearestByBruteForce(
+            Sketch sketch, Coord2D point, float delta) {
+        List<SketchDetail> all = new ArrayList<>();
+        all.addAll(sketch.getPathDetails());
+        all.addAll(sketch.getSymbolDetails());
+        all.addAll(sketch.getTextDetails());
+        all.addAll(sketch.getCrossSectionDetails());
+
+        SketchDetail closest = null;
+        float minDistance = Float.MAX_VALUE;
+        for (SketchDetail detail : all) {
+            float distance = detail.getDistanceFrom(point);
+            if (distance < delta && distance < minDistance) {
+                closest = detail;
+                minDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    private static void assertStrokeBucketsMatchPaths(Sketch sketch) {
+        Map<Colour, List<String>> expected = new HashMap<>();
+        Map<Colour, Shape> expectedAreas = new HashMap<>();
+        for (PathDetail path : sketch.getPathDetails()) {
+            if (path != sketch.getActivePath()) {
+                addSegments(expected, path.getColour(),
+                        path.getLineSegments(), path.getLineSegmentsLength());
+                if (!expectedAreas.containsKey(path.getColour())) {
+                    expectedAreas.put(path.getColour(), new Shape());
+                }
+                expectedAreas.get(path.getColour()).updateBoundingBox(path.getAreaCovered());
+            }
+        }
+        Map<Colour, List<String>> actual = new HashMap<>();
+        for (StrokeBucket bucket : sketch.getStrokeBuckets()) {
+            if (!bucket.isEmpty()) {
+                addSegments(actual, bucket.getColour(), bucket.getSegments(), bucket.getLength());
+                Shape expectedArea = expectedAreas.get(bucket.getColour());
+                Shape actualArea = bucket.getAreaCovered();
+                Assert.assertEquals(expectedArea.getLeft(), actualArea.getLeft(), 0);
+                Assert.assertEquals(expectedArea.getTop(), actualArea.getTop(), 0);
+                Assert.assertEquals(expectedArea.getRight(), actualArea.getRight(), 0);
+                Assert.assertEquals(expectedArea.getBottom(), actualArea.getBottom(), 0);
+            }
+        }
+        for (List<String> segments : expected.values()) {
+            Collections.sort(segments);
+        }
+        for (List<String> segments : actual.values()) {
+            Collections.sort(segments);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    private static void addSegments(
+            Map<Colour, List<String>> segments, Colour colour, float[] values, int length) {
+        if (!segments.containsKey(colour)) {
+            segments.put(colour, new ArrayList<>());
+        }
+        for (int i = 0; i < length; i += 4) {
+            segments.get(colour).add(
+                    values[i] + "," + values[i + 1] + "," + values[i + 2] + "," + values[i + 3]);
+        }
+    }
+
+
+    private static int getBucketedLength(Sketch sketch) {
+        int length = 0;
+        for (StrokeBucket bucket : sketch.getStrokeBuckets()) {
+            length += bucket.getLength();
+        }
+        return length;
+    }
+
+
+    private static void assertCovers(
+            Shape area, float left, float top, float right, float bottom) {
+        Assert.assertTrue(area.getLeft() <= left && area.getTop() <= top);
+        Assert.assertTrue(area.getRight() >= right && area.getBottom() >= bottom);
+    }
+
+}
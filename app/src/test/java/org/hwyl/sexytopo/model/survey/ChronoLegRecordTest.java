@@ -0,0 +1,76 @@
+package org.hwyl.sexytopo.model.survey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+public class ChronoLegRecordTest {
+
+    @Test
+    public void testIndexOfReflectsOrderOfAddition() {
+        ChronoLegRecord record = new ChronoLegRecord();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(2, 0, 0);
+        record.add(leg0);
+        record.add(leg1);
+        Assert.assertEquals(0, record.indexOf(leg0));
+        Assert.assertEquals(1, record.indexOf(leg1));
+        Assert.assertEquals(-1, record.indexOf(new Leg(3, 0, 0)));
+    }
+
+    @Test
+    public void testIndexOfIsCorrectAfterRemovingFromMiddle() {
+        ChronoLegRecord record = new ChronoLegRecord();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(2, 0, 0);
+        Leg leg2 = new Leg(3, 0, 0);
+        record.addAll(Arrays.asList(leg0, leg1, leg2));
+        record.remove(leg1);
+        Leg leg3 = new Leg(4, 0, 0);
+        record.add(leg3);
+        Assert.assertFalse(record.contains(leg1));
+        Assert.assertEquals(1, record.indexOf(leg2));
+        Assert.assertEquals(2, record.indexOf(leg3));
+    }
+
+    @Test
+    public void testReplaceKeepsPosition() {
+        ChronoLegRecord record = new ChronoLegRecord();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(2, 0, 0);
+        record.addAll(Arrays.asList(leg0, leg1));
+        Leg replacement = new Leg(5, 0, 0);
+        record.replace(leg0, replacement);
+        Assert.assertEquals(0, record.indexOf(replacement));
+        Assert.assertEquals(-1, record.indexOf(leg0));
+    }
+
+    @Test
+    public void testPopRemovesMostRecent() {
+        ChronoLegRecord record = new ChronoLegRecord();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(2, 0, 0);
+        record.addAll(Arrays.asList(leg0, leg1));
+        Assert.assertEquals(leg1, record.pop());
+        Assert.assertEquals(leg0, record.peek());
+        Assert.assertEquals(1, record.size());
+    }
+
+    @Test
+    public void testRemoveAllCompactsRecord() {
+        ChronoLegRecord record = new ChronoLegRecord();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(2, 0, 0);
+        Leg leg2 = new Leg(3, 0, 0);
+        Leg leg3 = new Leg(4, 0, 0);
+        record.addAll(Arrays.asList(leg0, leg1, leg2, leg3));
+        record.removeAll(Arrays.asList(leg0, leg2));
+        List<Leg> expected = Arrays.asList(leg1, leg3);
+        Assert.assertEquals(expected, record);
+        Assert.assertEquals(1, record.indexOf(leg3));
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.hwyl.sexytopo.model.survey;
+
+import org.hwyl.sexytopo.testhelpers.Benchmarker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class LegPositionMapTest {
+
+    @Test
+    public void testPositionsCanBeFoundAfterGrowing() {
+        LegPositionMap map = new LegPositionMap();
+        List<Leg> legs = createLegs(1000);
+        for (int i = 0; i < legs.size(); i++) {
+            map.put(legs.get(i), i);
+        }
+        Assert.assertEquals(1000, map.size());
+        for (int i = 0; i < legs.size(); i++) {
+            Assert.assertEquals(i, map.get(legs.get(i)));
+        }
+        Assert.assertEquals(LegPositionMap.NOT_FOUND, map.get(new Leg(1, 0, 0)));
+    }
+
+    @Test
+    public void testPuttingSameLegAgainUpdatesPosition() {
+        LegPositionMap map = new LegPositionMap();
+        Leg leg = new Leg(1, 0, 0);
+        map.put(leg, 3);
+        map.put(leg, 7);
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(7, map.get(leg));
+    }
+
+    @Test
+    public void testEqualLookingLegsAreKeptApart() {
+        LegPositionMap map = new LegPositionMap();
+        Leg leg0 = new Leg(1, 0, 0);
+        Leg leg1 = new Leg(1, 0, 0);
+        map.put(leg0, 0);
+        map.put(leg1, 1);
+        Assert.assertEquals(0, map.get(leg0));
+        Assert.assertEquals(1, map.get(leg1));
+    }
+
+    @Test
+    public void testRemovalsMatchHashMap() {
+        LegPositionMap map = new LegPositionMap();
+        Map<Leg, Integer> expected = new HashMap<>();
+        List<Leg> legs = createLegs(2000);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            Leg leg = legs.get(random.nextInt(legs.size()));
+            if (random.nextBoolean()) {
+                map.put(leg, i);
+                expected.put(leg, i);
+            } else {
+                map.remove(leg);
+                expected.remove(leg);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), map.size());
+        for (Leg leg : legs) {
+            Integer position = expected.get(leg);
+            Assert.assertEquals(position == null? LegPositionMap.NOT_FOUND : position,
+                    map.get(leg));
+        }
+    }
+
+    @Test
+    public void testClearEmptiesMap() {
+        LegPositionMap map = new LegPositionMap();
+        Leg leg = new Leg(1, 0, 0);
+        map.put(leg, 0);
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertFalse(map.containsKey(leg));
+    }
+
+    @Test
+    public void benchmarkMemoryOfLegBookkeeping() {
+        Benchmarker.assumeBenchmarking();
+        final int numberOfLegs = 200000;
+        final List<Leg> legs = createLegs(numberOfLegs);
+        final Station station = new Station("1");
+
+        Benchmarker.heapUsedBy("HashMap<Leg, Integer> x " + numberOfLegs, () -> {
+            Map<Leg, Integer> map = new HashMap<>();
+            for (int i = 0; i < numberOfLegs; i++) {
+                map.put(legs.get(i), i);
+            }
+            return map;
+        });
+
+        Benchmarker.heapUsedBy("LegPositionMap x " + numberOfLegs, () -> {
+            LegPositionMap map = new LegPositionMap();
+            for (int i = 0; i < numberOfLegs; i++) {
+                map.put(legs.get(i), i);
+            }
+            return map;
+        });
+
+        Benchmarker.heapUsedBy("HashMap<Leg, Station> x " + numberOfLegs, () -> {
+            Map<Leg, Station> map = new HashMap<>();
+            for (Leg leg : legs) {
+                map.put(leg, station);
+            }
+            return map;
+        });
+
+        Benchmarker.heapUsedBy("IdentityHashMap<Leg, Station> x " + numberOfLegs, () -> {
+            Map<Leg, Station> map = new IdentityHashMap<>();
+            for (Leg leg : legs) {
+                map.put(leg, station);
+            }
+            return map;
+        });
+    }
+
+
+    private static List<Leg> createLegs(int count) {
+        List<Leg> legs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            legs.add(new Leg(i % 50, i % 360, 0));
+        }
+        return legs;
+    }
+
+}
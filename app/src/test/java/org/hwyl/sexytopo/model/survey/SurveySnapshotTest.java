@@ -0,0 +1,194 @@
+package org.hwyl.sexytopo.model.survey;
+
+import org.hwyl.sexytopo.control.util.SurveyUpdater;
+import org.hwyl.sexytopo.model.graph.Direction;
+import org.hwyl.sexytopo.testhelpers.LargeSurveyCreator;
+import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class SurveySnapshotTest {
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterLegs() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveySnapshot snapshot = survey.publishSnapshot();
+        int numberOfStations = snapshot.getAllStations().size();
+        int numberOfLegs = snapshot.getAllLegs().size();
+
+        SurveyUpdater.updateWithNewStation(survey, new Leg(5, 0, 0));
+        survey.addLeg(survey.getOrigin(), new Leg(2, 90, 0));
+
+        Assert.assertEquals(numberOfStations, snapshot.getAllStations().size());
+        Assert.assertEquals(numberOfLegs, snapshot.getAllLegs().size());
+        Assert.assertEquals(numberOfLegs, snapshot.getAllLegsInChronoOrder().size());
+        Assert.assertEquals(numberOfStations + 1, survey.getAllStations().size());
+    }
+
+    @Test
+    public void testSnapshotStillSeesDeletedStations() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station three = survey.getStationByName("3");
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        SurveyUpdater.deleteStation(survey, three);
+
+        Assert.assertTrue(snapshot.getAllStations().contains(three));
+        Assert.assertFalse(survey.getAllStations().contains(three));
+    }
+
+    @Test
+    public void testOlderSnapshotSurvivesSeveralLaterSnapshots() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station origin = survey.getOrigin();
+        SurveySnapshot first = survey.publishSnapshot();
+        List<Leg> originalLegs = first.getOnwardLegs(origin);
+
+        survey.addLeg(origin, new Leg(1, 0, 0));
+        SurveySnapshot second = survey.publishSnapshot();
+        survey.addLeg(origin, new Leg(2, 0, 0));
+        SurveySnapshot third = survey.publishSnapshot();
+
+        Assert.assertEquals(originalLegs, first.getOnwardLegs(origin));
+        Assert.assertEquals(originalLegs.size() + 1, second.getOnwardLegs(origin).size());
+        Assert.assertEquals(originalLegs.size() + 2, third.getOnwardLegs(origin).size());
+    }
+
+    @Test
+    public void testSnapshotKeepsNamesCommentsAndDirections() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        SurveyUpdater.renameStation(survey, two, "2a");
+        survey.setStationComment(two, "Big chamber");
+        SurveyUpdater.setDirectionOfSubtree(survey, two, Direction.LEFT);
+        SurveySnapshot later = survey.publishSnapshot();
+
+        Assert.assertEquals("2", snapshot.getName(two));
+        Assert.assertFalse(snapshot.hasComment(two));
+        Assert.assertEquals(Direction.RIGHT, snapshot.getExtendedElevationDirection(two));
+        Assert.assertEquals("2a", later.getName(two));
+        Assert.assertEquals("Big chamber", later.getComment(two));
+        Assert.assertEquals(Direction.LEFT, later.getExtendedElevationDirection(two));
+    }
+
+    @Test
+    public void testOldSnapshotIsUnaffectedByManyLaterSnapshots() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station origin = survey.getOrigin();
+        SurveySnapshot first = survey.publishSnapshot();
+        List<Leg> originalLegs = first.getOnwardLegs(origin);
+        List<Station> originalStations = first.getAllStations();
+
+        for (int i = 0; i < 1000; i++) {
+            SurveyUpdater.updateWithNewStation(survey, new Leg(1, i % 360, 0));
+            survey.publishSnapshot();
+        }
+
+        Assert.assertSame(originalLegs, first.getOnwardLegs(origin));
+        Assert.assertEquals(originalStations, first.getAllStations());
+        Assert.assertEquals(survey.getAllStations(), survey.getLatestSnapshot().getAllStations());
+    }
+
+    @Test
+    public void testDeletedStationIsDroppedFromLaterSnapshots() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station three = survey.getStationByName("3");
+        List<Leg> legsOfThree = three.getOnwardLegs();
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        SurveyUpdater.deleteStation(survey, three);
+        SurveySnapshot later = survey.publishSnapshot();
+
+        Assert.assertEquals(legsOfThree, snapshot.getOnwardLegs(three));
+        Assert.assertTrue(later.getOnwardLegs(three).isEmpty());
+        Assert.assertFalse(later.getAllStations().contains(three));
+    }
+
+    @Test
+    public void testSnapshotAfterRestructuringMatchesSurvey() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        survey.publishSnapshot();
+
+        Station newOrigin = new Station("A");
+        newOrigin.addOnwardLeg(new Leg(5, 0, 0, new Station("B"), new Leg[]{}));
+        survey.setOrigin(newOrigin);
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        Assert.assertSame(newOrigin, snapshot.getOrigin());
+        Assert.assertEquals(survey.getAllStations(), snapshot.getAllStations());
+        Assert.assertEquals(survey.getAllLegs(), snapshot.getAllLegs());
+    }
+
+    @Test
+    public void testStationUnknownToSnapshotHasNoLegsThere() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        Station other = new Station("Elsewhere");
+        other.addOnwardLeg(new Leg(1, 0, 0));
+
+        Assert.assertTrue(snapshot.getOnwardLegs(other).isEmpty());
+        Assert.assertEquals("Elsewhere", snapshot.getName(other));
+    }
+
+    @Test
+    public void testSnapshotChronoOrderIsUnaffectedByUndo() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        List<Leg> expected = new ArrayList<>(survey.getAllLegsInChronoOrder());
+        SurveySnapshot snapshot = survey.publishSnapshot();
+
+        survey.undoAddLeg();
+        SurveyUpdater.update(survey, new Leg(3, 0, 0));
+
+        Assert.assertEquals(expected, snapshot.getAllLegsInChronoOrder());
+        Leg last = expected.get(expected.size() - 1);
+        Assert.assertEquals(expected.size() - 1, snapshot.getAllLegsInChronoOrder().indexOf(last));
+    }
+
+    @Test
+    public void testUnchangedSurveyReusesSnapshot() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveySnapshot snapshot = survey.publishSnapshot();
+        Assert.assertSame(snapshot, survey.publishSnapshot());
+        Assert.assertSame(snapshot, survey.getLatestSnapshot());
+    }
+
+    @Test
+    public void testSnapshotsCanBeReadWhileShotsAreAdded() throws Exception {
+        final Survey survey = LargeSurveyCreator.createLinear(500, 5);
+        survey.publishSnapshot();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    SurveySnapshot snapshot = survey.getLatestSnapshot();
+                    int expected = snapshot.getAllLegsInChronoOrder().size();
+                    Assert.assertEquals(expected, snapshot.getAllLegs().size());
+                }
+            } catch (Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+        reader.start();
+
+        Station active = survey.getActiveStation();
+        for (int i = 0; i < 2000; i++) {
+            Leg splay = new Leg(1, i % 360, 0);
+            survey.addLeg(active, splay);
+            survey.addLegRecord(splay);
+            survey.publishSnapshot();
+        }
+
+        reader.join();
+        Assert.assertNull(failure.get());
+    }
+
+}
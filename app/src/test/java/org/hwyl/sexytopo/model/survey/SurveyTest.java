@@ -1,10 +1,13 @@
 package org.hwyl.sexytopo.model.survey;
 
 import org.hwyl.sexytopo.control.util.SurveyUpdater;
+import org.hwyl.sexytopo.model.graph.Direction;
 import org.hwyl.sexytopo.testutils.BasicTestSurveyCreator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
+
 
 public class SurveyTest {
 
@@ -45,4 +48,281 @@ public class SurveyTest {
         Assert.assertEquals(baseSurvey.getConnectedSurveys().size(), 0);
     }
 
+
+    @Test
+    public void testStationCanBeFoundByNameAfterRename() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        SurveyUpdater.renameStation(survey, two, "Renamed");
+        Assert.assertNull(survey.getStationByName("2"));
+        Assert.assertEquals(two, survey.getStationByName("Renamed"));
+    }
+
+    @Test
+    public void testDeletedStationsCanNoLongerBeFoundByName() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveyUpdater.deleteStation(survey, survey.getStationByName("2"));
+        Assert.assertNull(survey.getStationByName("2"));
+        Assert.assertNull(survey.getStationByName("3"));
+        Assert.assertNotNull(survey.getStationByName("1"));
+    }
+
+    @Test
+    public void testDuplicateNameIsStillFoundAfterOtherIsRenamed() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        Station three = survey.getStationByName("3");
+        survey.renameStation(three, "2");
+        Assert.assertSame(two, survey.getStationByName("2"));
+
+        survey.renameStation(two, "Renamed");
+        Assert.assertSame(three, survey.getStationByName("2"));
+    }
+
+    @Test
+    public void testDuplicateNameIsStillFoundAfterOtherIsDeleted() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        Station otherTwo = new Station("2");
+        survey.addLeg(survey.getOrigin(), new Leg(1, 90, 0, otherTwo, new Leg[]{}));
+        Assert.assertSame(two, survey.getStationByName("2"));
+
+        SurveyUpdater.deleteStation(survey, two);
+        Assert.assertSame(otherTwo, survey.getStationByName("2"));
+        Assert.assertNotEquals("2", survey.findUnusedStationName("2"));
+    }
+
+    @Test
+    public void testUndoneStationCanNoLongerBeFoundByName() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        survey.undoAddLeg();
+        Assert.assertNull(survey.getStationByName("4"));
+        Assert.assertNotNull(survey.getStationByName("3"));
+    }
+
+    @Test
+    public void testReferringLegAndOriginatingStationAreFound() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Station one = survey.getStationByName("1");
+        Station branch = survey.getStationByName("5");
+        Leg referringLeg = survey.getReferringLeg(branch);
+        Assert.assertEquals(branch, referringLeg.getDestination());
+        Assert.assertEquals(one, survey.getOriginatingStation(referringLeg));
+        Assert.assertNull(survey.getReferringLeg(survey.getOrigin()));
+    }
+
+    @Test
+    public void testOriginatingStationIsUpdatedWhenLegIsMoved() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station three = survey.getStationByName("3");
+        Leg toMove = three.getOnwardLegs().get(0);
+        SurveyUpdater.moveLeg(survey, toMove, survey.getOrigin());
+        Assert.assertEquals(survey.getOrigin(), survey.getOriginatingStation(toMove));
+        Assert.assertEquals(toMove, survey.getReferringLeg(survey.getStationByName("4")));
+    }
+
+    @Test
+    public void testReferringLegIsUpdatedWhenLegIsEdited() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station two = survey.getStationByName("2");
+        Leg original = survey.getReferringLeg(two);
+        Leg edited = new Leg(6, 0, 0, two, new Leg[]{});
+        SurveyUpdater.editLeg(survey, original, edited);
+        Assert.assertEquals(edited, survey.getReferringLeg(two));
+        Assert.assertNull(survey.getOriginatingStation(original));
+    }
+
+    @Test
+    public void testDeletingStationRemovesItsLegsFromChronoRecord() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Station three = survey.getStationByName("3");
+        Leg legFromThree = three.getOnwardLegs().get(0);
+        SurveyUpdater.deleteStation(survey, three);
+        Assert.assertEquals(1, survey.getAllLegsInChronoOrder().size());
+        Assert.assertFalse(survey.getAllLegsInChronoOrder().contains(legFromThree));
+    }
+
+    @Test
+    public void testDeletingActiveStationMovesActiveStation() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        SurveyUpdater.deleteStation(survey, survey.getStationByName("3"));
+        Assert.assertEquals(survey.getStationByName("2"), survey.getActiveStation());
+    }
+
+    @Test
+    public void testDeletingConnectedStationRemovesConnection() {
+        Survey baseSurvey = BasicTestSurveyCreator.createStraightNorth();
+        Survey otherSurvey = BasicTestSurveyCreator.createRightRight();
+        baseSurvey.connect(baseSurvey.getActiveStation(),
+                otherSurvey, otherSurvey.getActiveStation());
+        SurveyUpdater.deleteStation(baseSurvey, baseSurvey.getStationByName("3"));
+        Assert.assertEquals(0, baseSurvey.getConnectedSurveys().size());
+    }
+
+    @Test
+    public void testMovedLegIsNotTreatedAsDetached() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorthWith1EBranch();
+        Leg toMove = survey.getReferringLeg(survey.getStationByName("5"));
+        SurveyUpdater.moveLeg(survey, toMove, survey.getStationByName("4"));
+        survey.checkSurveyIntegrity();
+        Assert.assertTrue(survey.getAllLegsInChronoOrder().contains(toMove));
+        Assert.assertEquals(5, survey.getAllStations().size());
+    }
+
+    @Test
+    public void testStationsCanBeLookedUpWhileStationsAreAdded() throws Exception {
+        final Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 5000; i++) {
+                    SurveyUpdater.updateWithNewStation(survey, new Leg(1, 0, 0));
+                }
+            } catch (Throwable throwable) {
+                failure[0] = throwable;
+            }
+        });
+
+        writer.start();
+        while (writer.isAlive()) {
+            Station two = survey.getStationByName("2");
+            Assert.assertNotNull(two);
+            Assert.assertNotNull(survey.getReferringLeg(two));
+            Assert.assertNotEquals("2", survey.findUnusedStationName("2"));
+        }
+        writer.join();
+
+        Assert.assertNull(failure[0]);
+        for (Station station : survey.getAllStations()) {
+            Assert.assertSame(station, survey.getStationByName(station.getName()));
+        }
+    }
+
+    @Test
+    public void testRevisionIncreasesWithEachChange() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+        SurveyUpdater.update(survey, new Leg(5, 0, 0));
+        Assert.assertTrue(survey.getRevision() > before);
+    }
+
+    @Test
+    public void testChangesSinceRevisionAreReportedInOrder() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+        Station two = survey.getStationByName("2");
+
+        Leg splay = new Leg(5, 0, 0);
+        survey.addLeg(two, splay);
+        SurveyUpdater.renameStation(survey, two, "Two");
+        survey.setActiveStation(two);
+
+        List<SurveyChange> changes = survey.getChangesSince(before);
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(SurveyChange.Type.LEG_ADDED, changes.get(0).getType());
+        Assert.assertEquals(splay, changes.get(0).getLeg());
+        Assert.assertEquals(two, changes.get(0).getStation());
+        Assert.assertEquals(SurveyChange.Type.STATION_RENAMED, changes.get(1).getType());
+        Assert.assertEquals("2", changes.get(1).getPreviousName());
+        Assert.assertEquals(SurveyChange.Type.ACTIVE_STATION_CHANGED, changes.get(2).getType());
+        Assert.assertEquals(survey.getRevision(), changes.get(2).getRevision());
+    }
+
+    @Test
+    public void testDeletingStationReportsDeletedSubtreeAndNewActiveStation() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+        Station three = survey.getStationByName("3");
+        Leg referringLeg = survey.getReferringLeg(three);
+
+        SurveyUpdater.deleteStation(survey, three);
+
+        List<SurveyChange> changes = survey.getChangesSince(before);
+        Assert.assertEquals(SurveyChange.Type.SUBTREE_DELETED, changes.get(0).getType());
+        Assert.assertEquals(referringLeg, changes.get(0).getLeg());
+        Assert.assertTrue(changes.get(0).affectsStations());
+        Assert.assertEquals(SurveyChange.Type.ACTIVE_STATION_CHANGED, changes.get(1).getType());
+        Assert.assertEquals(survey.getActiveStation(), changes.get(1).getStation());
+    }
+
+    @Test
+    public void testDirectionChangeIsReportedAsMovingStations() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+        Station two = survey.getStationByName("2");
+
+        SurveyUpdater.setDirectionOfSubtree(survey, two, Direction.LEFT);
+
+        List<SurveyChange> changes = survey.getChangesSince(before);
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(SurveyChange.Type.DIRECTION_CHANGED, changes.get(0).getType());
+        Assert.assertSame(two, changes.get(0).getStation());
+        Assert.assertFalse(changes.get(0).isCosmetic());
+        Assert.assertTrue(changes.get(0).affectsStations());
+    }
+
+    @Test
+    public void testEditingLegIsRecordedAsReplacement() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+
+        Leg oldLeg = survey.getReferringLeg(survey.getStationByName("2"));
+        SurveyUpdater.editLeg(survey, oldLeg, oldLeg.reverse());
+
+        List<SurveyChange> changes = survey.getChangesSince(before);
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(SurveyChange.Type.LEG_REPLACED, changes.get(0).getType());
+        Assert.assertEquals(oldLeg, changes.get(0).getPreviousLeg());
+    }
+
+    @Test
+    public void testNoChangesAreReportedForCurrentRevision() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        Assert.assertTrue(survey.getChangesSince(survey.getRevision()).isEmpty());
+    }
+
+    @Test
+    public void testChangeLogCanBeReadWhileChangesComeIn() throws Exception {
+        final Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20000; i++) {
+                    SurveyUpdater.update(survey, new Leg(1, 0, 0));
+                }
+            } catch (Throwable throwable) {
+                failure[0] = throwable;
+            }
+        });
+
+        long syncedRevision = survey.getRevision();
+        writer.start();
+        while (writer.isAlive()) {
+            List<SurveyChange> changes = survey.getChangesSince(syncedRevision);
+            if (changes == null) {
+                syncedRevision = survey.getRevision();
+                continue;
+            }
+            for (SurveyChange change : changes) {
+                Assert.assertEquals(++syncedRevision, change.getRevision());
+            }
+            Assert.assertEquals(
+                    syncedRevision, SurveyChange.getRevisionAfter(syncedRevision, changes));
+        }
+        writer.join();
+
+        Assert.assertNull(failure[0]);
+        Assert.assertTrue(syncedRevision <= survey.getRevision());
+    }
+
+    @Test
+    public void testChangesAreUnknownOnceForgotten() {
+        Survey survey = BasicTestSurveyCreator.createStraightNorth();
+        long before = survey.getRevision();
+        for (int i = 0; i < 1000; i++) {
+            survey.addLeg(survey.getOrigin(), new Leg(1, 0, 0));
+        }
+        Assert.assertNull(survey.getChangesSince(before));
+    }
+
 }
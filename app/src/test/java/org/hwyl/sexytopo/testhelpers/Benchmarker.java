@@ -0,0 +1,101 @@
+package org.hwyl.sexytopo.testhelpers;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+
+/**
+ * Very simple wall-clock timing and heap measurement for the benchmark tests. Results are
+ * printed rather than asserted on, as they depend too much on the machine running the tests.
+ *
+ * Benchmarks are slow and noisy, so they're skipped unless the sexytopo.benchmarks system
+ * property is set (./gradlew test -Pbenchmarks).
+ */
+public class Benchmarker {
+
+    public static final String BENCHMARKS_PROPERTY = "sexytopo.benchmarks";
+
+    private static final int WARM_UP_RUNS = 2;
+
+    private static volatile Object retained;
+
+
+    /** Call first thing in a benchmark test, to skip it unless benchmarks have been asked for. */
+    public static void assumeBenchmarking() {
+        Assume.assumeTrue("benchmarks are off", Boolean.getBoolean(BENCHMARKS_PROPERTY));
+    }
+
+
+    public static double time(String description, int runs, Runnable task) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            task.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        double meanMillis = (System.nanoTime() - start) / (runs * 1e6);
+
+        System.out.printf("%s: %.3f ms%n", description, meanMillis);
+        return meanMillis;
+    }
+
+
+    public static double timeRate(String description, String unit, int count, Runnable task) {
+        double millis = time(description, 1, task);
+        double perSecond = count / (millis / 1000);
+        System.out.printf("%s: %.0f %s/s%n", description, perSecond, unit);
+        return perSecond;
+    }
+
+
+    /**
+     * Roughly how much heap the object built by the supplier (and everything it holds on to)
+     * takes up.
+     */
+    public static long heapUsedBy(String description, Supplier<Object> builder) {
+        long before = usedHeap();
+        retained = builder.get(); // held in a field so it can't be collected while measuring
+        long after = usedHeap();
+        retained = null;
+        long bytes = after - before;
+
+        System.out.printf("%s: %d KB%n", description, bytes / 1024);
+        return bytes;
+    }
+
+
+    /**
+     * How many bytes the task allocates on this thread, or -1 if the JVM can't say. This is
+     * measured on the first run, without warming up: once compiled, a desktop JVM can optimise
+     * away short-lived objects that Android's runtime generally can't, which would hide them.
+     */
+    public static long bytesAllocatedBy(String description, Runnable task) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        task.run();
+        long bytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        System.out.printf("%s: %d KB allocated%n", description, bytes / 1024);
+        return bytes;
+    }
+
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
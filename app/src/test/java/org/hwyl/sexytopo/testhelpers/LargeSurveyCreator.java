@@ -0,0 +1,64 @@
+package org.hwyl.sexytopo.testhelpers;
+
+import org.hwyl.sexytopo.model.survey.Leg;
+import org.hwyl.sexytopo.model.survey.Station;
+import org.hwyl.sexytopo.model.survey.Survey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Builds big surveys directly (without going through SurveyUpdater) for stress tests and
+ * benchmarks.
+ */
+public class LargeSurveyCreator {
+
+    public static Survey createLinear(int numberOfStations, int splaysPerStation) {
+        Survey survey = new Survey();
+        Station current = survey.getOrigin();
+        for (int i = 2; i <= numberOfStations; i++) {
+            addSplays(survey, current, splaysPerStation);
+            Station next = new Station(Integer.toString(i));
+            Leg leg = new Leg(5, (i * 7) % 360, (i % 20) - 10, next, new Leg[]{});
+            survey.addLeg(current, leg);
+            survey.addLegRecord(leg);
+            current = next;
+        }
+        addSplays(survey, current, splaysPerStation);
+        survey.setActiveStation(current);
+        return survey;
+    }
+
+
+    public static Survey createBushy(int numberOfStations, int branching, int splaysPerStation) {
+        Survey survey = new Survey();
+        List<Station> toExtend = new ArrayList<>();
+        toExtend.add(survey.getOrigin());
+        int created = 1;
+        int nextToExtend = 0;
+        while (created < numberOfStations) {
+            Station from = toExtend.get(nextToExtend++);
+            addSplays(survey, from, splaysPerStation);
+            for (int b = 0; b < branching && created < numberOfStations; b++) {
+                created++;
+                Station next = new Station(Integer.toString(created));
+                Leg leg = new Leg(5, (created * 37) % 360, 0, next, new Leg[]{});
+                survey.addLeg(from, leg);
+                survey.addLegRecord(leg);
+                toExtend.add(next);
+            }
+        }
+        survey.setActiveStation(toExtend.get(toExtend.size() - 1));
+        return survey;
+    }
+
+
+    private static void addSplays(Survey survey, Station station, int count) {
+        for (int i = 0; i < count; i++) {
+            Leg splay = new Leg(1, (i * 90) % 360, 0);
+            survey.addLeg(station, splay);
+            survey.addLegRecord(splay);
+        }
+    }
+}